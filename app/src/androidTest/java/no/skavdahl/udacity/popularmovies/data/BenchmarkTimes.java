@@ -0,0 +1,32 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import java.util.Arrays;
+
+/**
+ * Summaries of the times measured by the database benchmarks.
+ *
+ * @author fdavs
+ */
+final class BenchmarkTimes {
+
+	private BenchmarkTimes() {
+		// static methods only
+	}
+
+	/** Returns the median of the times, in nanoseconds. */
+	static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/** Returns the median, 99th percentile and maximum of the times, formatted in milliseconds. */
+	static String percentiles(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return String.format("p50 %6.3f ms, p99 %6.3f ms, max %6.3f ms",
+			sorted[sorted.length / 2] / 1e6,
+			sorted[sorted.length * 99 / 100] / 1e6,
+			sorted[sorted.length - 1] / 1e6);
+	}
+}
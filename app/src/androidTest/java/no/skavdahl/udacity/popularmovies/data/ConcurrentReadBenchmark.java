@@ -0,0 +1,271 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Measures the latency of the queries of the user interface loaders while a background
+ * sync writes list pages, with the write-ahead log and pool of reader connections of
+ * {@link MovieDbHelper} against a single connection in rollback journal mode.
+ *
+ * <p>The poster grid query is the list member query of {@link MovieProvider}, sorted the
+ * way DiscoveryFragment sorts it, and the detail query reads one movie from the extended
+ * movie view, like the movie details loader. The writer refreshes pages of the same list
+ * in a loop, one transaction per page, until the readers are done.</p>
+ *
+ * <p>The results are logged with the tag "ConcurrentReadBenchmark".</p>
+ *
+ * @author fdavs
+ */
+// Disable "try can use automatic resource management" tip from Android Studio
+// This feature requires API level 19, which is higher than our current minimum API level
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+public class ConcurrentReadBenchmark extends SQLiteTestCase {
+
+	private static final String LOG_TAG = ConcurrentReadBenchmark.class.getSimpleName();
+
+	private static final int PAGE_COUNT = 10;
+	private static final int MOVIES_PER_PAGE = 500;
+	private static final int READS = 200;
+
+	private static final String GRID_QUERY = MovieProvider.buildListMemberQuery(
+		new String[] { MovieContract.Column._ID, MovieContract.Column.TITLE, MovieContract.Column.POSTER_PATH },
+		null,
+		ListMembershipContract.Column.PAGE + " ASC, " + ListMembershipContract.Column.POSITION + " ASC");
+
+	private static final String DETAIL_QUERY =
+		"SELECT * FROM " + MovieContract.TABLE_EX_NAME + " WHERE " + MovieContract.Column._ID + " = ?";
+
+	private MovieDbHelper dbHelper;
+	private int listId;
+
+	@Override
+	public void tearDown() {
+		super.tearDown();
+		if (dbHelper != null) {
+			dbHelper.close();
+			dbHelper = null;
+		}
+	}
+
+	/** Opens a new database with the given journaling and fills the list. */
+	private void openDatabase(boolean writeAheadLogging) {
+		if (dbHelper != null)
+			dbHelper.close();
+		mContext.deleteDatabase(MovieDbHelper.DATABASE_NAME);
+
+		dbHelper = new MovieDbHelper(mContext, writeAheadLogging);
+		SQLiteDatabase writer = dbHelper.getWritableDatabase();
+		listId = (int) DatabaseUtils.longForQuery(writer,
+			"SELECT " + ListContract.Column._ID + " FROM " + ListContract.TABLE_NAME + " WHERE " + ListContract.Column.NAME + " = ?",
+			new String[] { StandardMovieList.POPULAR });
+
+		for (int page = 1; page <= PAGE_COUNT; ++page)
+			writePage(writer, page, 0);
+	}
+
+	/** Verifies that the writer connection uses the configured journal mode and synchronous level. */
+	public void testWriterConfiguration() {
+		openDatabase(true);
+
+		SQLiteDatabase writer = dbHelper.getWritableDatabase();
+		assertEquals("wal", DatabaseUtils.stringForQuery(writer, "PRAGMA journal_mode", null).toLowerCase());
+		// NORMAL
+		assertEquals(1, DatabaseUtils.longForQuery(writer, "PRAGMA synchronous", null));
+		assertNotSame(writer, dbHelper.getReadableDatabase());
+	}
+
+	/**
+	 * Verifies that a query completes while a write transaction is open on another thread,
+	 * and sees the data as it was before the transaction.
+	 */
+	public void testReaderDoesNotWaitForWriter() throws Exception {
+		openDatabase(true);
+
+		final CountDownLatch written = new CountDownLatch(1);
+		final CountDownLatch queried = new CountDownLatch(1);
+		Thread writerThread = new Thread() {
+			@Override
+			public void run() {
+				SQLiteDatabase writer = dbHelper.getWritableDatabase();
+				writer.beginTransaction();
+				try {
+					writer.delete(ListMembershipContract.TABLE_NAME, null, null);
+					written.countDown();
+					queried.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					// roll back
+				}
+				finally {
+					writer.endTransaction();
+				}
+			}
+		};
+		writerThread.start();
+		try {
+			assertTrue(written.await(10, TimeUnit.SECONDS));
+
+			long start = System.nanoTime();
+			cursor = dbHelper.getReadableDatabase().rawQuery(GRID_QUERY, new String[] { StandardMovieList.POPULAR });
+			assertEquals(PAGE_COUNT * MOVIES_PER_PAGE, cursor.getCount());
+			long elapsed = System.nanoTime() - start;
+
+			// the writer holds its transaction open for up to ten seconds
+			assertTrue("Query took " + elapsed / 1000000 + " ms", elapsed < TimeUnit.SECONDS.toNanos(5));
+		}
+		finally {
+			queried.countDown();
+			writerThread.join();
+		}
+	}
+
+	/** Measures the query latencies with and without write-ahead logging. */
+	public void testReadLatencyDuringSync() throws Exception {
+		for (boolean writeAheadLogging : new boolean[] { false, true }) {
+			openDatabase(writeAheadLogging);
+			measure(writeAheadLogging ? "WAL, reader pool" : "rollback journal");
+		}
+	}
+
+	private void measure(String mode) throws Exception {
+		final long[] gridTimes = new long[READS];
+		final long[] detailTimes = new long[READS];
+		final int[] pagesWritten = new int[1];
+		final Throwable[] writerFailure = new Throwable[1];
+		final CountDownLatch readersDone = new CountDownLatch(1);
+
+		Thread writerThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					SQLiteDatabase writer = dbHelper.getWritableDatabase();
+					int round = 1;
+					while (readersDone.getCount() > 0) {
+						for (int page = 1; page <= PAGE_COUNT && readersDone.getCount() > 0; ++page) {
+							writePage(writer, page, round);
+							pagesWritten[0]++;
+						}
+						round++;
+					}
+				}
+				catch (Throwable t) {
+					writerFailure[0] = t;
+				}
+			}
+		};
+
+		SQLiteDatabase reader = dbHelper.getReadableDatabase();
+		String[] gridArgs = { StandardMovieList.POPULAR };
+		String[] detailArgs = new String[1];
+
+		writerThread.start();
+		try {
+			for (int i = 0; i < READS; ++i) {
+				long start = System.nanoTime();
+				Cursor grid = reader.rawQuery(GRID_QUERY, gridArgs);
+				try {
+					assertEquals(PAGE_COUNT * MOVIES_PER_PAGE, grid.getCount());
+				}
+				finally {
+					grid.close();
+				}
+				gridTimes[i] = System.nanoTime() - start;
+
+				detailArgs[0] = Integer.toString(1 + (i * 37) % (PAGE_COUNT * MOVIES_PER_PAGE));
+				start = System.nanoTime();
+				Cursor detail = reader.rawQuery(DETAIL_QUERY, detailArgs);
+				try {
+					assertEquals(1, detail.getCount());
+				}
+				finally {
+					detail.close();
+				}
+				detailTimes[i] = System.nanoTime() - start;
+			}
+		}
+		finally {
+			readersDone.countDown();
+			writerThread.join();
+		}
+
+		if (writerFailure[0] != null)
+			throw new AssertionError(writerFailure[0]);
+
+		Log.i(LOG_TAG, String.format("%-16s: %4d pages written; poster grid %s; details %s",
+			mode, pagesWritten[0], BenchmarkTimes.percentiles(gridTimes), BenchmarkTimes.percentiles(detailTimes)));
+	}
+
+	/**
+	 * Writes one page of the list in a transaction with the statements of a list refresh.
+	 * The popularity changes with every round, so every movie row is rewritten.
+	 */
+	private void writePage(SQLiteDatabase writer, int page, int round) {
+		long now = System.currentTimeMillis();
+
+		writer.beginTransaction();
+		try {
+			SQLiteStatement movieStmt = writer.compileStatement(
+				"INSERT OR REPLACE INTO " + MovieContract.TABLE_NAME + " (" +
+					MovieContract.Column._ID + ", " +
+					MovieContract.Column.MODIFIED + ", " +
+					MovieContract.Column.TITLE + ", " +
+					MovieContract.Column.POSTER_PATH + ", " +
+					MovieContract.Column.SYNOPSIS + ", " +
+					MovieContract.Column.POPULARITY + ", " +
+					MovieContract.Column.VOTE_AVERAGE + ", " +
+					MovieContract.Column.VOTE_COUNT + ") " +
+				"VALUES (?, ?, ?, ?, ?, ?, 5.0, 100)");
+			SQLiteStatement memberStmt = writer.compileStatement(
+				"INSERT OR REPLACE INTO " + ListMembershipContract.TABLE_NAME + " (" +
+					ListMembershipContract.Column._ID + ", " +
+					ListMembershipContract.Column.LIST_ID + ", " +
+					ListMembershipContract.Column.MOVIE_ID + ", " +
+					ListMembershipContract.Column.ADDED + ", " +
+					ListMembershipContract.Column.PAGE + ", " +
+					ListMembershipContract.Column.POSITION + ") " +
+				"VALUES (?, ?, ?, ?, ?, ?)");
+			try {
+				for (int position = 0; position < MOVIES_PER_PAGE; ++position) {
+					int movieId = (page - 1) * MOVIES_PER_PAGE + position + 1;
+
+					movieStmt.bindLong(1, movieId);
+					movieStmt.bindLong(2, now);
+					movieStmt.bindString(3, "Movie " + movieId);
+					movieStmt.bindString(4, "/poster" + movieId + ".jpg");
+					movieStmt.bindString(5, "Synopsis of movie number " + movieId +
+						". A cryptic message from the past sends the hero on a trail to uncover a sinister organization.");
+					movieStmt.bindDouble(6, (round + 1) * 1000.0 / movieId);
+					movieStmt.executeInsert();
+
+					memberStmt.bindLong(1, movieId);
+					memberStmt.bindLong(2, listId);
+					memberStmt.bindLong(3, movieId);
+					memberStmt.bindLong(4, now);
+					memberStmt.bindLong(5, page);
+					memberStmt.bindLong(6, position);
+					memberStmt.executeInsert();
+				}
+			}
+			finally {
+				movieStmt.close();
+				memberStmt.close();
+			}
+
+			writer.setTransactionSuccessful();
+		}
+		finally {
+			writer.endTransaction();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Measures the detail query of a movie, which includes the favorite column, with 10 000
+ * favorite movies: the extended movie view, which reads the favorite table maintained by
+ * triggers, against the correlated count of favorite list memberships that the view used
+ * before database version 7.
+ *
+ * <p>The results are logged with the tag "FavoriteFlagBenchmark".</p>
+ *
+ * @author fdavs
+ */
+// Disable "try can use automatic resource management" tip from Android Studio
+// This feature requires API level 19, which is higher than our current minimum API level
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+public class FavoriteFlagBenchmark extends SQLiteTestCase {
+
+	private static final String LOG_TAG = FavoriteFlagBenchmark.class.getSimpleName();
+
+	private static final int FAVORITE_COUNT = 10000;
+	/** Every movie is on the popular list, and every other movie is a favorite. */
+	private static final int MOVIE_COUNT = 2 * FAVORITE_COUNT;
+	private static final int LOOKUPS = 2000;
+
+	private static final String DETAIL_QUERY =
+		"SELECT " +
+			MovieContract.Column._ID + ", " +
+			MovieContract.Column.TITLE + ", " +
+			MovieContract.Column.FAVORITE + " " +
+		"FROM " + MovieContract.TABLE_EX_NAME + " " +
+		"WHERE " + MovieContract.Column._ID + " = ?";
+
+	/** The detail query with the favorite column of database versions 1 to 6. */
+	private static final String CORRELATED_DETAIL_QUERY =
+		"SELECT " +
+			"M." + MovieContract.Column._ID + ", " +
+			"M." + MovieContract.Column.TITLE + ", " +
+			"(SELECT COUNT(*) " +
+			 "FROM " +
+				ListMembershipContract.TABLE_NAME + " LM," +
+				ListContract.TABLE_NAME + " L " +
+			 "WHERE LM." + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID + " " +
+			   "AND LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+			   "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE + ") AS " + MovieContract.Column.FAVORITE + " " +
+		"FROM " + MovieContract.TABLE_NAME + " M " +
+		"WHERE M." + MovieContract.Column._ID + " = ?";
+
+	private long populateTime;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+		populate();
+	}
+
+	private void populate() {
+		long now = System.currentTimeMillis();
+		long start = System.nanoTime();
+
+		db.beginTransaction();
+		try {
+			SQLiteStatement movieStmt = db.compileStatement(
+				"INSERT INTO " + MovieContract.TABLE_NAME + " (" +
+					MovieContract.Column._ID + ", " +
+					MovieContract.Column.MODIFIED + ", " +
+					MovieContract.Column.TITLE + ", " +
+					MovieContract.Column.POPULARITY + ", " +
+					MovieContract.Column.VOTE_AVERAGE + ", " +
+					MovieContract.Column.VOTE_COUNT + ") " +
+				"VALUES (?, ?, ?, 1.0, 5.0, 100)");
+			SQLiteStatement memberStmt = db.compileStatement(
+				"INSERT INTO " + ListMembershipContract.TABLE_NAME + " (" +
+					ListMembershipContract.Column.LIST_ID + ", " +
+					ListMembershipContract.Column.MOVIE_ID + ", " +
+					ListMembershipContract.Column.ADDED + ", " +
+					ListMembershipContract.Column.PAGE + ", " +
+					ListMembershipContract.Column.POSITION + ") " +
+				"VALUES (?, ?, ?, ?, ?)");
+			try {
+				int popularListId = getListId(StandardMovieList.POPULAR);
+				int favoriteListId = getListId(StandardMovieList.FAVORITE);
+
+				for (int movieId = 1; movieId <= MOVIE_COUNT; ++movieId) {
+					movieStmt.bindLong(1, movieId);
+					movieStmt.bindLong(2, now);
+					movieStmt.bindString(3, "Movie " + movieId);
+					movieStmt.executeInsert();
+
+					insertListMember(memberStmt, popularListId, movieId, movieId - 1, now);
+					if (movieId % 2 == 0)
+						insertListMember(memberStmt, favoriteListId, movieId, movieId / 2 - 1, now);
+				}
+			}
+			finally {
+				movieStmt.close();
+				memberStmt.close();
+			}
+
+			db.setTransactionSuccessful();
+		}
+		finally {
+			db.endTransaction();
+		}
+
+		populateTime = System.nanoTime() - start;
+	}
+
+	private static void insertListMember(SQLiteStatement stmt, int listId, int movieId, int index, long now) {
+		stmt.bindLong(1, listId);
+		stmt.bindLong(2, movieId);
+		stmt.bindLong(3, now);
+		stmt.bindLong(4, index / 20 + 1);
+		stmt.bindLong(5, index % 20);
+		stmt.executeInsert();
+	}
+
+	private int getListId(String listName) {
+		return (int) DatabaseUtils.longForQuery(db,
+			"SELECT " + ListContract.Column._ID + " FROM " + ListContract.TABLE_NAME + " WHERE " + ListContract.Column.NAME + " = ?",
+			new String[] { listName });
+	}
+
+	/** Verifies that both queries agree on every movie. */
+	public void testQueriesAgree() {
+		assertEquals(FAVORITE_COUNT, DatabaseUtils.queryNumEntries(db, MovieDbHelper.FAVORITE_TABLE_NAME));
+
+		for (int movieId = 1; movieId <= MOVIE_COUNT; movieId += 97)
+			assertEquals(queryFavorite(CORRELATED_DETAIL_QUERY, movieId), queryFavorite(DETAIL_QUERY, movieId));
+	}
+
+	/** Measures the detail query of both versions of the view. */
+	public void testDetailQueryPerformance() {
+		// warm up: compile the statements and load the pages
+		for (int i = 0; i < LOOKUPS / 10; ++i) {
+			queryFavorite(DETAIL_QUERY, movieId(i));
+			queryFavorite(CORRELATED_DETAIL_QUERY, movieId(i));
+		}
+
+		long[] tableTimes = new long[LOOKUPS];
+		long[] correlatedTimes = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; ++i) {
+			long start = System.nanoTime();
+			queryFavorite(DETAIL_QUERY, movieId(i));
+			tableTimes[i] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			queryFavorite(CORRELATED_DETAIL_QUERY, movieId(i));
+			correlatedTimes[i] = System.nanoTime() - start;
+		}
+
+		Log.i(LOG_TAG, String.format("%d favorites: favorite table %s; correlated count %s",
+			FAVORITE_COUNT, BenchmarkTimes.percentiles(tableTimes), BenchmarkTimes.percentiles(correlatedTimes)));
+		Log.i(LOG_TAG, String.format("%d movies and %d list members inserted with triggers in %.1f ms",
+			MOVIE_COUNT, MOVIE_COUNT + FAVORITE_COUNT, populateTime / 1e6));
+	}
+
+	/** Spreads the lookups over the whole table. */
+	private static int movieId(int i) {
+		return 1 + (int) ((i * 7919L) % MOVIE_COUNT);
+	}
+
+	private boolean queryFavorite(String sql, int movieId) {
+		Cursor c = db.rawQuery(sql, new String[] { Integer.toString(movieId) });
+		try {
+			assertTrue(c.moveToFirst());
+			return c.getInt(2) != 0;
+		}
+		finally {
+			c.close();
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.utils.EpochDay;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Compares the two ways of storing a downloaded movie list page: converting the parsed
+ * movies into ContentValues for {@link MovieProvider#bulkInsert}, and binding them
+ * directly to the insert statements with {@link MovieProvider#ingestListPage}.
+ *
+ * <p>It also measures a refresh where every movie is unchanged, which only updates the
+ * modification times, against one where every movie has changed.</p>
+ *
+ * <p>The results are logged with the tag "ListIngestBenchmark".</p>
+ *
+ * @author fdavs
+ */
+public class ListIngestBenchmark extends SQLiteTestCase {
+
+	private static final String LOG_TAG = ListIngestBenchmark.class.getSimpleName();
+
+	private static final int[] PAGE_SIZES = { 20, 100, 500, 1000 };
+	private static final int ROUNDS = 5;
+
+	private static final int LIST_ID = 1;
+	private static final int PAGE = 1;
+
+	private MovieProvider provider;
+	private Uri listMemberUri;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		provider = new MovieProvider();
+		provider.attachInfo(mContext, null);
+
+		listMemberUri = ListContract.buildListMemberDirectoryUri(StandardMovieList.POPULAR);
+	}
+
+	@Override
+	public void tearDown() {
+		provider.shutdown();
+		super.tearDown();
+	}
+
+	/** Verifies that every movie on the page is written by the direct ingest path. */
+	public void testIngestWritesAllMovies() throws IOException {
+		int count = provider.ingestListPage(listMemberUri, LIST_ID, PAGE, createListBatch(20, 100.0));
+		assertEquals(20, count);
+
+		db = new MovieDbHelper(mContext).getReadableDatabase();
+		assertEquals(20, DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME));
+		assertEquals(20, DatabaseUtils.queryNumEntries(db, ListMembershipContract.TABLE_NAME));
+	}
+
+	/**
+	 * Verifies that a refresh with unchanged movies leaves their rows as they are, apart
+	 * from the modification time, and that changed movies are updated in place.
+	 */
+	public void testUnchangedMoviesAreNotWritten() throws IOException {
+		provider.ingestListPage(listMemberUri, LIST_ID, PAGE, createListBatch(20, 100.0));
+
+		// the extended data flag is not written by the list, so it shows whether a row was replaced
+		// rather than updated
+		ContentValues extendedData = new ContentValues();
+		extendedData.put(MovieContract.Column.EXTENDED_DATA, 1);
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+		db.update(MovieContract.TABLE_NAME, extendedData, null, null);
+		db.update(MovieContract.TABLE_NAME, modifiedAt(0), null, null);
+
+		assertEquals(20, provider.ingestListPage(listMemberUri, LIST_ID, PAGE, createListBatch(20, 100.0)));
+		assertEquals(20, countMovies(MovieContract.Column.EXTENDED_DATA + " = 1"));
+		assertEquals(0, countMovies(MovieContract.Column.MODIFIED + " = 0"));
+
+		assertEquals(20, provider.ingestListPage(listMemberUri, LIST_ID, PAGE, createListBatch(20, 200.0)));
+		assertEquals(20, countMovies(MovieContract.Column.EXTENDED_DATA + " = 1"));
+		assertEquals(1, countMovies(MovieContract.Column.POPULARITY + " = 200.0"));
+	}
+
+	/** Measures a refresh of unchanged movies against a refresh of changed movies. */
+	public void testRefreshPerformance() throws IOException {
+		for (int size : PAGE_SIZES) {
+			MovieBatch[] pages = { createListBatch(size, 100.0), createListBatch(size, 200.0) };
+
+			// warm up: compile the code paths and populate the tables
+			provider.ingestListPage(listMemberUri, LIST_ID, PAGE, pages[0]);
+			provider.ingestListPage(listMemberUri, LIST_ID, PAGE, pages[1]);
+
+			long[] unchangedTimes = new long[ROUNDS];
+			long[] changedTimes = new long[ROUNDS];
+			for (int round = 0; round < ROUNDS; ++round) {
+				// the popularity alternates, so every movie changes
+				long start = System.nanoTime();
+				provider.ingestListPage(listMemberUri, LIST_ID, PAGE, pages[round % 2]);
+				changedTimes[round] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				provider.ingestListPage(listMemberUri, LIST_ID, PAGE, pages[round % 2]);
+				unchangedTimes[round] = System.nanoTime() - start;
+			}
+
+			Log.i(LOG_TAG, String.format("%4d movies: refresh changed %7.2f ms, unchanged %7.2f ms",
+				size, BenchmarkTimes.median(changedTimes) / 1e6, BenchmarkTimes.median(unchangedTimes) / 1e6));
+		}
+	}
+
+	/** Measures both paths on pages of increasing size. */
+	public void testIngestPerformance() throws IOException {
+		for (int size : PAGE_SIZES) {
+			String json = createListPage(size);
+
+			// warm up: compile the code paths and populate the tables
+			assertEquals(size, insertViaContentValues(json));
+			assertEquals(size, provider.ingestListPage(listMemberUri, LIST_ID, PAGE, MdbJSONReader.readMovieBatch(new StringReader(json))));
+
+			long[] contentValuesTimes = new long[ROUNDS];
+			long[] ingestTimes = new long[ROUNDS];
+			for (int round = 0; round < ROUNDS; ++round) {
+				long start = System.nanoTime();
+				insertViaContentValues(json);
+				contentValuesTimes[round] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				provider.ingestListPage(listMemberUri, LIST_ID, PAGE, MdbJSONReader.readMovieBatch(new StringReader(json)));
+				ingestTimes[round] = System.nanoTime() - start;
+			}
+
+			Log.i(LOG_TAG, String.format("%4d movies: ContentValues %7.2f ms, direct ingest %7.2f ms",
+				size, BenchmarkTimes.median(contentValuesTimes) / 1e6, BenchmarkTimes.median(ingestTimes) / 1e6));
+		}
+	}
+
+	/** Stores a list page the way MovieListUpdateService did before the direct ingest path. */
+	private int insertViaContentValues(String json) throws IOException {
+		MovieBatch movies = MdbJSONReader.readMovieBatch(new StringReader(json));
+		long now = System.currentTimeMillis();
+
+		ContentValues[] values = new ContentValues[movies.size()];
+		for (int position = 0; position < movies.size(); ++position) {
+			ContentValues cv = new ContentValues();
+			cv.put(ListMembershipContract.Column.MOVIE_ID, movies.getId(position));
+			cv.put(MovieContract.Column.MODIFIED, now);
+			cv.put(MovieContract.Column.TITLE, movies.getTitle(position));
+			cv.put(MovieContract.Column.POSTER_PATH, movies.getPosterPath(position));
+			cv.put(MovieContract.Column.BACKDROP_PATH, movies.getBackdropPath(position));
+			cv.put(MovieContract.Column.SYNOPSIS, movies.getSynopsis(position));
+			cv.put(MovieContract.Column.POPULARITY, movies.getPopularity(position));
+			cv.put(MovieContract.Column.VOTE_AVERAGE, movies.getVoteAverage(position));
+			cv.put(MovieContract.Column.VOTE_COUNT, movies.getVoteCount(position));
+			if (movies.getReleaseDate(position) != EpochDay.NONE)
+				cv.put(MovieContract.Column.RELEASE_DATE, movies.getReleaseDate(position));
+			cv.put(ListMembershipContract.Column.LIST_ID, LIST_ID);
+			cv.put(ListMembershipContract.Column.PAGE, PAGE);
+			cv.put(ListMembershipContract.Column.POSITION, position);
+
+			values[position] = cv;
+		}
+
+		return provider.bulkInsertListMembers(listMemberUri, values);
+	}
+
+	private static ContentValues modifiedAt(long modified) {
+		ContentValues values = new ContentValues();
+		values.put(MovieContract.Column.MODIFIED, modified);
+		return values;
+	}
+
+	private long countMovies(String selection) {
+		return DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME, selection);
+	}
+
+	/** Returns a movie list response with the given number of movies. */
+	static String createListPage(int size) {
+		return createListPage(size, 100.0);
+	}
+
+	/**
+	 * Returns the movies of a movie list response with the given number of movies. The
+	 * popularity of the movies is proportional to the given factor.
+	 */
+	static MovieBatch createListBatch(int size, double popularity) throws IOException {
+		return MdbJSONReader.readMovieBatch(new StringReader(createListPage(size, popularity)));
+	}
+
+	/**
+	 * Returns a movie list response with the given number of movies. The popularity of
+	 * the movies is proportional to the given factor.
+	 */
+	static String createListPage(int size, double popularity) {
+		StringBuilder json = new StringBuilder("{\"page\":1,\"results\":[");
+		for (int i = 1; i <= size; ++i) {
+			if (i > 1)
+				json.append(',');
+
+			json.append("{\"poster_path\":\"/poster").append(i).append(".jpg\",")
+				.append("\"adult\":false,")
+				.append("\"overview\":\"Synopsis of movie number ").append(i)
+				.append(". A cryptic message from the past sends the hero on a trail to uncover a sinister organization.\",")
+				.append("\"release_date\":\"2015-10-").append(String.format("%02d", 1 + i % 28)).append("\",")
+				.append("\"genre_ids\":[28,12,80],")
+				.append("\"id\":").append(100000 + i).append(',')
+				.append("\"original_title\":\"Movie ").append(i).append("\",")
+				.append("\"original_language\":\"en\",")
+				.append("\"title\":\"Movie ").append(i).append("\",")
+				.append("\"backdrop_path\":\"/backdrop").append(i).append(".jpg\",")
+				.append("\"popularity\":").append(popularity / i).append(',')
+				.append("\"vote_count\":").append(i * 7).append(',')
+				.append("\"video\":false,")
+				.append("\"vote_average\":").append(i % 10).append(".5}");
+		}
+		json.append("],\"total_pages\":1,\"total_results\":").append(size).append('}');
+		return json.toString();
+	}
+}
@@ -0,0 +1,248 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.IOException;
+
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.utils.EpochDay;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Compares a list refresh where every movie has changed, written with the updates of
+ * {@link MovieProvider#ingestListPage} against the INSERT OR REPLACE statements it used
+ * before.
+ *
+ * <p>Before the refresh, the details of every movie are marked as downloaded, as if the
+ * user had opened them all. The benchmark reports the database pages written by the
+ * refresh, counted as the frames appended to the write-ahead log, and the number of
+ * movies whose details must be downloaded again when they are opened.</p>
+ *
+ * <p>The results are logged with the tag "ListRefreshWriteBenchmark".</p>
+ *
+ * @author fdavs
+ */
+// Disable "try can use automatic resource management" tip from Android Studio
+// This feature requires API level 19, which is higher than our current minimum API level
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+public class ListRefreshWriteBenchmark extends SQLiteTestCase {
+
+	private static final String LOG_TAG = ListRefreshWriteBenchmark.class.getSimpleName();
+
+	/** Small enough that the log is not checkpointed during a refresh. */
+	private static final int[] PAGE_SIZES = { 20, 100, 500 };
+
+	private static final int LIST_ID = 1;
+
+	/** The time the details of the movies were downloaded. */
+	private static final long DETAILS_DOWNLOADED = 1446940800000L;
+	private static final int PAGE = 1;
+
+	/** The movie statement of list refreshes before the upsert. */
+	private static final String INSERT_OR_REPLACE_INTO_MOVIE =
+		"INSERT OR REPLACE INTO " + MovieContract.TABLE_NAME + " (" +
+			MovieContract.Column._ID + ", " +
+			MovieContract.Column.MODIFIED + ", " +
+			MovieContract.Column.TITLE + ", " +
+			MovieContract.Column.POSTER_PATH + ", " +
+			MovieContract.Column.BACKDROP_PATH + ", " +
+			MovieContract.Column.SYNOPSIS + ", " +
+			MovieContract.Column.POPULARITY + ", " +
+			MovieContract.Column.VOTE_AVERAGE + ", " +
+			MovieContract.Column.VOTE_COUNT + ", " +
+			MovieContract.Column.RELEASE_DATE + ", " +
+			MovieContract.Column.RELEASE_YEAR + ", " +
+			MovieContract.Column.FINGERPRINT + ") " +
+		"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	/** The list member statement of list refreshes before the upsert. */
+	private static final String INSERT_OR_REPLACE_INTO_LISTMEMBER =
+		"INSERT OR REPLACE INTO " + ListMembershipContract.TABLE_NAME + " (" +
+			ListMembershipContract.Column._ID + ", " +
+			ListMembershipContract.Column.LIST_ID + ", " +
+			ListMembershipContract.Column.MOVIE_ID + ", " +
+			ListMembershipContract.Column.PAGE + ", " +
+			ListMembershipContract.Column.POSITION + ", " +
+			ListMembershipContract.Column.ADDED + ") " +
+		"VALUES (?, ?, ?, ?, ?, ?)";
+
+	private MovieProvider provider;
+	private Uri listMemberUri;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		listMemberUri = ListContract.buildListMemberDirectoryUri(StandardMovieList.POPULAR);
+	}
+
+	@Override
+	public void tearDown() {
+		if (provider != null)
+			provider.shutdown();
+		super.tearDown();
+	}
+
+	/** Creates a new database with one page of movies whose details have been downloaded. */
+	private void createDatabase(MovieBatch movies) {
+		if (provider != null)
+			provider.shutdown();
+		if (db != null)
+			db.close();
+		mContext.deleteDatabase(MovieDbHelper.DATABASE_NAME);
+
+		provider = new MovieProvider();
+		provider.attachInfo(mContext, null);
+		provider.ingestListPage(listMemberUri, LIST_ID, PAGE, movies);
+
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+		ContentValues extendedData = new ContentValues();
+		extendedData.put(MovieContract.Column.EXTENDED_DATA, 1);
+		extendedData.put(MovieContract.Column.EXTENDED_DATA_MODIFIED, DETAILS_DOWNLOADED);
+		db.update(MovieContract.TABLE_NAME, extendedData, null, null);
+	}
+
+	/** Verifies that a refresh keeps the details of a movie that is also a favorite. */
+	public void testRefreshKeepsDetailsOfFavorite() throws IOException {
+		createDatabase(ListIngestBenchmark.createListBatch(20, 100.0));
+		provider.insert(ListContract.buildListMemberItemUri(StandardMovieList.FAVORITE, 100001), null);
+
+		provider.ingestListPage(listMemberUri, LIST_ID, PAGE, ListIngestBenchmark.createListBatch(20, 200.0));
+
+		assertEquals(0, countMovies(MovieContract.Column.EXTENDED_DATA + " = 0"));
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, MovieDbHelper.FAVORITE_TABLE_NAME));
+	}
+
+	/**
+	 * Verifies that a refresh leaves the download time of the details unchanged, so the
+	 * detail screen does not take the details of a movie on the list to be current.
+	 */
+	public void testRefreshKeepsDetailsDownloadTime() throws IOException {
+		createDatabase(ListIngestBenchmark.createListBatch(20, 100.0));
+
+		provider.ingestListPage(listMemberUri, LIST_ID, PAGE, ListIngestBenchmark.createListBatch(20, 200.0));
+
+		assertEquals(20, countMovies(MovieContract.Column.EXTENDED_DATA_MODIFIED + " = " + DETAILS_DOWNLOADED));
+		assertEquals(0, countMovies(MovieContract.Column.MODIFIED + " = " + DETAILS_DOWNLOADED));
+	}
+
+	/** Measures both ways of writing a refresh on pages of increasing size. */
+	public void testRefreshWrites() throws IOException {
+		for (int size : PAGE_SIZES) {
+			MovieBatch before = ListIngestBenchmark.createListBatch(size, 100.0);
+			MovieBatch after = ListIngestBenchmark.createListBatch(size, 200.0);
+
+			createDatabase(before);
+			restartLog();
+			long start = System.nanoTime();
+			provider.ingestListPage(listMemberUri, LIST_ID, PAGE, after);
+			long upsertTime = System.nanoTime() - start;
+			long upsertPages = getLogFrames();
+			long upsertRefetches = countMovies(MovieContract.Column.EXTENDED_DATA + " = 0");
+
+			createDatabase(before);
+			restartLog();
+			start = System.nanoTime();
+			replaceListPage(after);
+			long replaceTime = System.nanoTime() - start;
+			long replacePages = getLogFrames();
+			long replaceRefetches = countMovies(MovieContract.Column.EXTENDED_DATA + " = 0");
+
+			assertEquals(0, upsertRefetches);
+			assertEquals(size, replaceRefetches);
+
+			Log.i(LOG_TAG, String.format(
+				"%4d movies: upsert %5d pages, %4d detail fetches, %7.2f ms; replace %5d pages, %4d detail fetches, %7.2f ms",
+				size,
+				upsertPages, upsertRefetches, upsertTime / 1e6,
+				replacePages, replaceRefetches, replaceTime / 1e6));
+		}
+	}
+
+	/** Writes a list page with the statements used before the upsert. */
+	private void replaceListPage(MovieBatch movies) {
+		long modified = System.currentTimeMillis();
+
+		db.beginTransaction();
+		try {
+			SQLiteStatement movieStmt = db.compileStatement(INSERT_OR_REPLACE_INTO_MOVIE);
+			SQLiteStatement listStmt = db.compileStatement(INSERT_OR_REPLACE_INTO_LISTMEMBER);
+			try {
+				for (int i = 0; i < movies.size(); ++i) {
+					int releaseDate = movies.getReleaseDate(i);
+
+					movieStmt.clearBindings();
+					movieStmt.bindLong(1, movies.getId(i));
+					movieStmt.bindLong(2, modified);
+					movieStmt.bindString(3, movies.getTitle(i));
+					if (movies.getPosterPath(i) != null)
+						movieStmt.bindString(4, movies.getPosterPath(i));
+					if (movies.getBackdropPath(i) != null)
+						movieStmt.bindString(5, movies.getBackdropPath(i));
+					if (movies.getSynopsis(i) != null)
+						movieStmt.bindString(6, movies.getSynopsis(i));
+					movieStmt.bindDouble(7, movies.getPopularity(i));
+					movieStmt.bindDouble(8, movies.getVoteAverage(i));
+					movieStmt.bindLong(9, movies.getVoteCount(i));
+					if (releaseDate != EpochDay.NONE) {
+						movieStmt.bindLong(10, releaseDate);
+						movieStmt.bindLong(11, EpochDay.getYear(releaseDate));
+					}
+					movieStmt.bindLong(12, movies.getFingerprint(i));
+					movieStmt.executeInsert();
+
+					// the list member id of MovieProvider
+					listStmt.bindLong(1, LIST_ID * 1000000L + PAGE * 100 + i);
+					listStmt.bindLong(2, LIST_ID);
+					listStmt.bindLong(3, movies.getId(i));
+					listStmt.bindLong(4, PAGE);
+					listStmt.bindLong(5, i);
+					listStmt.bindLong(6, modified);
+					listStmt.executeInsert();
+				}
+			}
+			finally {
+				movieStmt.close();
+				listStmt.close();
+			}
+
+			db.setTransactionSuccessful();
+		}
+		finally {
+			db.endTransaction();
+		}
+	}
+
+	/** Checkpoints the write-ahead log, so the next write starts it from the beginning. */
+	private void restartLog() {
+		getLogFrames("RESTART");
+	}
+
+	/** Returns the number of frames, that is database pages, written to the log since it was restarted. */
+	private long getLogFrames() {
+		return getLogFrames("PASSIVE");
+	}
+
+	private long getLogFrames(String checkpointMode) {
+		Cursor c = db.rawQuery("PRAGMA wal_checkpoint(" + checkpointMode + ")", null);
+		try {
+			assertTrue(c.moveToFirst());
+			// columns: busy, frames in the log, frames checkpointed
+			return c.getLong(1);
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	private long countMovies(String selection) {
+		return DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME, selection);
+	}
+}
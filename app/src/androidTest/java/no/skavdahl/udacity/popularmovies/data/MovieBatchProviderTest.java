@@ -0,0 +1,153 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.popularmovies.model.MovieDetails;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Tests batches of operations on the MovieProvider class.
+ *
+ * @author fdavs
+ */
+public class MovieBatchProviderTest extends SQLiteTestCase {
+
+	private static final int MOVIE_ID = 206647;
+
+	private static final String LIST_PAGE =
+		"{\"page\":1,\"results\":[{\"id\":" + MOVIE_ID + ",\"title\":\"Spectre\",\"popularity\":57.1," +
+		"\"vote_average\":6.7,\"vote_count\":983,\"release_date\":\"2015-11-06\"}]," +
+		"\"total_pages\":1,\"total_results\":1}";
+
+	private MovieProvider provider;
+	private Uri movieUri;
+	private Uri reviewUri;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		provider = new MovieProvider();
+		provider.attachInfo(mContext, null);
+
+		movieUri = MovieContract.buildMovieItemUri(MOVIE_ID);
+		reviewUri = ReviewContract.buildReviewDirectoryUri(MOVIE_ID);
+	}
+
+	@Override
+	public void tearDown() {
+		provider.shutdown();
+		super.tearDown();
+	}
+
+	/** Verifies that a batch stores a movie with its reviews, replacing the existing reviews. */
+	public void testBatchReplacesReviews() throws Exception {
+		insertMovie();
+		provider.bulkInsert(reviewUri, new ContentValues[] { createReview(0), createReview(1), createReview(2) });
+
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+		operations.add(ContentProviderOperation.newInsert(movieUri)
+			.withValue(MovieContract.Column.EXTENDED_DATA, 1)
+			.build());
+		operations.add(ContentProviderOperation.newDelete(reviewUri).build());
+		for (int i = 0; i < 2; ++i) {
+			ContentValues review = createReview(i);
+			review.put(ReviewContract.Column.POSITION, i);
+			operations.add(ContentProviderOperation.newInsert(reviewUri).withValues(review).build());
+		}
+
+		provider.applyBatch(operations);
+
+		db = new MovieDbHelper(mContext).getReadableDatabase();
+		assertEquals(2, DatabaseUtils.queryNumEntries(db, ReviewContract.TABLE_NAME));
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME,
+			MovieContract.Column.EXTENDED_DATA + " = 1 AND " + MovieContract.Column.TITLE + " = 'Spectre'"));
+	}
+
+	/** Verifies that a batch drops the cached details of a movie whose reviews it replaces. */
+	public void testBatchDropsCachedDetails() throws Exception {
+		insertMovie();
+		cacheDetails();
+
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+		operations.add(ContentProviderOperation.newDelete(reviewUri).build());
+		operations.add(ContentProviderOperation.newInsert(reviewUri).withValues(createReview(0)).build());
+
+		provider.applyBatch(operations);
+
+		assertNull(MovieDetailsCache.get(MOVIE_ID, 0, 0));
+	}
+
+	/** Verifies that the operations of a batch are rolled back if one of them fails. */
+	public void testFailedBatchIsRolledBack() throws IOException {
+		insertMovie();
+		cacheDetails();
+
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+		operations.add(ContentProviderOperation.newUpdate(movieUri)
+			.withValue(MovieContract.Column.EXTENDED_DATA, 1)
+			.build());
+		operations.add(ContentProviderOperation.newDelete(reviewUri).build());
+		// there is no such list, so the insert fails
+		operations.add(ContentProviderOperation.newInsert(ListContract.buildListMemberItemUri("nosuchlist", MOVIE_ID)).build());
+
+		try {
+			provider.applyBatch(operations);
+			fail("Batch with a failing operation succeeded");
+		}
+		catch (OperationApplicationException e) {
+			// expected
+		}
+
+		db = new MovieDbHelper(mContext).getReadableDatabase();
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME, MovieContract.Column.EXTENDED_DATA + " = 1"));
+		assertNotNull(MovieDetailsCache.get(MOVIE_ID, 0, 0));
+	}
+
+	/** Verifies that a query in a batch sees the changes made earlier in the batch. */
+	public void testBatchQuerySeesEarlierChanges() throws Exception {
+		insertMovie();
+
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+		operations.add(ContentProviderOperation.newInsert(ListContract.buildListMemberItemUri(StandardMovieList.FAVORITE, MOVIE_ID)).build());
+		operations.add(ContentProviderOperation.newAssertQuery(movieUri)
+			.withValue(MovieContract.Column.FAVORITE, 1)
+			.build());
+
+		provider.applyBatch(operations);
+	}
+
+	/** Caches the details of the movie, keyed on extended data that were never downloaded. */
+	private static void cacheDetails() {
+		MovieDetails details = new MovieDetails(MOVIE_ID, 0, Collections.<Review>emptyList(), false, Collections.<Video>emptyList());
+		MovieDetailsCache.put(details, MovieDetailsCache.getGeneration());
+		assertNotNull(MovieDetailsCache.get(MOVIE_ID, 0, 0));
+	}
+
+	private static ContentValues createReview(int index) {
+		ContentValues review = new ContentValues();
+		review.put(ReviewContract.Column.REVIEW_ID, "review" + index);
+		review.put(ReviewContract.Column.AUTHOR, "Author " + index);
+		review.put(ReviewContract.Column.CONTENT, "Review number " + index);
+		return review;
+	}
+
+	private void insertMovie() throws IOException {
+		Uri listMemberUri = ListContract.buildListMemberDirectoryUri(StandardMovieList.POPULAR);
+		assertEquals(1, provider.ingestListPage(listMemberUri, 1, 1, MdbJSONReader.readMovieBatch(new StringReader(LIST_PAGE))));
+	}
+}
@@ -1,10 +1,20 @@
 package no.skavdahl.udacity.popularmovies.data;
 
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.Set;
 
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.utils.EpochDay;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
 /**
  * Tests features of the MovieDbHelper class.
  *
@@ -18,6 +28,7 @@ public class MovieDbHelperTest extends SQLiteTestCase {
 		requiredTables.add(PopularMoviesContract.ListContract.TABLE_NAME);
 		requiredTables.add(PopularMoviesContract.ListMembershipContract.TABLE_NAME);
 		requiredTables.add(PopularMoviesContract.MovieContract.TABLE_NAME);
+		requiredTables.add(MovieDbHelper.FAVORITE_TABLE_NAME);
 		return requiredTables;
 	}
 
@@ -44,4 +55,119 @@ public class MovieDbHelperTest extends SQLiteTestCase {
 			"Not all required tables were created: " + TextUtils.join(", ", remainingTables),
 			remainingTables.isEmpty());
 	}
+
+	/**
+	 * Tests that the favorite column of the extended movie view follows the memberships of
+	 * the favorite list, also when the movie is on other lists and when its row is replaced.
+	 */
+	public void testFavoriteColumnFollowsFavoriteList() {
+		db = new MovieDbHelper(this.mContext).getWritableDatabase();
+		int favoriteListId = getListId(StandardMovieList.FAVORITE);
+		int popularListId = getListId(StandardMovieList.POPULAR);
+
+		insertMovie(1, "Movie 1");
+		insertMovie(2, "Movie 2");
+		insertListMember(1, popularListId, 1);
+		assertFalse(isFavorite(1));
+
+		insertListMember(2, favoriteListId, 1);
+		insertListMember(3, favoriteListId, 2);
+		assertTrue(isFavorite(1));
+		assertTrue(isFavorite(2));
+
+		// a list refresh replaces the movie row
+		insertMovie(1, "Movie 1, refreshed");
+		assertTrue(isFavorite(1));
+
+		db.delete(ListMembershipContract.TABLE_NAME, ListMembershipContract.Column._ID + " = 2", null);
+		assertFalse(isFavorite(1));
+
+		ContentValues movedMember = new ContentValues();
+		movedMember.put(ListMembershipContract.Column.MOVIE_ID, 1);
+		db.update(ListMembershipContract.TABLE_NAME, movedMember, ListMembershipContract.Column._ID + " = 3", null);
+		assertTrue(isFavorite(1));
+		assertFalse(isFavorite(2));
+
+		// deleting the movie deletes its list members
+		db.delete(MovieContract.TABLE_NAME, MovieContract.Column._ID + " = 1", null);
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, MovieDbHelper.FAVORITE_TABLE_NAME));
+	}
+
+	/**
+	 * Tests that the upgrade to epoch day release dates converts the local midnight
+	 * milliseconds of version 1, also for movies released before 1970, and clears the
+	 * release dates of movies without one.
+	 */
+	public void testUpgradeConvertsReleaseDatesBefore1970() {
+		long releasedBefore1970 = new GregorianCalendar(1962, Calendar.OCTOBER, 5).getTimeInMillis();
+		long releasedAfter1970 = new GregorianCalendar(2015, Calendar.NOVEMBER, 6).getTimeInMillis();
+		assertTrue(releasedBefore1970 < 0);
+
+		// create a version 1 database
+		db = SQLiteDatabase.openOrCreateDatabase(mContext.getDatabasePath(MovieDbHelper.DATABASE_NAME), null);
+		new MovieDbHelper(mContext).createSchema_v1(db);
+		insertMovie(1, "Dr. No");
+		insertMovie(2, "Spectre");
+		insertMovie(3, "Untitled");
+		setReleaseDate(1, releasedBefore1970);
+		setReleaseDate(2, releasedAfter1970);
+		setReleaseDate(3, 0);
+		db.setVersion(1);
+		db.close();
+
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+
+		assertEquals(EpochDay.of(1962, 10, 5), getLong(1, MovieContract.Column.RELEASE_DATE));
+		assertEquals(1962, getLong(1, MovieContract.Column.RELEASE_YEAR));
+		assertEquals(EpochDay.of(2015, 11, 6), getLong(2, MovieContract.Column.RELEASE_DATE));
+		assertEquals(2015, getLong(2, MovieContract.Column.RELEASE_YEAR));
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, MovieContract.TABLE_NAME,
+			MovieContract.Column.RELEASE_DATE + " IS NULL AND " + MovieContract.Column.RELEASE_YEAR + " IS NULL"));
+	}
+
+	private void setReleaseDate(int movieId, long releaseDate) {
+		ContentValues values = new ContentValues();
+		values.put(MovieContract.Column.RELEASE_DATE, releaseDate);
+		db.update(MovieContract.TABLE_NAME, values, MovieContract.Column._ID + " = " + movieId, null);
+	}
+
+	private long getLong(int movieId, String column) {
+		return DatabaseUtils.longForQuery(db,
+			"SELECT " + column + " FROM " + MovieContract.TABLE_NAME + " WHERE " + MovieContract.Column._ID + " = ?",
+			new String[] { Integer.toString(movieId) });
+	}
+
+	private int getListId(String listName) {
+		return (int) DatabaseUtils.longForQuery(db,
+			"SELECT " + ListContract.Column._ID + " FROM " + ListContract.TABLE_NAME + " WHERE " + ListContract.Column.NAME + " = ?",
+			new String[] { listName });
+	}
+
+	private void insertMovie(int movieId, String title) {
+		ContentValues values = new ContentValues();
+		values.put(MovieContract.Column._ID, movieId);
+		values.put(MovieContract.Column.MODIFIED, System.currentTimeMillis());
+		values.put(MovieContract.Column.TITLE, title);
+		values.put(MovieContract.Column.POPULARITY, 1.0);
+		values.put(MovieContract.Column.VOTE_AVERAGE, 5.0);
+		values.put(MovieContract.Column.VOTE_COUNT, 100);
+		db.replaceOrThrow(MovieContract.TABLE_NAME, null, values);
+	}
+
+	private void insertListMember(int listMemberId, int listId, int movieId) {
+		ContentValues values = new ContentValues();
+		values.put(ListMembershipContract.Column._ID, listMemberId);
+		values.put(ListMembershipContract.Column.LIST_ID, listId);
+		values.put(ListMembershipContract.Column.MOVIE_ID, movieId);
+		values.put(ListMembershipContract.Column.ADDED, System.currentTimeMillis());
+		values.put(ListMembershipContract.Column.PAGE, 1);
+		values.put(ListMembershipContract.Column.POSITION, listMemberId);
+		db.insertOrThrow(ListMembershipContract.TABLE_NAME, null, values);
+	}
+
+	private boolean isFavorite(int movieId) {
+		return DatabaseUtils.longForQuery(db,
+			"SELECT " + MovieContract.Column.FAVORITE + " FROM " + MovieContract.TABLE_EX_NAME + " WHERE " + MovieContract.Column._ID + " = ?",
+			new String[] { Integer.toString(movieId) }) != 0;
+	}
 }
@@ -47,8 +47,10 @@ public class MovieProviderTest extends AndroidTestCase {
 		s.add(MovieProvider.LIST_MEMBER_ITEM);
 		s.add(MovieProvider.MOVIE_DIRECTORY);
 		s.add(MovieProvider.MOVIE_ITEM);
+		s.add(MovieProvider.MOVIE_REVIEW_DIRECTORY);
+		s.add(MovieProvider.MOVIE_VIDEO_DIRECTORY);
 
-		assertEquals(6, s.size());
+		assertEquals(8, s.size());
 	}
 
 }
@@ -0,0 +1,132 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Tests the review and video directories of the MovieProvider class.
+ *
+ * @author fdavs
+ */
+public class MovieReviewProviderTest extends SQLiteTestCase {
+
+	private static final int MOVIE_ID = 206647;
+
+	private static final String LIST_PAGE =
+		"{\"page\":1,\"results\":[{\"id\":" + MOVIE_ID + ",\"title\":\"Spectre\",\"popularity\":57.1," +
+		"\"vote_average\":6.7,\"vote_count\":983,\"release_date\":\"2015-11-06\"}]," +
+		"\"total_pages\":1,\"total_results\":1}";
+
+	private MovieProvider provider;
+	private Uri reviewUri;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		provider = new MovieProvider();
+		provider.attachInfo(mContext, null);
+
+		reviewUri = ReviewContract.buildReviewDirectoryUri(MOVIE_ID);
+	}
+
+	@Override
+	public void tearDown() {
+		provider.shutdown();
+		super.tearDown();
+	}
+
+	/** Verifies that inserting reviews replaces the existing reviews of the movie. */
+	public void testInsertReplacesReviews() throws IOException {
+		insertMovie();
+
+		assertEquals(12, provider.bulkInsert(reviewUri, createReviews(12)));
+		assertEquals(3, provider.bulkInsert(reviewUri, createReviews(3)));
+
+		cursor = provider.query(reviewUri, new String[] { ReviewContract.Column.AUTHOR }, null, null, null);
+		assertEquals(3, cursor.getCount());
+	}
+
+	/** Verifies that a failed replacement keeps the existing reviews of the movie. */
+	public void testFailedReplaceKeepsReviews() throws IOException {
+		insertMovie();
+		provider.bulkInsert(reviewUri, createReviews(2));
+
+		ContentValues[] values = createReviews(3);
+		values[2].remove(ReviewContract.Column.AUTHOR);
+		assertEquals(0, provider.bulkInsert(reviewUri, values));
+
+		cursor = provider.query(reviewUri, new String[] { ReviewContract.Column.AUTHOR }, null, null, null);
+		assertEquals(2, cursor.getCount());
+	}
+
+	/** Verifies that the limit parameter limits the number of reviews returned, in order. */
+	public void testQueryWithLimit() throws IOException {
+		insertMovie();
+		provider.bulkInsert(reviewUri, createReviews(12));
+
+		cursor = provider.query(
+			ReviewContract.buildReviewDirectoryUri(MOVIE_ID, 5),
+			new String[] { ReviewContract.Column.AUTHOR },
+			null, null, null);
+
+		assertEquals(5, cursor.getCount());
+		assertTrue(cursor.moveToLast());
+		assertEquals("Author 4", cursor.getString(0));
+	}
+
+	/** Verifies that refreshing a list page does not remove the reviews of its movies. */
+	public void testListRefreshKeepsReviews() throws IOException {
+		insertMovie();
+		provider.bulkInsert(reviewUri, createReviews(2));
+
+		insertMovie();
+
+		db = new MovieDbHelper(mContext).getReadableDatabase();
+		assertEquals(2, DatabaseUtils.queryNumEntries(db, ReviewContract.TABLE_NAME));
+	}
+
+	/** Verifies that the reviews and videos are deleted along with the movie. */
+	public void testReviewsAreDeletedWithMovie() throws IOException {
+		insertMovie();
+		provider.bulkInsert(reviewUri, createReviews(2));
+
+		ContentValues video = new ContentValues();
+		video.put(VideoContract.Column.KEY, "7GqClqvlObY");
+		video.put(VideoContract.Column.SITE, "YouTube");
+		video.put(VideoContract.Column.NAME, "Trailer");
+		provider.bulkInsert(VideoContract.buildVideoDirectoryUri(MOVIE_ID), new ContentValues[] { video });
+
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+		db.delete(ListMembershipContract.TABLE_NAME, null, null);
+		provider.delete(MovieContract.buildMovieDirectoryUri().buildUpon().appendQueryParameter("orphan", "true").build(), null, null);
+
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, ReviewContract.TABLE_NAME));
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, VideoContract.TABLE_NAME));
+	}
+
+	private void insertMovie() throws IOException {
+		Uri listMemberUri = ListContract.buildListMemberDirectoryUri(StandardMovieList.POPULAR);
+		assertEquals(1, provider.ingestListPage(listMemberUri, 1, 1, MdbJSONReader.readMovieBatch(new StringReader(LIST_PAGE))));
+	}
+
+	private static ContentValues[] createReviews(int count) {
+		ContentValues[] values = new ContentValues[count];
+		for (int i = 0; i < count; ++i) {
+			values[i] = new ContentValues();
+			values[i].put(ReviewContract.Column.REVIEW_ID, "review" + i);
+			values[i].put(ReviewContract.Column.AUTHOR, "Author " + i);
+			values[i].put(ReviewContract.Column.CONTENT, "Review number " + i);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,204 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Verifies that the queries of the content provider use the indexes created by
+ * {@link MovieDbHelper}, on a database with 100 000 list members.
+ *
+ * <p>The app never runs ANALYZE, so the query planner has no statistics to go by, and
+ * neither has it here.</p>
+ *
+ * @author fdavs
+ */
+// Disable "try can use automatic resource management" tip from Android Studio
+// This feature requires API level 19, which is higher than our current minimum API level
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+public class QueryPlanTest extends SQLiteTestCase {
+
+	private static final int MOVIE_COUNT = 20000;
+	private static final int MEMBERS_PER_LIST = 20000;
+	private static final int MOVIES_PER_PAGE = 20;
+
+	@Override
+	public void setUp() {
+		super.setUp();
+
+		db = new MovieDbHelper(mContext).getWritableDatabase();
+		populate();
+	}
+
+	/** Inserts the movies, and the same number of list members into each of the five lists. */
+	private void populate() {
+		long now = System.currentTimeMillis();
+
+		db.beginTransaction();
+		try {
+			SQLiteStatement movieStmt = db.compileStatement(
+				"INSERT INTO " + MovieContract.TABLE_NAME + " (" +
+					MovieContract.Column._ID + ", " +
+					MovieContract.Column.MODIFIED + ", " +
+					MovieContract.Column.TITLE + ", " +
+					MovieContract.Column.POPULARITY + ", " +
+					MovieContract.Column.VOTE_AVERAGE + ", " +
+					MovieContract.Column.VOTE_COUNT + ") " +
+				"VALUES (?, ?, ?, 1.0, 5.0, 100)");
+			try {
+				for (int movieId = 1; movieId <= MOVIE_COUNT; ++movieId) {
+					movieStmt.bindLong(1, movieId);
+					movieStmt.bindLong(2, now);
+					movieStmt.bindString(3, "Movie " + movieId);
+					movieStmt.executeInsert();
+				}
+			}
+			finally {
+				movieStmt.close();
+			}
+
+			SQLiteStatement memberStmt = db.compileStatement(
+				"INSERT INTO " + ListMembershipContract.TABLE_NAME + " (" +
+					ListMembershipContract.Column._ID + ", " +
+					ListMembershipContract.Column.LIST_ID + ", " +
+					ListMembershipContract.Column.MOVIE_ID + ", " +
+					ListMembershipContract.Column.ADDED + ", " +
+					ListMembershipContract.Column.PAGE + ", " +
+					ListMembershipContract.Column.POSITION + ") " +
+				"VALUES (?, ?, ?, ?, ?, ?)");
+			Cursor listCursor = db.query(ListContract.TABLE_NAME, new String[] { ListContract.Column._ID }, null, null, null, null, null);
+			try {
+				while (listCursor.moveToNext()) {
+					int listId = listCursor.getInt(0);
+					for (int i = 0; i < MEMBERS_PER_LIST; ++i) {
+						int page = i / MOVIES_PER_PAGE + 1;
+						int position = i % MOVIES_PER_PAGE;
+
+						memberStmt.bindLong(1, listId * 1000000 + page * 100 + position);
+						memberStmt.bindLong(2, listId);
+						memberStmt.bindLong(3, (i * 7 + listId * 1009) % MOVIE_COUNT + 1);
+						memberStmt.bindLong(4, now);
+						memberStmt.bindLong(5, page);
+						memberStmt.bindLong(6, position);
+						memberStmt.executeInsert();
+					}
+				}
+			}
+			finally {
+				listCursor.close();
+				memberStmt.close();
+			}
+
+			db.setTransactionSuccessful();
+		}
+		finally {
+			db.endTransaction();
+		}
+	}
+
+	/** Returns the query plan of a statement, one step per line. */
+	private String explain(String sql, String... args) {
+		StringBuilder plan = new StringBuilder();
+
+		cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+		int detailIndex = cursor.getColumnIndexOrThrow("detail");
+		while (cursor.moveToNext())
+			plan.append(cursor.getString(detailIndex)).append('\n');
+		cursor.close();
+
+		return plan.toString();
+	}
+
+	/**
+	 * Returns a statement of a trigger with the given column of the OLD row replaced by
+	 * parameter 1. EXPLAIN QUERY PLAN does not cover the statements of triggers, so they
+	 * are explained on their own.
+	 */
+	private static String triggerStatement(String statement, String oldColumn) {
+		return statement.replace("OLD." + oldColumn, "?1");
+	}
+
+	private static void assertUses(String plan, String term) {
+		assertTrue("Expected " + term + " in query plan:\n" + plan, plan.contains(term));
+	}
+
+	private static void assertDoesNotUse(String plan, String term) {
+		assertFalse("Unexpected " + term + " in query plan:\n" + plan, plan.contains(term));
+	}
+
+	/** Verifies that a list is read through the indexes in page and position order. */
+	public void testListQueryUsesIndexes() {
+		String sql = MovieProvider.buildListMemberQuery(
+			new String[] { MovieContract.Column._ID, MovieContract.Column.TITLE },
+			null,
+			ListMembershipContract.Column.PAGE + " ASC, " + ListMembershipContract.Column.POSITION + " ASC");
+
+		String plan = explain(sql, StandardMovieList.POPULAR);
+
+		assertUses(plan, MovieDbHelper.LIST_NAME_INDEX);
+		assertUses(plan, MovieDbHelper.LISTMEMBER_LIST_INDEX);
+		assertDoesNotUse(plan, "TEMP B-TREE");
+	}
+
+	/** Verifies that the last position of a list is found without sorting the list. */
+	public void testNewPositionQueryUsesIndex() {
+		String plan = explain(MovieProvider.SELECT_POSITION_FOR_NEW_LISTMEMBER, StandardMovieList.FAVORITE);
+
+		assertUses(plan, MovieDbHelper.LISTMEMBER_LIST_INDEX);
+		assertDoesNotUse(plan, "TEMP B-TREE");
+	}
+
+	/** Verifies that the favorite column of a movie is read from the favorite table by primary key. */
+	public void testFavoriteColumnIsPrimaryKeyLookup() {
+		String plan = explain(
+			"SELECT " + MovieContract.Column.FAVORITE + " " +
+			"FROM " + MovieContract.TABLE_EX_NAME + " " +
+			"WHERE " + MovieContract.Column._ID + " = ?",
+			"1");
+
+		assertUses(plan, "INTEGER PRIMARY KEY");
+		assertDoesNotUse(plan, ListMembershipContract.TABLE_NAME);
+	}
+
+	/** Verifies that the favorite trigger looks up the remaining favorite list members through the index. */
+	public void testFavoriteDeleteTriggerUsesIndex() {
+		String plan = explain(
+			triggerStatement(MovieDbHelper.DELETE_FROM_FAVORITE_v7, ListMembershipContract.Column.MOVIE_ID),
+			"1");
+
+		assertUses(plan, MovieDbHelper.LISTMEMBER_MOVIE_INDEX);
+	}
+
+	/** Verifies that the list members of a deleted movie are found through the index. */
+	public void testMovieDeleteTriggerUsesIndex() {
+		String plan = explain(
+			triggerStatement(MovieDbHelper.DELETE_FROM_LISTMEMBER_v1, MovieContract.Column._ID),
+			"1");
+
+		assertUses(plan, MovieDbHelper.LISTMEMBER_MOVIE_INDEX);
+	}
+
+	/** Verifies that a movie is removed from a list through the index. */
+	public void testListMemberDeleteUsesIndex() {
+		String plan = explain(MovieProvider.DELETE_FROM_LISTMEMBER, StandardMovieList.FAVORITE, "1");
+
+		assertUses(plan, MovieDbHelper.LIST_NAME_INDEX);
+		assertUses(plan, MovieDbHelper.LISTMEMBER_MOVIE_INDEX);
+	}
+
+	/** Verifies that the orphaned movie sweep looks up the movie ids in the index. */
+	public void testOrphanSweepUsesIndex() {
+		String plan = explain(
+			"SELECT " + MovieContract.Column._ID + " " +
+			"FROM " + MovieContract.TABLE_NAME + " " +
+			"WHERE " + MovieContract.Column._ID + " NOT IN (" +
+				"SELECT " + ListMembershipContract.Column.MOVIE_ID + " " +
+				"FROM " + ListMembershipContract.TABLE_NAME +
+			")");
+
+		assertUses(plan, MovieDbHelper.LISTMEMBER_MOVIE_INDEX);
+	}
+}
@@ -0,0 +1,114 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.util.Pair;
+
+import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.utils.RequestPriority;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Verifies that the update services skip list pages and movies that were just downloaded.
+ * The downloads are replaced by counters, so the tests do not use the network.
+ *
+ * @author fdavs
+ */
+public class UpdateServiceDeduplicationTest extends AndroidTestCase {
+
+	private static final int MOVIE_ID = 206647;
+
+	private CountingListUpdateService listService;
+	private CountingMovieUpdateService movieService;
+
+	@Override
+	public void setUp() {
+		MovieListUpdateService.recentPages.clear();
+		MovieUpdateService.recentMovies.clear();
+
+		listService = new CountingListUpdateService(mContext);
+		movieService = new CountingMovieUpdateService(mContext);
+	}
+
+	/** Verifies that a list page requested again while it was downloaded is only downloaded once. */
+	public void testThatRepeatedListPageIsSkipped() {
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 2));
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 2, RequestPriority.PREFETCH));
+
+		assertEquals(1, listService.updateCount);
+	}
+
+	/** Verifies that other pages and other lists are downloaded. */
+	public void testThatOtherListPagesAreDownloaded() {
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 2));
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 3));
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.TOP_RATED, 2));
+
+		assertEquals(3, listService.updateCount);
+	}
+
+	/** Verifies that a list page whose download failed is downloaded again. */
+	public void testThatFailedListPageIsRepeated() {
+		listService.success = false;
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 2));
+		listService.success = true;
+		listService.onHandleIntent(MovieListUpdateService.createExplicitIntent(mContext, StandardMovieList.POPULAR, 2));
+
+		assertEquals(2, listService.updateCount);
+	}
+
+	/** Verifies that a movie requested again while it was downloaded is only downloaded once. */
+	public void testThatRepeatedMovieIsSkipped() {
+		movieService.onHandleIntent(MovieUpdateService.createExplicitIntent(mContext, MOVIE_ID));
+		movieService.onHandleIntent(MovieUpdateService.createExplicitIntent(mContext, MOVIE_ID));
+		movieService.onHandleIntent(MovieUpdateService.createExplicitIntent(mContext, MOVIE_ID + 1));
+
+		assertEquals(2, movieService.updateCount);
+	}
+
+	/** Verifies that a movie whose download failed is downloaded again. */
+	public void testThatFailedMovieIsRepeated() {
+		movieService.success = false;
+		movieService.onHandleIntent(MovieUpdateService.createExplicitIntent(mContext, MOVIE_ID));
+		movieService.success = true;
+		movieService.onHandleIntent(MovieUpdateService.createExplicitIntent(mContext, MOVIE_ID));
+
+		assertEquals(2, movieService.updateCount);
+	}
+
+	private static class CountingListUpdateService extends MovieListUpdateService {
+		int updateCount;
+		boolean success = true;
+
+		CountingListUpdateService(Context context) {
+			attachBaseContext(context);
+		}
+
+		@Override
+		protected Pair<Integer, Integer> queryListAttributes(String listName) {
+			return Pair.create(1, ListContract.LISTTYPE_STANDARD);
+		}
+
+		@Override
+		protected boolean updateStandardList(String listName, int listId, int page, RequestPriority priority) {
+			updateCount++;
+			return success;
+		}
+	}
+
+	private static class CountingMovieUpdateService extends MovieUpdateService {
+		int updateCount;
+		boolean success = true;
+
+		CountingMovieUpdateService(Context context) {
+			attachBaseContext(context);
+		}
+
+		@Override
+		protected boolean updateMovie(int movieId) {
+			updateCount++;
+			return success;
+		}
+	}
+}
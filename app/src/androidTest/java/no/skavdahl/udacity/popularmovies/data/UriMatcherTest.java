@@ -53,4 +53,17 @@ public class UriMatcherTest extends AndroidTestCase {
 		Uri movieListUri = MovieContract.buildMovieItemUri(MOVIE_ID);
 		assertEquals(MovieProvider.MOVIE_ITEM, matcher.match(movieListUri));
 	}
+
+	public void testThatMovieReviewDirectoryUriIsMatched() {
+		Uri reviewUri = ReviewContract.buildReviewDirectoryUri(MOVIE_ID);
+		assertEquals(MovieProvider.MOVIE_REVIEW_DIRECTORY, matcher.match(reviewUri));
+
+		Uri limitedReviewUri = ReviewContract.buildReviewDirectoryUri(MOVIE_ID, 5);
+		assertEquals(MovieProvider.MOVIE_REVIEW_DIRECTORY, matcher.match(limitedReviewUri));
+	}
+
+	public void testThatMovieVideoDirectoryUriIsMatched() {
+		Uri videoUri = VideoContract.buildVideoDirectoryUri(MOVIE_ID);
+		assertEquals(MovieProvider.MOVIE_VIDEO_DIRECTORY, matcher.match(videoUri));
+	}
 }
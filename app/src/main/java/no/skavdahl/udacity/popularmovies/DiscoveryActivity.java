@@ -6,7 +6,11 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 
+import no.skavdahl.udacity.popularmovies.data.ImageConfigurationStore;
 import no.skavdahl.udacity.popularmovies.data.SweepDatabaseTask;
+import no.skavdahl.udacity.popularmovies.mdb.Request;
+import no.skavdahl.udacity.utils.ConnectionWarmer;
+import no.skavdahl.udacity.utils.WebApiTransport;
 
 /**
  * Activity for browsing and discovering movies.
@@ -27,6 +31,17 @@ public class DiscoveryActivity
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+	    // open connections to the web service hosts in the background while the
+	    // layout is inflated, so the first list page and poster don't pay for it
+	    if (BuildConfig.CONNECTION_WARMUP && savedInstanceState == null) {
+		    ConnectionWarmer.warmUp(WebApiTransport.getClient(this), WebApiTransport.getRateLimiter(), Request.API_BASE_URL);
+		    // the stored image configuration was loaded when the application started
+		    ConnectionWarmer.warmUp(WebApiTransport.getImageClient(this), Request.getImageConfiguration().getBaseUrl());
+	    }
+
+	    // keep the image base URL and sizes up to date
+	    ImageConfigurationStore.refreshIfStale(this);
+
 	    setContentView(R.layout.activity_discovery);
 
 	    Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
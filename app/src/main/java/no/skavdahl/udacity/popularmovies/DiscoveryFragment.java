@@ -32,6 +32,7 @@ import android.view.ViewGroup;
 import no.skavdahl.udacity.popularmovies.data.PopularMoviesContract;
 import no.skavdahl.udacity.popularmovies.data.MovieListUpdateService;
 import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.utils.RequestPriority;
 
 /**
  * The main Movie Discovery fragment.
@@ -72,8 +73,9 @@ public class DiscoveryFragment extends Fragment implements LoaderManager.LoaderC
 		public void onReceive(Context context, Intent intent) {
 			//String listName = MovieListUpdateService.unpackListName(intent);
 			int page = MovieListUpdateService.unpackPage(intent, -1);
+			boolean success = MovieListUpdateService.unpackSuccess(intent);
 
-			onListUpdateCompleted(page);
+			onListUpdateCompleted(page, success);
 		}
 	};
 
@@ -164,7 +166,8 @@ public class DiscoveryFragment extends Fragment implements LoaderManager.LoaderC
 				int firstVisibleItemPosition = layoutManager.findFirstVisibleItemPosition();
 				if ((firstVisibleItemPosition + visibleCount) >= itemCount) {
 					int pagesDisplayed = viewAdapter.getItemCount() / 20; // TODO avoid magic constant
-					downloadMovieData(pagesDisplayed + 1);
+					// the user has not asked for the next page yet, so visible requests go first
+					downloadMovieData(pagesDisplayed + 1, RequestPriority.PREFETCH);
 				}
 			}
 		});
@@ -328,12 +331,17 @@ public class DiscoveryFragment extends Fragment implements LoaderManager.LoaderC
 
 	// --- LoaderManager.LoaderCallback<Loader> interface ---
 
-	private void onListUpdateCompleted(final int page) {
+	private void onListUpdateCompleted(final int page, final boolean success) {
 		getActivity().runOnUiThread(new Runnable() {
 			@Override
 			public void run() {
-				if (page == currentlyLoadingPage)
+				if (page == currentlyLoadingPage) {
 					currentlyLoadingPage = NO_PAGE;
+
+					// let the user retry rather than look at an incomplete list
+					if (!success)
+						showFailureDialog(R.string.no_network_try_again, page);
+				}
 			}
 		});
 	}
@@ -344,6 +352,16 @@ public class DiscoveryFragment extends Fragment implements LoaderManager.LoaderC
 	 * @param pageToLoad Which "page" in the movie list to download
 	 */
 	private void downloadMovieData(int pageToLoad) {
+		downloadMovieData(pageToLoad, RequestPriority.VISIBLE);
+	}
+
+	/**
+	 * Initiates download of additional movie data.
+	 *
+	 * @param pageToLoad Which "page" in the movie list to download
+	 * @param priority The priority of the web service request
+	 */
+	private void downloadMovieData(int pageToLoad, RequestPriority priority) {
 		if (currentlyLoadingPage != NO_PAGE)
 			return;
 		currentlyLoadingPage = pageToLoad;
@@ -371,7 +389,7 @@ public class DiscoveryFragment extends Fragment implements LoaderManager.LoaderC
 
 		String listName = UserPreferences.getMovieList(getActivity());
 
-		Intent intent = MovieListUpdateService.createExplicitIntent(getContext(), listName, pageToLoad);
+		Intent intent = MovieListUpdateService.createExplicitIntent(getContext(), listName, pageToLoad, priority);
 		getActivity().startService(intent);
 	}
 
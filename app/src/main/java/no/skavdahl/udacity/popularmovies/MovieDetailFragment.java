@@ -1,9 +1,11 @@
 package no.skavdahl.udacity.popularmovies;
 
 import android.content.ActivityNotFoundException;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -19,25 +21,29 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
 
+import no.skavdahl.udacity.popularmovies.data.MovieDetailsLoader;
 import no.skavdahl.udacity.popularmovies.data.MovieUpdateService;
+import no.skavdahl.udacity.popularmovies.data.ReviewPageCache;
+import no.skavdahl.udacity.popularmovies.data.ReviewPageLoader;
 import no.skavdahl.udacity.popularmovies.data.ToggleFavoriteTask;
-import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
 import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieDetails;
+import no.skavdahl.udacity.popularmovies.mdb.Request;
 import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
 import no.skavdahl.udacity.popularmovies.model.Video;
+import no.skavdahl.udacity.utils.FrameTimeTracker;
 
 import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
 
@@ -61,45 +67,74 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 	/** The maximum number of video and trailer links to display. */
 	private static final int MAX_VIDEOS = 10;
 
-	/** The maximum number of reviews to display. */
-	private static final int MAX_REVIEWS = 10;
+	/** The number of reviews loaded at a time as the user scrolls down to them. */
+	private static final int REVIEW_PAGE_SIZE = 5;
+
+	/** The number of reviews currently requested from the content provider. */
+	private int reviewLimit = REVIEW_PAGE_SIZE;
+
+	/** Whether the details loader is loading more reviews. */
+	private boolean reviewsLoading;
+
+	/** The reviews and videos currently displayed. */
+	private MovieDetails boundDetails;
+
+	/**
+	 * The reviews downloaded from the pages after the first, which is the only page
+	 * stored in the database. They are displayed after the reviews from the database.
+	 */
+	private final List<Review> downloadedReviews = new ArrayList<>();
+
+	/** The last review page downloaded, or <tt>null</tt> if only the first page is available. */
+	private ReviewPage lastReviewPage;
+
+	/** Whether a review page is being downloaded. */
+	private boolean reviewPageLoading;
+
+	/** Whether a review page download failed; no more pages are requested if so. */
+	private boolean reviewPageFailed;
 
 	// --- loader ---
 
 	/** Identity of the movie details loader within the LoaderManager. */
 	private static final int LOADER_ID = 0;
 
+	/** Identity of the reviews and videos loader within the LoaderManager. */
+	private static final int DETAILS_LOADER_ID = 1;
+
+	/** Identity of the review page download loader within the LoaderManager. */
+	private static final int REVIEW_PAGE_LOADER_ID = 2;
+
+	/** Key to find the review page number in the review page loader arguments. */
+	private static final String REVIEW_PAGE = "reviewPage";
+
 	// --- cursor configuration ---
 
 	private final static String[] CURSOR_PROJECTION = new String[] {
 		MovieContract.Column._ID,
-		MovieContract.Column.MODIFIED,
+		MovieContract.Column.EXTENDED_DATA_MODIFIED,
 		MovieContract.Column.TITLE,
 		MovieContract.Column.POSTER_PATH,
 		MovieContract.Column.BACKDROP_PATH,
 		MovieContract.Column.SYNOPSIS,
 		MovieContract.Column.VOTE_AVERAGE,
 		MovieContract.Column.VOTE_COUNT,
-		MovieContract.Column.RELEASE_DATE,
+		MovieContract.Column.RELEASE_YEAR,
 		MovieContract.Column.EXTENDED_DATA,
-		MovieContract.Column.REVIEWS_JSON,
-		MovieContract.Column.VIDEOS_JSON,
 		MovieContract.Column.FAVORITE
 	};
 
 	private final static int CURSOR_INDEX_ID = 0;
-	private final static int CURSOR_INDEX_MODIFIED = 1;
+	private final static int CURSOR_INDEX_EXTENDED_DATA_MODIFIED = 1;
 	private final static int CURSOR_INDEX_TITLE = 2;
 	private final static int CURSOR_INDEX_POSTER_PATH = 3;
 	private final static int CURSOR_INDEX_BACKDROP_PATH = 4;
 	private final static int CURSOR_INDEX_SYNOPSIS = 5;
 	private final static int CURSOR_INDEX_VOTE_AVERAGE = 6;
 	private final static int CURSOR_INDEX_VOTE_COUNT = 7;
-	private final static int CURSOR_INDEX_RELEASE_DATE = 8;
+	private final static int CURSOR_INDEX_RELEASE_YEAR = 8;
 	private final static int CURSOR_INDEX_EXTENDED_DATA = 9;
-	private final static int CURSOR_INDEX_REVIEWS_JSON = 10;
-	private final static int CURSOR_INDEX_VIDEOS_JSON = 11;
-	private final static int CURSOR_INDEX_FAVORITE = 12;
+	private final static int CURSOR_INDEX_FAVORITE = 10;
 
 	// --- share configuration ---
 
@@ -120,6 +155,17 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 	protected @Bind(R.id.videos_container) ViewGroup videosContainer;
 	protected @Bind(R.id.reviews_container) ViewGroup reviewsContainer;
 
+	/** Measures the frame times while the fragment is visible, if debug logging is enabled. */
+	private FrameTimeTracker frameTimeTracker;
+
+	/** Loads more reviews when the user scrolls to the end of the displayed reviews. */
+	private final ViewTreeObserver.OnScrollChangedListener reviewScrollListener =
+		new ViewTreeObserver.OnScrollChangedListener() {
+			@Override
+			public void onScrollChanged() {
+				loadMoreReviewsIfVisible();
+			}
+		};
 
 	/**
 	 * Factory method.
@@ -164,9 +210,41 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 		View view = inflater.inflate(R.layout.fragment_movie_detail, container, false);
 		ButterKnife.bind(this, view);
 		bindEmptyModelToView();
+		view.getViewTreeObserver().addOnScrollChangedListener(reviewScrollListener);
 		return view;
 	}
 
+	@Override
+	public void onResume() {
+		super.onResume();
+
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+		if (debug) {
+			if (frameTimeTracker == null)
+				frameTimeTracker = new FrameTimeTracker();
+			frameTimeTracker.start();
+		}
+	}
+
+	@Override
+	public void onPause() {
+		if (frameTimeTracker != null) {
+			frameTimeTracker.stop();
+			Log.d(LOG_TAG, "Frame times for movie " + contentUri + ": " + frameTimeTracker);
+			frameTimeTracker.reset();
+		}
+
+		super.onPause();
+	}
+
+	@Override
+	public void onDestroyView() {
+		ViewTreeObserver observer = getView().getViewTreeObserver();
+		if (observer.isAlive())
+			observer.removeOnScrollChangedListener(reviewScrollListener);
+		super.onDestroyView();
+	}
+
 	@Override
 	public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
 		super.onCreateOptionsMenu(menu, inflater);
@@ -186,6 +264,17 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 		if (contentUri != null) {
 			Bundle loaderArgs = bundleContentUri(contentUri);
 			getLoaderManager().initLoader(LOADER_ID, loaderArgs, this);
+			getLoaderManager().initLoader(DETAILS_LOADER_ID, loaderArgs, detailsLoaderCallbacks);
+
+			// review pages downloaded before the fragment was recreated are still cached
+			for (ReviewPage page : ReviewPageCache.getPages((int) ContentUris.parseId(contentUri), 2))
+				addReviewPage(page);
+
+			// reconnect to a download that was in progress
+			if (getLoaderManager().getLoader(REVIEW_PAGE_LOADER_ID) != null) {
+				reviewPageLoading = true;
+				getLoaderManager().initLoader(REVIEW_PAGE_LOADER_ID, null, reviewPageLoaderCallbacks);
+			}
 		}
 	}
 
@@ -220,7 +309,8 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 				context.getString(
 					R.string.movie_release_date,
 					formatOptYear(
-						new Date(cursor.getLong(CURSOR_INDEX_RELEASE_DATE)),
+						cursor,
+						CURSOR_INDEX_RELEASE_YEAR,
 						context.getString(R.string.data_unknown))));
 
 			PicassoUtils.displayPosterWithOfflineFallback(
@@ -248,54 +338,145 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 			cursor.getString(CURSOR_INDEX_POSTER_PATH),
 			cursor.getString(CURSOR_INDEX_BACKDROP_PATH),
 			cursor.getInt(CURSOR_INDEX_FAVORITE) > 0);
+	}
 
-		// videos
-		bindVideosToView(cursor, videosContainer);
+	/**
+	 * Displays the reviews and videos of the movie, unless they are already displayed.
+	 */
+	private void bindDetailsToView(MovieDetails details) {
+		if (details == boundDetails)
+			return; // a loader re-delivery of cached details
 
-		// reviews
-		bindReviewsToView(cursor, reviewsContainer);
+		bindReviewsToView(getDisplayedReviews(details), reviewsContainer);
 
-		// configure the share action
-		configureShareIntent(
-			cursor.getInt(CURSOR_INDEX_ID),
-			MdbJSONAdapter.toVideoList(cursor.getString(CURSOR_INDEX_VIDEOS_JSON)));
+		if (boundDetails == null || details.getVideos() != boundDetails.getVideos()) {
+			bindVideosToView(details.getVideos(), videosContainer);
+			configureShareIntent(details.getMovieId(), details.getVideos());
+		}
+
+		boundDetails = details;
 	}
 
-	private void bindReviewsToView(Cursor cursor, ViewGroup container) {
+	/**
+	 * Returns the reviews to display: those from the database, followed by the downloaded
+	 * ones once all reviews in the database are displayed.
+	 */
+	private List<Review> getDisplayedReviews(MovieDetails details) {
+		if (details.isMoreReviewsAvailable() || downloadedReviews.isEmpty())
+			return details.getReviews();
+
+		List<Review> reviews = new ArrayList<>(details.getReviews().size() + downloadedReviews.size());
+		reviews.addAll(details.getReviews());
+		reviews.addAll(downloadedReviews);
+		return reviews;
+	}
+
+	/** Adds the reviews of a downloaded page, if it is the page following those added. */
+	private boolean addReviewPage(ReviewPage page) {
+		int expectedPage = lastReviewPage != null ? lastReviewPage.getPage() + 1 : 2;
+		if (page.getPage() != expectedPage)
+			return false;
+
+		downloadedReviews.addAll(page.getReviews());
+		lastReviewPage = page;
+		return true;
+	}
+
+	/**
+	 * Returns whether themoviedb.org has more reviews of the movie than those in the
+	 * database and those downloaded.
+	 */
+	private boolean isMoreReviewsDownloadable() {
+		if (reviewPageFailed)
+			return false;
+
+		if (lastReviewPage != null)
+			return lastReviewPage.hasNextPage();
+
+		// only a full first page can be followed by another
+		return boundDetails.getReviews().size() >= Request.REVIEWS_PER_PAGE;
+	}
+
+	/**
+	 * Displays a list of reviews. The views of reviews that are already displayed are
+	 * reused, so loading another page of reviews only inflates views for the new ones.
+	 */
+	private void bindReviewsToView(List<Review> reviews, ViewGroup container) {
 		final LayoutInflater inflater = LayoutInflater.from(getActivity());
 
-		container.removeAllViews();
+		if (reviews.isEmpty()) {
+			container.removeAllViews();
 
-		List<Review> reviewList = MdbJSONAdapter.toReviewList(cursor.getString(CURSOR_INDEX_REVIEWS_JSON));
-		if (reviewList.isEmpty()) {
 			TextView textView = (TextView) inflater.inflate(R.layout.simple_textview, container, false);
 			textView.setText(R.string.no_reviews);
 			container.addView(textView);
+			return;
 		}
-		else {
-			int numberToDisplay = Math.min(reviewList.size(), MAX_REVIEWS);
-			for (int i = 0; i < numberToDisplay; ++i) {
-				Review review = reviewList.get(i);
-				View reviewView = inflater.inflate(R.layout.review_detail, container, false);
 
-				TextView reviewTextView = (TextView) reviewView.findViewById(R.id.review_content_textview);
-				reviewTextView.setText(review.getContent());
-
-				TextView authorTextView = (TextView) reviewView.findViewById(R.id.review_author_textview);
-				authorTextView.setText(review.getAuthor());
+		// remove the "no reviews" text, if present
+		if (container.getChildCount() > 0 && container.getChildAt(0).findViewById(R.id.review_content_textview) == null)
+			container.removeAllViews();
 
+		int position = 0;
+		for (Review review : reviews) {
+			View reviewView;
+			if (position < container.getChildCount()) {
+				reviewView = container.getChildAt(position);
+			}
+			else {
+				reviewView = inflater.inflate(R.layout.review_detail, container, false);
 				container.addView(reviewView);
 			}
+
+			TextView reviewTextView = (TextView) reviewView.findViewById(R.id.review_content_textview);
+			reviewTextView.setText(review.getContent());
+
+			TextView authorTextView = (TextView) reviewView.findViewById(R.id.review_author_textview);
+			authorTextView.setText(review.getAuthor());
+
+			position++;
 		}
+
+		if (position < container.getChildCount())
+			container.removeViews(position, container.getChildCount() - position);
 	}
 
-	private void bindVideosToView(Cursor cursor, ViewGroup container) {
+	/**
+	 * Loads the next page of reviews if the end of the displayed reviews is visible on
+	 * the screen.
+	 */
+	private void loadMoreReviewsIfVisible() {
+		if (boundDetails == null || reviewsLoading || reviewPageLoading || !isAdded())
+			return;
+
+		boolean moreInDatabase = boundDetails.isMoreReviewsAvailable();
+		if (!moreInDatabase && !isMoreReviewsDownloadable())
+			return;
+
+		Rect visibleRect = new Rect();
+		if (!reviewsContainer.getLocalVisibleRect(visibleRect) || visibleRect.bottom < reviewsContainer.getHeight())
+			return;
+
+		if (moreInDatabase) {
+			reviewsLoading = true;
+			reviewLimit += REVIEW_PAGE_SIZE;
+			getLoaderManager().restartLoader(DETAILS_LOADER_ID, bundleContentUri(contentUri), detailsLoaderCallbacks);
+		}
+		else {
+			// all reviews in the database are displayed, so download the next page
+			Bundle loaderArgs = bundleContentUri(contentUri);
+			loaderArgs.putInt(REVIEW_PAGE, lastReviewPage != null ? lastReviewPage.getPage() + 1 : 2);
+
+			reviewPageLoading = true;
+			getLoaderManager().restartLoader(REVIEW_PAGE_LOADER_ID, loaderArgs, reviewPageLoaderCallbacks);
+		}
+	}
+
+	private void bindVideosToView(List<Video> youtubeVideos, ViewGroup container) {
 		final LayoutInflater inflater = LayoutInflater.from(getActivity());
 
 		container.removeAllViews();
 
-		List<Video> allVideos = MdbJSONAdapter.toVideoList(cursor.getString(CURSOR_INDEX_VIDEOS_JSON));
-		List<Video> youtubeVideos = Movie.filterVideosBySite(allVideos, Video.SITE_YOUTUBE);
 		if (youtubeVideos.isEmpty()) {
 			TextView textView = (TextView) inflater.inflate(R.layout.simple_textview, container, false);
 			textView.setText(R.string.no_videos);
@@ -417,14 +598,11 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 		return (str != null) ? str : fallback;
 	}
 
-	private String formatOptYear(final Date date, final String fallback) {
-		if (date == null)
+	private String formatOptYear(final Cursor cursor, final int columnIndex, final String fallback) {
+		if (cursor.isNull(columnIndex))
 			return fallback;
 
-		Calendar cal = GregorianCalendar.getInstance(Locale.getDefault());
-		cal.setTime(date);
-
-		return Integer.toString(cal.get(Calendar.YEAR));
+		return Integer.toString(cursor.getInt(columnIndex));
 	}
 
 	// --- LoaderManager.LoaderCallback<Loader> interface ---
@@ -464,7 +642,8 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 		// connection makes "too old" a shorter amount of time
 		// TODO include network quality (none, metered, broadband) in the decision of "too old"
 
-		long dataModifiedTime = cursor.getLong(CURSOR_INDEX_MODIFIED);
+		// list refreshes leave the download time of the extended data unchanged
+		long dataModifiedTime = cursor.getLong(CURSOR_INDEX_EXTENDED_DATA_MODIFIED);
 		boolean hasExtendedData = cursor.getInt(CURSOR_INDEX_EXTENDED_DATA) > 0;
 
 		long dataAge = System.currentTimeMillis() - dataModifiedTime;
@@ -487,4 +666,85 @@ public class MovieDetailFragment extends Fragment implements LoaderManager.Loade
 	}
 
 	// --- End LoaderManager.LoaderCallback<Loader> interface ---
+
+	/** Callbacks of the loader of reviews and videos. */
+	private final LoaderManager.LoaderCallbacks<MovieDetails> detailsLoaderCallbacks =
+		new LoaderManager.LoaderCallbacks<MovieDetails>() {
+
+			@Override
+			public Loader<MovieDetails> onCreateLoader(int loaderId, Bundle loaderArgs) {
+				Uri contentUri = unbundleContentUri(loaderArgs);
+				if (contentUri == null)
+					return null;
+
+				return new MovieDetailsLoader(getActivity(), (int) ContentUris.parseId(contentUri), reviewLimit);
+			}
+
+			@Override
+			public void onLoadFinished(Loader<MovieDetails> loader, MovieDetails details) {
+				reviewsLoading = false;
+				if (details == null)
+					return;
+
+				bindDetailsToView(details);
+
+				// the reviews may not fill the screen, in which case there will be no scrolling
+				reviewsContainer.post(new Runnable() {
+					@Override
+					public void run() {
+						loadMoreReviewsIfVisible();
+					}
+				});
+			}
+
+			@Override
+			public void onLoaderReset(Loader<MovieDetails> loader) {
+				// no action
+			}
+		};
+
+	/** Callbacks of the loader of downloaded review pages. */
+	private final LoaderManager.LoaderCallbacks<ReviewPage> reviewPageLoaderCallbacks =
+		new LoaderManager.LoaderCallbacks<ReviewPage>() {
+
+			@Override
+			public Loader<ReviewPage> onCreateLoader(int loaderId, Bundle loaderArgs) {
+				Uri contentUri = unbundleContentUri(loaderArgs);
+				if (contentUri == null)
+					return null;
+
+				return new ReviewPageLoader(
+					getActivity(),
+					(int) ContentUris.parseId(contentUri),
+					loaderArgs.getInt(REVIEW_PAGE));
+			}
+
+			@Override
+			public void onLoadFinished(Loader<ReviewPage> loader, ReviewPage page) {
+				reviewPageLoading = false;
+				if (page == null) {
+					reviewPageFailed = true;
+					return;
+				}
+
+				// the page may already have been added from the cache
+				if (!addReviewPage(page) || boundDetails == null)
+					return;
+
+				bindReviewsToView(getDisplayedReviews(boundDetails), reviewsContainer);
+
+				// the reviews may not fill the screen, in which case there will be no scrolling
+				reviewsContainer.post(new Runnable() {
+					@Override
+					public void run() {
+						loadMoreReviewsIfVisible();
+					}
+				});
+			}
+
+			@Override
+			public void onLoaderReset(Loader<ReviewPage> loader) {
+				// no action
+			}
+		};
 }
@@ -6,8 +6,10 @@ import android.support.annotation.NonNull;
 import android.util.DisplayMetrics;
 import android.widget.ImageView;
 
+import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
+import no.skavdahl.udacity.popularmovies.mdb.ImageType;
 import no.skavdahl.udacity.popularmovies.mdb.Request;
 
 /**
@@ -17,6 +19,19 @@ import no.skavdahl.udacity.popularmovies.mdb.Request;
  */
 public class PicassoUtils {
 
+	/** Reports displayed posters for the time-to-first-poster measurement. */
+	private static final Callback POSTER_CALLBACK = new Callback() {
+		@Override
+		public void onSuccess() {
+			PopularMoviesApplication.onPosterDisplayed();
+		}
+
+		@Override
+		public void onError() {
+			// no action
+		}
+	};
+
 	/**
 	 * Attempts to load a movie poster thumbnail. If the poster image cannot be loaded,
 	 * a poster image is generated and displayed instead, showing the movie title.
@@ -37,7 +52,7 @@ public class PicassoUtils {
 				posterPath = Request.getPosterThumbnailDownloadURL(posterPath, posterWidth);
 			}
 
-			Picasso.with(context).load(posterPath).error(offlinePoster).into(targetView);
+			Picasso.with(context).load(posterPath).error(offlinePoster).into(targetView, POSTER_CALLBACK);
 		}
 	}
 
@@ -58,7 +73,7 @@ public class PicassoUtils {
 
 		if (isRemoteFile(path)) {
 			DisplayMetrics dm = context.getResources().getDisplayMetrics();
-			path = Request.getImageDownloadURL(Request.ImageType.BACKDROP, path, dm.widthPixels);
+			path = Request.getImageDownloadURL(ImageType.BACKDROP, path, dm.widthPixels);
 		}
 
 		Picasso.with(context).load(path).into(targetView);
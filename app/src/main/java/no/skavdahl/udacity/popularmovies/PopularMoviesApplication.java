@@ -0,0 +1,70 @@
+package no.skavdahl.udacity.popularmovies;
+
+import android.app.Application;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.squareup.picasso.Picasso;
+
+import no.skavdahl.udacity.popularmovies.data.ImageConfigurationStore;
+import no.skavdahl.udacity.popularmovies.mdb.Request;
+import no.skavdahl.udacity.utils.NetworkConditions;
+import no.skavdahl.udacity.utils.WebApiTransport;
+import no.skavdahl.udacity.utils.picasso.OkHttp3Downloader;
+
+/**
+ * Application-wide setup. Installs a Picasso instance that downloads images through the
+ * shared HTTP transport, so image downloads can use connections opened by the connection
+ * warm-up in {@link DiscoveryActivity}.
+ *
+ * <p>Also measures the time from app start to the first movie poster on screen, which is
+ * logged at debug level. Compare runs with and without
+ * <code>BuildConfig.CONNECTION_WARMUP</code> to see the effect of the warm-up.</p>
+ *
+ * @author fdavs
+ */
+public class PopularMoviesApplication extends Application {
+
+	private static final String LOG_TAG = PopularMoviesApplication.class.getSimpleName();
+
+	/** When the application was created (in milliseconds since boot). */
+	private static long startTime;
+
+	private static boolean firstPosterDisplayed;
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+
+		startTime = SystemClock.elapsedRealtime();
+
+		Picasso picasso = new Picasso.Builder(this)
+			.downloader(new OkHttp3Downloader(WebApiTransport.getImageClient(this)))
+			.build();
+		Picasso.setSingletonInstance(picasso);
+
+		// image URLs are built from the stored image configuration until a fresh one
+		// has been downloaded
+		ImageConfigurationStore.load(this);
+
+		// image sizes are adapted to the speed and cost of the network connection
+		Request.setNetworkConditions(new NetworkConditions(this, WebApiTransport.getThroughputEstimator()));
+	}
+
+	/**
+	 * Records that a downloaded movie poster has been displayed. The time to the first
+	 * poster is logged once.
+	 */
+	public static void onPosterDisplayed() {
+		if (firstPosterDisplayed)
+			return;
+		firstPosterDisplayed = true;
+
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+		if (debug) {
+			long elapsed = SystemClock.elapsedRealtime() - startTime;
+			Log.d(LOG_TAG, "Time to first poster: " + elapsed + " ms (connection warm-up " +
+				(BuildConfig.CONNECTION_WARMUP ? "enabled" : "disabled") + ")");
+		}
+	}
+}
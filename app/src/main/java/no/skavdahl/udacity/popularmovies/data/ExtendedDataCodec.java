@@ -0,0 +1,238 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+
+/**
+ * Converts the extended movie data (reviews and videos) to and from the binary format
+ * stored in the movie table.
+ *
+ * <p>The format is a version byte followed by the number of records and then, for each
+ * record, each of its string fields as a length prefix and the UTF-8 encoded bytes. All
+ * numbers are unsigned varints (7 bits per byte, least significant group first). Reviews
+ * have the fields id, author and content; videos have key, site and name.</p>
+ *
+ * <p>Decoding is lazy: the lists returned by {@link #decodeReviews} and
+ * {@link #decodeVideos} only record where each field starts when they are created, and
+ * decode the strings of a record the first time it is accessed. Displaying the first few
+ * reviews of a movie therefore does not cost anything for the rest.</p>
+ *
+ * <p>Database version 4 moved reviews and videos to tables of their own. Since then this
+ * format is only decoded when an older database is upgraded.</p>
+ *
+ * @author fdavs
+ */
+public final class ExtendedDataCodec {
+
+	private static final String LOG_TAG = ExtendedDataCodec.class.getSimpleName();
+
+	/** The format version written by this class. */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int FIELDS_PER_RECORD = 3;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private ExtendedDataCodec() {
+		// not instantiable
+	}
+
+	/** Encodes a list of reviews. A <code>null</code> list is encoded as an empty list. */
+	public static byte[] encodeReviews(@Nullable List<Review> reviews) {
+		Encoder encoder = new Encoder(reviews != null ? reviews.size() : 0);
+		if (reviews != null) {
+			for (Review review : reviews) {
+				encoder.writeString(review.getId());
+				encoder.writeString(review.getAuthor());
+				encoder.writeString(review.getContent());
+			}
+		}
+		return encoder.toByteArray();
+	}
+
+	/** Encodes a list of videos. A <code>null</code> list is encoded as an empty list. */
+	public static byte[] encodeVideos(@Nullable List<Video> videos) {
+		Encoder encoder = new Encoder(videos != null ? videos.size() : 0);
+		if (videos != null) {
+			for (Video video : videos) {
+				encoder.writeString(video.getKey());
+				encoder.writeString(video.getSite());
+				encoder.writeString(video.getName());
+			}
+		}
+		return encoder.toByteArray();
+	}
+
+	/**
+	 * Decodes a list of reviews encoded by {@link #encodeReviews}.
+	 *
+	 * @return an unmodifiable list of reviews. The list is empty if the data is
+	 *         <code>null</code> or cannot be decoded.
+	 */
+	public static @NonNull List<Review> decodeReviews(@Nullable byte[] data) {
+		int[] fields = index(data);
+		if (fields == null)
+			return Collections.emptyList();
+
+		return new LazyRecordList<Review>(data, fields) {
+			@Override
+			protected Review createRecord(int index) {
+				return new Review(getField(index, 0), getField(index, 1), getField(index, 2));
+			}
+		};
+	}
+
+	/**
+	 * Decodes a list of videos encoded by {@link #encodeVideos}.
+	 *
+	 * @return an unmodifiable list of videos. The list is empty if the data is
+	 *         <code>null</code> or cannot be decoded.
+	 */
+	public static @NonNull List<Video> decodeVideos(@Nullable byte[] data) {
+		int[] fields = index(data);
+		if (fields == null)
+			return Collections.emptyList();
+
+		return new LazyRecordList<Video>(data, fields) {
+			@Override
+			protected Video createRecord(int index) {
+				return new Video(getField(index, 0), getField(index, 1), getField(index, 2));
+			}
+		};
+	}
+
+	/**
+	 * Finds the fields of the encoded records without decoding any strings.
+	 *
+	 * @return the start offset and length of each field, in pairs, or <code>null</code>
+	 *         if the data is missing or invalid
+	 */
+	private static int[] index(byte[] data) {
+		if (data == null || data.length == 0)
+			return null;
+
+		if (data[0] != FORMAT_VERSION) {
+			Log.w(LOG_TAG, "Unsupported format version: " + data[0]);
+			return null;
+		}
+
+		int[] position = { 1 };
+		int count = readVarint(data, position);
+		// every field takes at least one byte, which also guards against a corrupt count
+		if (count < 0 || count > (data.length - position[0]) / FIELDS_PER_RECORD) {
+			Log.w(LOG_TAG, "Invalid record count: " + count);
+			return null;
+		}
+
+		int[] fields = new int[count * FIELDS_PER_RECORD * 2];
+		for (int i = 0; i < fields.length; i += 2) {
+			int length = readVarint(data, position);
+			if (length < 0 || length > data.length - position[0]) {
+				Log.w(LOG_TAG, "Invalid field length at offset " + position[0]);
+				return null;
+			}
+
+			fields[i] = position[0];
+			fields[i + 1] = length;
+			position[0] += length;
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Reads an unsigned varint and advances the position past it.
+	 *
+	 * @return the value, or -1 if the data ends before the varint or the value is too large
+	 */
+	private static int readVarint(byte[] data, int[] position) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (position[0] >= data.length)
+				return -1;
+
+			int b = data[position[0]++];
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		return -1;
+	}
+
+	/** Writes the format version, the record count and then the fields as they are added. */
+	private static class Encoder {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+		Encoder(int recordCount) {
+			out.write(FORMAT_VERSION);
+			writeVarint(recordCount);
+		}
+
+		void writeString(String s) {
+			byte[] bytes = s.getBytes(UTF_8);
+			writeVarint(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+
+		private void writeVarint(int value) {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+
+		byte[] toByteArray() {
+			return out.toByteArray();
+		}
+	}
+
+	/** A list that creates each record from the encoded data when it is first accessed. */
+	private static abstract class LazyRecordList<T> extends AbstractList<T> {
+
+		private final byte[] data;
+		private final int[] fields;
+		private final Object[] records;
+
+		LazyRecordList(byte[] data, int[] fields) {
+			this.data = data;
+			this.fields = fields;
+			this.records = new Object[fields.length / (FIELDS_PER_RECORD * 2)];
+		}
+
+		protected abstract T createRecord(int index);
+
+		protected String getField(int index, int field) {
+			int i = (index * FIELDS_PER_RECORD + field) * 2;
+			return new String(data, fields[i], fields[i + 1], UTF_8);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			// throws IndexOutOfBoundsException as required by List
+			Object record = records[index];
+			if (record == null) {
+				record = createRecord(index);
+				records[index] = record;
+			}
+			return (T) record;
+		}
+
+		@Override
+		public int size() {
+			return records.length;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+import no.skavdahl.udacity.popularmovies.mdb.DiscoverMovies;
+import no.skavdahl.udacity.popularmovies.mdb.ImageConfiguration;
+import no.skavdahl.udacity.popularmovies.mdb.Request;
+import no.skavdahl.udacity.utils.WebApiClient;
+
+/**
+ * Keeps the image configuration (image base URL and available sizes) of themoviedb.org
+ * in SharedPreferences, so it only has to be downloaded once every
+ * <code>BuildConfig.IMAGE_CONFIGURATION_TTL</code> milliseconds. The configuration in use
+ * is held by {@link Request}, which builds the image download URLs.
+ *
+ * @author fdavs
+ */
+public class ImageConfigurationStore {
+
+	private static final String LOG_TAG = ImageConfigurationStore.class.getSimpleName();
+
+	private static final String PREFERENCES_NAME = "imageConfiguration";
+
+	private static final String BASE_URL = "baseUrl";
+	private static final String POSTER_SIZES = "posterSizes";
+	private static final String BACKDROP_SIZES = "backdropSizes";
+	private static final String FETCH_TIME = "fetchTime";
+
+	private static final String SIZE_SEPARATOR = ",";
+
+	/** Whether a download of the configuration is in progress. */
+	private static boolean refreshing;
+
+	/**
+	 * Loads the stored configuration, if any, and installs it in {@link Request}. Until a
+	 * configuration has been downloaded, the built-in default is used.
+	 */
+	public static void load(final Context context) {
+		SharedPreferences prefs = getPreferences(context);
+
+		String baseUrl = prefs.getString(BASE_URL, null);
+		String posterSizes = prefs.getString(POSTER_SIZES, null);
+		String backdropSizes = prefs.getString(BACKDROP_SIZES, null);
+		if (TextUtils.isEmpty(baseUrl) || TextUtils.isEmpty(posterSizes) || TextUtils.isEmpty(backdropSizes))
+			return;
+
+		Request.setImageConfiguration(new ImageConfiguration(
+			baseUrl, splitSizes(posterSizes), splitSizes(backdropSizes)));
+	}
+
+	/**
+	 * Downloads the configuration in the background if the stored configuration is
+	 * missing or older than <code>BuildConfig.IMAGE_CONFIGURATION_TTL</code>. The new
+	 * configuration is stored and installed in {@link Request} when it arrives; images
+	 * requested before that use the previous configuration.
+	 */
+	public static synchronized void refreshIfStale(final Context context) {
+		if (refreshing)
+			return;
+
+		long fetchTime = getPreferences(context).getLong(FETCH_TIME, 0);
+		long now = System.currentTimeMillis();
+		if (now - fetchTime < BuildConfig.IMAGE_CONFIGURATION_TTL && now >= fetchTime)
+			return;
+
+		refreshing = true;
+
+		final Context appContext = context.getApplicationContext();
+		new DiscoverMovies(appContext).getImageConfiguration(
+			BuildConfig.THEMOVIEDB_API_KEY,
+			null,
+			new WebApiClient.ResponseCallback<ImageConfiguration>() {
+				@Override
+				public void onSuccess(ImageConfiguration configuration) {
+					save(appContext, configuration, System.currentTimeMillis());
+					Request.setImageConfiguration(configuration);
+					refreshFinished();
+
+					final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+					if (verbose) Log.v(LOG_TAG, "Image configuration updated: posters " +
+						configuration.getPosterSizes() + ", backdrops " + configuration.getBackdropSizes());
+				}
+
+				@Override
+				public void onFailure(IOException e) {
+					// not critical, the current configuration remains in use
+					Log.w(LOG_TAG, "Unable to download image configuration", e);
+					refreshFinished();
+				}
+			});
+	}
+
+	private static synchronized void refreshFinished() {
+		refreshing = false;
+	}
+
+	private static void save(final Context context, final ImageConfiguration configuration, final long fetchTime) {
+		SharedPreferences.Editor prefs = getPreferences(context).edit();
+		prefs.putString(BASE_URL, configuration.getBaseUrl());
+		prefs.putString(POSTER_SIZES, TextUtils.join(SIZE_SEPARATOR, configuration.getPosterSizes()));
+		prefs.putString(BACKDROP_SIZES, TextUtils.join(SIZE_SEPARATOR, configuration.getBackdropSizes()));
+		prefs.putLong(FETCH_TIME, fetchTime);
+		prefs.apply();
+	}
+
+	private static List<String> splitSizes(final String sizes) {
+		return Arrays.asList(sizes.split(SIZE_SEPARATOR));
+	}
+
+	private static SharedPreferences getPreferences(final Context context) {
+		return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+	}
+}
@@ -2,32 +2,85 @@ package no.skavdahl.udacity.popularmovies.data;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import android.util.Log;
 
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
 import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
 
 import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
 
 /**
  * Manages the local database for movie information.
  *
+ * <p>The database is journaled with a write-ahead log (WAL), so that the queries of the
+ * user interface are not blocked while a background sync writes list pages. Writes go
+ * through {@link #getWritableDatabase()}, which has a single connection configured by this
+ * class. Queries go through {@link #getReadableDatabase()}, which is a second handle to the
+ * same file with Android's pool of WAL connections, so several queries can run in parallel
+ * with each other and with a write transaction. A query sees the database as it was when
+ * the last write transaction committed.</p>
+ *
+ * <p>The writer connection enables WAL by itself rather than through
+ * {@link SQLiteDatabase#enableWriteAheadLogging()}: Android resets the <code>synchronous</code>
+ * level of WAL connections to the device default, and routes a <code>PRAGMA</code> that
+ * changes it to any connection in the pool, so the level set by
+ * {@link BuildConfig#DATABASE_SYNCHRONOUS} would not reliably apply to the connection that
+ * commits. With NORMAL, a commit does not wait for the log to be synced to storage; a power
+ * loss may undo the last transactions, but never corrupts the database. All the data can be
+ * downloaded again, apart from the favorites list.</p>
+ *
  * @author fdavs
  */
 public class MovieDbHelper extends SQLiteOpenHelper {
 
 	private static final String LOG_TAG = MovieDbHelper.class.getSimpleName();
 
-	public static final int DATABASE_VERSION = 1;
+	public static final int DATABASE_VERSION = 8;
 	public static final String DATABASE_NAME = "movie.db";
 
 	private static final String ON_DELETE_LIST_TRIGGER = "on_delete_list_trigger";
 	private static final String ON_DELETE_MOVIE_TRIGGER = "on_delete_movie_trigger";
+	private static final String ON_DELETE_MOVIE_EXTDATA_TRIGGER = "on_delete_movie_extdata_trigger";
+	private static final String ON_INSERT_FAVORITE_TRIGGER = "on_insert_favorite_trigger";
+	private static final String ON_UPDATE_FAVORITE_TRIGGER = "on_update_favorite_trigger";
+	private static final String ON_DELETE_FAVORITE_TRIGGER = "on_delete_favorite_trigger";
+
+	static final String LIST_NAME_INDEX = "list_name_index";
+	static final String LISTMEMBER_LIST_INDEX = "listmember_list_index";
+	static final String LISTMEMBER_MOVIE_INDEX = "listmember_movie_index";
+
+	/** The ids of the movies on a favorite list, maintained by triggers on the list member table. */
+	static final String FAVORITE_TABLE_NAME = "favoritemovie";
+	static final String FAVORITE_MOVIE_ID = "movieid";
+
+	private final boolean writeAheadLogging;
+
+	/** The handle for queries, when write-ahead logging is enabled. */
+	private SQLiteDatabase readerDatabase;
 
 	public MovieDbHelper(Context context) {
+		this(context, BuildConfig.DATABASE_WAL);
+	}
+
+	/**
+	 * @param writeAheadLogging Whether to journal the database with a write-ahead log and
+	 *                          to run queries on a pool of reader connections. Otherwise,
+	 *                          queries and writes share a single connection.
+	 */
+	MovieDbHelper(Context context, boolean writeAheadLogging) {
 		super(context, DATABASE_NAME, /* CursorFactory*/ null, DATABASE_VERSION);
+		this.writeAheadLogging = writeAheadLogging;
 	}
 
 	@Override
@@ -42,6 +95,8 @@ public class MovieDbHelper extends SQLiteOpenHelper {
 			db.execSQL("PRAGMA foreign_keys = ON");
 		}
 
+		configureJournal(db);
+
 		//if (BuildConfig.DEBUG) {
 		//	dropExistingTables(db);
 		//	onCreate(db);
@@ -59,14 +114,74 @@ public class MovieDbHelper extends SQLiteOpenHelper {
 			onConfigure(db);
 	}
 
+	/**
+	 * Sets the journal mode and the synchronous level of the writer connection. Android
+	 * opens the connection in its default journal mode, so this runs every time the
+	 * database is opened.
+	 */
+	private void configureJournal(SQLiteDatabase db) {
+		if (!writeAheadLogging)
+			return;
+
+		// the pragma returns the new journal mode, so it cannot be run with execSQL
+		String journalMode = DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode = WAL", null);
+		if (!"wal".equalsIgnoreCase(journalMode)) {
+			Log.w(LOG_TAG, "Write-ahead logging not available; journal mode is " + journalMode);
+			return;
+		}
+
+		db.execSQL("PRAGMA synchronous = " + BuildConfig.DATABASE_SYNCHRONOUS);
+	}
+
+	/**
+	 * Returns the database handle for queries. With write-ahead logging, this is a
+	 * separate handle with a pool of connections that read while the writer connection
+	 * writes. The handle must only be used for queries, since writes on it bypass the
+	 * configuration of the writer connection.
+	 */
+	@Override
+	public synchronized SQLiteDatabase getReadableDatabase() {
+		// creates or upgrades the database before any reader sees it
+		SQLiteDatabase writerDatabase = getWritableDatabase();
+		if (!writeAheadLogging)
+			return writerDatabase;
+
+		if (readerDatabase == null || !readerDatabase.isOpen()) {
+			// Android does not enable write-ahead logging on read-only databases
+			SQLiteDatabase db = SQLiteDatabase.openDatabase(
+				writerDatabase.getPath(), /* CursorFactory */ null, SQLiteDatabase.OPEN_READWRITE);
+			if (!db.enableWriteAheadLogging())
+				Log.w(LOG_TAG, "Reader connection pool not available");
+			readerDatabase = db;
+		}
+		return readerDatabase;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (readerDatabase != null) {
+			readerDatabase.close();
+			readerDatabase = null;
+		}
+		super.close();
+	}
+
 	@Override
 	public void onCreate(SQLiteDatabase db) {
+		createSchema_v1(db);
+
+		// bring the version 1 schema up to date
+		onUpgrade(db, 1, DATABASE_VERSION);
+
+		Log.i(LOG_TAG, "Movie database successfully initialized");
+	}
+
+	/** Creates the tables, view and triggers of version 1 of the database. */
+	void createSchema_v1(SQLiteDatabase db) {
 		createListTable_v1(db);
 		createListMembershipTable_v1(db);
 		createMovieTable_v1(db);
 		createTriggers_v1(db);
-
-		Log.i(LOG_TAG, "Movie database successfully initialized");
 	}
 
 	/* #ifdef BuildConfig.DEBUG
@@ -186,8 +301,7 @@ public class MovieDbHelper extends SQLiteOpenHelper {
 			"CREATE TRIGGER IF NOT EXISTS " + ON_DELETE_MOVIE_TRIGGER + " " +
 			"AFTER DELETE ON " + MovieContract.TABLE_NAME + " " +
 			"BEGIN " +
-				"DELETE FROM " + ListMembershipContract.TABLE_NAME + " " +
-				"WHERE " + ListMembershipContract.Column.MOVIE_ID + " = OLD." + MovieContract.Column._ID + ";" +
+				DELETE_FROM_LISTMEMBER_v1 + ";" +
 			"END");
 
 		db.execSQL(
@@ -201,6 +315,523 @@ public class MovieDbHelper extends SQLiteOpenHelper {
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		// currently there is nothing to upgrade
+		if (oldVersion < 2)
+			upgradeToEpochDayReleaseDates_v2(db);
+		if (oldVersion < 3)
+			upgradeToBinaryExtendedData_v3(db);
+		if (oldVersion < 4)
+			upgradeToReviewAndVideoTables_v4(db);
+		if (oldVersion < 5)
+			upgradeToMovieFingerprints_v5(db);
+		if (oldVersion < 6)
+			upgradeToIndexes_v6(db);
+		if (oldVersion < 7)
+			upgradeToFavoriteTable_v7(db);
+		if (oldVersion < 8)
+			upgradeToExtendedDataTimestamp_v8(db);
+	}
+
+	/**
+	 * Version 2 stores the release date as an epoch day rather than as milliseconds, and
+	 * adds the release year so it doesn't have to be computed when a movie is displayed.
+	 */
+	private void upgradeToEpochDayReleaseDates_v2(SQLiteDatabase db) {
+		db.execSQL(
+			"ALTER TABLE " + MovieContract.TABLE_NAME + " " +
+			"ADD COLUMN " + MovieContract.Column.RELEASE_YEAR + " INTEGER"); // NULLABLE
+
+		// version 1 release dates are local midnight in milliseconds, negative before 1970,
+		// and 0 if the movie has no release date; julianday(1970-01-01) = 2440587.5
+		final String localDate = "date(" + MovieContract.Column.RELEASE_DATE + " / 1000, 'unixepoch', 'localtime')";
+		db.execSQL(
+			"UPDATE " + MovieContract.TABLE_NAME + " " +
+			"SET " +
+				MovieContract.Column.RELEASE_YEAR + " = CAST(strftime('%Y', " + localDate + ") AS INTEGER), " +
+				MovieContract.Column.RELEASE_DATE + " = CAST(julianday(" + localDate + ") - 2440587.5 AS INTEGER) " +
+			"WHERE " + MovieContract.Column.RELEASE_DATE + " != 0");
+		db.execSQL(
+			"UPDATE " + MovieContract.TABLE_NAME + " " +
+			"SET " + MovieContract.Column.RELEASE_DATE + " = NULL " +
+			"WHERE " + MovieContract.Column.RELEASE_DATE + " = 0");
+
+		// the view lists its columns explicitly, so it must be recreated
+		db.execSQL("DROP VIEW IF EXISTS " + MovieContract.TABLE_EX_NAME);
+		createMovieExView_v2(db);
+	}
+
+	/**
+	 * Version 3 stores reviews and videos in a compact binary format (see
+	 * ExtendedDataCodec) rather than as JSON text. The JSON columns are cleared since
+	 * SQLite cannot drop columns.
+	 */
+	private void upgradeToBinaryExtendedData_v3(SQLiteDatabase db) {
+		db.execSQL(
+			"ALTER TABLE " + MovieContract.TABLE_NAME + " " +
+			"ADD COLUMN " + MovieContract.Column.REVIEWS + " BLOB"); // NULLABLE
+		db.execSQL(
+			"ALTER TABLE " + MovieContract.TABLE_NAME + " " +
+			"ADD COLUMN " + MovieContract.Column.VIDEOS + " BLOB"); // NULLABLE
+
+		// the JSON can only be converted in Java
+		SQLiteStatement update = db.compileStatement(
+			"UPDATE " + MovieContract.TABLE_NAME + " " +
+			"SET " +
+				MovieContract.Column.REVIEWS + " = ?, " +
+				MovieContract.Column.VIDEOS + " = ?, " +
+				MovieContract.Column.REVIEWS_JSON + " = NULL, " +
+				MovieContract.Column.VIDEOS_JSON + " = NULL " +
+			"WHERE " + MovieContract.Column._ID + " = ?");
+
+		Cursor cursor = db.query(
+			MovieContract.TABLE_NAME,
+			new String[] { MovieContract.Column._ID, MovieContract.Column.REVIEWS_JSON, MovieContract.Column.VIDEOS_JSON },
+			MovieContract.Column.REVIEWS_JSON + " IS NOT NULL OR " + MovieContract.Column.VIDEOS_JSON + " IS NOT NULL",
+			null, null, null, null);
+		try {
+			while (cursor.moveToNext()) {
+				bindOptBlob(update, 1, cursor.isNull(1) ? null :
+					ExtendedDataCodec.encodeReviews(MdbJSONAdapter.toReviewList(cursor.getString(1))));
+				bindOptBlob(update, 2, cursor.isNull(2) ? null :
+					ExtendedDataCodec.encodeVideos(MdbJSONAdapter.toVideoList(cursor.getString(2))));
+				update.bindLong(3, cursor.getLong(0));
+				update.executeUpdateDelete();
+			}
+		}
+		finally {
+			cursor.close();
+			update.close();
+		}
+
+		db.execSQL("DROP VIEW IF EXISTS " + MovieContract.TABLE_EX_NAME);
+		createMovieExView_v3(db);
+	}
+
+	/**
+	 * Version 4 moves reviews and videos out of the movie table into tables of their
+	 * own, so a movie query no longer reads them and the reviews can be loaded a few at a
+	 * time.
+	 */
+	private void upgradeToReviewAndVideoTables_v4(SQLiteDatabase db) {
+		createReviewTable_v4(db);
+		createVideoTable_v4(db);
+
+		db.execSQL(
+			"CREATE TRIGGER IF NOT EXISTS " + ON_DELETE_MOVIE_EXTDATA_TRIGGER + " " +
+			"AFTER DELETE ON " + MovieContract.TABLE_NAME + " " +
+			"BEGIN " +
+				"DELETE FROM " + ReviewContract.TABLE_NAME + " " +
+				"WHERE " + ReviewContract.Column.MOVIE_ID + " = OLD." + MovieContract.Column._ID + ";" +
+				"DELETE FROM " + VideoContract.TABLE_NAME + " " +
+				"WHERE " + VideoContract.Column.MOVIE_ID + " = OLD." + MovieContract.Column._ID + ";" +
+			"END");
+
+		// the blobs can only be decoded in Java
+		SQLiteStatement reviewStmt = db.compileStatement(INSERT_INTO_REVIEW_v4);
+		SQLiteStatement videoStmt = db.compileStatement(INSERT_INTO_VIDEO_v4);
+
+		Cursor cursor = db.query(
+			MovieContract.TABLE_NAME,
+			new String[] { MovieContract.Column._ID, MovieContract.Column.REVIEWS, MovieContract.Column.VIDEOS },
+			MovieContract.Column.REVIEWS + " IS NOT NULL OR " + MovieContract.Column.VIDEOS + " IS NOT NULL",
+			null, null, null, null);
+		try {
+			while (cursor.moveToNext()) {
+				long movieId = cursor.getLong(0);
+
+				List<Review> reviews = ExtendedDataCodec.decodeReviews(cursor.getBlob(1));
+				for (int i = 0; i < reviews.size(); ++i) {
+					Review review = reviews.get(i);
+					reviewStmt.bindLong(1, movieId);
+					reviewStmt.bindLong(2, i);
+					reviewStmt.bindString(3, review.getId());
+					reviewStmt.bindString(4, review.getAuthor());
+					reviewStmt.bindString(5, review.getContent());
+					reviewStmt.executeInsert();
+				}
+
+				List<Video> videos = ExtendedDataCodec.decodeVideos(cursor.getBlob(2));
+				for (int i = 0; i < videos.size(); ++i) {
+					Video video = videos.get(i);
+					videoStmt.bindLong(1, movieId);
+					videoStmt.bindLong(2, i);
+					videoStmt.bindString(3, video.getKey());
+					videoStmt.bindString(4, video.getSite());
+					videoStmt.bindString(5, video.getName());
+					videoStmt.executeInsert();
+				}
+			}
+		}
+		finally {
+			cursor.close();
+			reviewStmt.close();
+			videoStmt.close();
+		}
+
+		db.execSQL(
+			"UPDATE " + MovieContract.TABLE_NAME + " " +
+			"SET " +
+				MovieContract.Column.REVIEWS + " = NULL, " +
+				MovieContract.Column.VIDEOS + " = NULL");
+
+		db.execSQL("DROP VIEW IF EXISTS " + MovieContract.TABLE_EX_NAME);
+		createMovieExView_v4(db);
+	}
+
+	private void createReviewTable_v4(SQLiteDatabase db) {
+		// the unique constraint also indexes the reviews by movie
+		db.execSQL(
+			"CREATE TABLE IF NOT EXISTS " + ReviewContract.TABLE_NAME + " (" +
+				ReviewContract.Column._ID + " INTEGER PRIMARY KEY," +
+				ReviewContract.Column.MOVIE_ID + " INTEGER NOT NULL," +
+				ReviewContract.Column.POSITION + " INTEGER NOT NULL," +
+				ReviewContract.Column.REVIEW_ID + " TEXT NOT NULL," +
+				ReviewContract.Column.AUTHOR + " TEXT NOT NULL," +
+				ReviewContract.Column.CONTENT + " TEXT NOT NULL," +
+				"UNIQUE (" + ReviewContract.Column.MOVIE_ID + ", " + ReviewContract.Column.POSITION + "), " +
+				"FOREIGN KEY (" + ReviewContract.Column.MOVIE_ID + ") " +
+					"REFERENCES " + MovieContract.TABLE_NAME + "(" + MovieContract.Column._ID + ") " +
+					"ON DELETE NO ACTION " +
+					"ON UPDATE RESTRICT " +
+					"DEFERRABLE INITIALLY DEFERRED" +
+			")");
+	}
+
+	private void createVideoTable_v4(SQLiteDatabase db) {
+		// the unique constraint also indexes the videos by movie
+		db.execSQL(
+			"CREATE TABLE IF NOT EXISTS " + VideoContract.TABLE_NAME + " (" +
+				VideoContract.Column._ID + " INTEGER PRIMARY KEY," +
+				VideoContract.Column.MOVIE_ID + " INTEGER NOT NULL," +
+				VideoContract.Column.POSITION + " INTEGER NOT NULL," +
+				VideoContract.Column.KEY + " TEXT NOT NULL," +
+				VideoContract.Column.SITE + " TEXT NOT NULL," +
+				VideoContract.Column.NAME + " TEXT NOT NULL," +
+				"UNIQUE (" + VideoContract.Column.MOVIE_ID + ", " + VideoContract.Column.POSITION + "), " +
+				"FOREIGN KEY (" + VideoContract.Column.MOVIE_ID + ") " +
+					"REFERENCES " + MovieContract.TABLE_NAME + "(" + MovieContract.Column._ID + ") " +
+					"ON DELETE NO ACTION " +
+					"ON UPDATE RESTRICT " +
+					"DEFERRABLE INITIALLY DEFERRED" +
+			")");
+	}
+
+	private static final String INSERT_INTO_REVIEW_v4 =
+		"INSERT INTO " + ReviewContract.TABLE_NAME + "(" +
+			ReviewContract.Column.MOVIE_ID + "," +
+			ReviewContract.Column.POSITION + "," +
+			ReviewContract.Column.REVIEW_ID + "," +
+			ReviewContract.Column.AUTHOR + "," +
+			ReviewContract.Column.CONTENT + ") " +
+		"VALUES(?, ?, ?, ?, ?)";
+
+	private static final String INSERT_INTO_VIDEO_v4 =
+		"INSERT INTO " + VideoContract.TABLE_NAME + "(" +
+			VideoContract.Column.MOVIE_ID + "," +
+			VideoContract.Column.POSITION + "," +
+			VideoContract.Column.KEY + "," +
+			VideoContract.Column.SITE + "," +
+			VideoContract.Column.NAME + ") " +
+		"VALUES(?, ?, ?, ?, ?)";
+
+	/**
+	 * Version 5 adds a fingerprint of the list attributes to the movie table, so a list
+	 * refresh can skip writing movies that have not changed. Existing movies have no
+	 * fingerprint and are written once more on their next refresh.
+	 */
+	private void upgradeToMovieFingerprints_v5(SQLiteDatabase db) {
+		db.execSQL(
+			"ALTER TABLE " + MovieContract.TABLE_NAME + " " +
+			"ADD COLUMN " + MovieContract.Column.FINGERPRINT + " INTEGER"); // NULLABLE
+	}
+
+	/**
+	 * Version 6 adds the indexes that the list queries need. Until now every query of a
+	 * list scanned the whole list member table.
+	 *
+	 * <ul>
+	 *     <li>Lists are looked up by name.</li>
+	 *     <li>The members of a list are read in page and position order, and the last
+	 *     position is looked up when a movie is added. The movie id is included, so
+	 *     reading a list does not visit the table rows.</li>
+	 *     <li>The lists of a movie are looked up by the favorite column of the movieex
+	 *     view, when a movie is deleted and when orphaned movies are swept.</li>
+	 * </ul>
+	 */
+	private void upgradeToIndexes_v6(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE UNIQUE INDEX IF NOT EXISTS " + LIST_NAME_INDEX + " " +
+			"ON " + ListContract.TABLE_NAME + " (" + ListContract.Column.NAME + ")");
+
+		// the list member id is derived from list, page and position, so the primary key
+		// already makes them unique
+		db.execSQL(
+			"CREATE INDEX IF NOT EXISTS " + LISTMEMBER_LIST_INDEX + " " +
+			"ON " + ListMembershipContract.TABLE_NAME + " (" +
+				ListMembershipContract.Column.LIST_ID + ", " +
+				ListMembershipContract.Column.PAGE + ", " +
+				ListMembershipContract.Column.POSITION + ", " +
+				ListMembershipContract.Column.MOVIE_ID +
+			")");
+
+		db.execSQL(
+			"CREATE INDEX IF NOT EXISTS " + LISTMEMBER_MOVIE_INDEX + " " +
+			"ON " + ListMembershipContract.TABLE_NAME + " (" +
+				ListMembershipContract.Column.MOVIE_ID + ", " +
+				ListMembershipContract.Column.LIST_ID +
+			")");
+	}
+
+	/**
+	 * Version 7 stores the ids of the favorite movies in a table of their own, so the
+	 * favorite column of the movieex view is a primary key lookup rather than a count of
+	 * the favorite list memberships of every movie returned. Triggers on the list member
+	 * table keep the favorites up to date.
+	 *
+	 * <p>The favorites are not a column of the movie table, so that movie rows can be
+	 * written without regard to lists. A REPLACE of a list member row does not fire the
+	 * delete trigger, but movies are only added to the end of the favorite list, so a
+	 * REPLACE there never removes another movie.</p>
+	 */
+	private void upgradeToFavoriteTable_v7(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE TABLE IF NOT EXISTS " + FAVORITE_TABLE_NAME + " (" +
+				FAVORITE_MOVIE_ID + " INTEGER PRIMARY KEY" +
+			")");
+
+		db.execSQL(
+			"INSERT OR IGNORE INTO " + FAVORITE_TABLE_NAME + " (" + FAVORITE_MOVIE_ID + ") " +
+			"SELECT LM." + ListMembershipContract.Column.MOVIE_ID + " " +
+			"FROM " +
+				ListMembershipContract.TABLE_NAME + " LM, " +
+				ListContract.TABLE_NAME + " L " +
+			"WHERE LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+			  "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE);
+
+		db.execSQL(
+			"CREATE TRIGGER IF NOT EXISTS " + ON_INSERT_FAVORITE_TRIGGER + " " +
+			"AFTER INSERT ON " + ListMembershipContract.TABLE_NAME + " " +
+			"WHEN " + isFavoriteList("NEW") + " " +
+			"BEGIN " +
+				"INSERT OR IGNORE INTO " + FAVORITE_TABLE_NAME + " (" + FAVORITE_MOVIE_ID + ") " +
+				"VALUES (NEW." + ListMembershipContract.Column.MOVIE_ID + ");" +
+			"END");
+
+		db.execSQL(
+			"CREATE TRIGGER IF NOT EXISTS " + ON_DELETE_FAVORITE_TRIGGER + " " +
+			"AFTER DELETE ON " + ListMembershipContract.TABLE_NAME + " " +
+			"WHEN " + isFavoriteList("OLD") + " " +
+			"BEGIN " +
+				DELETE_FROM_FAVORITE_v7 + ";" +
+			"END");
+
+		db.execSQL(
+			"CREATE TRIGGER IF NOT EXISTS " + ON_UPDATE_FAVORITE_TRIGGER + " " +
+			"AFTER UPDATE OF " +
+				ListMembershipContract.Column.LIST_ID + ", " +
+				ListMembershipContract.Column.MOVIE_ID + " " +
+			"ON " + ListMembershipContract.TABLE_NAME + " " +
+			"BEGIN " +
+				DELETE_FROM_FAVORITE_v7 + ";" +
+				"INSERT OR IGNORE INTO " + FAVORITE_TABLE_NAME + " (" + FAVORITE_MOVIE_ID + ") " +
+				"SELECT NEW." + ListMembershipContract.Column.MOVIE_ID + " " +
+				"WHERE " + isFavoriteList("NEW") + ";" +
+			"END");
+
+		db.execSQL("DROP VIEW IF EXISTS " + MovieContract.TABLE_EX_NAME);
+		createMovieExView_v7(db);
+	}
+
+	/**
+	 * Version 8 records when the extended data of a movie were downloaded, separately from
+	 * the modification time that every list refresh updates. Until now a movie on a list
+	 * that was refreshed more often than the extended data timeout never had its reviews
+	 * and videos downloaded again.
+	 */
+	private void upgradeToExtendedDataTimestamp_v8(SQLiteDatabase db) {
+		db.execSQL(
+			"ALTER TABLE " + MovieContract.TABLE_NAME + " " +
+			"ADD COLUMN " + MovieContract.Column.EXTENDED_DATA_MODIFIED + " INTEGER"); // NULLABLE
+
+		// the modification time is no later than the download of the extended data
+		db.execSQL(
+			"UPDATE " + MovieContract.TABLE_NAME + " " +
+			"SET " + MovieContract.Column.EXTENDED_DATA_MODIFIED + " = " + MovieContract.Column.MODIFIED + " " +
+			"WHERE " + MovieContract.Column.EXTENDED_DATA + " != 0");
+
+		db.execSQL("DROP VIEW IF EXISTS " + MovieContract.TABLE_EX_NAME);
+		createMovieExView_v8(db);
+	}
+
+	/** Returns a condition that is true if the list of the given list member row is a favorite list. */
+	private static String isFavoriteList(String row) {
+		return
+			"(SELECT " + ListContract.Column.TYPE + " " +
+			 "FROM " + ListContract.TABLE_NAME + " " +
+			 "WHERE " + ListContract.Column._ID + " = " + row + "." + ListMembershipContract.Column.LIST_ID + ") = " +
+			ListContract.LISTTYPE_FAVORITE;
+	}
+
+	/**
+	 * <pre>
+	 * DELETE FROM favoritemovie
+	 * WHERE movieid = OLD.movieid
+	 *   AND NOT EXISTS (SELECT 1 FROM listmember LM, list L
+	 *                   WHERE LM.movieid = OLD.movieid AND L._id = LM.listid AND L.listtype = 2)
+	 * </pre>
+	 */
+	static final String DELETE_FROM_FAVORITE_v7 =
+		"DELETE FROM " + FAVORITE_TABLE_NAME + " " +
+		"WHERE " + FAVORITE_MOVIE_ID + " = OLD." + ListMembershipContract.Column.MOVIE_ID + " " +
+		  "AND NOT EXISTS (" +
+			"SELECT 1 " +
+			"FROM " +
+				ListMembershipContract.TABLE_NAME + " LM, " +
+				ListContract.TABLE_NAME + " L " +
+			"WHERE LM." + ListMembershipContract.Column.MOVIE_ID + " = OLD." + ListMembershipContract.Column.MOVIE_ID + " " +
+			  "AND LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+			  "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE + ")";
+
+	/**
+	 * <pre>
+	 * DELETE FROM listmember
+	 * WHERE movieid = OLD._id
+	 * </pre>
+	 */
+	static final String DELETE_FROM_LISTMEMBER_v1 =
+		"DELETE FROM " + ListMembershipContract.TABLE_NAME + " " +
+		"WHERE " + ListMembershipContract.Column.MOVIE_ID + " = OLD." + MovieContract.Column._ID;
+
+	private static void bindOptBlob(SQLiteStatement statement, int index, byte[] value) {
+		if (value != null)
+			statement.bindBlob(index, value);
+		else
+			statement.bindNull(index);
+	}
+
+	private void createMovieExView_v2(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE VIEW IF NOT EXISTS " + MovieContract.TABLE_EX_NAME + " " +
+				"AS SELECT " +
+					"M." + MovieContract.Column._ID + "," +
+					"M." + MovieContract.Column.MODIFIED + "," +
+					"M." + MovieContract.Column.TITLE + "," +
+					"M." + MovieContract.Column.POSTER_PATH + "," +
+					"M." + MovieContract.Column.BACKDROP_PATH + "," +
+					"M." + MovieContract.Column.SYNOPSIS + "," +
+					"M." + MovieContract.Column.POPULARITY + "," +
+					"M." + MovieContract.Column.VOTE_AVERAGE + "," +
+					"M." + MovieContract.Column.VOTE_COUNT + "," +
+					"M." + MovieContract.Column.RELEASE_DATE + "," +
+					"M." + MovieContract.Column.RELEASE_YEAR + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA + "," +
+					"M." + MovieContract.Column.REVIEWS_JSON + "," +
+					"M." + MovieContract.Column.VIDEOS_JSON + "," +
+					"(SELECT COUNT(*) " +
+					 "FROM " +
+						ListMembershipContract.TABLE_NAME + " LM," +
+						ListContract.TABLE_NAME + " L " +
+					 "WHERE LM." + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID + " " +
+					   "AND LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+					   "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE + ") AS " + MovieContract.Column.FAVORITE + " " +
+				"FROM " + MovieContract.TABLE_NAME + " M");
+	}
+
+	private void createMovieExView_v3(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE VIEW IF NOT EXISTS " + MovieContract.TABLE_EX_NAME + " " +
+				"AS SELECT " +
+					"M." + MovieContract.Column._ID + "," +
+					"M." + MovieContract.Column.MODIFIED + "," +
+					"M." + MovieContract.Column.TITLE + "," +
+					"M." + MovieContract.Column.POSTER_PATH + "," +
+					"M." + MovieContract.Column.BACKDROP_PATH + "," +
+					"M." + MovieContract.Column.SYNOPSIS + "," +
+					"M." + MovieContract.Column.POPULARITY + "," +
+					"M." + MovieContract.Column.VOTE_AVERAGE + "," +
+					"M." + MovieContract.Column.VOTE_COUNT + "," +
+					"M." + MovieContract.Column.RELEASE_DATE + "," +
+					"M." + MovieContract.Column.RELEASE_YEAR + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA + "," +
+					"M." + MovieContract.Column.REVIEWS + "," +
+					"M." + MovieContract.Column.VIDEOS + "," +
+					"(SELECT COUNT(*) " +
+					 "FROM " +
+						ListMembershipContract.TABLE_NAME + " LM," +
+						ListContract.TABLE_NAME + " L " +
+					 "WHERE LM." + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID + " " +
+					   "AND LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+					   "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE + ") AS " + MovieContract.Column.FAVORITE + " " +
+				"FROM " + MovieContract.TABLE_NAME + " M");
+	}
+
+	private void createMovieExView_v4(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE VIEW IF NOT EXISTS " + MovieContract.TABLE_EX_NAME + " " +
+				"AS SELECT " +
+					"M." + MovieContract.Column._ID + "," +
+					"M." + MovieContract.Column.MODIFIED + "," +
+					"M." + MovieContract.Column.TITLE + "," +
+					"M." + MovieContract.Column.POSTER_PATH + "," +
+					"M." + MovieContract.Column.BACKDROP_PATH + "," +
+					"M." + MovieContract.Column.SYNOPSIS + "," +
+					"M." + MovieContract.Column.POPULARITY + "," +
+					"M." + MovieContract.Column.VOTE_AVERAGE + "," +
+					"M." + MovieContract.Column.VOTE_COUNT + "," +
+					"M." + MovieContract.Column.RELEASE_DATE + "," +
+					"M." + MovieContract.Column.RELEASE_YEAR + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA + "," +
+					"(SELECT COUNT(*) " +
+					 "FROM " +
+						ListMembershipContract.TABLE_NAME + " LM," +
+						ListContract.TABLE_NAME + " L " +
+					 "WHERE LM." + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID + " " +
+					   "AND LM." + ListMembershipContract.Column.LIST_ID + " = L." + ListContract.Column._ID + " " +
+					   "AND L." + ListContract.Column.TYPE + " = " + ListContract.LISTTYPE_FAVORITE + ") AS " + MovieContract.Column.FAVORITE + " " +
+				"FROM " + MovieContract.TABLE_NAME + " M");
+	}
+
+	private void createMovieExView_v7(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE VIEW IF NOT EXISTS " + MovieContract.TABLE_EX_NAME + " " +
+				"AS SELECT " +
+					"M." + MovieContract.Column._ID + "," +
+					"M." + MovieContract.Column.MODIFIED + "," +
+					"M." + MovieContract.Column.TITLE + "," +
+					"M." + MovieContract.Column.POSTER_PATH + "," +
+					"M." + MovieContract.Column.BACKDROP_PATH + "," +
+					"M." + MovieContract.Column.SYNOPSIS + "," +
+					"M." + MovieContract.Column.POPULARITY + "," +
+					"M." + MovieContract.Column.VOTE_AVERAGE + "," +
+					"M." + MovieContract.Column.VOTE_COUNT + "," +
+					"M." + MovieContract.Column.RELEASE_DATE + "," +
+					"M." + MovieContract.Column.RELEASE_YEAR + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA + "," +
+					"F." + FAVORITE_MOVIE_ID + " IS NOT NULL AS " + MovieContract.Column.FAVORITE + " " +
+				"FROM " + MovieContract.TABLE_NAME + " M " +
+					"LEFT JOIN " + FAVORITE_TABLE_NAME + " F " +
+						"ON F." + FAVORITE_MOVIE_ID + " = M." + MovieContract.Column._ID);
+	}
+
+	private void createMovieExView_v8(SQLiteDatabase db) {
+		db.execSQL(
+			"CREATE VIEW IF NOT EXISTS " + MovieContract.TABLE_EX_NAME + " " +
+				"AS SELECT " +
+					"M." + MovieContract.Column._ID + "," +
+					"M." + MovieContract.Column.MODIFIED + "," +
+					"M." + MovieContract.Column.TITLE + "," +
+					"M." + MovieContract.Column.POSTER_PATH + "," +
+					"M." + MovieContract.Column.BACKDROP_PATH + "," +
+					"M." + MovieContract.Column.SYNOPSIS + "," +
+					"M." + MovieContract.Column.POPULARITY + "," +
+					"M." + MovieContract.Column.VOTE_AVERAGE + "," +
+					"M." + MovieContract.Column.VOTE_COUNT + "," +
+					"M." + MovieContract.Column.RELEASE_DATE + "," +
+					"M." + MovieContract.Column.RELEASE_YEAR + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA + "," +
+					"M." + MovieContract.Column.EXTENDED_DATA_MODIFIED + "," +
+					"F." + FAVORITE_MOVIE_ID + " IS NOT NULL AS " + MovieContract.Column.FAVORITE + " " +
+				"FROM " + MovieContract.TABLE_NAME + " M " +
+					"LEFT JOIN " + FAVORITE_TABLE_NAME + " F " +
+						"ON F." + FAVORITE_MOVIE_ID + " = M." + MovieContract.Column._ID);
 	}
 }
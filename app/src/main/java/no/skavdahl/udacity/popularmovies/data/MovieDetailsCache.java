@@ -0,0 +1,75 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.support.v4.util.LruCache;
+
+import no.skavdahl.udacity.popularmovies.model.MovieDetails;
+
+/**
+ * Keeps the details of the most recently displayed movies in memory, so displaying a
+ * movie again does not query and convert its reviews and videos again.
+ *
+ * <p>An entry is used only while the time the movie's extended data were downloaded is
+ * unchanged. List refreshes do not change that time. Since the reviews and videos can
+ * also be replaced without changing it,
+ * {@link MovieProvider} invalidates the entry of a movie when it writes them. A load that
+ * was in progress at that moment may have read the old rows, so every invalidation
+ * increments a generation number, and {@link #put} drops details read in an earlier
+ * generation.</p>
+ *
+ * @author fdavs
+ */
+public final class MovieDetailsCache {
+
+	/** The maximum number of movies to keep details for. */
+	private static final int MAX_ENTRIES = 16;
+
+	private static final LruCache<Integer, MovieDetails> cache = new LruCache<>(MAX_ENTRIES);
+
+	private static int generation;
+
+	private MovieDetailsCache() {
+		// not instantiable
+	}
+
+	/**
+	 * Returns the cached details of a movie.
+	 *
+	 * @param movieId The id of the movie
+	 * @param modified The time the extended data of the movie were downloaded
+	 * @param reviewCount The number of reviews needed
+	 *
+	 * @return the details, or <code>null</code> if the cache does not have details that
+	 *         are current and include enough reviews
+	 */
+	public static synchronized MovieDetails get(int movieId, long modified, int reviewCount) {
+		MovieDetails details = cache.get(movieId);
+		if (details == null || details.getModified() != modified || !details.hasReviews(reviewCount))
+			return null;
+
+		return details;
+	}
+
+	/** Returns the current generation. Call this before reading details from the database. */
+	public static synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Adds details to the cache, unless the cache has been invalidated since they were
+	 * read.
+	 *
+	 * @param details The details to cache
+	 * @param readGeneration The generation returned by {@link #getGeneration()} before the
+	 *                       details were read
+	 */
+	public static synchronized void put(MovieDetails details, int readGeneration) {
+		if (readGeneration == generation)
+			cache.put(details.getMovieId(), details);
+	}
+
+	/** Removes the details of a movie whose reviews or videos have changed. */
+	public static synchronized void invalidate(int movieId) {
+		generation++;
+		cache.remove(movieId);
+	}
+}
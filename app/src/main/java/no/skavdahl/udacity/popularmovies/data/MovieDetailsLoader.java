@@ -0,0 +1,208 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.content.AsyncTaskLoader;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+import no.skavdahl.udacity.popularmovies.model.MovieDetails;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+import no.skavdahl.udacity.utils.StringPool;
+
+import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
+
+/**
+ * Loads the reviews and YouTube videos of a movie on a background thread. The details
+ * are taken from {@link MovieDetailsCache} if they have not been downloaded again since
+ * they were cached, so only the download time is queried in that case.
+ *
+ * <p>The details stay in the cache, so the authors of the reviews and the sites of the
+ * videos, which repeat across movies, are shared through {@link StringPool}.</p>
+ *
+ * <p>The loader observes the movie and its reviews and videos, and loads the details
+ * again when they change. The result is delivered as the same object as before when
+ * nothing has changed, so the caller can skip binding it again.</p>
+ *
+ * @author fdavs
+ */
+// Disable "try can use automatic resource management" tip from Android Studio
+// This feature requires API level 19, which is higher than our current minimum API level
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+public class MovieDetailsLoader extends AsyncTaskLoader<MovieDetails> {
+
+	private static final String LOG_TAG = MovieDetailsLoader.class.getSimpleName();
+
+	private static final String[] REVIEW_PROJECTION = new String[] {
+		ReviewContract.Column.REVIEW_ID,
+		ReviewContract.Column.AUTHOR,
+		ReviewContract.Column.CONTENT
+	};
+
+	private static final String[] VIDEO_PROJECTION = new String[] {
+		VideoContract.Column.KEY,
+		VideoContract.Column.SITE,
+		VideoContract.Column.NAME
+	};
+
+	private final int movieId;
+	private final int reviewLimit;
+	private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+
+	private MovieDetails details;
+	private boolean observing;
+
+	/**
+	 * @param context Any context; the loader keeps the application context
+	 * @param movieId The id of the movie
+	 * @param reviewLimit The number of reviews to load
+	 */
+	public MovieDetailsLoader(Context context, int movieId, int reviewLimit) {
+		super(context);
+		this.movieId = movieId;
+		this.reviewLimit = reviewLimit;
+	}
+
+	@Override
+	public MovieDetails loadInBackground() {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+
+		ContentResolver resolver = getContext().getContentResolver();
+
+		long modified = queryExtendedDataModified(resolver);
+		if (modified == -1)
+			return null;
+
+		MovieDetails cached = MovieDetailsCache.get(movieId, modified, reviewLimit);
+		if (cached != null) {
+			if (verbose) Log.v(LOG_TAG, "Details of movie " + movieId + " found in cache");
+			return cached;
+		}
+
+		int generation = MovieDetailsCache.getGeneration();
+
+		List<Review> reviews = queryReviews(resolver);
+		List<Video> videos = queryVideos(resolver);
+
+		MovieDetails result = new MovieDetails(movieId, modified, reviews, reviews.size() >= reviewLimit, videos);
+		MovieDetailsCache.put(result, generation);
+
+		if (verbose) Log.v(LOG_TAG, "Details of movie " + movieId + " loaded: " + reviews.size() + " reviews, " + videos.size() + " videos");
+
+		return result;
+	}
+
+	/**
+	 * Returns the time the reviews and videos of the movie were downloaded, 0 if they have
+	 * never been downloaded, or -1 if the movie is not in the database.
+	 */
+	private long queryExtendedDataModified(ContentResolver resolver) {
+		Cursor cursor = resolver.query(
+			MovieContract.buildMovieItemUri(movieId),
+			new String[] { MovieContract.Column.EXTENDED_DATA_MODIFIED },
+			null, null, null);
+
+		if (cursor == null)
+			return -1;
+
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	private List<Review> queryReviews(ContentResolver resolver) {
+		Cursor cursor = resolver.query(
+			ReviewContract.buildReviewDirectoryUri(movieId, reviewLimit),
+			REVIEW_PROJECTION,
+			null, null, null);
+
+		List<Review> reviews = new ArrayList<>();
+		if (cursor == null)
+			return reviews;
+
+		StringPool pool = StringPool.getShared();
+		try {
+			while (cursor.moveToNext())
+				reviews.add(new Review(cursor.getString(0), pool.intern(cursor.getString(1)), cursor.getString(2)));
+		}
+		finally {
+			cursor.close();
+		}
+		return reviews;
+	}
+
+	private List<Video> queryVideos(ContentResolver resolver) {
+		Cursor cursor = resolver.query(
+			VideoContract.buildVideoDirectoryUri(movieId),
+			VIDEO_PROJECTION,
+			VideoContract.Column.SITE + " = ?",
+			new String[] { Video.SITE_YOUTUBE },
+			null);
+
+		List<Video> videos = new ArrayList<>();
+		if (cursor == null)
+			return videos;
+
+		StringPool pool = StringPool.getShared();
+		try {
+			while (cursor.moveToNext())
+				videos.add(new Video(cursor.getString(0), pool.intern(cursor.getString(1)), cursor.getString(2)));
+		}
+		finally {
+			cursor.close();
+		}
+		return videos;
+	}
+
+	@Override
+	public void deliverResult(MovieDetails data) {
+		if (isReset())
+			return;
+
+		details = data;
+		if (isStarted())
+			super.deliverResult(data);
+	}
+
+	@Override
+	protected void onStartLoading() {
+		if (!observing) {
+			// the reviews and videos are below the movie URI, so this also observes them
+			getContext().getContentResolver().registerContentObserver(
+				MovieContract.buildMovieItemUri(movieId), true, observer);
+			observing = true;
+		}
+
+		if (details != null)
+			deliverResult(details);
+
+		if (takeContentChanged() || details == null)
+			forceLoad();
+	}
+
+	@Override
+	protected void onStopLoading() {
+		cancelLoad();
+	}
+
+	@Override
+	protected void onReset() {
+		super.onReset();
+		onStopLoading();
+
+		if (observing) {
+			getContext().getContentResolver().unregisterContentObserver(observer);
+			observing = false;
+		}
+
+		details = null;
+	}
+}
@@ -1,6 +1,8 @@
 package no.skavdahl.udacity.popularmovies.data;
 
 import android.app.IntentService;
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
@@ -9,16 +11,23 @@ import android.net.Uri;
 import android.util.Log;
 import android.util.Pair;
 
-import java.util.List;
-
 import no.skavdahl.udacity.popularmovies.BuildConfig;
 import no.skavdahl.udacity.popularmovies.mdb.DiscoverMovies;
-import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
-import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.utils.EpochDay;
+import no.skavdahl.udacity.utils.RecentRequests;
+import no.skavdahl.udacity.utils.RequestPriority;
 
 import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
 
 /**
+ * Downloads pages of movie lists from themoviedb.org and updates the local database.
+ *
+ * <p>A page that was downloaded within the last {@link BuildConfig#DUPLICATE_REQUEST_WINDOW}
+ * milliseconds is not downloaded again, but reported as updated. The poster grid requests
+ * the next page every time it is scrolled to the end, so the same page is often requested
+ * several times before the first download has been stored.</p>
+ *
  * @author fdavs
  */
 public class MovieListUpdateService extends IntentService {
@@ -31,21 +40,32 @@ public class MovieListUpdateService extends IntentService {
 
 	private static final String EXTRA_LIST_NAME = "listName";
 	private static final String EXTRA_PAGE = "page";
+	private static final String EXTRA_PRIORITY = "priority";
+	private static final String EXTRA_SUCCESS = "success";
+
+	/** The list pages downloaded recently, as list name and page number. */
+	static final RecentRequests<Pair<String, Integer>> recentPages = new RecentRequests<>(BuildConfig.DUPLICATE_REQUEST_WINDOW);
 
 	private final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
 	private final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
 
 	public static Intent createExplicitIntent(Context packageContext, String listName, int page) {
+		return createExplicitIntent(packageContext, listName, page, RequestPriority.VISIBLE);
+	}
+
+	public static Intent createExplicitIntent(Context packageContext, String listName, int page, RequestPriority priority) {
 		Intent intent = new Intent(packageContext, MovieListUpdateService.class);
 		intent.putExtra(EXTRA_LIST_NAME, listName);
 		intent.putExtra(EXTRA_PAGE, page);
+		intent.putExtra(EXTRA_PRIORITY, priority.name());
 		return intent;
 	}
 
-	public static Intent createBroadcastIntent(String listName, int page) {
+	public static Intent createBroadcastIntent(String listName, int page, boolean success) {
 		Intent intent = new Intent(ACTION_NOTIFY);
 		intent.putExtra(EXTRA_LIST_NAME, listName);
 		intent.putExtra(EXTRA_PAGE, page);
+		intent.putExtra(EXTRA_SUCCESS, success);
 		return intent;
 	}
 
@@ -57,6 +77,16 @@ public class MovieListUpdateService extends IntentService {
 		return intent.getIntExtra(EXTRA_PAGE, defaultValue);
 	}
 
+	/** Returns whether the list update reported by a broadcast intent succeeded. */
+	public static boolean unpackSuccess(Intent intent) {
+		return intent.getBooleanExtra(EXTRA_SUCCESS, true);
+	}
+
+	public static RequestPriority unpackPriority(Intent intent) {
+		String priority = intent.getStringExtra(EXTRA_PRIORITY);
+		return priority != null ? RequestPriority.valueOf(priority) : RequestPriority.VISIBLE;
+	}
+
 	public MovieListUpdateService() {
 		super(SERVICE_NAME);
 	}
@@ -66,14 +96,21 @@ public class MovieListUpdateService extends IntentService {
 		final String listName = unpackListName(intent);
 		if (listName == null) {
 			Log.e(LOG_TAG, "Starting intent missing required extra 'listName'");
-			notifyFinished(null, 0);
+			notifyFinished(null, 0, false);
 			return;
 		}
 
 		final int page = unpackPage(intent, -1);
 		if (page == -1) {
 			Log.e(LOG_TAG, "Starting intent missing required extra 'page'");
-			notifyFinished(listName, page);
+			notifyFinished(listName, page, false);
+			return;
+		}
+
+		final Pair<String, Integer> requestKey = Pair.create(listName, page);
+		if (recentPages.isRecent(requestKey)) {
+			if (debug) Log.d(LOG_TAG, "Movie list " + listName + " (page " + page + ") was just updated, skipping; " + recentPages);
+			notifyFinished(listName, page, true);
 			return;
 		}
 
@@ -83,7 +120,7 @@ public class MovieListUpdateService extends IntentService {
 		Pair<Integer, Integer> listIdAndType = queryListAttributes(listName);
 		if (listIdAndType == null) {
 			Log.e(LOG_TAG, "Unable to identify list " + listName);
-			notifyFinished(listName, page);
+			notifyFinished(listName, page, false);
 			return;
 		}
 
@@ -93,9 +130,12 @@ public class MovieListUpdateService extends IntentService {
 		if (verbose) Log.v(LOG_TAG, "List name=" + listName + ", id=" + listId + ", listType=" + listType);
 
 		// use the list type to decide how to update the list
+		boolean success = true;
 		switch (listType) {
 			case PopularMoviesContract.ListContract.LISTTYPE_STANDARD:
-				updateStandardList(listName, listId, page);
+				success = updateStandardList(listName, listId, page, unpackPriority(intent));
+				if (success)
+					recentPages.complete(requestKey);
 				break;
 
 			default:
@@ -103,7 +143,7 @@ public class MovieListUpdateService extends IntentService {
 				// TODO implement support for public lists on themoviedb.org
 		}
 
-		notifyFinished(listName, page);
+		notifyFinished(listName, page, success);
 	}
 
 	/**
@@ -148,60 +188,91 @@ public class MovieListUpdateService extends IntentService {
 	 * Downloads updated information for the specified standard movie list and inserts or
 	 * updates the local database appropriately.
 	 *
+	 * <p>The movies are parsed into a {@link MovieBatch} while the response is downloaded,
+	 * and bound directly to the database statements by {@link MovieProvider#ingestListPage}.
+	 * If the provider does not run in this process, the movies are inserted through the
+	 * content resolver instead.</p>
+	 *
 	 * @param listName The name of hte list to update
 	 * @param listId The id of the list
 	 * @param page The page of the list we're updating
+	 * @param priority The priority of the web service request
+	 *
+	 * @return <code>true</code> if the list was updated, <code>false</code> if the web
+	 *         service request failed
 	 */
-	protected void updateStandardList(String listName, int listId, int page) {
+	protected boolean updateStandardList(String listName, int listId, int page, RequestPriority priority) {
 		try {
 			// download updated movie data from the web service
 			if (verbose) Log.v(LOG_TAG, "Starting download of movie list: " + listName + ", page " + page);
 
-			DiscoverMovies webQuery = new DiscoverMovies();
-			String jsonResponse = webQuery.discoverStandardMovies(BuildConfig.THEMOVIEDB_API_KEY, listName, page);
-
-			if (verbose) Log.v(LOG_TAG, "Received web query response:" + jsonResponse.substring(0, Math.min(40, jsonResponse.length())) + "...");
-
-			// convert the data to ContentValues for insertion into database
-			List<Movie> movieList = MdbJSONAdapter.getMoviesList(jsonResponse);
-
-			final long now = System.currentTimeMillis();
-
-			ContentValues[] values = new ContentValues[movieList.size()];
-			int position = 0;
-			for (Movie movie : movieList) {
-				ContentValues cv = new ContentValues();
-				cv.put(ListMembershipContract.Column.MOVIE_ID, movie.getMovieDbId());
-				cv.put(MovieContract.Column.MODIFIED, now);
-				cv.put(MovieContract.Column.TITLE, movie.getTitle());
-				cv.put(MovieContract.Column.POSTER_PATH, movie.getPosterPath());
-				cv.put(MovieContract.Column.BACKDROP_PATH, movie.getBackdropPath());
-				cv.put(MovieContract.Column.SYNOPSIS, movie.getSynopsis());
-				cv.put(MovieContract.Column.POPULARITY, movie.getPopularity());
-				cv.put(MovieContract.Column.VOTE_AVERAGE, movie.getVoteAverage());
-				cv.put(MovieContract.Column.VOTE_COUNT, movie.getVoteCount());
-				cv.put(MovieContract.Column.RELEASE_DATE, movie.getReleaseDate() != null ? movie.getReleaseDate().getTime() : 0);
-				cv.put(ListMembershipContract.Column.LIST_ID, listId);
-				cv.put(ListMembershipContract.Column.PAGE, page);
-				cv.put(ListMembershipContract.Column.POSITION, position);
-
-				values[position++] = cv;
-			}
+			// the response is downloaded and parsed in full before the database transaction
+			// starts, so a slow network never holds the database lock
+			DiscoverMovies webQuery = new DiscoverMovies(this);
+			webQuery.setPriority(priority);
+			MovieBatch movies = webQuery.getStandardMovieList(BuildConfig.THEMOVIEDB_API_KEY, listName, page);
+
+			if (verbose) Log.v(LOG_TAG, "Received web query response: " + movies.size() + " movies");
 
 			// perform insertion into the local database
 			Uri listMemberUri = ListContract.buildListMemberDirectoryUri(listName);
-			getContentResolver().bulkInsert(listMemberUri, values);
+
+			ContentProviderClient client = getContentResolver().acquireContentProviderClient(listMemberUri);
+			try {
+				ContentProvider provider = client != null ? client.getLocalContentProvider() : null;
+				if (provider instanceof MovieProvider)
+					((MovieProvider) provider).ingestListPage(listMemberUri, listId, page, movies);
+				else
+					bulkInsertMovies(listMemberUri, listId, page, movies);
+			}
+			finally {
+				if (client != null)
+					client.release();
+			}
 
 			if (debug) Log.d(LOG_TAG, "Movie list " + listName + " (page " + page + ") updated");
+			return true;
 		}
 		catch (Exception e) {
+			// the web service client has already retried transient failures
 			Log.e(LOG_TAG, "Web query failed for list name=" + listName, e);
+			return false;
 		}
 	}
 
-	/** Signals that the list update operation has completed. */
-	private void notifyFinished(String listName, int page) {
-		Intent intent = createBroadcastIntent(listName, page);
+	/** Inserts the movies of one list page through the content resolver. */
+	private void bulkInsertMovies(Uri listMemberUri, int listId, int page, MovieBatch movies) {
+		// convert the data to ContentValues for insertion into database
+
+		final long now = System.currentTimeMillis();
+
+		ContentValues[] values = new ContentValues[movies.size()];
+		for (int position = 0; position < movies.size(); ++position) {
+			ContentValues cv = new ContentValues();
+			cv.put(ListMembershipContract.Column.MOVIE_ID, movies.getId(position));
+			cv.put(MovieContract.Column.MODIFIED, now);
+			cv.put(MovieContract.Column.TITLE, movies.getTitle(position));
+			cv.put(MovieContract.Column.POSTER_PATH, movies.getPosterPath(position));
+			cv.put(MovieContract.Column.BACKDROP_PATH, movies.getBackdropPath(position));
+			cv.put(MovieContract.Column.SYNOPSIS, movies.getSynopsis(position));
+			cv.put(MovieContract.Column.POPULARITY, movies.getPopularity(position));
+			cv.put(MovieContract.Column.VOTE_AVERAGE, movies.getVoteAverage(position));
+			cv.put(MovieContract.Column.VOTE_COUNT, movies.getVoteCount(position));
+			if (movies.getReleaseDate(position) != EpochDay.NONE)
+				cv.put(MovieContract.Column.RELEASE_DATE, movies.getReleaseDate(position));
+			cv.put(ListMembershipContract.Column.LIST_ID, listId);
+			cv.put(ListMembershipContract.Column.PAGE, page);
+			cv.put(ListMembershipContract.Column.POSITION, position);
+
+			values[position] = cv;
+		}
+
+		getContentResolver().bulkInsert(listMemberUri, values);
+	}
+
+	/** Signals that the list update operation has completed or failed. */
+	private void notifyFinished(String listName, int page, boolean success) {
+		Intent intent = createBroadcastIntent(listName, page, success);
 		sendBroadcast(intent);
 	}
 }
@@ -2,7 +2,10 @@ package no.skavdahl.udacity.popularmovies.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -15,8 +18,16 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import no.skavdahl.udacity.popularmovies.BuildConfig;
+import no.skavdahl.udacity.popularmovies.mdb.MovieFingerprint;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
 import no.skavdahl.udacity.utils.Arrays;
+import no.skavdahl.udacity.utils.EpochDay;
 
 import static no.skavdahl.udacity.utils.Arrays.*;
 import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
@@ -39,6 +50,8 @@ public class MovieProvider extends ContentProvider {
 	static final int LIST_MEMBER_ITEM = 4;
 	static final int MOVIE_DIRECTORY = 5;
 	static final int MOVIE_ITEM = 6;
+	static final int MOVIE_REVIEW_DIRECTORY = 7;
+	static final int MOVIE_VIDEO_DIRECTORY = 8;
 
 	static final int LIST_INDEX_LIST_NAME = 1;
 	static final int LIST_INDEX_MOVIE_ID = 3;
@@ -48,6 +61,18 @@ public class MovieProvider extends ContentProvider {
 
 	private SQLiteOpenHelper dbHelper;
 
+	/**
+	 * The URIs changed by the batch that the current thread is applying, if any. Their
+	 * observers are notified when the batch has been committed.
+	 */
+	private final ThreadLocal<Set<Uri>> batchChanges = new ThreadLocal<>();
+
+	/**
+	 * The movies whose reviews or videos were changed by the batch that the current thread
+	 * is applying. Their cached details are dropped when the batch has been committed.
+	 */
+	private final ThreadLocal<Set<Integer>> batchStaleDetails = new ThreadLocal<>();
+
 	static UriMatcher buildUriMatcher() {
 		UriMatcher m = new UriMatcher(UriMatcher.NO_MATCH);
 
@@ -69,6 +94,12 @@ public class MovieProvider extends ContentProvider {
 		m.addURI(CONTENT_AUTHORITY, MovieContract.CONTENT_URI_PATH, MOVIE_DIRECTORY);
 		m.addURI(CONTENT_AUTHORITY, MovieContract.CONTENT_URI_PATH + "/#", MOVIE_ITEM);
 
+		// AUTHORITY/movie/id#/review           -- query the reviews of a movie
+		// AUTHORITY/movie/id#/video            -- query the videos of a movie
+
+		m.addURI(CONTENT_AUTHORITY, MovieContract.CONTENT_URI_PATH + "/#/" + ReviewContract.CONTENT_URI_PATH, MOVIE_REVIEW_DIRECTORY);
+		m.addURI(CONTENT_AUTHORITY, MovieContract.CONTENT_URI_PATH + "/#/" + VideoContract.CONTENT_URI_PATH, MOVIE_VIDEO_DIRECTORY);
+
 		return m;
 	}
 
@@ -104,6 +135,10 @@ public class MovieProvider extends ContentProvider {
 				return MovieContract.CONTENT_DIR_TYPE;
 			case MOVIE_ITEM:
 				return MovieContract.CONTENT_ITEM_TYPE;
+			case MOVIE_REVIEW_DIRECTORY:
+				return ReviewContract.CONTENT_DIR_TYPE;
+			case MOVIE_VIDEO_DIRECTORY:
+				return VideoContract.CONTENT_DIR_TYPE;
 			default:
 				Log.w(LOG_TAG, "Unsupported operation: getType " + uri.getPath());
 				return null;
@@ -127,6 +162,14 @@ public class MovieProvider extends ContentProvider {
 				cursor = queryMovieItem(uri, projection);
 				break;
 
+			case MOVIE_REVIEW_DIRECTORY:
+				cursor = queryMovieExtendedData(uri, ReviewContract.TABLE_NAME, projection, selection, selectionArgs, sortOrder);
+				break;
+
+			case MOVIE_VIDEO_DIRECTORY:
+				cursor = queryMovieExtendedData(uri, VideoContract.TABLE_NAME, projection, selection, selectionArgs, sortOrder);
+				break;
+
 			default:
 				Log.w(LOG_TAG, "Unsupported operation: query " + uri.getPath());
 				return null;
@@ -152,14 +195,21 @@ public class MovieProvider extends ContentProvider {
 				newUri = addMemberToList(uri);
 				break;
 
+			case MOVIE_REVIEW_DIRECTORY:
+				newUri = insertMovieExtendedData(uri, ReviewContract.TABLE_NAME, values);
+				break;
+
+			case MOVIE_VIDEO_DIRECTORY:
+				newUri = insertMovieExtendedData(uri, VideoContract.TABLE_NAME, values);
+				break;
+
 			default:
 				Log.w(LOG_TAG, "Unsupported operation: insert " + uri.getPath());
 				return null;
 		}
 
-		// disable warning "getContext() may return null": it is non-null after onCreate()
-		//noinspection ConstantConditions
-		getContext().getContentResolver().notifyChange(uri, null);
+		if (newUri != null)
+			notifyChange(uri);
 
 		return newUri;
 	}
@@ -173,15 +223,20 @@ public class MovieProvider extends ContentProvider {
 				insertCount = bulkInsertListMembers(uri, values);
 				break;
 
+			case MOVIE_REVIEW_DIRECTORY:
+				// notifies the change itself, since removing all rows is also a change
+				return replaceMovieExtendedData(uri, ReviewContract.TABLE_NAME, values);
+
+			case MOVIE_VIDEO_DIRECTORY:
+				return replaceMovieExtendedData(uri, VideoContract.TABLE_NAME, values);
+
 			default:
 				Log.w(LOG_TAG, "Unsupported operation: bulkInsert " + uri.getPath());
 				return 0;
 		}
 
 		if (insertCount > 0) {
-			// disable warning "getContext() may return null": it is non-null after onCreate()
-			//noinspection ConstantConditions
-			getContext().getContentResolver().notifyChange(uri, null);
+			notifyChange(uri);
 		}
 
 		return insertCount;
@@ -196,6 +251,14 @@ public class MovieProvider extends ContentProvider {
 				deleteCount = removeMemberFromList(uri);
 				break;
 
+			case MOVIE_REVIEW_DIRECTORY:
+				deleteCount = deleteMovieExtendedData(uri, ReviewContract.TABLE_NAME);
+				break;
+
+			case MOVIE_VIDEO_DIRECTORY:
+				deleteCount = deleteMovieExtendedData(uri, VideoContract.TABLE_NAME);
+				break;
+
 			case MOVIE_DIRECTORY:
 				if (uri.getBooleanQueryParameter("orphan", false)) {
 					deleteCount = deleteOrphanedMovies(uri);
@@ -209,9 +272,7 @@ public class MovieProvider extends ContentProvider {
 		}
 
 		if (deleteCount > 0) {
-			// disable warning "getContext() may return null": it is non-null after onCreate()
-			//noinspection ConstantConditions
-			getContext().getContentResolver().notifyChange(uri, null);
+			notifyChange(uri);
 		}
 
 		return deleteCount;
@@ -233,14 +294,101 @@ public class MovieProvider extends ContentProvider {
 		}
 
 		if (rowCount > 0) {
-			// disable warning "getContext() may return null": it is non-null after onCreate()
-			//noinspection ConstantConditions
-			getContext().getContentResolver().notifyChange(uri, null);
+			notifyChange(uri);
 		}
 
 		return rowCount;
 	}
 
+	/**
+	 * Applies the operations in a single transaction, so a multi-step change costs one
+	 * commit and is either applied completely or not at all. Observers of the changed
+	 * URIs are notified once each, when the transaction has been committed.
+	 *
+	 * <p>Queries in the batch, such as assert operations, see the changes made by the
+	 * operations before them.</p>
+	 */
+	@NonNull
+	@Override
+	public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+		throws OperationApplicationException {
+
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		Set<Uri> changes = new LinkedHashSet<>();
+		Set<Integer> staleDetails = new HashSet<>();
+		ContentProviderResult[] results;
+
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		batchChanges.set(changes);
+		batchStaleDetails.set(staleDetails);
+		try {
+			db.beginTransaction();
+			try {
+				results = super.applyBatch(operations);
+				db.setTransactionSuccessful();
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+		finally {
+			batchChanges.remove();
+			batchStaleDetails.remove();
+		}
+
+		if (debug) Log.d(LOG_TAG, "BATCH " + operations.size() + " operations -> " + changes.size() + " URIs changed");
+
+		// before the observers reload the details
+		for (int movieId : staleDetails)
+			invalidateDetails(movieId);
+
+		for (Uri uri : changes)
+			notifyChange(uri);
+
+		return results;
+	}
+
+	/**
+	 * Notifies the observers of a changed URI, or defers the notification to the end of
+	 * the batch if the change is part of one.
+	 */
+	private void notifyChange(Uri uri) {
+		Set<Uri> changes = batchChanges.get();
+		if (changes != null) {
+			changes.add(uri);
+			return;
+		}
+
+		// disable warning "getContext() may return null": it is non-null after onCreate()
+		//noinspection ConstantConditions
+		getContext().getContentResolver().notifyChange(uri, null);
+	}
+
+	/**
+	 * Drops the cached details of a movie whose reviews or videos have changed, or defers
+	 * it to the end of the batch if the change is part of one. A load that reads the
+	 * details before the batch is committed could otherwise cache the old rows again.
+	 */
+	private void invalidateDetails(int movieId) {
+		Set<Integer> staleDetails = batchStaleDetails.get();
+		if (staleDetails != null) {
+			staleDetails.add(movieId);
+			return;
+		}
+
+		MovieDetailsCache.invalidate(movieId);
+	}
+
+	/**
+	 * Returns the database for queries. The queries of a batch run on the writer
+	 * connection, since the reader connections do not see the changes of the batch until
+	 * it is committed.
+	 */
+	private SQLiteDatabase getReadableDatabase() {
+		return batchChanges.get() != null ? dbHelper.getWritableDatabase() : dbHelper.getReadableDatabase();
+	}
+
 	// For unit testing support. See:
 	// http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
 	@Override
@@ -263,7 +411,7 @@ public class MovieProvider extends ContentProvider {
 
 		String listName =  uri.getPathSegments().get(LIST_INDEX_LIST_NAME);
 
-		Cursor cursor = dbHelper.getReadableDatabase().query(
+		Cursor cursor = getReadableDatabase().query(
 			PopularMoviesContract.ListContract.TABLE_NAME,
 			projection,
 			PopularMoviesContract.ListContract.Column.NAME + " = ?",
@@ -287,21 +435,10 @@ public class MovieProvider extends ContentProvider {
 
 		String listName =  uri.getPathSegments().get(LIST_INDEX_LIST_NAME);
 
-		// SELECT <projection>
-		// FROM movie M, list L, listmember
-		// WHERE L.name = ? AND L._id = listid AND movieid = M._id AND <selection>
-		// ORDER BY <sortorder>
-		String sql =
-			"SELECT M." + TextUtils.join(", M.", projection) + " " +
-			"FROM " + MovieContract.TABLE_NAME + " M, " + ListContract.TABLE_NAME + " L, " + ListMembershipContract.TABLE_NAME + " " +
-			"WHERE L." + ListContract.Column.NAME + " = ? " +
-				"AND L." + ListContract.Column._ID + " = " + ListMembershipContract.Column.LIST_ID + " " +
-				"AND " + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID +
-				(TextUtils.isEmpty(selection) ? "" : " AND " + selection) + " " + // NOTE asserting that selection only includes (at most) pos and page columns
-			"ORDER BY " + (TextUtils.isEmpty(sortOrder) ? ListMembershipContract.Column.POSITION : sortOrder);
+		String sql = buildListMemberQuery(projection, selection, sortOrder);
 
 		String[] effectiveSelArgs = Arrays.prepend(listName, selectionArgs);
-		Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, effectiveSelArgs);
+		Cursor cursor = getReadableDatabase().rawQuery(sql, effectiveSelArgs);
 
 		if (debug) Log.d(LOG_TAG, "QUERY " + uri.getPath() + " -> " + cursor.getCount() + " rows returned");
 
@@ -311,83 +448,93 @@ public class MovieProvider extends ContentProvider {
 		return cursor;
 	}
 
+	/**
+	 * Returns the query of the movies of a list. The first argument of the query is the
+	 * name of the list, followed by the arguments of the selection.
+	 *
+	 * <pre>
+	 * SELECT &lt;projection&gt;
+	 * FROM movie M, list L, listmember
+	 * WHERE L.name = ? AND L._id = listid AND movieid = M._id AND &lt;selection&gt;
+	 * ORDER BY &lt;sortorder&gt;
+	 * </pre>
+	 */
+	static String buildListMemberQuery(String[] projection, String selection, String sortOrder) {
+		return
+			"SELECT M." + TextUtils.join(", M.", projection) + " " +
+			"FROM " + MovieContract.TABLE_NAME + " M, " + ListContract.TABLE_NAME + " L, " + ListMembershipContract.TABLE_NAME + " " +
+			"WHERE L." + ListContract.Column.NAME + " = ? " +
+				"AND L." + ListContract.Column._ID + " = " + ListMembershipContract.Column.LIST_ID + " " +
+				"AND " + ListMembershipContract.Column.MOVIE_ID + " = M." + MovieContract.Column._ID +
+				(TextUtils.isEmpty(selection) ? "" : " AND " + selection) + " " + // NOTE asserting that selection only includes (at most) pos and page columns
+			"ORDER BY " + (TextUtils.isEmpty(sortOrder) ? ListMembershipContract.Column.POSITION : sortOrder);
+	}
+
 	protected int bulkInsertListMembers(Uri uri, ContentValues[] values) {
 		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
 		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
 
 		if (verbose) Log.v(LOG_TAG, "Start bulk insert: " + uri.getPath() + " with " + values.length + " values");
 
-		// it is possible to use db.insertWithOnConflict(movie) and db.insert(member) here
-		// but it is more clear, more efficient and no more verbose (I tried) to just
-		// use SQL directly
+		// convert the values to a batch first, so they are written the same way as an
+		// ingested list page; the list positions are kept alongside the batch
+		MovieBatch.Builder batch = new MovieBatch.Builder(values.length);
+		int[] listIds = new int[values.length];
+		int[] pages = new int[values.length];
+		int[] positions = new int[values.length];
+		long[] modified = new long[values.length];
+
+		for (ContentValues cv : values) {
+			try {
+				String title = cv.getAsString(MovieContract.Column.TITLE);
+				String posterPath = cv.getAsString(MovieContract.Column.POSTER_PATH);
+				String backdropPath = cv.getAsString(MovieContract.Column.BACKDROP_PATH);
+				String synopsis = cv.getAsString(MovieContract.Column.SYNOPSIS);
+				double popularity = cv.getAsDouble(MovieContract.Column.POPULARITY);
+				double voteAvg = cv.getAsDouble(MovieContract.Column.VOTE_AVERAGE);
+				int voteCount = cv.getAsInteger(MovieContract.Column.VOTE_COUNT);
+				Integer optReleaseDate = cv.getAsInteger(MovieContract.Column.RELEASE_DATE);
+				int releaseDate = optReleaseDate != null ? optReleaseDate : EpochDay.NONE;
+
+				int index = batch.size();
+				listIds[index] = cv.getAsInteger(ListMembershipContract.Column.LIST_ID);
+				pages[index] = cv.getAsInteger(ListMembershipContract.Column.PAGE);
+				positions[index] = cv.getAsInteger(ListMembershipContract.Column.POSITION);
+				modified[index] = cv.getAsLong(MovieContract.Column.MODIFIED);
+
+				batch.add(
+					cv.getAsInteger(ListMembershipContract.Column.MOVIE_ID),
+					title,
+					posterPath,
+					backdropPath,
+					synopsis,
+					popularity,
+					voteAvg,
+					voteCount,
+					releaseDate,
+					MovieFingerprint.of(title, posterPath, backdropPath, synopsis, popularity, voteAvg, voteCount, releaseDate));
+			}
+			catch (Exception e) {
+				Log.w(LOG_TAG, "Error during movie insert: " + cv, e);
+			}
+		}
+
+		MovieBatch movies = batch.build();
 
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		SQLiteStatement movieStmt  = db.compileStatement(INSERT_OR_REPLACE_INTO_MOVIE);
-		SQLiteStatement listStmt  = db.compileStatement(INSERT_OR_REPLACE_INTO_LISTMEMBER_SQL);
+		ListMemberWriter writer = new ListMemberWriter(db);
 
 		int rowsInserted = 0;
 		try {
 			db.beginTransaction();
 			try {
-				for (ContentValues cv : values) {
+				for (int i = 0; i < movies.size(); ++i) {
 					try {
-						long movieId = cv.getAsInteger(ListMembershipContract.Column.MOVIE_ID);
-						long modified = cv.getAsLong(MovieContract.Column.MODIFIED);
-						String title = cv.getAsString(MovieContract.Column.TITLE);
-						String posterPath = cv.getAsString(MovieContract.Column.POSTER_PATH);
-						String backdropPath = cv.getAsString(MovieContract.Column.BACKDROP_PATH);
-						String synopsis = cv.getAsString(MovieContract.Column.SYNOPSIS);
-						double popularity = cv.getAsDouble(MovieContract.Column.POPULARITY);
-						double voteAvg = cv.getAsDouble(MovieContract.Column.VOTE_AVERAGE);
-						long voteCount = cv.getAsLong(MovieContract.Column.VOTE_COUNT);
-						long releaseDate = cv.getAsLong(MovieContract.Column.RELEASE_DATE);
-						int listId = cv.getAsInteger(ListMembershipContract.Column.LIST_ID);
-						int page = cv.getAsInteger(ListMembershipContract.Column.PAGE);
-						int position = cv.getAsInteger(ListMembershipContract.Column.POSITION);
-
-						movieStmt.bindLong(1, movieId);
-						movieStmt.bindLong(2, modified);
-						movieStmt.bindString(3, title);
-
-						if (posterPath != null)
-							movieStmt.bindString(4, posterPath);
-						else
-							movieStmt.bindNull(4);
-
-						if (backdropPath != null)
-							movieStmt.bindString(5, backdropPath);
-						else
-							movieStmt.bindNull(5);
-
-						if (synopsis != null)
-							movieStmt.bindString(6, synopsis);
-						else
-							movieStmt.bindNull(6);
-
-						movieStmt.bindDouble(7, popularity);
-						movieStmt.bindDouble(8, voteAvg);
-						movieStmt.bindLong(9, voteCount);
-
-						if (releaseDate > 0)
-							movieStmt.bindLong(10, releaseDate);
-						else
-							movieStmt.bindNull(10);
-
-						movieStmt.executeInsert();
-
-						listStmt.bindLong(1, getListMemberId(listId, page, position));
-						listStmt.bindLong(2, listId);
-						listStmt.bindLong(3, movieId);
-						listStmt.bindLong(4, page);
-						listStmt.bindLong(5, position);
-						listStmt.bindLong(6, modified);
-
-						listStmt.executeInsert();
-
+						writer.write(movies, i, listIds[i], pages[i], positions[i], modified[i]);
 						rowsInserted++;
 					}
-					catch (Exception e) {
-						Log.w(LOG_TAG, "Error during movie insert: " + cv, e);
+					catch (SQLException e) {
+						Log.w(LOG_TAG, "Error during movie insert: id=" + movies.getId(i), e);
 					}
 				}
 				db.setTransactionSuccessful();
@@ -397,21 +544,222 @@ public class MovieProvider extends ContentProvider {
 			}
 		}
 		finally {
-			movieStmt.close();
-			listStmt.close();
+			writer.close();
 		}
 
-		if (debug) Log.d(LOG_TAG, "INSERT " + uri.getPath() + " -> " + rowsInserted + " rows inserted");
+		if (debug) Log.d(LOG_TAG, "INSERT " + uri.getPath() + " -> " + writer.rowsWritten + " rows written, " + writer.rowsUnchanged + " rows unchanged");
 
-		if (rowsInserted > 0) {
-			// disable warning "getContext() may return null": it is non-null after onCreate()
-			//noinspection ConstantConditions
-			getContext().getContentResolver().notifyChange(uri, null);
+		if (writer.hasChanges()) {
+			notifyChange(uri);
 		}
 
 		return rowsInserted;
 	}
 
+	/**
+	 * Inserts or updates the movies of one page of a movie list. The movies are bound
+	 * directly from the batch to compiled statements, so no ContentValues are created on
+	 * the way. All rows are written in one transaction.
+	 *
+	 * <p>Movies whose {@link MovieFingerprint fingerprint} is unchanged since they were
+	 * last written from a list are not written again; only their modification time is
+	 * updated. If no movie and no list position changed, observers are not notified.</p>
+	 *
+	 * <p>This method is not part of the ContentProvider interface. It can only be used by
+	 * components running in the same process as the provider, see
+	 * {@link android.content.ContentProviderClient#getLocalContentProvider()}.</p>
+	 *
+	 * @param uri The list member directory URI of the list, which is notified of the change
+	 * @param listId The id of the list
+	 * @param page The page number of the movies
+	 * @param movies The movies on the page, in list order
+	 *
+	 * @return the number of movies stored, whether written or unchanged
+	 */
+	public int ingestListPage(@NonNull Uri uri, int listId, int page, @NonNull MovieBatch movies) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		if (verbose) Log.v(LOG_TAG, "Start ingest: " + uri.getPath() + ", page " + page + " with " + movies.size() + " movies");
+
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		ListMemberWriter writer = new ListMemberWriter(db);
+		long modified = System.currentTimeMillis();
+
+		try {
+			db.beginTransaction();
+			try {
+				for (int i = 0; i < movies.size(); ++i) {
+					try {
+						writer.write(movies, i, listId, page, i, modified);
+					}
+					catch (SQLException e) {
+						// the position follows the list even if a movie could not be inserted
+						Log.w(LOG_TAG, "Error during movie insert: id=" + movies.getId(i), e);
+					}
+				}
+				db.setTransactionSuccessful();
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+		finally {
+			writer.close();
+		}
+
+		if (debug) Log.d(LOG_TAG, "INGEST " + uri.getPath() + ", page " + page + " -> " + writer.rowsWritten + " rows written, " + writer.rowsUnchanged + " rows unchanged");
+
+		if (writer.hasChanges()) {
+			notifyChange(uri);
+		}
+
+		return writer.rowsWritten + writer.rowsUnchanged;
+	}
+
+	/**
+	 * Writes movies and their list positions with compiled statements. A movie row is
+	 * only rewritten if its fingerprint has changed, and a list member row only if the
+	 * position holds another movie. Otherwise only the timestamps are updated, which
+	 * is a much smaller write than rewriting the row.
+	 *
+	 * <p>Existing rows are updated in place rather than replaced, so the columns that a
+	 * list response does not have, such as the extended data flag, are kept, and the
+	 * update triggers see the change. A row is only inserted if the update finds none.</p>
+	 */
+	private class ListMemberWriter {
+
+		private final SQLiteStatement insertMovieStmt;
+		private final SQLiteStatement updateMovieStmt;
+		private final SQLiteStatement insertListStmt;
+		private final SQLiteStatement moveListStmt;
+		private final SQLiteStatement touchMovieStmt;
+		private final SQLiteStatement touchListStmt;
+
+		/** The number of movie rows inserted or updated. */
+		int rowsWritten;
+
+		/** The number of movie rows left as they were, except for the modification time. */
+		int rowsUnchanged;
+
+		/** The number of list member rows inserted or updated with another movie. */
+		int membersWritten;
+
+		ListMemberWriter(SQLiteDatabase db) {
+			insertMovieStmt = db.compileStatement(INSERT_INTO_MOVIE);
+			updateMovieStmt = db.compileStatement(UPDATE_MOVIE_LIST_COLUMNS);
+			insertListStmt = db.compileStatement(INSERT_INTO_LISTMEMBER);
+			moveListStmt = db.compileStatement(UPDATE_LISTMEMBER_MOVIE);
+			touchMovieStmt = db.compileStatement(UPDATE_UNCHANGED_MOVIE);
+			touchListStmt = db.compileStatement(UPDATE_UNCHANGED_LISTMEMBER);
+		}
+
+		/** Returns whether any movie or list position has changed. */
+		boolean hasChanges() {
+			return rowsWritten > 0 || membersWritten > 0;
+		}
+
+		/** Writes the movie at an index in the batch, and its position in a list. */
+		void write(MovieBatch movies, int index, int listId, int page, int position, long modified) {
+			final int movieId = movies.getId(index);
+			final long fingerprint = movies.getFingerprint(index);
+
+			touchMovieStmt.bindLong(1, modified);
+			touchMovieStmt.bindLong(2, movieId);
+			touchMovieStmt.bindLong(3, fingerprint);
+
+			if (touchMovieStmt.executeUpdateDelete() > 0) {
+				rowsUnchanged++;
+			}
+			else {
+				bindMovie(updateMovieStmt, movies, index, modified);
+				if (updateMovieStmt.executeUpdateDelete() == 0) {
+					bindMovie(insertMovieStmt, movies, index, modified);
+					insertMovieStmt.executeInsert();
+				}
+				rowsWritten++;
+			}
+
+			long listMemberId = getListMemberId(listId, page, position);
+
+			touchListStmt.bindLong(1, modified);
+			touchListStmt.bindLong(2, listMemberId);
+			touchListStmt.bindLong(3, movieId);
+
+			if (touchListStmt.executeUpdateDelete() == 0) {
+				moveListStmt.bindLong(1, movieId);
+				moveListStmt.bindLong(2, modified);
+				moveListStmt.bindLong(3, listMemberId);
+
+				if (moveListStmt.executeUpdateDelete() == 0) {
+					insertListStmt.bindLong(1, listMemberId);
+					insertListStmt.bindLong(2, listId);
+					insertListStmt.bindLong(3, movieId);
+					insertListStmt.bindLong(4, page);
+					insertListStmt.bindLong(5, position);
+					insertListStmt.bindLong(6, modified);
+
+					insertListStmt.executeInsert();
+				}
+				membersWritten++;
+			}
+		}
+
+		/**
+		 * Binds the list columns of a movie to the parameters of {@link #INSERT_INTO_MOVIE}
+		 * or {@link #UPDATE_MOVIE_LIST_COLUMNS}, which are numbered the same way.
+		 */
+		private void bindMovie(SQLiteStatement stmt, MovieBatch movies, int index, long modified) {
+			String posterPath = movies.getPosterPath(index);
+			String backdropPath = movies.getBackdropPath(index);
+			String synopsis = movies.getSynopsis(index);
+			int releaseDate = movies.getReleaseDate(index);
+
+			stmt.bindLong(1, movies.getId(index));
+			stmt.bindLong(2, modified);
+			stmt.bindString(3, movies.getTitle(index));
+
+			if (posterPath != null)
+				stmt.bindString(4, posterPath);
+			else
+				stmt.bindNull(4);
+
+			if (backdropPath != null)
+				stmt.bindString(5, backdropPath);
+			else
+				stmt.bindNull(5);
+
+			if (synopsis != null)
+				stmt.bindString(6, synopsis);
+			else
+				stmt.bindNull(6);
+
+			stmt.bindDouble(7, movies.getPopularity(index));
+			stmt.bindDouble(8, movies.getVoteAverage(index));
+			stmt.bindLong(9, movies.getVoteCount(index));
+
+			if (releaseDate != EpochDay.NONE) {
+				stmt.bindLong(10, releaseDate);
+				stmt.bindLong(11, EpochDay.getYear(releaseDate));
+			}
+			else {
+				stmt.bindNull(10);
+				stmt.bindNull(11);
+			}
+
+			stmt.bindLong(12, movies.getFingerprint(index));
+		}
+
+		void close() {
+			insertMovieStmt.close();
+			updateMovieStmt.close();
+			insertListStmt.close();
+			moveListStmt.close();
+			touchMovieStmt.close();
+			touchListStmt.close();
+		}
+	}
+
 	// --- List member item operations ---
 
 	protected Uri addMemberToList(Uri uri) {
@@ -534,13 +882,13 @@ public class MovieProvider extends ContentProvider {
 
 	/**
 	 * <pre>
-	 * INSERT OR REPLACE INTO MOVIE (_id, modified, title, posterPath, backdropPath,
-	 *    synopsis, popularity, voteAvg, voteCount, releaseDate)
-	 * VALUE (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+	 * INSERT INTO movie (_id, modified, title, posterPath, backdropPath,
+	 *    synopsis, popularity, voteAvg, voteCount, releaseDate, releaseYear, fingerprint)
+	 * VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11, ?12)
 	 * </pre>
 	 */
-	private static final String INSERT_OR_REPLACE_INTO_MOVIE =
-		"INSERT OR REPLACE INTO " + MovieContract.TABLE_NAME + "(" +
+	private static final String INSERT_INTO_MOVIE =
+		"INSERT INTO " + MovieContract.TABLE_NAME + "(" +
 			TextUtils.join(",", new String[] {
 				MovieContract.Column._ID,
 				MovieContract.Column.MODIFIED,
@@ -552,8 +900,50 @@ public class MovieProvider extends ContentProvider {
 				MovieContract.Column.VOTE_AVERAGE,
 				MovieContract.Column.VOTE_COUNT,
 				MovieContract.Column.RELEASE_DATE,
+				MovieContract.Column.RELEASE_YEAR,
+				MovieContract.Column.FINGERPRINT,
 			}) + ") " +
-		"VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		"VALUES(?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11, ?12)";
+
+	/**
+	 * Updates the columns of a movie that a list response has, and leaves the rest. The
+	 * parameters are numbered as in {@link #INSERT_INTO_MOVIE}.
+	 *
+	 * <pre>
+	 * UPDATE movie
+	 * SET modified = ?2, title = ?3, posterPath = ?4, backdropPath = ?5, synopsis = ?6,
+	 *     popularity = ?7, voteAvg = ?8, voteCount = ?9, releaseDate = ?10,
+	 *     releaseYear = ?11, fingerprint = ?12
+	 * WHERE _id = ?1
+	 * </pre>
+	 */
+	private static final String UPDATE_MOVIE_LIST_COLUMNS =
+		"UPDATE " + MovieContract.TABLE_NAME + " " +
+		"SET " +
+			MovieContract.Column.MODIFIED + " = ?2, " +
+			MovieContract.Column.TITLE + " = ?3, " +
+			MovieContract.Column.POSTER_PATH + " = ?4, " +
+			MovieContract.Column.BACKDROP_PATH + " = ?5, " +
+			MovieContract.Column.SYNOPSIS + " = ?6, " +
+			MovieContract.Column.POPULARITY + " = ?7, " +
+			MovieContract.Column.VOTE_AVERAGE + " = ?8, " +
+			MovieContract.Column.VOTE_COUNT + " = ?9, " +
+			MovieContract.Column.RELEASE_DATE + " = ?10, " +
+			MovieContract.Column.RELEASE_YEAR + " = ?11, " +
+			MovieContract.Column.FINGERPRINT + " = ?12 " +
+		"WHERE " + MovieContract.Column._ID + " = ?1";
+
+	/**
+	 * <pre>
+	 * UPDATE movie SET modified = ?
+	 * WHERE _id = ? AND fingerprint = ?
+	 * </pre>
+	 */
+	private static final String UPDATE_UNCHANGED_MOVIE =
+		"UPDATE " + MovieContract.TABLE_NAME + " " +
+		"SET " + MovieContract.Column.MODIFIED + " = ? " +
+		"WHERE " + MovieContract.Column._ID + " = ? " +
+			"AND " + MovieContract.Column.FINGERPRINT + " = ?";
 
 	/**
 	 * <pre>
@@ -573,6 +963,49 @@ public class MovieProvider extends ContentProvider {
 			}) + ") " +
 		"VALUES(?, ?, ?, ?, ?, ?)";
 
+	/**
+	 * <pre>
+	 * INSERT INTO listmember (_id, listid, movieid, page, position, added)
+	 * VALUES (?, ?, ?, ?, ?, ?)
+	 * </pre>
+	 */
+	private static final String INSERT_INTO_LISTMEMBER =
+		"INSERT INTO " + ListMembershipContract.TABLE_NAME + "(" +
+			TextUtils.join(",", new String[] {
+				ListMembershipContract.Column._ID,
+				ListMembershipContract.Column.LIST_ID,
+				ListMembershipContract.Column.MOVIE_ID,
+				ListMembershipContract.Column.PAGE,
+				ListMembershipContract.Column.POSITION,
+				ListMembershipContract.Column.ADDED
+			}) + ") " +
+		"VALUES(?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * <pre>
+	 * UPDATE listmember SET movieid = ?, added = ?
+	 * WHERE _id = ?
+	 * </pre>
+	 */
+	private static final String UPDATE_LISTMEMBER_MOVIE =
+		"UPDATE " + ListMembershipContract.TABLE_NAME + " " +
+		"SET " +
+			ListMembershipContract.Column.MOVIE_ID + " = ?, " +
+			ListMembershipContract.Column.ADDED + " = ? " +
+		"WHERE " + ListMembershipContract.Column._ID + " = ?";
+
+	/**
+	 * <pre>
+	 * UPDATE listmember SET added = ?
+	 * WHERE _id = ? AND movieid = ?
+	 * </pre>
+	 */
+	private static final String UPDATE_UNCHANGED_LISTMEMBER =
+		"UPDATE " + ListMembershipContract.TABLE_NAME + " " +
+		"SET " + ListMembershipContract.Column.ADDED + " = ? " +
+		"WHERE " + ListMembershipContract.Column._ID + " = ? " +
+			"AND " + ListMembershipContract.Column.MOVIE_ID + " = ?";
+
 	/**
 	 * <pre>
 	 * SELECT L._id, COALESCE(page, 0), COALESCE(position, -1)
@@ -582,7 +1015,7 @@ public class MovieProvider extends ContentProvider {
 	 * LIMIT 1
 	 * </pre>
 	 */
-	private static final String SELECT_POSITION_FOR_NEW_LISTMEMBER =
+	static final String SELECT_POSITION_FOR_NEW_LISTMEMBER =
 		"SELECT " +
 			"L." + ListContract.Column._ID + ", " +
 			"COALESCE(" + ListMembershipContract.Column.PAGE + ",1), " +
@@ -605,7 +1038,7 @@ public class MovieProvider extends ContentProvider {
 	 *   AND movieid = ?
 	 * </pre>
 	 */
-	private static final String DELETE_FROM_LISTMEMBER =
+	static final String DELETE_FROM_LISTMEMBER =
 		"DELETE FROM " + ListMembershipContract.TABLE_NAME + " " +
 		"WHERE " +
 			ListMembershipContract.Column.LIST_ID + " = (" +
@@ -667,13 +1100,13 @@ public class MovieProvider extends ContentProvider {
 		if (movieId == 0)
 			return null;
 
-		// ensure that the projection includes the modified field
+		// ensure that the projection includes the extended data modified field
 		// we need it to verify the age of the data
-		if (!arrayContains(projection, MovieContract.Column.MODIFIED))
-			projection = append(projection, MovieContract.Column.MODIFIED);
+		if (!arrayContains(projection, MovieContract.Column.EXTENDED_DATA_MODIFIED))
+			projection = append(projection, MovieContract.Column.EXTENDED_DATA_MODIFIED);
 
 		// Query the local database first
-		Cursor cursor = dbHelper.getReadableDatabase().query(
+		Cursor cursor = getReadableDatabase().query(
 			MovieContract.TABLE_EX_NAME,
 			projection,
 			MovieContract.Column._ID + "=?",
@@ -687,6 +1120,10 @@ public class MovieProvider extends ContentProvider {
 		return cursor;
 	}
 
+	/**
+	 * Inserts a movie, or updates the given columns if the movie is already stored. The
+	 * other columns of a stored movie are left as they are.
+	 */
 	protected Uri insertMovieItem(final Uri uri, final ContentValues values) {
 		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
 		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
@@ -697,10 +1134,21 @@ public class MovieProvider extends ContentProvider {
 		if (movieId == 0)
 			return null;
 
-		values.put(PopularMoviesContract.MovieContract.Column._ID, movieId);
-
 		try {
-			long newMovieId = dbHelper.getWritableDatabase().insertOrThrow(
+			SQLiteDatabase db = dbHelper.getWritableDatabase();
+			int rowCount = db.update(
+				MovieContract.TABLE_NAME,
+				values,
+				MovieContract.Column._ID + "=?",
+				new String[] { Integer.toString(movieId) });
+
+			if (rowCount > 0) {
+				if (debug) Log.d(LOG_TAG, "INSERT " + uri.getPath() + " -> 1 row updated");
+				return uri;
+			}
+
+			values.put(PopularMoviesContract.MovieContract.Column._ID, movieId);
+			long newMovieId = db.insertOrThrow(
 				PopularMoviesContract.MovieContract.TABLE_NAME,
 				null,
 				values);
@@ -735,4 +1183,189 @@ public class MovieProvider extends ContentProvider {
 
 		return rowCount;
 	}
+
+	// --- Movie review and video directory operations ---
+
+	/**
+	 * Queries the reviews or videos of a movie. The rows are ordered by position unless
+	 * another sort order is given, and the number of rows can be limited with the
+	 * {@link PopularMoviesContract#QUERY_PARAMETER_LIMIT limit} query parameter.
+	 *
+	 * @param table The review table or the video table. Both have the columns movieid and
+	 *              position.
+	 */
+	protected Cursor queryMovieExtendedData(Uri uri, String table, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		if (verbose) Log.v(LOG_TAG, "Start query: " + uri.getPath() + "?" + uri.getQuery());
+
+		final int movieId = getPathSegmentAsInt(uri, MOVIE_INDEX_MOVIE_ID, 0);
+		if (movieId == 0)
+			return null;
+
+		// parse the limit rather than passing it on, to keep it from altering the SQL
+		String limit = null;
+		String limitParameter = uri.getQueryParameter(QUERY_PARAMETER_LIMIT);
+		if (limitParameter != null) {
+			try {
+				limit = Integer.toString(Integer.parseInt(limitParameter));
+			}
+			catch (NumberFormatException e) {
+				Log.w(LOG_TAG, "Ignoring invalid limit: " + uri);
+			}
+		}
+
+		Cursor cursor = getReadableDatabase().query(
+			table,
+			projection,
+			ReviewContract.Column.MOVIE_ID + " = ?" + (TextUtils.isEmpty(selection) ? "" : " AND (" + selection + ")"),
+			Arrays.prepend(Integer.toString(movieId), selectionArgs),
+			null,
+			null,
+			TextUtils.isEmpty(sortOrder) ? ReviewContract.Column.POSITION : sortOrder,
+			limit);
+
+		if (debug) Log.d(LOG_TAG, "QUERY " + uri.getPath() + " -> " + cursor.getCount() + " rows returned");
+
+		return cursor;
+	}
+
+	/**
+	 * Inserts one review or video of a movie. Unlike a bulk insert, the existing rows are
+	 * kept, so the position must be given in the values.
+	 *
+	 * @param table The review table or the video table
+	 * @param values The new row, without the movie id column
+	 *
+	 * @return the URI of the reviews or videos of the movie, or <code>null</code> if the
+	 * row could not be inserted
+	 */
+	protected Uri insertMovieExtendedData(Uri uri, String table, ContentValues values) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		if (verbose) Log.v(LOG_TAG, "Start insert: " + uri.getPath());
+
+		final int movieId = getPathSegmentAsInt(uri, MOVIE_INDEX_MOVIE_ID, 0);
+		if (movieId == 0)
+			return null;
+
+		values.put(ReviewContract.Column.MOVIE_ID, movieId);
+
+		try {
+			long newId = dbHelper.getWritableDatabase().insertOrThrow(table, null, values);
+
+			if (debug) Log.d(LOG_TAG, "INSERT " + uri.getPath() + " -> 1 row inserted, id = " + newId);
+		}
+		catch (SQLException e) {
+			Log.e(LOG_TAG, "INSERT " + uri.getPath() + " failed: values = " + values, e);
+			return null;
+		}
+
+		// the reviews and videos can change without a new download time of the extended
+		// data, so cached details must be dropped
+		invalidateDetails(movieId);
+
+		return uri;
+	}
+
+	/**
+	 * Deletes all reviews or videos of a movie.
+	 *
+	 * @param table The review table or the video table
+	 *
+	 * @return the number of rows deleted
+	 */
+	protected int deleteMovieExtendedData(Uri uri, String table) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		if (verbose) Log.v(LOG_TAG, "Start delete: " + uri.getPath());
+
+		final int movieId = getPathSegmentAsInt(uri, MOVIE_INDEX_MOVIE_ID, 0);
+		if (movieId == 0)
+			return 0;
+
+		int rowsDeleted = dbHelper.getWritableDatabase().delete(
+			table,
+			ReviewContract.Column.MOVIE_ID + " = ?",
+			new String[] { Integer.toString(movieId) });
+
+		if (debug) Log.d(LOG_TAG, "DELETE " + uri.getPath() + " -> " + rowsDeleted + " rows deleted");
+
+		// the reviews and videos can change without a new download time of the extended
+		// data, so cached details must be dropped
+		invalidateDetails(movieId);
+
+		return rowsDeleted;
+	}
+
+	/**
+	 * Replaces all reviews or videos of a movie. The rows are given positions in the
+	 * order of the values.
+	 *
+	 * @param table The review table or the video table
+	 * @param values The new rows, without the movie id and position columns
+	 *
+	 * @return the number of rows inserted, or 0 if the rows could not be replaced
+	 *
+	 * @throws SQLException if the rows could not be replaced as part of a batch
+	 */
+	protected int replaceMovieExtendedData(Uri uri, String table, ContentValues[] values) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		if (verbose) Log.v(LOG_TAG, "Start replace: " + uri.getPath() + " with " + values.length + " values");
+
+		final int movieId = getPathSegmentAsInt(uri, MOVIE_INDEX_MOVIE_ID, 0);
+		if (movieId == 0)
+			return 0;
+
+		int rowsDeleted;
+		int rowsInserted = 0;
+
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			rowsDeleted = db.delete(
+				table,
+				ReviewContract.Column.MOVIE_ID + " = ?",
+				new String[] { Integer.toString(movieId) });
+
+			for (ContentValues cv : values) {
+				cv.put(ReviewContract.Column.MOVIE_ID, movieId);
+				cv.put(ReviewContract.Column.POSITION, rowsInserted);
+				db.insertOrThrow(table, null, cv);
+				rowsInserted++;
+			}
+
+			db.setTransactionSuccessful();
+		}
+		catch (SQLException e) {
+			Log.e(LOG_TAG, "REPLACE " + uri.getPath() + " failed", e);
+
+			// the failed nested transaction rolls back the whole batch when it ends, so
+			// the batch must fail too rather than report the results of its operations
+			if (batchChanges.get() != null)
+				throw e;
+
+			return 0;
+		}
+		finally {
+			db.endTransaction();
+		}
+
+		if (debug) Log.d(LOG_TAG, "REPLACE " + uri.getPath() + " -> " + rowsDeleted + " rows deleted, " + rowsInserted + " rows inserted");
+
+		// the reviews and videos can change without a new download time of the extended
+		// data, so cached details must be dropped
+		invalidateDetails(movieId);
+
+		if (rowsDeleted > 0 || rowsInserted > 0) {
+			notifyChange(uri);
+		}
+
+		return rowsInserted;
+	}
 }
@@ -1,24 +1,33 @@
 package no.skavdahl.udacity.popularmovies.data;
 
 import android.app.IntentService;
-import android.content.ContentValues;
+import android.content.ContentProviderOperation;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.util.Log;
 
-import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.List;
 
 import no.skavdahl.udacity.popularmovies.BuildConfig;
 import no.skavdahl.udacity.popularmovies.mdb.DiscoverMovies;
-import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
 import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+import no.skavdahl.udacity.utils.RecentRequests;
+import no.skavdahl.udacity.utils.RequestPriority;
 
 import static no.skavdahl.udacity.popularmovies.data.PopularMoviesContract.*;
 
 /**
  * Downloads movie data from themoviedb.org and updates the local database.
  *
+ * <p>A movie whose data were downloaded within the last
+ * {@link BuildConfig#DUPLICATE_REQUEST_WINDOW} milliseconds is not downloaded again. The
+ * detail screen may request the same movie several times before the first download has
+ * been stored, for example when it is rotated.</p>
+ *
  * @author fdavs
  */
 public class MovieUpdateService extends IntentService {
@@ -29,6 +38,9 @@ public class MovieUpdateService extends IntentService {
 
 	private static final String EXTRA_MOVIEID = "movieId";
 
+	/** The movies downloaded recently. */
+	static final RecentRequests<Integer> recentMovies = new RecentRequests<>(BuildConfig.DUPLICATE_REQUEST_WINDOW);
+
 	/**
 	 * Create an intent to download extended movie data for a movie.
 	 *
@@ -47,7 +59,6 @@ public class MovieUpdateService extends IntentService {
 
 	@Override
 	protected void onHandleIntent(Intent intent) {
-		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
 		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
 
 		final int movieId = intent.getIntExtra(EXTRA_MOVIEID, -1);
@@ -56,44 +67,95 @@ public class MovieUpdateService extends IntentService {
 			return;
 		}
 
+		if (recentMovies.isRecent(movieId)) {
+			if (debug) Log.d(LOG_TAG, "Movie " + movieId + " was just downloaded, skipping; " + recentMovies);
+			return;
+		}
+
+		if (updateMovie(movieId))
+			recentMovies.complete(movieId);
+	}
+
+	/**
+	 * Downloads the data of a movie, including its reviews and videos, and stores them in
+	 * the local database.
+	 *
+	 * @param movieId The id of the movie
+	 *
+	 * @return <code>true</code> if the movie was updated, <code>false</code> if the
+	 *         download or the update failed
+	 */
+	protected boolean updateMovie(int movieId) {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
 		if (verbose) Log.v(LOG_TAG, "Starting update of data for movie " + movieId + "...");
 
 		try {
 			if (verbose) Log.v(LOG_TAG, "Starting download of movie data from server...");
 
-			DiscoverMovies webQuery = new DiscoverMovies();
-			String jsonData = webQuery.getMovieDetails(BuildConfig.THEMOVIEDB_API_KEY, movieId);
+			// the user is waiting for the detail screen
+			DiscoverMovies webQuery = new DiscoverMovies(this);
+			webQuery.setPriority(RequestPriority.VISIBLE);
+			Movie movie = webQuery.getMovie(BuildConfig.THEMOVIEDB_API_KEY, movieId);
 
-			if (verbose) Log.v(LOG_TAG, "Download of data for movie " + movieId + " completed, result: " + jsonData.substring(0, Math.min(40, jsonData.length())));
+			if (verbose) Log.v(LOG_TAG, "Download of data for movie " + movieId + " completed, result: " + movie.getTitle());
 
 			if (verbose) Log.v(LOG_TAG, "Updating database entry for movie " + movieId + "...");
 
-			Movie movie = MdbJSONAdapter.toMovie(new JSONObject(jsonData));
-
-			ContentValues cv = new ContentValues();
-			cv.put(MovieContract.Column.MODIFIED, System.currentTimeMillis());
-			cv.put(MovieContract.Column.VOTE_COUNT, movie.getVoteCount());
-			cv.put(MovieContract.Column.VOTE_AVERAGE, movie.getVoteAverage());
-			cv.put(MovieContract.Column.POPULARITY, movie.getPopularity());
-			cv.put(MovieContract.Column.EXTENDED_DATA, 1);
-			cv.put(MovieContract.Column.REVIEWS_JSON, MdbJSONAdapter.toReviewJSONString(movie.getReviews()));
-			cv.put(MovieContract.Column.VIDEOS_JSON, MdbJSONAdapter.toVideoJSONString(movie.getVideos()));
-
-			Uri movieItemUri = MovieContract.buildMovieItemUri(movieId);
-			int rowCount = getContentResolver().update(movieItemUri, cv, null, null);
+			// the movie, its reviews and its videos are stored in one transaction
+			ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+			// updates the movie if it is stored, else inserts it
+			long now = System.currentTimeMillis();
+			operations.add(ContentProviderOperation.newInsert(MovieContract.buildMovieItemUri(movieId))
+				.withValue(MovieContract.Column.MODIFIED, now)
+				.withValue(MovieContract.Column.TITLE, movie.getTitle())
+				.withValue(MovieContract.Column.VOTE_COUNT, movie.getVoteCount())
+				.withValue(MovieContract.Column.VOTE_AVERAGE, movie.getVoteAverage())
+				.withValue(MovieContract.Column.POPULARITY, movie.getPopularity())
+				.withValue(MovieContract.Column.EXTENDED_DATA, 1)
+				.withValue(MovieContract.Column.EXTENDED_DATA_MODIFIED, now)
+				.build());
+
+			Uri reviewUri = ReviewContract.buildReviewDirectoryUri(movieId);
+			operations.add(ContentProviderOperation.newDelete(reviewUri).build());
+			List<Review> reviews = movie.getReviews();
+			for (int i = 0; reviews != null && i < reviews.size(); ++i) {
+				Review review = reviews.get(i);
+				operations.add(ContentProviderOperation.newInsert(reviewUri)
+					.withValue(ReviewContract.Column.POSITION, i)
+					.withValue(ReviewContract.Column.REVIEW_ID, review.getId())
+					.withValue(ReviewContract.Column.AUTHOR, review.getAuthor())
+					.withValue(ReviewContract.Column.CONTENT, review.getContent())
+					.build());
+			}
 
-			if (verbose) Log.v(LOG_TAG, "Database update for movie " + movieId + " complete, " + rowCount + " rows updated");
+			Uri videoUri = VideoContract.buildVideoDirectoryUri(movieId);
+			operations.add(ContentProviderOperation.newDelete(videoUri).build());
+			List<Video> videos = movie.getVideos();
+			for (int i = 0; videos != null && i < videos.size(); ++i) {
+				Video video = videos.get(i);
+				operations.add(ContentProviderOperation.newInsert(videoUri)
+					.withValue(VideoContract.Column.POSITION, i)
+					.withValue(VideoContract.Column.KEY, video.getKey())
+					.withValue(VideoContract.Column.SITE, video.getSite())
+					.withValue(VideoContract.Column.NAME, video.getName())
+					.build());
+			}
 
-			if (rowCount == 0) {
-				Uri insertedUri = getContentResolver().insert(movieItemUri, cv);
+			getContentResolver().applyBatch(CONTENT_AUTHORITY, operations);
 
-				if (verbose) Log.v(LOG_TAG, "Database insert for movie " + movieId + " complete, result: " + insertedUri);
-			}
+			if (verbose) Log.v(LOG_TAG, "Stored movie " + movieId + " with " +
+				(reviews != null ? reviews.size() : 0) + " reviews and " +
+				(videos != null ? videos.size() : 0) + " videos");
 
 			if (debug) Log.v(LOG_TAG, "Download of movie data for movie " + movieId + " completed");
+			return true;
 		}
 		catch (Exception e) {
 			Log.e(LOG_TAG, "Error downloading extended movie data for movie " + movieId, e);
+			return false;
 		}
 	}
 }
@@ -17,6 +17,12 @@ public class PopularMoviesContract {
 	public static final String CONTENT_AUTHORITY = "no.skavdahl.udacity.popularmovies";
 	public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
 
+	/**
+	 * Query parameter that limits the number of rows returned by a directory query, for
+	 * directories that support it.
+	 */
+	public static final String QUERY_PARAMETER_LIMIT = "limit";
+
 	/** Defines the contract for movie data. */
 	public static final class ListContract {
 
@@ -144,7 +150,8 @@ public class PopularMoviesContract {
 	 *
 	 *   <li>Movie details:<br/>
 	 *       <tt>content://no.skavdahl.udacity.popularmovies/movie/[id #]</tt><br/>
-	 *       Accesses detailed information for one specific movie</li>
+	 *       Accesses detailed information for one specific movie. An insert updates the
+	 *       given columns of a movie that is already stored.</li>
 	 * </ul></p>
 	 */
 	public static final class MovieContract {
@@ -209,18 +216,57 @@ public class PopularMoviesContract {
 			/** Int -- the user vote count. */
 			public static final String VOTE_COUNT = "votecount";
 
-			/** Date -- the release date (if known). */
+			/** Int -- the release date as an epoch day (if known). See EpochDay. */
 			public static final String RELEASE_DATE = "releasedate";
 
+			/** Int -- the year of the release date (if known). */
+			public static final String RELEASE_YEAR = "releaseyear";
+
 			/** Integer -- if true (1) extended movie data (reviews etc.) has been downloaded. */
 			public static final String EXTENDED_DATA = "extdata";
 
-			/** String -- movie reviews stored as a JSON array of strings. */
+			/**
+			 * Timestamp -- when the extended movie data were last downloaded from the
+			 * server. Null if they have never been downloaded. Unlike {@link #MODIFIED},
+			 * this is not changed when the movie is refreshed from a movie list, so it
+			 * tells whether the reviews and videos are stale.
+			 */
+			public static final String EXTENDED_DATA_MODIFIED = "extmodified";
+
+			/**
+			 * String -- movie reviews stored as a JSON array of strings. Replaced by
+			 * {@link #REVIEWS} in database version 3 and always null since.
+			 */
 			public static final String REVIEWS_JSON = "reviews";
 
-			/** String -- video links stored as a JSON array of strings. */
+			/**
+			 * String -- video links stored as a JSON array of strings. Replaced by
+			 * {@link #VIDEOS} in database version 3 and always null since.
+			 */
 			public static final String VIDEOS_JSON = "videos";
 
+			/**
+			 * Blob -- movie reviews, see ExtendedDataCodec. Replaced by the
+			 * {@link ReviewContract review table} in database version 4 and always null
+			 * since.
+			 */
+			public static final String REVIEWS = "reviewdata";
+
+			/**
+			 * Blob -- video links, see ExtendedDataCodec. Replaced by the
+			 * {@link VideoContract video table} in database version 4 and always null
+			 * since.
+			 */
+			public static final String VIDEOS = "videodata";
+
+			/**
+			 * Long -- a fingerprint of the list attributes (title through release date)
+			 * last written from a movie list response, see MovieFingerprint. A list
+			 * refresh that returns the same fingerprint leaves the row as it is. Null if
+			 * the row was not written from a movie list.
+			 */
+			public static final String FINGERPRINT = "fingerprint";
+
 			/**
 			 * Integer -- if true (1), the movie is a favorite movie. If false (0 or null),
 			 * this movie is not a favorite movie. This column is only available in queries
@@ -229,4 +275,122 @@ public class PopularMoviesContract {
 			public static final String FAVORITE = "favorite";
 		}
 	}
+
+	/**
+	 * Defines the contract for movie reviews.
+	 *
+	 * <p>Supported content provider URIs:
+	 * <ul>
+	 *   <li>Reviews of a movie:<br/>
+	 *       <tt>content://no.skavdahl.udacity.popularmovies/movie/[id #]/review</tt><br/>
+	 *       Accesses the reviews of one specific movie, in the order they were
+	 *       downloaded. Queries accept the {@link #QUERY_PARAMETER_LIMIT limit} query
+	 *       parameter. A bulk insert replaces all reviews of the movie. A delete removes
+	 *       all reviews of the movie, and an insert adds one review at the position given
+	 *       in its values; use them in a batch to replace the reviews along with other
+	 *       changes.</li>
+	 * </ul></p>
+	 */
+	public static final class ReviewContract {
+
+		// --- content provider ---
+
+		public static final String CONTENT_URI_PATH = "review";
+
+		public static final String CONTENT_DIR_TYPE =
+			ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + CONTENT_AUTHORITY + "." + MovieContract.CONTENT_URI_PATH + "." + CONTENT_URI_PATH + "_v" + CONTRACT_VERSION;
+
+		// AUTHORITY/movie/id#/review           -- query the reviews of a movie
+
+		/** Constructs a URI to access the reviews of a movie. */
+		public static Uri buildReviewDirectoryUri(long movieId) {
+			return MovieContract.buildMovieItemUri(movieId).buildUpon()
+				.appendPath(CONTENT_URI_PATH)
+				.build();
+		}
+
+		/** Constructs a URI to access the first <code>limit</code> reviews of a movie. */
+		public static Uri buildReviewDirectoryUri(long movieId, int limit) {
+			return buildReviewDirectoryUri(movieId).buildUpon()
+				.appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit))
+				.build();
+		}
+
+		// --- database ---
+
+		public static final String TABLE_NAME = "review";
+
+		public static final class Column implements BaseColumns {
+
+			/** Int -- the id of the movie that is reviewed */
+			public static final String MOVIE_ID = "movieid";
+
+			/** Int -- the position of the review in the movie's list of reviews */
+			public static final String POSITION = "position";
+
+			/** String -- the id of the review on themoviedb.org */
+			public static final String REVIEW_ID = "reviewid";
+
+			/** String -- the name of the author */
+			public static final String AUTHOR = "author";
+
+			/** String -- the text of the review */
+			public static final String CONTENT = "content";
+		}
+	}
+
+	/**
+	 * Defines the contract for videos (trailers, teasers etc.) related to movies.
+	 *
+	 * <p>Supported content provider URIs:
+	 * <ul>
+	 *   <li>Videos of a movie:<br/>
+	 *       <tt>content://no.skavdahl.udacity.popularmovies/movie/[id #]/video</tt><br/>
+	 *       Accesses the videos of one specific movie, in the order they were
+	 *       downloaded. Queries accept the {@link #QUERY_PARAMETER_LIMIT limit} query
+	 *       parameter. A bulk insert replaces all videos of the movie. A delete removes
+	 *       all videos of the movie, and an insert adds one video at the position given
+	 *       in its values.</li>
+	 * </ul></p>
+	 */
+	public static final class VideoContract {
+
+		// --- content provider ---
+
+		public static final String CONTENT_URI_PATH = "video";
+
+		public static final String CONTENT_DIR_TYPE =
+			ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + CONTENT_AUTHORITY + "." + MovieContract.CONTENT_URI_PATH + "." + CONTENT_URI_PATH + "_v" + CONTRACT_VERSION;
+
+		// AUTHORITY/movie/id#/video            -- query the videos of a movie
+
+		/** Constructs a URI to access the videos of a movie. */
+		public static Uri buildVideoDirectoryUri(long movieId) {
+			return MovieContract.buildMovieItemUri(movieId).buildUpon()
+				.appendPath(CONTENT_URI_PATH)
+				.build();
+		}
+
+		// --- database ---
+
+		public static final String TABLE_NAME = "video";
+
+		public static final class Column implements BaseColumns {
+
+			/** Int -- the id of the movie the video is related to */
+			public static final String MOVIE_ID = "movieid";
+
+			/** Int -- the position of the video in the movie's list of videos */
+			public static final String POSITION = "position";
+
+			/** String -- the key that identifies the video on the site */
+			public static final String KEY = "videokey";
+
+			/** String -- the site hosting the video, for example "YouTube" */
+			public static final String SITE = "site";
+
+			/** String -- the name of the video */
+			public static final String NAME = "name";
+		}
+	}
 }
@@ -0,0 +1,119 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+
+/**
+ * Keeps the review pages downloaded for the most recently displayed movies in memory, so
+ * scrolling through the reviews of a movie again, or after the screen is rotated, does
+ * not download the same pages again.
+ *
+ * <p>Only the first page of reviews is stored in the database, by
+ * {@link MovieUpdateService}. The later pages are only needed while the user reads the
+ * reviews, so they are kept here instead and expire after a while.</p>
+ *
+ * @author fdavs
+ */
+public final class ReviewPageCache {
+
+	/** The maximum number of movies to keep review pages for. */
+	private static final int MAX_MOVIES = 8;
+
+	/** The time after which downloaded review pages are no longer used. */
+	static final long MAX_AGE_MILLIS = 60 * 60 * 1000;
+
+	private static final LruCache<Integer, MovieReviewPages> cache = new LruCache<>(MAX_MOVIES);
+
+	private ReviewPageCache() {
+		// not instantiable
+	}
+
+	/**
+	 * Returns a cached review page.
+	 *
+	 * @return the page, or <code>null</code> if it has not been downloaded recently
+	 */
+	public static ReviewPage get(int movieId, int page) {
+		return get(movieId, page, System.currentTimeMillis());
+	}
+
+	static synchronized ReviewPage get(int movieId, int page, long now) {
+		MovieReviewPages pages = getCurrent(movieId, now);
+		if (pages == null || page < 1 || page > pages.pages.size())
+			return null;
+
+		return pages.pages.get(page - 1);
+	}
+
+	/**
+	 * Returns the cached review pages of a movie that follow each other from a given page,
+	 * in page order. The list ends before the first page that is not cached.
+	 */
+	public static List<ReviewPage> getPages(int movieId, int firstPage) {
+		return getPages(movieId, firstPage, System.currentTimeMillis());
+	}
+
+	static synchronized List<ReviewPage> getPages(int movieId, int firstPage, long now) {
+		List<ReviewPage> result = new ArrayList<>();
+
+		MovieReviewPages pages = getCurrent(movieId, now);
+		if (pages == null)
+			return result;
+
+		for (int i = Math.max(firstPage, 1) - 1; i < pages.pages.size(); ++i) {
+			ReviewPage page = pages.pages.get(i);
+			if (page == null)
+				break;
+			result.add(page);
+		}
+		return result;
+	}
+
+	/** Adds a downloaded review page to the cache. */
+	public static void put(ReviewPage page) {
+		put(page, System.currentTimeMillis());
+	}
+
+	static synchronized void put(ReviewPage page, long now) {
+		MovieReviewPages pages = getCurrent(page.getMovieId(), now);
+		if (pages == null) {
+			pages = new MovieReviewPages(now);
+			cache.put(page.getMovieId(), pages);
+		}
+
+		while (pages.pages.size() < page.getPage())
+			pages.pages.add(null);
+		pages.pages.set(page.getPage() - 1, page);
+	}
+
+	/** Removes all cached review pages. */
+	public static synchronized void clear() {
+		cache.evictAll();
+	}
+
+	/** Returns the pages of a movie, unless they have expired. Expired pages are removed. */
+	private static MovieReviewPages getCurrent(int movieId, long now) {
+		MovieReviewPages pages = cache.get(movieId);
+		if (pages != null && now - pages.created > MAX_AGE_MILLIS) {
+			cache.remove(movieId);
+			return null;
+		}
+		return pages;
+	}
+
+	/** The downloaded review pages of one movie, indexed by page number - 1. */
+	private static class MovieReviewPages {
+
+		/** The time the first page was added; all pages of the movie expire together. */
+		final long created;
+		final List<ReviewPage> pages = new ArrayList<>();
+
+		MovieReviewPages(long created) {
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+import android.util.Log;
+
+import java.io.IOException;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+import no.skavdahl.udacity.popularmovies.mdb.DiscoverMovies;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+import no.skavdahl.udacity.utils.RequestPriority;
+
+/**
+ * Downloads one page of the reviews of a movie from themoviedb.org on a background
+ * thread. Pages are taken from {@link ReviewPageCache} when they have been downloaded
+ * recently, and added to it otherwise.
+ *
+ * <p>The result is <code>null</code> if the page could not be downloaded. The loader does
+ * not retry by itself; a new load is started when the user scrolls to the end of the
+ * reviews again.</p>
+ *
+ * @author fdavs
+ */
+public class ReviewPageLoader extends AsyncTaskLoader<ReviewPage> {
+
+	private static final String LOG_TAG = ReviewPageLoader.class.getSimpleName();
+
+	private final int movieId;
+	private final int page;
+
+	private ReviewPage reviewPage;
+
+	/**
+	 * @param context Any context; the loader keeps the application context
+	 * @param movieId The id of the movie
+	 * @param page The number of the review page to load, starting with 1
+	 */
+	public ReviewPageLoader(Context context, int movieId, int page) {
+		super(context);
+		this.movieId = movieId;
+		this.page = page;
+	}
+
+	@Override
+	public ReviewPage loadInBackground() {
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+
+		ReviewPage cached = ReviewPageCache.get(movieId, page);
+		if (cached != null) {
+			if (verbose) Log.v(LOG_TAG, "Review page " + page + " of movie " + movieId + " found in cache");
+			return cached;
+		}
+
+		try {
+			// the user is waiting at the end of the reviews
+			DiscoverMovies webQuery = new DiscoverMovies(getContext());
+			webQuery.setPriority(RequestPriority.VISIBLE);
+			ReviewPage result = webQuery.getMovieReviews(BuildConfig.THEMOVIEDB_API_KEY, movieId, page);
+
+			if (result.getMovieId() != movieId || result.getPage() != page) {
+				Log.w(LOG_TAG, "Unexpected review page " + result.getPage() + " of movie " + result.getMovieId());
+				return null;
+			}
+
+			ReviewPageCache.put(result);
+
+			if (verbose) Log.v(LOG_TAG, "Review page " + page + " of movie " + movieId + " downloaded: " + result.getReviews().size() + " reviews");
+
+			return result;
+		}
+		catch (IOException e) {
+			// the web service client has already retried transient failures
+			Log.e(LOG_TAG, "Download of review page " + page + " of movie " + movieId + " failed", e);
+			return null;
+		}
+	}
+
+	@Override
+	public void deliverResult(ReviewPage data) {
+		if (isReset())
+			return;
+
+		reviewPage = data;
+		if (isStarted())
+			super.deliverResult(data);
+	}
+
+	@Override
+	protected void onStartLoading() {
+		if (reviewPage != null)
+			deliverResult(reviewPage);
+		else
+			forceLoad();
+	}
+
+	@Override
+	protected void onStopLoading() {
+		cancelLoad();
+	}
+
+	@Override
+	protected void onReset() {
+		super.onReset();
+		onStopLoading();
+		reviewPage = null;
+	}
+}
@@ -1,19 +1,24 @@
 package no.skavdahl.udacity.popularmovies.data;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.RemoteException;
 import android.util.DisplayMetrics;
 import android.util.Log;
 
 import com.squareup.picasso.Picasso;
 
 import java.io.File;
+import java.util.ArrayList;
 
 import no.skavdahl.udacity.popularmovies.BuildConfig;
 import no.skavdahl.udacity.popularmovies.R;
+import no.skavdahl.udacity.popularmovies.mdb.ImageType;
 import no.skavdahl.udacity.popularmovies.mdb.Request;
 import no.skavdahl.udacity.popularmovies.mdb.StandardMovieList;
 import no.skavdahl.udacity.utils.picasso.FileTarget;
@@ -153,7 +158,7 @@ public class ToggleFavoriteTask extends AsyncTask<Void, Void, Void> {
 			coordinator.downloadComplete(Coordinator.IMAGETYPE_BACKDROP, null);
 		else {
 			DisplayMetrics dm = context.getResources().getDisplayMetrics();
-			String downloadUrl = Request.getImageDownloadURL(Request.ImageType.BACKDROP, backdropPath, dm.widthPixels);
+			String downloadUrl = Request.getImageDownloadURL(ImageType.BACKDROP, backdropPath, dm.widthPixels);
 			coordinator.scheduleDownload(context, Coordinator.IMAGETYPE_BACKDROP, backdropPath, downloadUrl);
 		}
 
@@ -238,17 +243,31 @@ public class ToggleFavoriteTask extends AsyncTask<Void, Void, Void> {
 	protected Void doInBackground(Void... params) {
 		Uri listMemberUri = ListContract.buildListMemberItemUri(StandardMovieList.FAVORITE, movieId);
 
+		// the list membership and the image paths are changed in one transaction
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>(2);
 		if (makeFavorite)
-			context.getContentResolver().insert(listMemberUri, null);
-		else {
-			context.getContentResolver().delete(listMemberUri, null, null);
+			operations.add(ContentProviderOperation.newInsert(listMemberUri).build());
+		else
+			operations.add(ContentProviderOperation.newDelete(listMemberUri).build());
+
+		ContentProviderOperation imagePathUpdate = updateImagePaths(movieId, newPosterPath, newBackdropPath);
+		if (imagePathUpdate != null)
+			operations.add(imagePathUpdate);
 
+		try {
+			context.getContentResolver().applyBatch(CONTENT_AUTHORITY, operations);
+		}
+		catch (RemoteException | OperationApplicationException e) {
+			Log.e(LOG_TAG, "Failed to " + (makeFavorite ? "add movie " + movieId + " to" : "remove movie " + movieId + " from") + " favorites", e);
+			return null;
+		}
+
+		// the database no longer refers to the local image files
+		if (!makeFavorite) {
 			tryDeleteFile(currentPosterPath);
 			tryDeleteFile(currentBackdropPath);
 		}
 
-		updateImagePathsInDb(movieId, newPosterPath, newBackdropPath);
-
 		if (verbose) {
 			if (newPosterPath != null)
 				Log.v(LOG_TAG, "Updated database, changed posterPath from " + currentPosterPath + " to " + newPosterPath);
@@ -260,8 +279,8 @@ public class ToggleFavoriteTask extends AsyncTask<Void, Void, Void> {
 		return null;
 	}
 
-	private void updateImagePathsInDb(final int movieId, final String newPosterPath, final String newBackdropPath) {
-		Uri movieUri = MovieContract.buildMovieItemUri(movieId);
+	/** Returns the operation that updates the image paths of the movie, or null if neither has changed. */
+	private static ContentProviderOperation updateImagePaths(final int movieId, final String newPosterPath, final String newBackdropPath) {
 		ContentValues values = new ContentValues();
 
 		if (newPosterPath != null)
@@ -270,12 +289,12 @@ public class ToggleFavoriteTask extends AsyncTask<Void, Void, Void> {
 		if (newBackdropPath != null)
 			values.put(MovieContract.Column.BACKDROP_PATH, newBackdropPath);
 
-		if (values.size() > 0)
-			context.getContentResolver().update(
-				movieUri,
-				values,
-				MovieContract.Column._ID + " = ?",
-				new String[]{ Integer.toString(movieId) });
+		if (values.size() == 0)
+			return null;
+
+		return ContentProviderOperation.newUpdate(MovieContract.buildMovieItemUri(movieId))
+			.withValues(values)
+			.build();
 	}
 
 	/**
@@ -1,47 +1,205 @@
 package no.skavdahl.udacity.popularmovies.mdb;
 
+import android.content.Context;
+
 import java.io.IOException;
+import java.io.Reader;
+
+import okhttp3.OkHttpClient;
 
+import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+import no.skavdahl.udacity.utils.CancellationToken;
 import no.skavdahl.udacity.utils.WebApiClient;
 
 /**
- * Encapsulates /discover/movie network queries performed against themoviedb.org.
+ * Encapsulates the network queries performed against themoviedb.org: standard movie
+ * lists, movie details, pages of movie reviews and the image configuration.
+ *
+ * <p>Identical blocking queries that are performed concurrently, for example when the same list
+ * page or movie is requested twice in quick succession, share one network request and
+ * one parsed result.</p>
+ *
+ * <p>Every query is available both as a blocking method, for use on a worker thread such
+ * as an IntentService, and as a non-blocking method that takes a callback and an optional
+ * {@link CancellationToken}. The non-blocking methods let many list pages and movie
+ * details be in flight at once without occupying a thread each.</p>
  *
  * @author fdavs
  */
 public class DiscoverMovies extends WebApiClient {
 
+	private static final ResponseParser<MovieBatch> MOVIE_LIST_PARSER = new ResponseParser<MovieBatch>() {
+		@Override
+		public MovieBatch parse(Reader body) throws IOException {
+			// batches are immutable, so they can be shared between concurrent callers
+			return MdbJSONReader.readMovieBatch(body);
+		}
+	};
+
+	private static final ResponseParser<Movie> MOVIE_PARSER = new ResponseParser<Movie>() {
+		@Override
+		public Movie parse(Reader body) throws IOException {
+			return MdbJSONReader.readMovie(body);
+		}
+	};
+
+	private static final ResponseParser<ReviewPage> REVIEW_PAGE_PARSER = new ResponseParser<ReviewPage>() {
+		@Override
+		public ReviewPage parse(Reader body) throws IOException {
+			return MdbJSONReader.readReviewPage(body);
+		}
+	};
+
+	private static final ResponseParser<ImageConfiguration> IMAGE_CONFIGURATION_PARSER = new ResponseParser<ImageConfiguration>() {
+		@Override
+		public ImageConfiguration parse(Reader body) throws IOException {
+			return MdbJSONReader.readImageConfiguration(body);
+		}
+	};
+
+	/** Creates a client that queries themoviedb.org through the shared HTTP transport. */
+	public DiscoverMovies(final Context context) {
+		super(context);
+	}
+
+	/** Creates a client that queries themoviedb.org through the given HTTP client. */
+	public DiscoverMovies(final OkHttpClient client) {
+		super(client);
+	}
+
 	/**
 	 * Submits a movie discovery request to themoviedb.org. The query is performed
-	 * synchronously. The response is returned as a raw JSON string.
+	 * synchronously. The response is decoded as it is downloaded.
 	 *
 	 * @param apiKey The API key necessary to perform a query at themoviedb.org
 	 * @param listName Which movie list to query. This must be one of the standard movie
 	 *                 list names.
 	 * @param page Desired page number (starting with 1) of the response
 	 *
-	 * @return the JSON string response
+	 * @return the movies on the requested page
 	 *
 	 * @throws IOException if the query failed or returned a non-sensible result
 	 */
-	public String discoverStandardMovies(String apiKey, String listName, int page) throws IOException {
+	public MovieBatch getStandardMovieList(String apiKey, String listName, int page) throws IOException {
 		String endpoint = Request.getStandardMovieListURL(apiKey, listName, page);
-		return executeQuery(endpoint);
+		return executeQuery(endpoint, MOVIE_LIST_PARSER);
+	}
+
+	/**
+	 * Submits a movie discovery request to themoviedb.org. The query is performed
+	 * asynchronously; this method returns immediately and the result is delivered to the
+	 * callback on a background thread.
+	 *
+	 * @param apiKey The API key necessary to perform a query at themoviedb.org
+	 * @param listName Which movie list to query. This must be one of the standard movie
+	 *                 list names.
+	 * @param page Desired page number (starting with 1) of the response
+	 * @param cancellationToken Token that cancels the query, or <code>null</code>
+	 * @param callback Receives the movies on the requested page, or the failure
+	 */
+	public void getStandardMovieList(
+		String apiKey,
+		String listName,
+		int page,
+		CancellationToken cancellationToken,
+		ResponseCallback<MovieBatch> callback) {
+
+		String endpoint = Request.getStandardMovieListURL(apiKey, listName, page);
+		enqueueQuery(endpoint, MOVIE_LIST_PARSER, cancellationToken, callback);
 	}
 
 	/**
 	 * Submits a movie details request to themoviedb.org. The query is performed
-	 * synchronously. The response is returned as a raw JSON string.
+	 * synchronously. The response is decoded as it is downloaded.
 	 *
 	 * @param apiKey The API key necessary to perform a query at themoviedb.org
 	 * @param movieId Which movie to query.
 	 *
-	 * @return the JSON string response
+	 * @return the movie, including reviews and videos
 	 *
 	 * @throws IOException if the query failed or returned a non-sensible result
 	 */
-	public String getMovieDetails(String apiKey, int movieId) throws IOException {
+	public Movie getMovie(String apiKey, int movieId) throws IOException {
 		String endpoint = Request.getMovieURL(apiKey, movieId);
-		return executeQuery(endpoint);
+		return executeQuery(endpoint, MOVIE_PARSER);
+	}
+
+	/**
+	 * Submits a movie details request to themoviedb.org. The query is performed
+	 * asynchronously; this method returns immediately and the result is delivered to the
+	 * callback on a background thread.
+	 *
+	 * @param apiKey The API key necessary to perform a query at themoviedb.org
+	 * @param movieId Which movie to query.
+	 * @param cancellationToken Token that cancels the query, or <code>null</code>
+	 * @param callback Receives the movie, including reviews and videos, or the failure
+	 */
+	public void getMovie(
+		String apiKey,
+		int movieId,
+		CancellationToken cancellationToken,
+		ResponseCallback<Movie> callback) {
+
+		String endpoint = Request.getMovieURL(apiKey, movieId);
+		enqueueQuery(endpoint, MOVIE_PARSER, cancellationToken, callback);
+	}
+
+	/**
+	 * Submits a request for one page of the reviews of a movie to themoviedb.org. The
+	 * query is performed synchronously. The response is decoded as it is downloaded.
+	 *
+	 * @param apiKey The API key necessary to perform a query at themoviedb.org
+	 * @param movieId Which movie to query.
+	 * @param page Desired page number (starting with 1) of the response
+	 *
+	 * @return the reviews on the requested page
+	 *
+	 * @throws IOException if the query failed or returned a non-sensible result
+	 */
+	public ReviewPage getMovieReviews(String apiKey, int movieId, int page) throws IOException {
+		String endpoint = Request.getMovieReviewsURL(apiKey, movieId, page);
+		return executeQuery(endpoint, REVIEW_PAGE_PARSER);
+	}
+
+	/**
+	 * Submits a request for one page of the reviews of a movie to themoviedb.org. The
+	 * query is performed asynchronously; this method returns immediately and the result
+	 * is delivered to the callback on a background thread.
+	 *
+	 * @param apiKey The API key necessary to perform a query at themoviedb.org
+	 * @param movieId Which movie to query.
+	 * @param page Desired page number (starting with 1) of the response
+	 * @param cancellationToken Token that cancels the query, or <code>null</code>
+	 * @param callback Receives the reviews on the requested page, or the failure
+	 */
+	public void getMovieReviews(
+		String apiKey,
+		int movieId,
+		int page,
+		CancellationToken cancellationToken,
+		ResponseCallback<ReviewPage> callback) {
+
+		String endpoint = Request.getMovieReviewsURL(apiKey, movieId, page);
+		enqueueQuery(endpoint, REVIEW_PAGE_PARSER, cancellationToken, callback);
+	}
+
+	/**
+	 * Submits a configuration request to themoviedb.org. The query is performed
+	 * asynchronously; this method returns immediately and the result is delivered to the
+	 * callback on a background thread.
+	 *
+	 * @param apiKey The API key necessary to perform a query at themoviedb.org
+	 * @param cancellationToken Token that cancels the query, or <code>null</code>
+	 * @param callback Receives the image configuration, or the failure
+	 */
+	public void getImageConfiguration(
+		String apiKey,
+		CancellationToken cancellationToken,
+		ResponseCallback<ImageConfiguration> callback) {
+
+		String endpoint = Request.getConfigurationURL(apiKey);
+		enqueueQuery(endpoint, IMAGE_CONFIGURATION_PARSER, cancellationToken, callback);
 	}
 }
@@ -0,0 +1,168 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The image settings of themoviedb.org, as returned by the /configuration request: the
+ * base URL of image downloads and the renditions (sizes) available for each type of image.
+ *
+ * <p>Sizes are given as codes such as "w185" (185 pixels wide) or "original".</p>
+ *
+ * @author fdavs
+ */
+public class ImageConfiguration {
+
+	/** Base URL of image downloads until the configuration has been downloaded. */
+	public static final String DEFAULT_BASE_URL = "http://image.tmdb.org/t/p/";
+
+	/** Size code of the original image (unscaled, typically very large). */
+	public static final String SIZE_ORIGINAL = "original";
+
+	/**
+	 * The configuration to use until the configuration has been downloaded from
+	 * themoviedb.org.
+	 */
+	public static final ImageConfiguration DEFAULT = new ImageConfiguration(
+		DEFAULT_BASE_URL,
+		Arrays.asList("w92", "w154", "w185", "w342", "w500", "w780", SIZE_ORIGINAL),
+		Arrays.asList("w300", "w780", "w1280", SIZE_ORIGINAL));
+
+	private final String baseUrl;
+	private final List<String> posterSizes;
+	private final List<String> backdropSizes;
+
+	/** Widths (in pixels) of the width-based sizes, ascending. */
+	private final int[] posterWidths;
+	private final int[] backdropWidths;
+
+	public ImageConfiguration(
+		@NonNull final String baseUrl,
+		@NonNull final List<String> posterSizes,
+		@NonNull final List<String> backdropSizes) {
+
+		if (baseUrl.isEmpty())
+			throw new IllegalArgumentException("baseUrl is empty");
+
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+		this.posterSizes = Collections.unmodifiableList(new ArrayList<>(posterSizes));
+		this.backdropSizes = Collections.unmodifiableList(new ArrayList<>(backdropSizes));
+		this.posterWidths = toWidths(posterSizes);
+		this.backdropWidths = toWidths(backdropSizes);
+	}
+
+	/** Returns the base URL of image downloads, ending with a slash. */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/** Returns the size codes available for posters. */
+	public List<String> getPosterSizes() {
+		return posterSizes;
+	}
+
+	/** Returns the size codes available for backdrops. */
+	public List<String> getBackdropSizes() {
+		return backdropSizes;
+	}
+
+	/**
+	 * Returns the available image widths for the given image type, in ascending order.
+	 * Sizes that are not given as a width (such as "original") are not included.
+	 */
+	public int[] getWidths(ImageType imageType) {
+		switch (imageType) {
+			case POSTER:
+				return posterWidths.clone();
+			case BACKDROP:
+				return backdropWidths.clone();
+			default:
+				throw new AssertionError(imageType);
+		}
+	}
+
+	/**
+	 * Returns the size code of the smallest rendition that fills the available width. If no
+	 * rendition is wide enough, the widest one is returned; the "original" size is only
+	 * returned if there are no width-based sizes at all.
+	 *
+	 * @param imageType The type of image
+	 * @param availableWidthPixels Available space in pixels
+	 *
+	 * @return A size code suitable for inclusion in the request URL
+	 */
+	public String getSizeCode(ImageType imageType, int availableWidthPixels) {
+		return getSizeCode(imageType, availableWidthPixels, 0);
+	}
+
+	/**
+	 * Returns the size code of a rendition near the smallest one that fills the available
+	 * width (see {@link #getSizeCode(ImageType, int)}). A negative size step selects
+	 * a correspondingly smaller rendition, a positive step a larger one, within the range
+	 * of available width-based sizes.
+	 *
+	 * @param imageType The type of image
+	 * @param availableWidthPixels Available space in pixels
+	 * @param sizeStep How many renditions smaller (negative) or larger (positive) than the
+	 *                 best fit to select
+	 *
+	 * @return A size code suitable for inclusion in the request URL
+	 */
+	public String getSizeCode(ImageType imageType, int availableWidthPixels, int sizeStep) {
+		int[] widths;
+		switch (imageType) {
+			case POSTER:
+				widths = posterWidths;
+				break;
+			case BACKDROP:
+				widths = backdropWidths;
+				break;
+			default:
+				throw new AssertionError(imageType);
+		}
+
+		if (widths.length == 0)
+			return SIZE_ORIGINAL;
+
+		int index = widths.length - 1;
+		for (int i = 0; i < widths.length; ++i) {
+			if (widths[i] >= availableWidthPixels) {
+				index = i;
+				break;
+			}
+		}
+
+		index = Math.max(0, Math.min(widths.length - 1, index + sizeStep));
+		return toSizeCode(widths[index]);
+	}
+
+	/** Returns the size code for an image of the given width. */
+	public static String toSizeCode(int width) {
+		return "w" + width;
+	}
+
+	private static int[] toWidths(List<String> sizes) {
+		int[] widths = new int[sizes.size()];
+		int count = 0;
+
+		for (String size : sizes) {
+			if (size.length() > 1 && size.charAt(0) == 'w') {
+				try {
+					widths[count] = Integer.parseInt(size.substring(1));
+					count++;
+				}
+				catch (NumberFormatException e) {
+					// not a width, for example "original" -- skip it
+				}
+			}
+		}
+
+		widths = Arrays.copyOf(widths, count);
+		Arrays.sort(widths);
+		return widths;
+	}
+}
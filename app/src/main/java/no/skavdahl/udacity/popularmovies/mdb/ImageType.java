@@ -0,0 +1,11 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+/**
+ * The kinds of images available from themoviedb.org. Each kind has its own set of sizes.
+ *
+ * @author fdavs
+ */
+public enum ImageType {
+	POSTER,
+	BACKDROP
+}
@@ -19,7 +19,10 @@ import no.skavdahl.udacity.popularmovies.model.Video;
 import no.skavdahl.udacity.utils.JSONAdapter;
 
 /**
- * Parser for JSON data that is returned from a discover movies request to themoviedb.org.
+ * Parser for JSON data that is returned from themoviedb.org, working on JSONObject trees.
+ * Movie lists and details are read with {@link MdbJSONReader}. This class converts the JSON
+ * video and review lists stored by older database versions, and single movie objects,
+ * which the reader is tested against.
  *
  * @author fdavs
  */
@@ -52,40 +55,6 @@ public class MdbJSONAdapter extends JSONAdapter {
 	private static final String JSON_REVIEW_AUTHOR  = "author";
 	private static final String JSON_REVIEW_CONTENT  = "content";
 
-	// --- class properties ---
-
-	/**
-	 * Parses a JSON-formatted string, which is expected to comply with the expected output
-	 * from a movies discovery request to themoviedb.org.
-	 *
-	 * @param jsonString A JSON-formatted string
-	 *
-	 * @return a list of movies
-	 */
-	public static List<Movie> getMoviesList(String jsonString) throws JSONException {
-		JSONObject obj = new JSONObject(jsonString);
-		JSONArray results = obj.getJSONArray(JSON_RESULTS);
-		int numMovies = results.length();
-
-		List<Movie> movies = new ArrayList<>(numMovies);
-		for (int i = 0; i < numMovies; ++i) {
-			JSONObject movieJson = null;
-			try {
-				movieJson = results.getJSONObject(i);
-				Movie movie = toMovie(movieJson);
-
-				if (movie.getTitle() != null) // require a title
-					movies.add(movie);
-			}
-			catch (JSONException e) {
-				// log the error (for diagnostics) but otherwise just continue without
-				// this particular movie in the result collection
-				Log.w(LOG_TAG, "Error parsing JSON response for movie: " + movieJson, e);
-			}
-		}
-		return movies;
-	}
-
 	/**
 	 * Converts a JSON object to a Movie model.
 	 *
@@ -97,7 +66,7 @@ public class MdbJSONAdapter extends JSONAdapter {
 	 */
 	public static Movie toMovie(JSONObject obj) throws JSONException {
 		int id = obj.getInt(JSON_MOVIE_ID);
-		Date releaseDate = getOptDate(obj, JSON_MOVIE_RELEASE_DATE);
+		int releaseDate = getOptEpochDay(obj, JSON_MOVIE_RELEASE_DATE);
 		String title = getOptString(obj, JSON_MOVIE_TITLE);
 		String posterPath = getOptString(obj, JSON_MOVIE_POSTER_PATH);
 		String backdropPath = getOptString(obj, JSON_MOVIE_BACKDROP_PATH);
@@ -220,44 +189,4 @@ public class MdbJSONAdapter extends JSONAdapter {
 
 		return new Review(id, author, content);
 	}
-
-	public static String toReviewJSONString(List<Review> reviews) {
-		try {
-			JSONArray arr = new JSONArray();
-			if (reviews != null) {
-				for (Review review : reviews) {
-					JSONObject obj = new JSONObject();
-					obj.put(JSON_REVIEW_ID, review.getId());
-					obj.put(JSON_REVIEW_AUTHOR, review.getAuthor());
-					obj.put(JSON_REVIEW_CONTENT, review.getContent());
-					arr.put(obj);
-				}
-			}
-			return arr.toString();
-		}
-		catch (JSONException e) {
-			Log.e(LOG_TAG, "JSON error", e);
-			return null;
-		}
-	}
-
-	public static String toVideoJSONString(List<Video> videos) {
-		try {
-			JSONArray arr = new JSONArray();
-			if (videos != null) {
-				for (Video video : videos) {
-					JSONObject obj = new JSONObject();
-					obj.put(JSON_VIDEOS_KEY, video.getKey());
-					obj.put(JSON_VIDEOS_SITE, video.getSite());
-					obj.put(JSON_VIDEOS_NAME, video.getName());
-					arr.put(obj);
-				}
-			}
-			return arr.toString();
-		}
-		catch (JSONException e) {
-			Log.e(LOG_TAG, "JSON error", e);
-			return null;
-		}
-	}
 }
@@ -0,0 +1,528 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+import no.skavdahl.udacity.popularmovies.model.Video;
+import no.skavdahl.udacity.utils.EpochDay;
+import no.skavdahl.udacity.utils.JSONAdapter;
+import no.skavdahl.udacity.utils.StringPool;
+
+/**
+ * Streaming parser for JSON data returned from themoviedb.org. This class produces the
+ * same models as {@link MdbJSONAdapter}, but reads them in one pass directly from a
+ * character stream (typically the body of an HTTP response) without first buffering the
+ * response as a string and building a JSONObject tree.
+ *
+ * <p>The reader API is the same as that of <code>android.util.JsonReader</code>, which is
+ * a copy of the Gson stream reader used here. The Gson implementation also runs on the
+ * JVM, so the parser can be unit tested.</p>
+ *
+ * @author fdavs
+ */
+public class MdbJSONReader extends JSONAdapter {
+
+	private static final String LOG_TAG = MdbJSONReader.class.getSimpleName();
+
+	// --- attribute names in JSON responses from the server ---
+
+	private static final String JSON_RESULTS = "results";
+	private static final String JSON_PAGE = "page";
+	private static final String JSON_TOTAL_PAGES = "total_pages";
+
+	private static final String JSON_MOVIE_ID = "id";
+	private static final String JSON_MOVIE_TITLE = "title";
+	private static final String JSON_MOVIE_POSTER_PATH = "poster_path";
+	private static final String JSON_MOVIE_BACKDROP_PATH = "backdrop_path";
+	private static final String JSON_MOVIE_SYNOPSIS = "overview";
+	private static final String JSON_MOVIE_POPULARITY = "popularity";
+	private static final String JSON_MOVIE_VOTE_AVERAGE = "vote_average";
+	private static final String JSON_MOVIE_VOTE_COUNT = "vote_count";
+	private static final String JSON_MOVIE_RELEASE_DATE = "release_date";
+
+	private static final String JSON_MOVIE_VIDEOS  = "videos";
+	private static final String JSON_VIDEOS_KEY  = "key";
+	private static final String JSON_VIDEOS_SITE  = "site";
+	private static final String JSON_VIDEOS_NAME  = "name";
+
+	private static final String JSON_MOVIE_REVIEWS  = "reviews";
+	private static final String JSON_REVIEW_ID  = "id";
+	private static final String JSON_REVIEW_AUTHOR  = "author";
+	private static final String JSON_REVIEW_CONTENT  = "content";
+
+	private static final String JSON_CONFIG_IMAGES = "images";
+	private static final String JSON_CONFIG_BASE_URL = "base_url";
+	private static final String JSON_CONFIG_POSTER_SIZES = "poster_sizes";
+	private static final String JSON_CONFIG_BACKDROP_SIZES = "backdrop_sizes";
+
+	/**
+	 * Reads a movie list, as returned by a standard movie list request to themoviedb.org,
+	 * into a columnar batch. Movies that lack required attributes are skipped.
+	 *
+	 * @param in A character stream of JSON data. The stream is not closed.
+	 *
+	 * @return the movies, in list order
+	 *
+	 * @throws IOException if unable to read the stream or if the JSON data is malformed
+	 */
+	public static MovieBatch readMovieBatch(@NonNull Reader in) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		MovieBatch.Builder batch = new MovieBatch.Builder();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (JSON_RESULTS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext())
+					readListMovie(reader, batch);
+				reader.endArray();
+			}
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		return batch.build();
+	}
+
+	/**
+	 * Reads a single movie, as returned by a movie details request to themoviedb.org.
+	 *
+	 * @param in A character stream of JSON data. The stream is not closed.
+	 *
+	 * @return a movie object
+	 *
+	 * @throws IOException if unable to read the stream, if the JSON data is malformed or
+	 *                     if the movie lacks required attributes
+	 */
+	public static Movie readMovie(@NonNull Reader in) throws IOException {
+		Movie movie = readMovie(new JsonReader(in));
+		if (movie == null)
+			throw new IOException("Movie data is incomplete");
+
+		return movie;
+	}
+
+	/**
+	 * Reads a page of reviews, as returned by a movie review request to themoviedb.org.
+	 * Reviews that lack required attributes are skipped.
+	 *
+	 * @param in A character stream of JSON data. The stream is not closed.
+	 *
+	 * @return the page of reviews
+	 *
+	 * @throws IOException if unable to read the stream, if the JSON data is malformed or
+	 *                     if the response lacks the movie id or page number
+	 */
+	public static ReviewPage readReviewPage(@NonNull Reader in) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		int movieId = -1;
+		int page = 0;
+		int totalPages = 0;
+		List<Review> reviews = Collections.emptyList();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+
+			switch (name) {
+				case JSON_MOVIE_ID:
+					movieId = reader.nextInt();
+					break;
+				case JSON_PAGE:
+					page = reader.nextInt();
+					break;
+				case JSON_TOTAL_PAGES:
+					totalPages = reader.nextInt();
+					break;
+				case JSON_RESULTS:
+					reviews = readReviewList(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (movieId == -1 || page < 1)
+			throw new IOException("Review page is incomplete");
+
+		return new ReviewPage(movieId, page, totalPages, reviews);
+	}
+
+	/**
+	 * Reads the image configuration, as returned by a configuration request to
+	 * themoviedb.org.
+	 *
+	 * @param in A character stream of JSON data. The stream is not closed.
+	 *
+	 * @return the image configuration
+	 *
+	 * @throws IOException if unable to read the stream, if the JSON data is malformed or
+	 *                     if the configuration lacks the image base URL or sizes
+	 */
+	public static ImageConfiguration readImageConfiguration(@NonNull Reader in) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		String baseUrl = null;
+		List<String> posterSizes = null;
+		List<String> backdropSizes = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (JSON_CONFIG_IMAGES.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					if (reader.peek() == JsonToken.NULL) {
+						reader.nextNull();
+						continue;
+					}
+
+					switch (name) {
+						case JSON_CONFIG_BASE_URL:
+							baseUrl = nextOptString(reader);
+							break;
+						case JSON_CONFIG_POSTER_SIZES:
+							posterSizes = readStringList(reader);
+							break;
+						case JSON_CONFIG_BACKDROP_SIZES:
+							backdropSizes = readStringList(reader);
+							break;
+						default:
+							reader.skipValue();
+					}
+				}
+				reader.endObject();
+			}
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		if (baseUrl == null || baseUrl.isEmpty() || posterSizes == null || backdropSizes == null)
+			throw new IOException("Image configuration is incomplete");
+
+		return new ImageConfiguration(baseUrl, posterSizes, backdropSizes);
+	}
+
+	/**
+	 * Reads a movie object from the JSON stream.
+	 *
+	 * @return a movie object or <code>null</code> if the JSON object did not have
+	 *         all the attributes required for a movie.
+	 */
+	private static Movie readMovie(JsonReader reader) throws IOException {
+		MovieFields fields = readMovieFields(reader, true);
+		if (fields == null)
+			return null;
+
+		return new Movie(fields.id, fields.releaseDate, fields.title, fields.posterPath, fields.backdropPath, fields.synopsis,
+			fields.popularity, fields.voteAverage, fields.voteCount, fields.hasExtendedData, fields.reviews, fields.videos);
+	}
+
+	/**
+	 * Reads a movie object of a movie list from the JSON stream and adds it to a batch.
+	 * List entries have no reviews or videos.
+	 *
+	 * @return <code>true</code> if the movie was added, <code>false</code> if the JSON
+	 *         object did not have all the attributes required for a movie.
+	 */
+	private static boolean readListMovie(JsonReader reader, MovieBatch.Builder batch) throws IOException {
+		MovieFields fields = readMovieFields(reader, false);
+		if (fields == null)
+			return false;
+
+		long fingerprint = MovieFingerprint.of(fields.title, fields.posterPath, fields.backdropPath, fields.synopsis,
+			fields.popularity, fields.voteAverage, fields.voteCount, fields.releaseDate);
+		batch.add(fields.id, fields.title, fields.posterPath, fields.backdropPath, fields.synopsis,
+			fields.popularity, fields.voteAverage, fields.voteCount, fields.releaseDate, fingerprint);
+		return true;
+	}
+
+	/**
+	 * Reads the attributes of a movie object from the JSON stream. The rules are those of
+	 * {@link MdbJSONAdapter#toMovie}: a movie must have an id and a non-blank title, and it
+	 * has extended data if the reviews attribute is present.
+	 *
+	 * @param withExtendedData whether to read videos and reviews; if <code>false</code>
+	 *                         they are skipped
+	 *
+	 * @return the attributes, or <code>null</code> if the JSON object did not have all the
+	 *         attributes required for a movie.
+	 */
+	private static MovieFields readMovieFields(JsonReader reader, boolean withExtendedData) throws IOException {
+		MovieFields fields = new MovieFields();
+		boolean hasId = false;
+		String releaseDateString = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+
+			if (JSON_MOVIE_REVIEWS.equals(name))
+				fields.hasExtendedData = true;
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+
+			switch (name) {
+				case JSON_MOVIE_ID:
+					fields.id = reader.nextInt();
+					hasId = true;
+					break;
+				case JSON_MOVIE_RELEASE_DATE:
+					releaseDateString = reader.nextString();
+					break;
+				case JSON_MOVIE_TITLE:
+					fields.title = nextOptString(reader);
+					break;
+				case JSON_MOVIE_POSTER_PATH:
+					fields.posterPath = nextOptString(reader);
+					break;
+				case JSON_MOVIE_BACKDROP_PATH:
+					fields.backdropPath = nextOptString(reader);
+					break;
+				case JSON_MOVIE_SYNOPSIS:
+					fields.synopsis = nextOptString(reader);
+					break;
+				case JSON_MOVIE_POPULARITY:
+					fields.popularity = reader.nextDouble();
+					break;
+				case JSON_MOVIE_VOTE_AVERAGE:
+					fields.voteAverage = reader.nextDouble();
+					break;
+				case JSON_MOVIE_VOTE_COUNT:
+					fields.voteCount = reader.nextInt();
+					break;
+				case JSON_MOVIE_VIDEOS:
+					if (withExtendedData)
+						fields.videos = readVideoList(reader);
+					else
+						reader.skipValue();
+					break;
+				case JSON_MOVIE_REVIEWS:
+					if (withExtendedData)
+						fields.reviews = readReviewList(reader);
+					else
+						reader.skipValue();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (!hasId || fields.title == null || fields.title.trim().length() == 0) {
+			Log.w(LOG_TAG, "Skipping incomplete movie: id=" + fields.id + ", title=" + fields.title);
+			return null;
+		}
+
+		try {
+			fields.releaseDate = EpochDay.parseOptIsoDate(releaseDateString);
+		}
+		catch (ParseException | IllegalArgumentException e) {
+			// log the error (for diagnostics) but otherwise just continue without
+			// this particular movie
+			Log.w(LOG_TAG, "Skipping invalid movie: id=" + fields.id, e);
+			return null;
+		}
+
+		return fields;
+	}
+
+	/** The attributes of a movie object, as read by {@link #readMovieFields}. */
+	private static class MovieFields {
+		int id;
+		int releaseDate;
+		String title;
+		String posterPath;
+		String backdropPath;
+		String synopsis;
+		double popularity = Movie.DEFAULT_POPULARITY;
+		double voteAverage = Movie.DEFAULT_VOTE_AVERAGE;
+		int voteCount = Movie.DEFAULT_VOTE_COUNT;
+		boolean hasExtendedData;
+		List<Video> videos;
+		List<Review> reviews;
+	}
+
+	/**
+	 * Reads a list of videos, either given as a JSON array or as a container object
+	 * with the array in the "results" attribute.
+	 */
+	private static List<Video> readVideoList(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+			List<Video> result = Collections.emptyList();
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (JSON_RESULTS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY)
+					result = readVideoList(reader);
+				else
+					reader.skipValue();
+			}
+			reader.endObject();
+
+			return result;
+		}
+
+		List<Video> result = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Video video = readVideo(reader);
+			if (video != null)
+				result.add(video);
+		}
+		reader.endArray();
+
+		return result;
+	}
+
+	private static Video readVideo(JsonReader reader) throws IOException {
+		String key = null;
+		String site = null;
+		String name = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case JSON_VIDEOS_KEY:
+					key = nextOptString(reader);
+					break;
+				case JSON_VIDEOS_SITE:
+					site = nextOptString(reader);
+					break;
+				case JSON_VIDEOS_NAME:
+					name = nextOptString(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		try {
+			return new Video(key, site, name);
+		}
+		catch (IllegalArgumentException e) {
+			Log.w(LOG_TAG, "Skipping invalid video: key=" + key, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a list of reviews, either given as a JSON array or as a container object
+	 * with the array in the "results" attribute.
+	 */
+	private static List<Review> readReviewList(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+			List<Review> result = Collections.emptyList();
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (JSON_RESULTS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY)
+					result = readReviewList(reader);
+				else
+					reader.skipValue();
+			}
+			reader.endObject();
+
+			return result;
+		}
+
+		List<Review> result = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Review review = readReview(reader);
+			if (review != null)
+				result.add(review);
+		}
+		reader.endArray();
+
+		return result;
+	}
+
+	private static Review readReview(JsonReader reader) throws IOException {
+		String id = null;
+		String author = null;
+		String content = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case JSON_REVIEW_ID:
+					id = nextOptString(reader);
+					break;
+				case JSON_REVIEW_AUTHOR:
+					// review pages stay in ReviewPageCache, and a few reviewers
+					// write many of the reviews
+					author = StringPool.getShared().intern(nextOptString(reader));
+					break;
+				case JSON_REVIEW_CONTENT:
+					content = nextOptString(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		try {
+			return new Review(id, author, content);
+		}
+		catch (IllegalArgumentException e) {
+			Log.w(LOG_TAG, "Skipping invalid review: id=" + id, e);
+			return null;
+		}
+	}
+
+	private static List<String> readStringList(JsonReader reader) throws IOException {
+		List<String> result = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String value = nextOptString(reader);
+			if (value != null)
+				result.add(value);
+		}
+		reader.endArray();
+
+		return result;
+	}
+
+	/**
+	 * Returns the next value as a string. If the value is JSON null or the string "null",
+	 * {@code null} is returned.
+	 */
+	private static String nextOptString(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+
+		String value = reader.nextString();
+		return "null".equals(value) ? null : value;
+	}
+}
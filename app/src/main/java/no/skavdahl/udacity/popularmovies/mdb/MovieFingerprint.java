@@ -0,0 +1,77 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import no.skavdahl.udacity.popularmovies.model.Movie;
+
+/**
+ * Computes a fingerprint of the movie attributes that a movie list response provides. The
+ * fingerprint is stored with each movie, so a list refresh can tell which movies have
+ * not changed since they were last written and skip writing them again.
+ *
+ * <p>The fingerprint is a 64-bit FNV-1a hash of the attribute values. Each string is
+ * preceded by its length (-1 for null), so values cannot run into each other. A changed
+ * movie has the same fingerprint as before with a probability of about 2<sup>-64</sup>;
+ * in that case the refresh leaves the row as it is until the movie changes again.</p>
+ *
+ * @author fdavs
+ */
+public final class MovieFingerprint {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private MovieFingerprint() {
+		// not instantiable
+	}
+
+	/** Returns the fingerprint of a movie's list attributes. */
+	public static long of(Movie movie) {
+		return of(
+			movie.getTitle(),
+			movie.getPosterPath(),
+			movie.getBackdropPath(),
+			movie.getSynopsis(),
+			movie.getPopularity(),
+			movie.getVoteAverage(),
+			movie.getVoteCount(),
+			movie.getReleaseDate());
+	}
+
+	/**
+	 * Returns the fingerprint of a movie's list attributes.
+	 *
+	 * @param releaseDate The release date as an epoch day, or EpochDay.NONE if unknown
+	 */
+	public static long of(String title, String posterPath, String backdropPath, String synopsis,
+	                      double popularity, double voteAverage, int voteCount, int releaseDate) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = add(hash, title);
+		hash = add(hash, posterPath);
+		hash = add(hash, backdropPath);
+		hash = add(hash, synopsis);
+		hash = add(hash, Double.doubleToLongBits(popularity));
+		hash = add(hash, Double.doubleToLongBits(voteAverage));
+		hash = add(hash, voteCount);
+		hash = add(hash, releaseDate);
+		return hash;
+	}
+
+	private static long add(long hash, String value) {
+		if (value == null)
+			return add(hash, -1);
+
+		int length = value.length();
+		hash = add(hash, length);
+		for (int i = 0; i < length; ++i) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static long add(long hash, long value) {
+		for (int i = 0; i < 64; i += 8)
+			hash = (hash ^ ((value >>> i) & 0xff)) * FNV_PRIME;
+		return hash;
+	}
+}
@@ -1,6 +1,11 @@
 package no.skavdahl.udacity.popularmovies.mdb;
 
 import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import no.skavdahl.udacity.utils.ConnectionQuality;
+import no.skavdahl.udacity.utils.NetworkConditions;
 
 /**
  * Facade for requests to themoviedb.org.
@@ -9,10 +14,17 @@ import android.net.Uri;
  */
 public class Request {
 
-	public enum ImageType {
-		POSTER,
-		BACKDROP
-	}
+	/** Base URL of the web service API. */
+	public static final String API_BASE_URL = "http://api.themoviedb.org/3/";
+
+	/** The number of reviews on a full page of a review response. */
+	public static final int REVIEWS_PER_PAGE = 20;
+
+	/** Image base URL and sizes; replaced when the configuration has been downloaded. */
+	private static volatile ImageConfiguration imageConfiguration = ImageConfiguration.DEFAULT;
+
+	/** Network conditions that determine image sizes, or null if unknown. */
+	private static volatile NetworkConditions networkConditions;
 
 	/**
 	 * Returns the query URL for standard movie lists. See related lists at
@@ -26,7 +38,7 @@ public class Request {
 	 * @return a String with the URL that will perform the appropriate query at themoviedb.org.
 	 */
 	public static String getStandardMovieListURL(String apiKey, String listName, int page) {
-		return Uri.parse("http://api.themoviedb.org/3/movie").buildUpon()
+		return Uri.parse(API_BASE_URL + "movie").buildUpon()
 			.appendPath(listName)
 			.appendQueryParameter("api_key", apiKey)
 			.appendQueryParameter("page", Integer.toString(page))
@@ -43,7 +55,7 @@ public class Request {
 	 * @return a String with the URL that will perform the appropriate query at themoviedb.org.
 	 */
 	public static String getMovieURL(String apiKey, int movieId) {
-		return Uri.parse("http://api.themoviedb.org/3/movie").buildUpon()
+		return Uri.parse(API_BASE_URL + "movie").buildUpon()
 			.appendPath(Integer.toString(movieId))
 			.appendQueryParameter("api_key", apiKey)
 			.appendQueryParameter("append_to_response", "videos,reviews")
@@ -51,91 +63,130 @@ public class Request {
 	}
 
 	/**
-	 * Returns the query URL for poster thumbnail images.
+	 * Returns the query URL for one page of the reviews of a movie. The first page is
+	 * also included in the movie details response. See
+	 * http://docs.themoviedb.apiary.io/#reference/movies/movieidreviews/get
 	 *
- 	 * @param posterPath The path to the poster as reported by movie discovery responses.
+	 * @param apiKey The API key necessary to execute a query at themoviedb.org
+	 * @param movieId Which movie to query.
+	 * @param page The page number to return, starting with 1
+	 *
+	 * @return a String with the URL that will perform the appropriate query at themoviedb.org.
 	 */
-	public static String getPosterThumbnailDownloadURL(String posterPath, int posterWidthPixels) {
-		return "http://image.tmdb.org/t/p/w" + posterWidthPixels + posterPath;
+	public static String getMovieReviewsURL(String apiKey, int movieId, int page) {
+		return Uri.parse(API_BASE_URL + "movie").buildUpon()
+			.appendPath(Integer.toString(movieId))
+			.appendPath("reviews")
+			.appendQueryParameter("api_key", apiKey)
+			.appendQueryParameter("page", Integer.toString(page))
+			.toString();
 	}
 
 	/**
-	 * Returns a download URL for a high-resolution image. The meaning of "high resolution" is
-	 * determined by the device capabilities (screen resolution).
+	 * Returns the query URL for the API configuration, which includes the image base URL
+	 * and available image sizes. See
+	 * http://docs.themoviedb.apiary.io/#reference/configuration/configuration/get
+	 *
+	 * @param apiKey The API key necessary to execute a query at themoviedb.org
 	 *
-	 * @return a download URL for a higher-resolution poster image.
+	 * @return a String with the URL that will perform the appropriate query at themoviedb.org.
 	 */
-	public static String getImageDownloadURL(ImageType imageType, String imagePath, int availableWidthPixels) {
-		// TODO Consider device connectivity quality
-		//      if the device is connected over a low bandwidth connection, a lower resolution
-		//      picture should be requested
-
-		String optimalWidth;
-		switch (imageType) {
-			case POSTER:
-				optimalWidth = calculateOptimalPosterWidth(availableWidthPixels);
-				break;
-			case BACKDROP:
-				optimalWidth = calculateOptimalBackdropWidth(availableWidthPixels);
-				break;
-			default:
-				throw new AssertionError(imageType);
-		}
+	public static String getConfigurationURL(String apiKey) {
+		return Uri.parse(API_BASE_URL + "configuration").buildUpon()
+			.appendQueryParameter("api_key", apiKey)
+			.toString();
+	}
 
-		return "http://image.tmdb.org/t/p/" + optimalWidth + imagePath;
+	/** Returns the image configuration currently used to build image download URLs. */
+	public static ImageConfiguration getImageConfiguration() {
+		return imageConfiguration;
 	}
 
 	/**
-	 * Calculates the optimal poster width to request from the server given some available
-	 * space (in pixels).
-	 *
-	 * @param availableWidthPixels Available space in pixels
-	 *
-	 * @return A width code suitable for inclusion in the request URL
-	 *
-	 * @see <a href="http://docs.themoviedb.apiary.io/#reference/configuration/configuration/get">themoviedb.org API docs</a>
+	 * Sets the image configuration to use when building image download URLs, typically
+	 * one downloaded from themoviedb.org.
 	 */
-	private static String calculateOptimalPosterWidth(int availableWidthPixels) {
-		// TODO the available sizes should be retrieved from the configuration
-		//      http://api.themoviedb.org/3/configuration
-		final int widthOptions[] = { 92, 154, 185, 342, 500, 780 };
-		final String optionCodes[]= { "w92", "w154", "w185", "w342", "w500", "w780" };
+	public static void setImageConfiguration(@NonNull ImageConfiguration configuration) {
+		imageConfiguration = configuration;
+	}
 
-		return bestMatch(widthOptions, optionCodes, availableWidthPixels);
+	/**
+	 * Sets the network conditions to consider when choosing image sizes. Without network
+	 * conditions, images are requested at the size that fits the available space.
+	 */
+	public static void setNetworkConditions(@Nullable NetworkConditions conditions) {
+		networkConditions = conditions;
 	}
 
 	/**
-	 * Calculates the optimal backdrop width to request from the server given some available
-	 * space (in pixels).
-	 *
-	 * @param availableWidthPixels Available space in pixels
+	 * Returns the query URL for poster thumbnail images. The smallest available poster
+	 * size that fills the given width is requested, or a smaller size on a slow or
+	 * metered connection.
 	 *
-	 * @return A width code suitable for inclusion in the request URL
+ 	 * @param posterPath The path to the poster as reported by movie discovery responses.
+	 * @param posterWidthPixels The width of the poster thumbnail on screen
+	 */
+	public static String getPosterThumbnailDownloadURL(String posterPath, int posterWidthPixels) {
+		// thumbnails are small and many, so they are never requested larger than needed
+		int sizeStep = Math.min(0, getImageSizeStep(networkConditions));
+
+		ImageConfiguration configuration = imageConfiguration;
+		return configuration.getBaseUrl() +
+			configuration.getSizeCode(ImageType.POSTER, posterWidthPixels, sizeStep) +
+			posterPath;
+	}
+
+	/**
+	 * Returns a download URL for an image. The smallest available image size that fills
+	 * the available width is requested. The size is stepped down on slow or metered
+	 * connections and up on fast Wi-Fi.
 	 *
-	 * @see <a href="http://docs.themoviedb.apiary.io/#reference/configuration/configuration/get">themoviedb.org API docs</a>
+	 * @return a download URL for the image.
 	 */
-	private static String calculateOptimalBackdropWidth(int availableWidthPixels) {
-		// TODO the available sizes should be retrieved from the configuration
-		//      http://api.themoviedb.org/3/configuration
-		final int widthOptions[] = { 300, 780, 1280 };
-		final String optionCodes[]= { "w300", "w780", "w1280" };
+	public static String getImageDownloadURL(ImageType imageType, String imagePath, int availableWidthPixels) {
+		int sizeStep = getImageSizeStep(networkConditions);
 
-		return bestMatch(widthOptions, optionCodes, availableWidthPixels);
+		ImageConfiguration configuration = imageConfiguration;
+		return configuration.getBaseUrl() +
+			configuration.getSizeCode(imageType, availableWidthPixels, sizeStep) +
+			imagePath;
 	}
 
-	private static String bestMatch(int[] widthOption, String[] optionCode, int availableWidth) {
-		int best = Integer.MAX_VALUE;
-		String bestCode = null;
-		for (int i = widthOption.length - 1; i >= 0; --i) {
-			int distance = Math.abs(availableWidth - widthOption[i]);
-			if (distance <= best) {
-				best = distance;
-				bestCode = optionCode[i];
-			}
-			else break;
-		}
+	/**
+	 * Returns how many renditions smaller (negative) or larger (positive) than the best fit
+	 * to request under the given network conditions.
+	 */
+	static int getImageSizeStep(@Nullable NetworkConditions conditions) {
+		if (conditions == null)
+			return 0;
 
-		return bestCode;
+		return getImageSizeStep(conditions.getConnectionQuality(), conditions.isWifi(), conditions.isMetered());
 	}
 
+	/**
+	 * Returns how many renditions smaller (negative) or larger (positive) than the best fit
+	 * to request over a connection of the given quality and type.
+	 */
+	static int getImageSizeStep(ConnectionQuality quality, boolean wifi, boolean metered) {
+		int sizeStep;
+		switch (quality) {
+			case POOR:
+				sizeStep = -2;
+				break;
+			case MODERATE:
+				sizeStep = -1;
+				break;
+			case EXCELLENT:
+				sizeStep = (wifi && !metered) ? 1 : 0;
+				break;
+			default:
+				sizeStep = 0;
+		}
+
+		// the user may pay for every byte
+		if (metered)
+			sizeStep = Math.min(sizeStep, -1);
+
+		return sizeStep;
+	}
 }
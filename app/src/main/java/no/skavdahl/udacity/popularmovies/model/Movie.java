@@ -4,9 +4,10 @@ import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 
+import no.skavdahl.udacity.utils.EpochDay;
+
 /**
  * Represents a movie.
  *
@@ -25,7 +26,7 @@ public class Movie {
 	private final double optPopularity;
 	private final double optVoteAverage;
 	private final int optVoteCount;
-	private final Date optReleaseDate;
+	private final int optReleaseDate;
 
 	private final boolean hasExtendedData;
 	private final List<Review> optReviews;
@@ -42,7 +43,7 @@ public class Movie {
 
 	public Movie(
 		final int movieDbId,
-		final Date releaseDate,
+		final int releaseDate,
 		final String title,
 		final String posterPath,
 		final String backdropPath,
@@ -119,11 +120,19 @@ public class Movie {
 		return optVoteCount;
 	}
 
-	/** Returns the movie's release date. May be null. */
-	public Date getReleaseDate() {
+	/**
+	 * Returns the movie's release date as an epoch day, or {@link EpochDay#NONE} if the
+	 * release date is unknown.
+	 */
+	public int getReleaseDate() {
 		return optReleaseDate;
 	}
 
+	/** Returns true if the movie's release date is known. */
+	public boolean hasReleaseDate() {
+		return optReleaseDate != EpochDay.NONE;
+	}
+
 	/**
 	 * Returns true if this movie contains extended data. This is defined as additional data
 	 * that is available when the movie is looked up individually but not included when the
@@ -0,0 +1,184 @@
+package no.skavdahl.udacity.popularmovies.model;
+
+import java.util.Arrays;
+
+import no.skavdahl.udacity.utils.EpochDay;
+
+/**
+ * The movies of a movie list page, stored column by column. Where a list of
+ * {@link Movie} objects needs an object per movie, plus the list wrappers each movie
+ * carries for its reviews and videos, a batch needs one array per attribute, and the
+ * numbers are stored unboxed. Only the attributes a movie list provides are included.
+ *
+ * <p>Movies are accessed by their index in the batch, which is also their position in
+ * the list. An index outside the batch throws an IndexOutOfBoundsException. Batches are
+ * immutable and are created with a {@link Builder}.</p>
+ *
+ * @author fdavs
+ */
+public final class MovieBatch {
+
+	private final int size;
+	private final int[] ids;
+	private final String[] titles;
+	private final String[] posterPaths;
+	private final String[] backdropPaths;
+	private final String[] synopses;
+	private final double[] popularities;
+	private final double[] voteAverages;
+	private final int[] voteCounts;
+	private final int[] releaseDates;
+	private final long[] fingerprints;
+
+	private MovieBatch(Builder builder) {
+		size = builder.size;
+		ids = Arrays.copyOf(builder.ids, size);
+		titles = Arrays.copyOf(builder.titles, size);
+		posterPaths = Arrays.copyOf(builder.posterPaths, size);
+		backdropPaths = Arrays.copyOf(builder.backdropPaths, size);
+		synopses = Arrays.copyOf(builder.synopses, size);
+		popularities = Arrays.copyOf(builder.popularities, size);
+		voteAverages = Arrays.copyOf(builder.voteAverages, size);
+		voteCounts = Arrays.copyOf(builder.voteCounts, size);
+		releaseDates = Arrays.copyOf(builder.releaseDates, size);
+		fingerprints = Arrays.copyOf(builder.fingerprints, size);
+	}
+
+	/** Returns the number of movies in the batch. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the integer identifier of a movie at themoviedb.org. */
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	public String getTitle(int index) {
+		return titles[index];
+	}
+
+	public String getPosterPath(int index) {
+		return posterPaths[index];
+	}
+
+	public String getBackdropPath(int index) {
+		return backdropPaths[index];
+	}
+
+	public String getSynopsis(int index) {
+		return synopses[index];
+	}
+
+	public double getPopularity(int index) {
+		return popularities[index];
+	}
+
+	public double getVoteAverage(int index) {
+		return voteAverages[index];
+	}
+
+	public int getVoteCount(int index) {
+		return voteCounts[index];
+	}
+
+	/**
+	 * Returns the release date of a movie as an epoch day, or {@link EpochDay#NONE} if the
+	 * release date is not known.
+	 */
+	public int getReleaseDate(int index) {
+		return releaseDates[index];
+	}
+
+	/** Returns the fingerprint of a movie's attributes, see MovieFingerprint. */
+	public long getFingerprint(int index) {
+		return fingerprints[index];
+	}
+
+	/** Collects movies for a batch. A builder is not thread safe. */
+	public static final class Builder {
+
+		/** The number of movies on a list page from themoviedb.org. */
+		private static final int DEFAULT_CAPACITY = 20;
+
+		private int size;
+		private int[] ids;
+		private String[] titles;
+		private String[] posterPaths;
+		private String[] backdropPaths;
+		private String[] synopses;
+		private double[] popularities;
+		private double[] voteAverages;
+		private int[] voteCounts;
+		private int[] releaseDates;
+		private long[] fingerprints;
+
+		public Builder() {
+			this(DEFAULT_CAPACITY);
+		}
+
+		/** @param capacity The expected number of movies */
+		public Builder(int capacity) {
+			ids = new int[capacity];
+			titles = new String[capacity];
+			posterPaths = new String[capacity];
+			backdropPaths = new String[capacity];
+			synopses = new String[capacity];
+			popularities = new double[capacity];
+			voteAverages = new double[capacity];
+			voteCounts = new int[capacity];
+			releaseDates = new int[capacity];
+			fingerprints = new long[capacity];
+		}
+
+		/**
+		 * Adds a movie after the movies already added.
+		 *
+		 * @param releaseDate The release date as an epoch day, or EpochDay.NONE if unknown
+		 * @param fingerprint The fingerprint of the other attributes, see MovieFingerprint
+		 */
+		public Builder add(int id, String title, String posterPath, String backdropPath, String synopsis,
+		                   double popularity, double voteAverage, int voteCount, int releaseDate, long fingerprint) {
+			if (size == ids.length)
+				grow();
+
+			ids[size] = id;
+			titles[size] = title;
+			posterPaths[size] = posterPath;
+			backdropPaths[size] = backdropPath;
+			synopses[size] = synopsis;
+			popularities[size] = popularity;
+			voteAverages[size] = voteAverage;
+			voteCounts[size] = voteCount;
+			releaseDates[size] = releaseDate;
+			fingerprints[size] = fingerprint;
+			size++;
+
+			return this;
+		}
+
+		private void grow() {
+			int capacity = Math.max(DEFAULT_CAPACITY, ids.length * 2);
+			ids = Arrays.copyOf(ids, capacity);
+			titles = Arrays.copyOf(titles, capacity);
+			posterPaths = Arrays.copyOf(posterPaths, capacity);
+			backdropPaths = Arrays.copyOf(backdropPaths, capacity);
+			synopses = Arrays.copyOf(synopses, capacity);
+			popularities = Arrays.copyOf(popularities, capacity);
+			voteAverages = Arrays.copyOf(voteAverages, capacity);
+			voteCounts = Arrays.copyOf(voteCounts, capacity);
+			releaseDates = Arrays.copyOf(releaseDates, capacity);
+			fingerprints = Arrays.copyOf(fingerprints, capacity);
+		}
+
+		/** Returns the number of movies added so far. */
+		public int size() {
+			return size;
+		}
+
+		/** Returns a batch of the movies added so far. */
+		public MovieBatch build() {
+			return new MovieBatch(this);
+		}
+	}
+}
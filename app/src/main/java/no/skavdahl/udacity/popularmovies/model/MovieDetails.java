@@ -0,0 +1,63 @@
+package no.skavdahl.udacity.popularmovies.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The reviews and videos displayed on the detail screen of a movie, as they were in the
+ * database when they were last downloaded. Objects of this class are immutable, so
+ * they can be cached and shared between loaders.
+ *
+ * @author fdavs
+ */
+public class MovieDetails {
+
+	private final int movieId;
+	private final long modified;
+	private final List<Review> reviews;
+	private final boolean moreReviewsAvailable;
+	private final List<Video> videos;
+
+	/**
+	 * @param movieId The id of the movie
+	 * @param modified The time the details were downloaded, as read from the movie row
+	 * @param reviews The first reviews of the movie
+	 * @param moreReviewsAvailable Whether the movie may have more reviews than those given
+	 * @param videos The videos of the movie that can be displayed
+	 */
+	public MovieDetails(int movieId, long modified, List<Review> reviews, boolean moreReviewsAvailable, List<Video> videos) {
+		this.movieId = movieId;
+		this.modified = modified;
+		this.reviews = Collections.unmodifiableList(reviews);
+		this.moreReviewsAvailable = moreReviewsAvailable;
+		this.videos = Collections.unmodifiableList(videos);
+	}
+
+	public int getMovieId() {
+		return movieId;
+	}
+
+	public long getModified() {
+		return modified;
+	}
+
+	public List<Review> getReviews() {
+		return reviews;
+	}
+
+	public boolean isMoreReviewsAvailable() {
+		return moreReviewsAvailable;
+	}
+
+	public List<Video> getVideos() {
+		return videos;
+	}
+
+	/**
+	 * Returns whether these details can be displayed in place of the first
+	 * <code>reviewCount</code> reviews of the movie.
+	 */
+	public boolean hasReviews(int reviewCount) {
+		return reviews.size() >= reviewCount || !moreReviewsAvailable;
+	}
+}
@@ -0,0 +1,55 @@
+package no.skavdahl.udacity.popularmovies.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the reviews of a movie, as returned by a review request to themoviedb.org.
+ * Objects of this class are immutable, so they can be cached and shared between loaders.
+ *
+ * @author fdavs
+ */
+public class ReviewPage {
+
+	private final int movieId;
+	private final int page;
+	private final int totalPages;
+	private final List<Review> reviews;
+
+	/**
+	 * @param movieId The id of the movie
+	 * @param page The page number, starting with 1
+	 * @param totalPages The number of review pages the movie has
+	 * @param reviews The reviews on the page
+	 */
+	public ReviewPage(int movieId, int page, int totalPages, List<Review> reviews) {
+		if (page < 1)
+			throw new IllegalArgumentException("page == " + page);
+
+		this.movieId = movieId;
+		this.page = page;
+		this.totalPages = totalPages;
+		this.reviews = Collections.unmodifiableList(reviews);
+	}
+
+	public int getMovieId() {
+		return movieId;
+	}
+
+	public int getPage() {
+		return page;
+	}
+
+	public int getTotalPages() {
+		return totalPages;
+	}
+
+	public List<Review> getReviews() {
+		return reviews;
+	}
+
+	/** Returns whether the movie has reviews on pages after this one. */
+	public boolean hasNextPage() {
+		return page < totalPages && !reviews.isEmpty();
+	}
+}
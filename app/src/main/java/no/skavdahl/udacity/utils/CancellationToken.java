@@ -0,0 +1,66 @@
+package no.skavdahl.udacity.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allows the owner of one or more asynchronous operations to cancel them. Pass the same
+ * token to every operation that should be canceled together, for example all the requests
+ * started by one screen, and call {@link #cancel()} when the results are no longer needed.
+ *
+ * <p>Operations register a listener with the token. A listener that is registered after
+ * the token has been canceled is invoked at once. Listeners are invoked on the thread that
+ * calls {@link #cancel()}.</p>
+ *
+ * @author fdavs
+ */
+public class CancellationToken {
+
+	/** Receives notification that a token has been canceled. */
+	public interface OnCancelListener {
+		void onCancel();
+	}
+
+	private final List<OnCancelListener> listeners = new ArrayList<>();
+	private boolean canceled;
+
+	/** Cancels all operations associated with this token. Subsequent calls have no effect. */
+	public void cancel() {
+		List<OnCancelListener> toNotify;
+		synchronized (this) {
+			if (canceled)
+				return;
+			canceled = true;
+			toNotify = new ArrayList<>(listeners);
+			listeners.clear();
+		}
+
+		for (OnCancelListener listener : toNotify)
+			listener.onCancel();
+	}
+
+	/** Returns whether {@link #cancel()} has been called. */
+	public synchronized boolean isCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * Registers a listener to be invoked when the token is canceled. If the token has
+	 * already been canceled, the listener is invoked immediately.
+	 */
+	public void register(final OnCancelListener listener) {
+		synchronized (this) {
+			if (!canceled) {
+				listeners.add(listener);
+				return;
+			}
+		}
+
+		listener.onCancel();
+	}
+
+	/** Removes a listener, typically because its operation has completed. */
+	public synchronized void unregister(final OnCancelListener listener) {
+		listeners.remove(listener);
+	}
+}
@@ -0,0 +1,200 @@
+package no.skavdahl.udacity.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Stops sending requests to a server that keeps failing. Install this object as an
+ * application interceptor ahead of the {@link RetryInterceptor}, so that one failure is
+ * counted per call rather than per attempt.
+ *
+ * <p>The breaker starts out {@link State#CLOSED}, passing all requests through. After
+ * <code>failureThreshold</code> consecutive failed calls (I/O errors or server errors)
+ * the breaker opens. While {@link State#OPEN}, requests fail fast: a request is answered
+ * from the HTTP cache if possible (even if the cached response is stale), and otherwise
+ * fails immediately with a {@link CircuitOpenException}. After <code>openTime</code> the
+ * breaker becomes {@link State#HALF_OPEN} and lets one trial request through. The breaker
+ * closes if the trial succeeds, and opens again if it fails.</p>
+ *
+ * @author fdavs
+ */
+public class CircuitBreaker implements Interceptor {
+
+	private static final String LOG_TAG = CircuitBreaker.class.getSimpleName();
+
+	/** The states of a circuit breaker. */
+	public enum State {
+		/** Requests are passed through. */
+		CLOSED,
+		/** Requests fail fast without contacting the server. */
+		OPEN,
+		/** One trial request is passed through, the rest fail fast. */
+		HALF_OPEN
+	}
+
+	/** Thrown when a request is rejected because the circuit breaker is open. */
+	public static class CircuitOpenException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String message) {
+			super(message);
+		}
+	}
+
+	private final int failureThreshold;
+	private final long openTimeNanos;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAtNanos;
+	private boolean trialInFlight;
+
+	private long openCount;
+	private long rejectedCount;
+	private long fallbackCount;
+
+	/**
+	 * @param failureThreshold The number of consecutive failures that opens the breaker
+	 * @param openTimeMillis How long the breaker stays open before a trial request is
+	 *                       let through
+	 */
+	public CircuitBreaker(final int failureThreshold, final long openTimeMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openTimeNanos = TimeUnit.MILLISECONDS.toNanos(openTimeMillis);
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+
+		if (!allowRequest())
+			return fallback(chain, request);
+
+		Response response;
+		try {
+			response = chain.proceed(request);
+		}
+		catch (IOException e) {
+			if (RetryInterceptor.isCanceled(request))
+				onCanceled();
+			else
+				onFailure();
+			throw e;
+		}
+
+		if (response.code() >= 500 || response.code() == RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS)
+			onFailure();
+		else
+			onSuccess();
+
+		return response;
+	}
+
+	/**
+	 * Serves a rejected request from the cache, or fails with a CircuitOpenException
+	 * if the response is not cached.
+	 */
+	private Response fallback(Chain chain, Request request) throws IOException {
+		Request cacheOnlyRequest = request.newBuilder()
+			.cacheControl(CacheControl.FORCE_CACHE)
+			.build();
+
+		Response response = chain.proceed(cacheOnlyRequest);
+
+		// OkHttp reports an unsatisfiable cache-only request as 504 Gateway Timeout
+		if (response.code() == 504) {
+			response.body().close();
+			synchronized (this) {
+				rejectedCount++;
+			}
+			throw new CircuitOpenException("Circuit breaker is open, request rejected: " + request.url().encodedPath());
+		}
+
+		synchronized (this) {
+			fallbackCount++;
+		}
+		return response;
+	}
+
+	private synchronized boolean allowRequest() {
+		switch (state) {
+			case OPEN:
+				if (System.nanoTime() - openedAtNanos < openTimeNanos)
+					return false;
+				state = State.HALF_OPEN;
+				trialInFlight = false;
+				Log.i(LOG_TAG, "Circuit breaker half-open, allowing a trial request");
+				// fall through
+
+			case HALF_OPEN:
+				if (trialInFlight)
+					return false;
+				trialInFlight = true;
+				return true;
+
+			default:
+				return true;
+		}
+	}
+
+	private synchronized void onSuccess() {
+		if (state != State.CLOSED)
+			Log.i(LOG_TAG, "Circuit breaker closed");
+
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight = false;
+	}
+
+	private synchronized void onCanceled() {
+		// a canceled trial says nothing about the server, so allow a new trial
+		trialInFlight = false;
+	}
+
+	private synchronized void onFailure() {
+		consecutiveFailures++;
+		trialInFlight = false;
+
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+			Log.w(LOG_TAG, "Circuit breaker opened after " + consecutiveFailures + " consecutive failures");
+			state = State.OPEN;
+			openedAtNanos = System.nanoTime();
+			openCount++;
+		}
+	}
+
+	/** Returns the current state of the circuit breaker. */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/** Returns the number of times the breaker has opened. */
+	public synchronized long getOpenCount() {
+		return openCount;
+	}
+
+	/** Returns the number of requests that failed fast because the breaker was open. */
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/** Returns the number of requests served from the cache because the breaker was open. */
+	public synchronized long getFallbackCount() {
+		return fallbackCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Circuit breaker: " +
+			state + ", opened " + openCount + " times, " +
+			rejectedCount + " rejected, " +
+			fallbackCount + " served from cache";
+	}
+}
@@ -0,0 +1,42 @@
+package no.skavdahl.udacity.utils;
+
+/**
+ * Coarse classification of the throughput of a network connection.
+ *
+ * @see ThroughputEstimator
+ * @author fdavs
+ */
+public enum ConnectionQuality {
+
+	/** Not enough downloads have been measured to tell. */
+	UNKNOWN,
+
+	/** Less than 150 kbit/s, a congested mobile connection or 2G. */
+	POOR,
+
+	/** 150 to 550 kbit/s. */
+	MODERATE,
+
+	/** 550 kbit/s to 2 Mbit/s. */
+	GOOD,
+
+	/** More than 2 Mbit/s. */
+	EXCELLENT;
+
+	/** Upper throughput limits (in bytes per second) of POOR, MODERATE and GOOD. */
+	private static final double POOR_LIMIT = 150 * 1000 / 8;
+	private static final double MODERATE_LIMIT = 550 * 1000 / 8;
+	private static final double GOOD_LIMIT = 2000 * 1000 / 8;
+
+	/** Returns the connection quality corresponding to the given throughput. */
+	public static ConnectionQuality classify(double bytesPerSecond) {
+		if (bytesPerSecond < POOR_LIMIT)
+			return POOR;
+		if (bytesPerSecond < MODERATE_LIMIT)
+			return MODERATE;
+		if (bytesPerSecond < GOOD_LIMIT)
+			return GOOD;
+
+		return EXCELLENT;
+	}
+}
@@ -0,0 +1,97 @@
+package no.skavdahl.udacity.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+
+/**
+ * Opens connections to web service hosts ahead of time. The first request to a host pays
+ * for a DNS lookup and TCP (and TLS) connection setup. Sending a small HEAD request to
+ * each host in the background as early as possible moves that cost off the critical path:
+ * when the first real request is made, it finds an open connection in the pool.
+ *
+ * @author fdavs
+ */
+public final class ConnectionWarmer {
+
+	private static final String LOG_TAG = ConnectionWarmer.class.getSimpleName();
+
+	private ConnectionWarmer() {
+		// not instantiable
+	}
+
+	/**
+	 * Asynchronously sends a HEAD request to each of the given URLs. The response status is
+	 * ignored; the only purpose of the request is to leave an open connection in the
+	 * client's connection pool.
+	 *
+	 * @param client The client whose connection pool should be warmed
+	 * @param urls URLs on the hosts to connect to
+	 */
+	public static void warmUp(final OkHttpClient client, final String... urls) {
+		warmUp(client, null, urls);
+	}
+
+	/**
+	 * Asynchronously sends a HEAD request to each of the given URLs, each when it has taken
+	 * a token of {@link RequestPriority#BACKGROUND background} priority from the given
+	 * rate limiter.
+	 *
+	 * @param client The client whose connection pool should be warmed
+	 * @param rateLimiter The rate limiter of the client, or <code>null</code> if the client
+	 *                    is not rate limited
+	 * @param urls URLs on the hosts to connect to
+	 */
+	public static void warmUp(final OkHttpClient client, final RateLimiter rateLimiter, final String... urls) {
+		final boolean debug = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+		for (final String url : urls) {
+			Request request = new Request.Builder()
+				.url(url)
+				.head()
+				.cacheControl(CacheControl.FORCE_NETWORK)
+				.build();
+
+			final long start = System.nanoTime();
+			final Call call = client.newCall(request);
+			final Callback callback = new Callback() {
+				@Override
+				public void onFailure(Request request, IOException e) {
+					// not critical, the connection will be opened by the first real request
+					if (debug) Log.d(LOG_TAG, "Warm-up of " + request.url().host() + " failed: " + e);
+				}
+
+				@Override
+				public void onResponse(Response response) throws IOException {
+					response.body().close();
+
+					if (debug) {
+						long elapsedMillis = (System.nanoTime() - start) / 1000000;
+						Log.d(LOG_TAG, "Connection to " + response.request().url().host() + " warmed up in " + elapsedMillis + " ms");
+					}
+				}
+			};
+
+			if (rateLimiter == null) {
+				call.enqueue(callback);
+				continue;
+			}
+
+			rateLimiter.execute(RequestPriority.BACKGROUND, new Runnable() {
+				@Override
+				public void run() {
+					call.enqueue(callback);
+				}
+			});
+		}
+	}
+}
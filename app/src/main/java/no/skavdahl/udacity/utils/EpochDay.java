@@ -0,0 +1,138 @@
+package no.skavdahl.udacity.utils;
+
+import java.text.ParseException;
+
+/**
+ * Calendar dates represented as the number of days since 1970-01-01 (the epoch day). An
+ * epoch day is a plain int: it has no time of day and no time zone, so a date stored as
+ * an epoch day is the same date wherever it is read.
+ *
+ * <p>The methods in this class do not allocate any objects, except for the exception
+ * thrown when a date string is invalid. Parsing a date string with SimpleDateFormat
+ * creates several objects per call (the format itself, a Calendar, a ParsePosition and
+ * the resulting Date), which adds up when a list of movies is parsed.</p>
+ *
+ * <p>The conversions use the proleptic Gregorian calendar.</p>
+ *
+ * @author fdavs
+ */
+public final class EpochDay {
+
+	/** Value that represents a missing date. */
+	public static final int NONE = Integer.MIN_VALUE;
+
+	/** Days per 400-year Gregorian cycle. */
+	private static final int DAYS_PER_ERA = 146097;
+
+	/** Days from 0000-03-01 to 1970-01-01. */
+	private static final int DAYS_0000_TO_1970 = 719468;
+
+	private EpochDay() {
+		// not instantiable
+	}
+
+	/**
+	 * Parses a date string formatted as yyyy-MM-dd, as used by themoviedb.org. Leading and
+	 * trailing whitespace is ignored.
+	 *
+	 * @param s A date string formatted as yyyy-MM-dd. The string may also be
+	 *          <code>null</code>, empty or the value "null".
+	 *
+	 * @return the date as an epoch day, or {@link #NONE} if the string does not specify a
+	 *         date value.
+	 *
+	 * @throws ParseException if the string is not a valid date.
+	 */
+	public static int parseOptIsoDate(CharSequence s) throws ParseException {
+		if (s == null)
+			return NONE;
+
+		int start = 0;
+		int end = s.length();
+		while (start < end && s.charAt(start) <= ' ')
+			start++;
+		while (end > start && s.charAt(end - 1) <= ' ')
+			end--;
+
+		if (start == end || isNull(s, start, end))
+			return NONE;
+
+		if (end - start != 10 || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-')
+			throw new ParseException("Invalid date string: '" + s + "'", start);
+
+		int year = parseDigits(s, start, start + 4);
+		int month = parseDigits(s, start + 5, start + 7);
+		int day = parseDigits(s, start + 8, start + 10);
+
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month))
+			throw new ParseException("Invalid date string: '" + s + "'", start);
+
+		return of(year, month, day);
+	}
+
+	/**
+	 * Returns the epoch day of a calendar date.
+	 *
+	 * @param year The year, for example 2015
+	 * @param month The month, 1 (January) to 12 (December)
+	 * @param day The day of the month, starting with 1
+	 */
+	public static int of(int year, int month, int day) {
+		// days_from_civil, see http://howardhinnant.github.io/date_algorithms.html
+		// the year is counted from March so the leap day is the last day of the year
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+	}
+
+	/** Returns the year of the given epoch day. */
+	public static int getYear(int epochDay) {
+		// civil_from_days, see http://howardhinnant.github.io/date_algorithms.html
+		int z = epochDay + DAYS_0000_TO_1970;
+		int era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+		int dayOfEra = z - era * DAYS_PER_ERA;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		return yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+	}
+
+	private static boolean isNull(CharSequence s, int start, int end) {
+		return end - start == 4 &&
+			s.charAt(start) == 'n' &&
+			s.charAt(start + 1) == 'u' &&
+			s.charAt(start + 2) == 'l' &&
+			s.charAt(start + 3) == 'l';
+	}
+
+	/** Returns the value of the decimal digits s[start, end), or -1 if there is a non-digit. */
+	private static int parseDigits(CharSequence s, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; ++i) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+				return leap ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package no.skavdahl.udacity.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Measures the time between frames drawn on the main thread while a screen is visible.
+ * A frame that takes longer than two display refresh intervals means at least one frame
+ * was dropped and the user saw a stutter ("jank").
+ *
+ * <p>The tracker is driven by {@link Choreographer} frame callbacks, which requires API
+ * level 16. The callback is a separate object that is only created on API level 16 and
+ * later, so the tracker itself can be created on any device. On older devices
+ * {@link #start()} does nothing and no frames are measured. A running tracker requests a
+ * callback for every frame, which keeps the display pipeline busy, so it should only be
+ * started when the measurements are going to be logged.</p>
+ *
+ * @author fdavs
+ */
+public class FrameTimeTracker {
+
+	/** The refresh interval of a 60 Hz display. */
+	static final long FRAME_INTERVAL_NANOS = 16666667;
+
+	private FrameCallback frameCallback;
+	private boolean running;
+	private long lastFrameNanos;
+
+	private int frameCount;
+	private int jankCount;
+	private long totalNanos;
+	private long maxNanos;
+
+	/** Starts measuring. Frames are measured until {@link #stop()} is called. */
+	public void start() {
+		if (running || Build.VERSION.SDK_INT < 16)
+			return;
+
+		if (frameCallback == null)
+			frameCallback = new FrameCallback();
+
+		running = true;
+		lastFrameNanos = 0;
+		Choreographer.getInstance().postFrameCallback(frameCallback);
+	}
+
+	/** Stops measuring. The measurements are kept until {@link #reset()} is called. */
+	public void stop() {
+		if (!running)
+			return;
+
+		running = false;
+		Choreographer.getInstance().removeFrameCallback(frameCallback);
+	}
+
+	/** Records the time from the previous frame to this one. */
+	void addFrame(long frameNanos) {
+		frameCount++;
+		totalNanos += frameNanos;
+		if (frameNanos > maxNanos)
+			maxNanos = frameNanos;
+		if (frameNanos > 2 * FRAME_INTERVAL_NANOS)
+			jankCount++;
+	}
+
+	/** Returns the number of frames measured. */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/** Returns the number of frames that took longer than two refresh intervals. */
+	public int getJankCount() {
+		return jankCount;
+	}
+
+	/** Returns the longest frame time in milliseconds. */
+	public double getMaxFrameMillis() {
+		return maxNanos / 1e6;
+	}
+
+	/** Returns the average frame time in milliseconds, or 0 if no frames were measured. */
+	public double getAverageFrameMillis() {
+		return frameCount > 0 ? totalNanos / 1e6 / frameCount : 0;
+	}
+
+	/** Discards the measurements. */
+	public void reset() {
+		frameCount = 0;
+		jankCount = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d frames, %d janky, average %.1f ms, max %.1f ms",
+			frameCount, jankCount, getAverageFrameMillis(), getMaxFrameMillis());
+	}
+
+	/**
+	 * Receives the frame callbacks. This is kept out of the tracker class, since
+	 * {@link Choreographer.FrameCallback} does not exist before API level 16 and a class
+	 * implementing it cannot be loaded there.
+	 */
+	@TargetApi(16)
+	private class FrameCallback implements Choreographer.FrameCallback {
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			if (!running)
+				return;
+
+			if (lastFrameNanos != 0)
+				addFrame(frameTimeNanos - lastFrameNanos);
+
+			lastFrameNanos = frameTimeNanos;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+}
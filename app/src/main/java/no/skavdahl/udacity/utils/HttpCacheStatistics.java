@@ -0,0 +1,88 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Keeps count of how requests are served by the HTTP response cache. Install this object
+ * as an application interceptor on an OkHttpClient with a cache.
+ *
+ * <p>Each response is classified as one of:
+ * <ul>
+ *     <li><b>hit</b> -- served from the cache without contacting the server</li>
+ *     <li><b>revalidated</b> -- the server confirmed (HTTP 304 Not Modified) that the
+ *         cached response is still valid, so the body was not downloaded again</li>
+ *     <li><b>miss</b> -- the full response was downloaded from the server</li>
+ * </ul></p>
+ *
+ * <p>The number of body bytes that did not have to be downloaded is estimated from the
+ * content length of the cached responses.</p>
+ *
+ * @author fdavs
+ */
+public class HttpCacheStatistics implements Interceptor {
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong revalidatedCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Response response = chain.proceed(chain.request());
+
+		Response networkResponse = response.networkResponse();
+		Response cacheResponse = response.cacheResponse();
+
+		if (networkResponse == null && cacheResponse != null) {
+			hitCount.incrementAndGet();
+			addBytesSaved(response);
+		}
+		else if (networkResponse != null && cacheResponse != null && networkResponse.code() == 304) {
+			revalidatedCount.incrementAndGet();
+			addBytesSaved(response);
+		}
+		else
+			missCount.incrementAndGet();
+
+		return response;
+	}
+
+	private void addBytesSaved(Response response) {
+		long contentLength = response.body().contentLength();
+		if (contentLength > 0)
+			bytesSaved.addAndGet(contentLength);
+	}
+
+	/** Returns the number of responses served directly from the cache. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Returns the number of cached responses confirmed valid by the server (HTTP 304). */
+	public long getRevalidatedCount() {
+		return revalidatedCount.get();
+	}
+
+	/** Returns the number of responses downloaded in full from the server. */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/** Returns the estimated number of response body bytes not downloaded thanks to the cache. */
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	@Override
+	public String toString() {
+		return "HTTP cache: " +
+			getHitCount() + " hits, " +
+			getRevalidatedCount() + " revalidated, " +
+			getMissCount() + " misses, " +
+			getBytesSaved() + " bytes saved";
+	}
+}
@@ -3,11 +3,7 @@ package no.skavdahl.udacity.utils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 
 /**
  * Base class for adapter objects for JSON data retrieved from themoviedb.org services.
@@ -18,9 +14,6 @@ import java.util.Locale;
  */
 public abstract class JSONAdapter {
 
-	/** Format string for dates as used in JSON responses from themoviedb.org. */
-	private static final String MOVIEDB_DATE_FORMAT = "yyyy-MM-dd";
-
 	/**
 	 * Returns the value mapped by name if it exists. If the value does not exist,
 	 * or is the value "null", {@code null} is returned.
@@ -45,26 +38,18 @@ public abstract class JSONAdapter {
 	 * @param attrName The attribute of the JSON object to access. This attribute
 	 *                 must have a value formatted as yyyy-mm-dd or be an empty string.
 	 *
-	 * @return the value as a date or <code>null</code> if the JSON object does not
-	 *         specify a date value.
+	 * @return the value as an epoch day or {@link EpochDay#NONE} if the JSON object does
+	 *         not specify a date value.
 	 *
 	 * @throws JSONException if unable to parse the attribute value as a date.
 	 */
-	protected static Date getOptDate(JSONObject obj, String attrName) throws JSONException {
+	protected static int getOptEpochDay(JSONObject obj, String attrName) throws JSONException {
 		String dateString = obj.optString(attrName);
-		if (dateString == null)
-			return null;
-
-		dateString = dateString.trim();
-		if (dateString.length() == 0 || "null".equals(dateString))
-			return null;
-
 		try {
-			DateFormat dateParser = new SimpleDateFormat(MOVIEDB_DATE_FORMAT, Locale.US);
-			return dateParser.parse(dateString);
+			return EpochDay.parseOptIsoDate(dateString);
 		}
 		catch (ParseException e) {
-			throw new JSONException("Invalid date string: '" + dateString + "'");
+			throw new JSONException(e.getMessage());
 		}
 	}
 }
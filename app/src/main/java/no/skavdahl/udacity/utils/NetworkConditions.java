@@ -0,0 +1,94 @@
+package no.skavdahl.udacity.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+
+/**
+ * Tracks the type of the active network connection (Wi-Fi or not, metered or not) along
+ * with the measured throughput. When the device switches to another network, the
+ * throughput estimate is discarded since it no longer applies.
+ *
+ * <p>This class requires the permission "android.permission.ACCESS_NETWORK_STATE".</p>
+ *
+ * @author fdavs
+ */
+public class NetworkConditions {
+
+	private static final String LOG_TAG = NetworkConditions.class.getSimpleName();
+
+	private final ConnectivityManager connectivityManager;
+	private final ThroughputEstimator throughputEstimator;
+
+	private volatile int networkType = -1;
+	private volatile boolean wifi;
+	private volatile boolean metered;
+
+	/**
+	 * Starts tracking network conditions. The object is meant to live as long as the
+	 * application; it listens for connectivity changes until the process ends.
+	 *
+	 * @param context Any context; only the application context is retained
+	 * @param throughputEstimator Estimator fed by the app's downloads
+	 */
+	public NetworkConditions(final Context context, final ThroughputEstimator throughputEstimator) {
+		Context appContext = context.getApplicationContext();
+
+		this.connectivityManager = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		this.throughputEstimator = throughputEstimator;
+
+		updateConnectionType();
+
+		appContext.registerReceiver(new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				updateConnectionType();
+			}
+		}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+	}
+
+	private void updateConnectionType() {
+		NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+		int type = (networkInfo != null && networkInfo.isConnected()) ? networkInfo.getType() : -1;
+
+		if (type != networkType)
+			throughputEstimator.reset();
+
+		networkType = type;
+		wifi = type == ConnectivityManager.TYPE_WIFI;
+		metered = ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		if (verbose) Log.v(LOG_TAG, "Network changed: type=" + type + ", wifi=" + wifi + ", metered=" + metered);
+	}
+
+	/** Returns true if the active network is a Wi-Fi network. */
+	public boolean isWifi() {
+		return wifi;
+	}
+
+	/**
+	 * Returns true if the active network is metered, meaning that the user may pay for
+	 * the data transferred. Mobile networks are normally metered.
+	 */
+	public boolean isMetered() {
+		return metered;
+	}
+
+	/** Returns the quality of the connection, judged by the measured throughput. */
+	public ConnectionQuality getConnectionQuality() {
+		return throughputEstimator.getConnectionQuality();
+	}
+
+	@Override
+	public String toString() {
+		return "NetworkConditions[wifi=" + wifi + ", metered=" + metered + ", " + throughputEstimator + "]";
+	}
+}
@@ -0,0 +1,96 @@
+package no.skavdahl.udacity.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Pauses a {@link RateLimiter} when the server asks the client to back off. Install this
+ * object as a network interceptor, so that it sees the responses from the server rather
+ * than those served from the HTTP cache.
+ *
+ * <p>The requests take their tokens before they are handed to the HTTP client's
+ * dispatcher (see {@link RateLimiter#execute} and {@link WebApiClient}), not in this
+ * interceptor, which runs on a dispatcher thread.</p>
+ *
+ * <p>If the server responds with 429 Too Many Requests or 503 Service Unavailable and a
+ * Retry-After header, the rate limiter is paused for the requested time. The response is
+ * still returned to the caller.</p>
+ *
+ * @author fdavs
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+	private static final String LOG_TAG = RateLimitInterceptor.class.getSimpleName();
+
+	/** HTTP status code 429 Too Many Requests (no constant in HttpURLConnection). */
+	public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	/** The longest Retry-After pause that is honoured. */
+	private static final long MAX_RETRY_AFTER_SECONDS = 2 * 60;
+
+	private final RateLimiter rateLimiter;
+
+	public RateLimitInterceptor(final RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Response response = chain.proceed(chain.request());
+
+		if (response.code() == HTTP_TOO_MANY_REQUESTS || response.code() == 503) {
+			long retryAfterMillis = parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis());
+			if (retryAfterMillis > 0) {
+				Log.w(LOG_TAG, "HTTP " + response.code() + ": pausing requests for " + retryAfterMillis + " ms");
+				rateLimiter.pause(retryAfterMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		return response;
+	}
+
+	/**
+	 * Parses the value of a Retry-After header, which is either a number of seconds or an
+	 * HTTP date.
+	 *
+	 * @param value The header value, possibly <code>null</code>
+	 * @param now The current time (in milliseconds since the epoch)
+	 *
+	 * @return the requested delay in milliseconds, or 0 if the value is missing or
+	 *         cannot be parsed
+	 */
+	static long parseRetryAfter(String value, long now) {
+		if (value == null)
+			return 0;
+
+		value = value.trim();
+		long delayMillis;
+
+		try {
+			delayMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+		}
+		catch (NumberFormatException e) {
+			SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+			httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+			try {
+				Date date = httpDateFormat.parse(value);
+				delayMillis = date.getTime() - now;
+			}
+			catch (ParseException pe) {
+				return 0;
+			}
+		}
+
+		return Math.max(0, Math.min(delayMillis, TimeUnit.SECONDS.toMillis(MAX_RETRY_AFTER_SECONDS)));
+	}
+}
@@ -0,0 +1,287 @@
+package no.skavdahl.udacity.utils;
+
+import android.util.Log;
+
+import java.io.InterruptedIOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter with priority classes. The bucket holds at most
+ * <code>burst</code> tokens and is refilled at a steady rate. Each request takes one token,
+ * and waits when the bucket is empty. This lets a burst of requests through immediately
+ * while keeping the long-term rate within the limit.
+ *
+ * <p>Waiting requests are served in {@link RequestPriority} order, and in arrival order
+ * within each priority class.</p>
+ *
+ * <p>A request can take its token either by blocking in {@link #acquire}, or by handing a
+ * task to {@link #execute}, which runs the task once the token has been taken without
+ * blocking the caller. Asynchronous HTTP calls must use the latter and be enqueued only
+ * when they hold their token. A call that waited for its token on one of the HTTP
+ * client's dispatcher threads would hold up that thread, and calls of higher priority
+ * would wait behind it in the dispatcher's queue.</p>
+ *
+ * <p>When the server asks the client to back off (for example with a Retry-After header
+ * on a 429 Too Many Requests response), {@link #pause} stops all requests until the given
+ * time has passed. The bucket is emptied at the same time so the requests that have been
+ * held back are spread out rather than sent in one burst.</p>
+ *
+ * @author fdavs
+ */
+public class RateLimiter {
+
+	private static final String LOG_TAG = RateLimiter.class.getSimpleName();
+
+	/** A thread or a task waiting for a token. */
+	private static class Waiter implements Comparable<Waiter> {
+		final RequestPriority priority;
+		final long sequence;
+
+		/** The task to run when the token has been taken, or null for a blocked thread. */
+		final Runnable task;
+		final long startNanos;
+
+		Waiter(RequestPriority priority, long sequence, Runnable task, long startNanos) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.task = task;
+			this.startNanos = startNanos;
+		}
+
+		@Override
+		public int compareTo(@SuppressWarnings("NullableProblems") Waiter other) {
+			int result = priority.compareTo(other.priority);
+			if (result == 0)
+				result = sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+			return result;
+		}
+	}
+
+	private final double tokensPerNano;
+	private final int burst;
+
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+	private long nextSequence;
+
+	/** Runs the tasks that had to wait for a token. Started when first needed. */
+	private Thread taskThread;
+
+	private double tokens;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+
+	private long throttledCount;
+	private long throttledNanos;
+
+	/**
+	 * Creates a rate limiter with a full bucket.
+	 *
+	 * @param permitsPerSecond The long-term maximum number of requests per second
+	 * @param burst The maximum number of requests that may be sent at once
+	 */
+	public RateLimiter(final double permitsPerSecond, final int burst) {
+		if (permitsPerSecond <= 0)
+			throw new IllegalArgumentException("permitsPerSecond == " + permitsPerSecond);
+		if (burst < 1)
+			throw new IllegalArgumentException("burst == " + burst);
+
+		this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.tokens = burst;
+		this.lastRefillNanos = System.nanoTime();
+		this.pausedUntilNanos = lastRefillNanos;
+	}
+
+	/**
+	 * Takes a token from the bucket, waiting as long as necessary for one to become
+	 * available and for all waiting requests of higher priority to be served.
+	 *
+	 * @param priority The priority of the request
+	 *
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public synchronized void acquire(final RequestPriority priority) throws InterruptedIOException {
+		long start = System.nanoTime();
+		Waiter waiter = new Waiter(priority, nextSequence++, null, start);
+		waiters.add(waiter);
+
+		boolean throttled = false;
+
+		try {
+			while (true) {
+				long now = System.nanoTime();
+				refill(now);
+
+				long waitNanos;
+				if (now - pausedUntilNanos < 0)
+					waitNanos = pausedUntilNanos - now;
+				else if (waiters.peek() != waiter)
+					waitNanos = 0; // wait until notified
+				else if (tokens >= 1) {
+					tokens -= 1;
+					break;
+				}
+				else
+					waitNanos = Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+
+				throttled = true;
+				if (waitNanos > 0)
+					TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+				else
+					wait();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for rate limiter");
+		}
+		finally {
+			waiters.remove(waiter);
+			// the next waiter in line may be able to proceed
+			notifyAll();
+		}
+
+		if (throttled) {
+			throttledCount++;
+			throttledNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Runs a task when a token has been taken from the bucket, after all waiting requests
+	 * of higher priority have been served. If a token is available and no other request
+	 * is waiting, the task runs at once on the calling thread. Otherwise this method
+	 * returns immediately, and the task runs on a background thread of the rate limiter
+	 * when its turn comes. The task should therefore only start the request, for example
+	 * by enqueueing an asynchronous HTTP call.
+	 *
+	 * @param priority The priority of the request
+	 * @param task Starts the request
+	 */
+	public void execute(final RequestPriority priority, final Runnable task) {
+		synchronized (this) {
+			long now = System.nanoTime();
+			refill(now);
+
+			if (!waiters.isEmpty() || now - pausedUntilNanos < 0 || tokens < 1) {
+				waiters.add(new Waiter(priority, nextSequence++, task, now));
+				if (taskThread == null) {
+					taskThread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							runTasks();
+						}
+					}, "RateLimiter");
+					taskThread.setDaemon(true);
+					taskThread.start();
+				}
+				notifyAll();
+				return;
+			}
+
+			tokens -= 1;
+		}
+
+		task.run();
+	}
+
+	/** Runs the waiting tasks in turn. Never returns. */
+	private void runTasks() {
+		//noinspection InfiniteLoopStatement
+		while (true) {
+			Runnable task;
+			try {
+				task = takeTask();
+			}
+			catch (InterruptedException e) {
+				// the thread is a daemon and is not interrupted
+				continue;
+			}
+
+			try {
+				task.run();
+			}
+			catch (RuntimeException e) {
+				// keep serving the other tasks
+				Log.e(LOG_TAG, "Rate limited task failed", e);
+			}
+		}
+	}
+
+	/** Waits until a task is first in line and a token is available, and takes the token. */
+	private synchronized Runnable takeTask() throws InterruptedException {
+		while (true) {
+			long now = System.nanoTime();
+			refill(now);
+
+			Waiter head = waiters.peek();
+			long waitNanos;
+			if (head == null || head.task == null)
+				waitNanos = 0; // wait until notified
+			else if (now - pausedUntilNanos < 0)
+				waitNanos = pausedUntilNanos - now;
+			else if (tokens >= 1) {
+				tokens -= 1;
+				waiters.poll();
+				// the next waiter in line may be able to proceed
+				notifyAll();
+
+				throttledCount++;
+				throttledNanos += now - head.startNanos;
+				return head.task;
+			}
+			else
+				waitNanos = Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+
+			if (waitNanos > 0)
+				TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+			else
+				wait();
+		}
+	}
+
+	/**
+	 * Stops all requests until the given delay has passed, and empties the bucket.
+	 * A shorter pause than one already in effect is ignored.
+	 *
+	 * @param delay How long to pause
+	 * @param unit The time unit of the delay
+	 */
+	public synchronized void pause(final long delay, final TimeUnit unit) {
+		long now = System.nanoTime();
+		long until = now + unit.toNanos(delay);
+
+		if (until - pausedUntilNanos > 0) {
+			pausedUntilNanos = until;
+			tokens = 0;
+			lastRefillNanos = until;
+			notifyAll();
+		}
+	}
+
+	private void refill(long now) {
+		long elapsed = now - lastRefillNanos;
+		if (elapsed > 0) {
+			tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+			lastRefillNanos = now;
+		}
+	}
+
+	/** Returns the number of requests that had to wait for a token. */
+	public synchronized long getThrottledCount() {
+		return throttledCount;
+	}
+
+	/** Returns the total time (in milliseconds) requests have spent waiting for a token. */
+	public synchronized long getThrottledMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(throttledNanos);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Rate limiter: " +
+			getThrottledCount() + " requests throttled, " +
+			getThrottledMillis() + " ms waited";
+	}
+}
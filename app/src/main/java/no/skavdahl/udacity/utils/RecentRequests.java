@@ -0,0 +1,81 @@
+package no.skavdahl.udacity.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the requests that have completed within a time window, so a request that is
+ * repeated shortly after can be skipped. The background services handle their intents one
+ * at a time, so identical intents sent while one is queued, for example by fast scrolling
+ * or by a screen rotation, are handled one after the other and never overlap. The second
+ * intent finds the request completed a moment ago, and skips it.
+ *
+ * <p>Only successful requests should be recorded, so a failed request is repeated.</p>
+ *
+ * @param <K> The key type
+ *
+ * @author fdavs
+ */
+public class RecentRequests<K> {
+
+	/** The completion times of the requests, oldest first. */
+	private final Map<K, Long> completed = new LinkedHashMap<>();
+
+	private final long windowNanos;
+
+	private long skippedCount;
+
+	/**
+	 * @param windowMillis How long (in milliseconds) a completed request is remembered
+	 */
+	public RecentRequests(final long windowMillis) {
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+	}
+
+	/**
+	 * Returns whether a request completed within the time window, and counts it as
+	 * skipped if so.
+	 */
+	public synchronized boolean isRecent(final K key) {
+		expire(System.nanoTime());
+
+		if (!completed.containsKey(key))
+			return false;
+
+		skippedCount++;
+		return true;
+	}
+
+	/** Records that a request has completed successfully. */
+	public synchronized void complete(final K key) {
+		long now = System.nanoTime();
+		expire(now);
+
+		// move the key to the end
+		completed.remove(key);
+		completed.put(key, now);
+	}
+
+	/** Forgets all requests. */
+	public synchronized void clear() {
+		completed.clear();
+	}
+
+	private void expire(long now) {
+		Iterator<Long> it = completed.values().iterator();
+		while (it.hasNext() && now - it.next() >= windowNanos)
+			it.remove();
+	}
+
+	/** Returns the number of requests that were skipped. */
+	public synchronized long getSkippedCount() {
+		return skippedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Recent requests: " + completed.size() + " remembered, " + skippedCount + " skipped";
+	}
+}
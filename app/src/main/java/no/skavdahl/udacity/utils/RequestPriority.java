@@ -0,0 +1,20 @@
+package no.skavdahl.udacity.utils;
+
+/**
+ * The priority classes of web service requests. When requests are throttled by the
+ * {@link RateLimiter}, a waiting request of a higher priority is always let through before
+ * any waiting request of a lower priority. Constants are declared in order of decreasing
+ * priority.
+ *
+ * @author fdavs
+ */
+public enum RequestPriority {
+	/** Data the user is waiting for, such as the visible list page or the detail screen. */
+	VISIBLE,
+
+	/** Data the user is likely to need soon, such as the next list page. */
+	PREFETCH,
+
+	/** Refresh of data nobody is currently waiting for. */
+	BACKGROUND
+}
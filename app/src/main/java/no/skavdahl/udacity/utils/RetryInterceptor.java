@@ -0,0 +1,191 @@
+package no.skavdahl.udacity.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retries failed requests with exponential backoff and jitter. Install this object as an
+ * application interceptor, so that each retry goes through the cache like the original
+ * request. Retries do not take a token from the {@link RateLimiter}: the token of a call
+ * is taken once, before it is dispatched (see {@link WebApiClient}), and the retries of
+ * the call are paced by the backoff and by Retry-After instead.
+ *
+ * <p>A request is retried only if it is idempotent (GET, HEAD, PUT, DELETE or OPTIONS),
+ * and only if the failure is likely to be transient: an I/O error (including timeouts),
+ * or one of the status codes 408, 429, 500, 502, 503 and 504. Requests that may only be
+ * served from the cache and canceled requests are never retried. A request is canceled
+ * if its tag (see {@link Request.Builder#tag(Object)}) is a canceled
+ * {@link CancellationToken}.</p>
+ *
+ * <p>Before retry number <i>n</i> the interceptor sleeps for a random time between zero and
+ * <code>min(maxDelay, baseDelay * 2<sup>n-1</sup>)</code> ("full jitter"), which spreads
+ * out the retries of many clients that failed at the same time. If the server responds
+ * with 429 Too Many Requests or 503 Service Unavailable and a Retry-After header, the
+ * interceptor sleeps for at least the requested time, capped like the pause of
+ * {@link RateLimitInterceptor}.</p>
+ *
+ * @author fdavs
+ */
+public class RetryInterceptor implements Interceptor {
+
+	private static final String LOG_TAG = RetryInterceptor.class.getSimpleName();
+
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+
+	private final Random random = new Random();
+
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong recoveredCount = new AtomicLong();
+	private final AtomicLong exhaustedCount = new AtomicLong();
+
+	/**
+	 * @param maxRetries The maximum number of retries (in addition to the first attempt)
+	 * @param baseDelayMillis The upper bound of the delay before the first retry
+	 * @param maxDelayMillis The upper bound of the delay before any retry
+	 */
+	public RetryInterceptor(final int maxRetries, final long baseDelayMillis, final long maxDelayMillis) {
+		this.maxRetries = maxRetries;
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		boolean retryable = isIdempotent(request.method()) && !request.cacheControl().onlyIfCached();
+
+		for (int attempt = 0; ; ++attempt) {
+			boolean lastAttempt = !retryable || attempt >= maxRetries;
+			long retryAfterMillis = 0;
+
+			try {
+				Response response = chain.proceed(request);
+
+				if (lastAttempt || isCanceled(request) || !isRetryable(response.code())) {
+					if (attempt > 0) {
+						if (response.isSuccessful())
+							recoveredCount.incrementAndGet();
+						else
+							exhaustedCount.incrementAndGet();
+					}
+					return response;
+				}
+
+				if (response.code() == RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS || response.code() == 503)
+					retryAfterMillis = RateLimitInterceptor.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis());
+
+				response.body().close();
+				Log.w(LOG_TAG, "HTTP " + response.code() + " from " + request.url().encodedPath() + ", retrying");
+			}
+			catch (IOException e) {
+				if (lastAttempt || isCanceled(request) || !isRetryable(e)) {
+					if (attempt > 0)
+						exhaustedCount.incrementAndGet();
+					throw e;
+				}
+
+				Log.w(LOG_TAG, e.getMessage() + " from " + request.url().encodedPath() + ", retrying");
+			}
+
+			retryCount.incrementAndGet();
+			sleep(Math.max(getBackoffDelay(attempt + 1), retryAfterMillis));
+		}
+	}
+
+	/** Returns the random delay (in milliseconds) before the given retry (starting at 1). */
+	long getBackoffDelay(int retry) {
+		long ceiling = maxDelayMillis;
+		if (retry - 1 < 31)
+			ceiling = Math.min(maxDelayMillis, baseDelayMillis << (retry - 1));
+
+		synchronized (random) {
+			return (long) (random.nextDouble() * ceiling);
+		}
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+
+	private static boolean isIdempotent(String method) {
+		switch (method) {
+			case "GET":
+			case "HEAD":
+			case "PUT":
+			case "DELETE":
+			case "OPTIONS":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isRetryable(int code) {
+		switch (code) {
+			case 408: // Request Timeout
+			case RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS:
+			case 500: // Internal Server Error
+			case 502: // Bad Gateway
+			case 503: // Service Unavailable
+			case 504: // Gateway Timeout
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isRetryable(IOException e) {
+		// an interrupted call must not be retried, but timeouts are also reported
+		// as InterruptedIOExceptions
+		return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+	}
+
+	/**
+	 * Returns whether the request has been canceled. Interceptors have no access to the
+	 * call itself, so WebApiClient tags its requests with their cancellation token.
+	 */
+	static boolean isCanceled(Request request) {
+		Object tag = request.tag();
+		return tag instanceof CancellationToken && ((CancellationToken) tag).isCanceled();
+	}
+
+	/** Returns the total number of retries. */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	/** Returns the number of requests that succeeded after one or more retries. */
+	public long getRecoveredCount() {
+		return recoveredCount.get();
+	}
+
+	/** Returns the number of requests that still failed after being retried. */
+	public long getExhaustedCount() {
+		return exhaustedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Retries: " +
+			getRetryCount() + " retries, " +
+			getRecoveredCount() + " recovered, " +
+			getExhaustedCount() + " exhausted";
+	}
+}
@@ -0,0 +1,119 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key into a single execution. The first caller
+ * for a key performs the call; callers that arrive with the same key while the call is in
+ * flight wait for it to complete and receive the same result (or the same exception).
+ * Once the call has completed the key is forgotten, so later callers perform a new call.
+ *
+ * <p>Since the result is shared between callers, it should be immutable.</p>
+ *
+ * @param <K> The key type
+ * @param <V> The result type
+ *
+ * @author fdavs
+ */
+public class SingleFlight<K, V> {
+
+	/** A call that may be shared between several callers. */
+	public interface Call<V> {
+		V call() throws IOException;
+	}
+
+	/** The state of one in-flight call. */
+	private static class Flight<V> {
+		final CountDownLatch done = new CountDownLatch(1);
+		V result;
+		Throwable error;
+	}
+
+	private final Map<K, Flight<V>> flights = new HashMap<>();
+
+	private final AtomicLong callCount = new AtomicLong();
+	private final AtomicLong deduplicatedCount = new AtomicLong();
+
+	/**
+	 * Executes the call, or waits for an identical call that is already in flight.
+	 *
+	 * @param key Identifies the call; calls with equal keys are considered identical
+	 * @param call The call to execute if no identical call is in flight
+	 *
+	 * @return the result of the call
+	 *
+	 * @throws IOException if the call failed, or if the thread was interrupted while
+	 *                     waiting for another caller's call to complete
+	 */
+	public V execute(final K key, final Call<V> call) throws IOException {
+		Flight<V> flight;
+		boolean owner = false;
+
+		synchronized (flights) {
+			flight = flights.get(key);
+			if (flight == null) {
+				flight = new Flight<>();
+				flights.put(key, flight);
+				owner = true;
+			}
+		}
+
+		callCount.incrementAndGet();
+
+		if (owner) {
+			try {
+				flight.result = call.call();
+			}
+			catch (IOException | RuntimeException | Error e) {
+				flight.error = e;
+			}
+			finally {
+				synchronized (flights) {
+					flights.remove(key);
+				}
+				flight.done.countDown();
+			}
+		}
+		else {
+			deduplicatedCount.incrementAndGet();
+			try {
+				flight.done.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for " + key);
+			}
+		}
+
+		if (flight.error instanceof IOException)
+			throw (IOException) flight.error;
+		if (flight.error instanceof RuntimeException)
+			throw (RuntimeException) flight.error;
+		if (flight.error instanceof Error)
+			throw (Error) flight.error;
+
+		return flight.result;
+	}
+
+	/** Returns the total number of calls to {@link #execute}. */
+	public long getCallCount() {
+		return callCount.get();
+	}
+
+	/** Returns the number of calls that were served by another caller's in-flight call. */
+	public long getDeduplicatedCount() {
+		return deduplicatedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Request coalescing: " +
+			getCallCount() + " calls, " +
+			getDeduplicatedCount() + " deduplicated";
+	}
+}
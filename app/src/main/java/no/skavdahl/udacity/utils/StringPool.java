@@ -0,0 +1,84 @@
+package no.skavdahl.udacity.utils;
+
+/**
+ * A bounded pool of strings used to share one instance of values that repeat across
+ * many parsed objects, such as the site of a video or the author of reviews.
+ *
+ * <p>Unlike {@link String#intern()}, the pool never grows: it is a fixed size table with
+ * one string per slot, and a string that hashes to an occupied slot replaces the string
+ * there. Frequent values therefore stay in the pool while rare ones come and go, and the
+ * pool costs the same amount of memory however many distinct values it sees. Long strings
+ * are never pooled, since they are unlikely to repeat.</p>
+ *
+ * <p>The pool is safe for use by several threads without locking. Strings are immutable,
+ * so a thread can see either the old or the new string of a slot, and a lost update only
+ * means that a value is shared a little less.</p>
+ *
+ * @author fdavs
+ */
+public final class StringPool {
+
+	/**
+	 * The pool for the attribute values of the objects the app keeps in memory, such as
+	 * the site of videos and the authors of reviews. A few hundred slots cover the values
+	 * seen while browsing without holding on to much memory.
+	 */
+	private static final StringPool shared = new StringPool(512, 32);
+
+	private final String[] slots;
+	private final int maxLength;
+
+	/**
+	 * @param capacity The number of slots. It is rounded up to a power of two.
+	 * @param maxLength The length of the longest string to pool
+	 */
+	public StringPool(int capacity, int maxLength) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity == " + capacity);
+
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+
+		this.slots = new String[size];
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Returns the pooled instance of a string that is equal to the given one, if there is
+	 * one, or else adds the given string to the pool and returns it.
+	 *
+	 * @param s The string to pool; may be <code>null</code>
+	 *
+	 * @return a string equal to <code>s</code>
+	 */
+	public String intern(String s) {
+		if (s == null || s.length() > maxLength)
+			return s;
+
+		int hash = s.hashCode();
+		// spread the high bits, since only the low bits select the slot
+		int index = (hash ^ (hash >>> 16)) & (slots.length - 1);
+
+		String pooled = slots[index];
+		if (s.equals(pooled))
+			return pooled;
+
+		slots[index] = s;
+		return s;
+	}
+
+	/**
+	 * Returns the pool shared by the places where objects that stay in memory are
+	 * created. Use it only for attributes with few distinct values; ids and free text do
+	 * not benefit.
+	 */
+	public static StringPool getShared() {
+		return shared;
+	}
+
+	/** Returns the number of slots in the pool. */
+	public int getCapacity() {
+		return slots.length;
+	}
+}
@@ -0,0 +1,166 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Estimates the download throughput of the current network connection from completed
+ * downloads. Install this object as a network interceptor on an OkHttpClient; responses
+ * served from the cache never reach a network interceptor and so do not skew the estimate.
+ *
+ * <p>Each image download that reads a response body to the end yields a sample: the
+ * number of bytes received divided by the time from receiving the response headers to
+ * receiving the last byte. The time the server takes to respond is left out, as it says
+ * nothing about the link. Only images are sampled, since they are what the estimate is
+ * used to choose, and the web service responses are small and vary in server time.
+ * Bodies smaller than {@link #MIN_SAMPLE_BYTES} are still dominated by the round trip and
+ * TCP slow start, and are ignored.</p>
+ *
+ * <p>Samples are combined into an exponentially weighted moving average, so the estimate
+ * follows changes in network conditions within a few downloads.</p>
+ *
+ * @author fdavs
+ */
+public class ThroughputEstimator implements Interceptor {
+
+	/** The smallest response body (in bytes) that yields a sample. */
+	public static final long MIN_SAMPLE_BYTES = 32 * 1024;
+
+	/** The weight of a new sample in the moving average. */
+	private static final double SAMPLE_WEIGHT = 0.3;
+
+	private double bytesPerSecond;
+	private int sampleCount;
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Response response = chain.proceed(chain.request());
+
+		// the headers have been received when proceed() returns
+		final long start = System.nanoTime();
+
+		ResponseBody body = response.body();
+		if (body == null || body.contentLength() == 0 || !isImage(body.contentType()))
+			return response;
+
+		return response.newBuilder()
+			.body(new MeasuredResponseBody(body, start))
+			.build();
+	}
+
+	private static boolean isImage(MediaType contentType) {
+		return contentType != null && "image".equals(contentType.type());
+	}
+
+	/**
+	 * Adds a sample to the estimate.
+	 *
+	 * @param bytes The number of bytes downloaded
+	 * @param elapsedNanos The time it took to download them, from the response headers
+	 *                     were received
+	 */
+	public synchronized void addSample(long bytes, long elapsedNanos) {
+		if (bytes < MIN_SAMPLE_BYTES || elapsedNanos <= 0)
+			return;
+
+		double sample = bytes * 1e9 / elapsedNanos;
+		if (sampleCount == 0)
+			bytesPerSecond = sample;
+		else
+			bytesPerSecond = SAMPLE_WEIGHT * sample + (1 - SAMPLE_WEIGHT) * bytesPerSecond;
+
+		sampleCount++;
+	}
+
+	/**
+	 * Returns the estimated throughput in bytes per second, or 0 if there are no samples
+	 * yet.
+	 */
+	public synchronized double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/** Returns the number of samples the estimate is based on. */
+	public synchronized int getSampleCount() {
+		return sampleCount;
+	}
+
+	/** Returns the connection quality corresponding to the current estimate. */
+	public synchronized ConnectionQuality getConnectionQuality() {
+		if (sampleCount == 0)
+			return ConnectionQuality.UNKNOWN;
+
+		return ConnectionQuality.classify(bytesPerSecond);
+	}
+
+	/**
+	 * Discards all samples, typically because the device has switched to another network
+	 * where earlier measurements no longer apply.
+	 */
+	public synchronized void reset() {
+		bytesPerSecond = 0;
+		sampleCount = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ThroughputEstimator[" + Math.round(bytesPerSecond / 1024) + " KiB/s, " +
+			sampleCount + " samples]";
+	}
+
+	/** A response body that adds a sample to the estimate when it has been read to the end. */
+	private class MeasuredResponseBody extends ResponseBody {
+
+		private final ResponseBody body;
+		private final BufferedSource source;
+
+		private long bytesRead;
+		private boolean complete;
+
+		MeasuredResponseBody(final ResponseBody body, final long start) {
+			this.body = body;
+			this.source = Okio.buffer(new ForwardingSource(body.source()) {
+				@Override
+				public long read(Buffer sink, long byteCount) throws IOException {
+					long count = super.read(sink, byteCount);
+					if (count != -1)
+						bytesRead += count;
+
+					// some readers stop after the last byte without reading to the end
+					// of the stream, so a complete body also counts as the end
+					long contentLength = body.contentLength();
+					boolean end = count == -1 || (contentLength > 0 && bytesRead >= contentLength);
+					if (end && !complete) {
+						complete = true;
+						addSample(bytesRead, System.nanoTime() - start);
+					}
+
+					return count;
+				}
+			});
+		}
+
+		@Override
+		public MediaType contentType() {
+			return body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return body.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			return source;
+		}
+	}
+}
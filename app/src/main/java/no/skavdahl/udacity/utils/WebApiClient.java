@@ -1,23 +1,139 @@
 package no.skavdahl.udacity.utils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.CountDownLatch;
 
+import android.content.Context;
 import android.util.Log;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
 
 import no.skavdahl.udacity.popularmovies.BuildConfig;
 
 /**
+ * Base class for clients of web services. All requests are executed through the shared,
+ * connection-pooled {@link WebApiTransport} unless another HTTP client is explicitly
+ * provided.
+ *
+ * <p>Concurrent blocking queries for the same endpoint that are decoded by the same kind
+ * of parser are coalesced: only the first caller performs the request, and the other
+ * callers receive the same parsed result. Callers that handle their requests one at a
+ * time, such as the background services, must skip repeated requests themselves (see
+ * {@link RecentRequests}).</p>
+ *
+ * <p>All requests run on the HTTP client's asynchronous dispatcher, which bounds the
+ * number of concurrent requests. The blocking query methods wait for the asynchronous
+ * ones to complete. A request is handed to the dispatcher only when it has taken a token
+ * from the {@link RateLimiter}, so requests of higher priority overtake the throttled
+ * ones.</p>
+ *
  * @author fdavs
  */
 public class WebApiClient {
 
 	protected final String LOG_TAG = getClass().getSimpleName();
 
+	/** Parsed queries currently in flight, shared by all clients. */
+	private static final SingleFlight<String, Object> inFlightQueries = new SingleFlight<>();
+
+	private final OkHttpClient client;
+	private final RateLimiter rateLimiter;
+
+	private RequestPriority priority = RequestPriority.VISIBLE;
+
+	/**
+	 * Creates a client that performs its requests through the shared HTTP transport.
+	 *
+	 * @param context Any context (used to set up the shared transport when necessary)
+	 */
+	public WebApiClient(final Context context) {
+		this(WebApiTransport.getClient(context), WebApiTransport.getRateLimiter());
+	}
+
+	/**
+	 * Creates a client that performs its requests through the given HTTP client, without
+	 * pacing them.
+	 *
+	 * @param client The HTTP client to use. This should normally be the shared client
+	 *               returned by {@link WebApiTransport#getClient(Context)}.
+	 */
+	public WebApiClient(final OkHttpClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * Creates a client that performs its requests through the given HTTP client, paced by
+	 * the given rate limiter.
+	 *
+	 * @param client The HTTP client to use
+	 * @param rateLimiter The rate limiter, or <code>null</code> if requests are not paced
+	 */
+	public WebApiClient(final OkHttpClient client, final RateLimiter rateLimiter) {
+		this.client = client;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Sets the priority of the requests performed by this client. The default priority is
+	 * {@link RequestPriority#VISIBLE}.
+	 */
+	public void setPriority(final RequestPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Parses the body of a successful response. Implementations should read the body
+	 * as a stream rather than to buffer it in full. The parsed result may be shared
+	 * between concurrent callers and should therefore not be modified.
+	 *
+	 * @param <T> The result type
+	 */
+	public interface ResponseParser<T> {
+		/**
+		 * Parses the response body. The reader is closed by the caller.
+		 *
+		 * @throws IOException if unable to read or parse the body
+		 */
+		T parse(Reader body) throws IOException;
+	}
+
+	/**
+	 * Receives the result of an asynchronous query. The methods are invoked on a background
+	 * thread. Neither method is invoked if the query is canceled.
+	 *
+	 * @param <T> The result type
+	 */
+	public interface ResponseCallback<T> {
+		/** Called with the parsed response when the query has succeeded. */
+		void onSuccess(T result);
+
+		/** Called when the query has failed or the response could not be parsed. */
+		void onFailure(IOException e);
+	}
+
+	/** Reads the complete response body into a string. */
+	private static final ResponseParser<String> STRING_PARSER = new ResponseParser<String>() {
+		@Override
+		public String parse(Reader body) throws IOException {
+			StringBuilder buf = new StringBuilder();
+			char[] chars = new char[4096];
+			int count;
+			while ((count = body.read(chars)) > 0)
+				buf.append(chars, 0, count);
+
+			return buf.toString();
+		}
+	};
+
 	/**
 	 * Performs a GET request to themoviedb.org. The response is returned as a raw JSON string.
+	 * The response may be served from (or revalidated against) the HTTP cache.
 	 *
 	 * @param endpoint The URL to access
 	 *
@@ -26,7 +142,72 @@ public class WebApiClient {
 	 * @throws IOException if the query failed or returned a non-sensible result
 	 */
 	protected String executeQuery(String endpoint) throws IOException {
+		String jsonResult = await(endpoint, STRING_PARSER);
+
+		if (jsonResult.length() == 0)
+			throw new IOException("Empty response from endpoint " + endpoint);
+
+		return jsonResult;
+	}
+
+	/**
+	 * Performs a GET request to themoviedb.org and hands the response body to the given
+	 * parser as a character stream. The response is decoded while it is being downloaded,
+	 * without first buffering it as a string. If an identical query is already in flight,
+	 * this call waits for it and returns its result instead of performing a new request.
+	 *
+	 * <p>This is a blocking wrapper around {@link #enqueueQuery}. If the calling thread is
+	 * interrupted while waiting, the request is canceled.</p>
+	 *
+	 * @param endpoint The URL to access
+	 * @param parser Parser for the response body
+	 *
+	 * @return the parsed response
+	 *
+	 * @throws IOException if the query failed or the response could not be parsed
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T executeQuery(final String endpoint, final ResponseParser<T> parser) throws IOException {
+		// the same endpoint could in principle be decoded into different types by
+		// different parsers, so the parser type is part of the key
+		String key = parser.getClass().getName() + " " + endpoint;
+
+		T result = (T) inFlightQueries.execute(key, new SingleFlight.Call<Object>() {
+			@Override
+			public Object call() throws IOException {
+				return await(endpoint, parser);
+			}
+		});
+
 		boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+		if (verbose) Log.v(LOG_TAG, inFlightQueries.toString());
+
+		return result;
+	}
+
+	/**
+	 * Starts a GET request to themoviedb.org on the HTTP client's dispatcher and returns
+	 * immediately. The response body is handed to the given parser as a character stream
+	 * on a background thread, and the result is delivered to the callback. Asynchronous
+	 * queries are not coalesced.
+	 *
+	 * <p>The callback must not call the blocking query methods, since that would hold up
+	 * one of the dispatcher's threads.</p>
+	 *
+	 * @param endpoint The URL to access
+	 * @param parser Parser for the response body
+	 * @param cancellationToken Token that cancels the request, or <code>null</code> if the
+	 *                          request cannot be canceled. When the token is canceled, the
+	 *                          callback will not be invoked.
+	 * @param callback Receives the parsed response or the failure
+	 */
+	protected <T> void enqueueQuery(
+		final String endpoint,
+		final ResponseParser<T> parser,
+		final CancellationToken cancellationToken,
+		final ResponseCallback<T> callback) {
+
+		final boolean verbose = BuildConfig.DEBUG && Log.isLoggable(LOG_TAG, Log.VERBOSE);
 		if (verbose) {
 			// don't log the api key
 			int keyStart = endpoint.indexOf("key=") + "key=".length();
@@ -39,15 +220,136 @@ public class WebApiClient {
 			Log.v(LOG_TAG, "GET request " + loggedEndpoint);
 		}
 
-		OkHttpClient client = new OkHttpClient();
-		Request request = new Request.Builder().url(endpoint).build();
-		String jsonResult = client.newCall(request).execute().body().string();
+		// the interceptors find the token in the tag, so they don't retry a canceled request
+		final Request request = new Request.Builder().url(endpoint).tag(cancellationToken).build();
+		final Call call = client.newCall(request);
 
-		if (jsonResult.length() == 0)
-			throw new IOException("Empty response from endpoint " + endpoint);
+		final CancellationToken.OnCancelListener cancelListener = new CancellationToken.OnCancelListener() {
+			@Override
+			public void onCancel() {
+				call.cancel();
+			}
+		};
 
-		// TODO cache query result
+		if (cancellationToken != null) {
+			cancellationToken.register(cancelListener);
+			if (cancellationToken.isCanceled())
+				return;
+		}
 
-		return jsonResult;
+		final Callback responseCallback = new Callback() {
+			@Override
+			public void onFailure(Request request, IOException e) {
+				complete(null, e);
+			}
+
+			@Override
+			public void onResponse(Response response) {
+				T result = null;
+				IOException error = null;
+
+				// the response body must always be consumed or closed, or the connection
+				// cannot be returned to the shared connection pool
+				try {
+					if (!response.isSuccessful())
+						error = new IOException("HTTP " + response.code() + " from endpoint " + request.url().encodedPath());
+					else
+						result = parser.parse(response.body().charStream());
+				}
+				catch (IOException e) {
+					error = e;
+				}
+				catch (RuntimeException e) {
+					// for example a JSON reader that encountered unexpected data
+					error = new IOException("Invalid response from endpoint " + request.url().encodedPath(), e);
+				}
+				finally {
+					response.body().close();
+				}
+
+				complete(result, error);
+			}
+
+			private void complete(T result, IOException error) {
+				if (cancellationToken != null) {
+					cancellationToken.unregister(cancelListener);
+					if (cancellationToken.isCanceled())
+						return;
+				}
+
+				if (verbose) {
+					Log.v(LOG_TAG, WebApiTransport.getCacheStatistics().toString());
+					Log.v(LOG_TAG, WebApiTransport.getRateLimiter().toString());
+					Log.v(LOG_TAG, WebApiTransport.getRetryStatistics().toString());
+					Log.v(LOG_TAG, WebApiTransport.getCircuitBreaker().toString());
+				}
+
+				if (error != null)
+					callback.onFailure(error);
+				else
+					callback.onSuccess(result);
+			}
+		};
+
+		if (rateLimiter == null) {
+			call.enqueue(responseCallback);
+			return;
+		}
+
+		rateLimiter.execute(priority, new Runnable() {
+			@Override
+			public void run() {
+				// the token may have been canceled while the request waited
+				if (cancellationToken != null && cancellationToken.isCanceled())
+					return;
+
+				call.enqueue(responseCallback);
+			}
+		});
+	}
+
+	/** Performs an asynchronous query and waits for its result. */
+	private <T> T await(String endpoint, ResponseParser<T> parser) throws IOException {
+		CancellationToken cancellationToken = new CancellationToken();
+		BlockingCallback<T> callback = new BlockingCallback<>();
+
+		enqueueQuery(endpoint, parser, cancellationToken, callback);
+
+		try {
+			return callback.await();
+		}
+		catch (InterruptedException e) {
+			cancellationToken.cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + endpoint);
+		}
+	}
+
+	/** Holds the result of an asynchronous query for a thread that waits for it. */
+	private static class BlockingCallback<T> implements ResponseCallback<T> {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private T result;
+		private IOException error;
+
+		@Override
+		public void onSuccess(T result) {
+			this.result = result;
+			done.countDown();
+		}
+
+		@Override
+		public void onFailure(IOException e) {
+			this.error = e;
+			done.countDown();
+		}
+
+		T await() throws InterruptedException, IOException {
+			done.await();
+
+			if (error != null)
+				throw error;
+
+			return result;
+		}
 	}
 }
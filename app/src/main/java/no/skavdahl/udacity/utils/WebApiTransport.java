@@ -0,0 +1,203 @@
+package no.skavdahl.udacity.utils;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import no.skavdahl.udacity.popularmovies.BuildConfig;
+
+/**
+ * The app-wide HTTP transport. All web service clients should share the one client
+ * returned by {@link #getClient(Context)} rather than to create their own.
+ *
+ * <p>Every OkHttpClient owns a connection pool and a dispatcher. A client created for a
+ * single request therefore has to resolve the host and set up a new TCP (and TLS)
+ * connection every time, and throws the connection away afterwards. The shared client
+ * keeps idle connections alive between requests, so consecutive list pages and movie
+ * details are fetched over an already open connection.</p>
+ *
+ * <p>Responses are transparently gzip-compressed: OkHttp adds the
+ * <tt>Accept-Encoding: gzip</tt> header to every request and decompresses the response
+ * body, as long as the caller does not set the header itself.</p>
+ *
+ * <p>Concurrency and timeouts are configured through the build configuration
+ * (see app/build.gradle). Note that the per-host concurrency limit only applies to
+ * asynchronous calls, since synchronous calls are executed on the caller's thread.</p>
+ *
+ * <p>Responses are stored in a disk cache with a fixed size budget. Fresh responses are
+ * served directly from the cache. Stale responses with an ETag or Last-Modified validator
+ * are revalidated with a conditional request, so an unchanged response costs a
+ * 304 Not Modified rather than the full body. See {@link #getCacheStatistics()}.</p>
+ *
+ * <p>Requests are paced by a token bucket {@link RateLimiter} so bursts of requests do not
+ * exceed the server's rate limits. A request takes its token before it is handed to the
+ * client (see {@link WebApiClient}), so responses served from the HTTP cache also count
+ * against the limit. The rate and burst size are configured through the build
+ * configuration. See {@link #getRateLimiter()}.</p>
+ *
+ * <p>Transient failures are retried with exponential backoff (see {@link RetryInterceptor}).
+ * When the server keeps failing, a {@link CircuitBreaker} makes further requests fail fast
+ * (or fall back to the cache) for a while instead of waiting for timeouts and retries.</p>
+ *
+ * <p>Both clients feed a {@link ThroughputEstimator} with the downloads that reach the
+ * network, which is used to choose image sizes that suit the connection. See
+ * {@link #getThroughputEstimator()}.</p>
+ *
+ * @author fdavs
+ */
+public final class WebApiTransport {
+
+	/** The maximum number of idle connections to keep in the pool. */
+	private static final int MAX_IDLE_CONNECTIONS = 5;
+
+	/** How long an idle connection is kept alive in the pool. */
+	private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+
+	/** Name of the HTTP cache folder (within the app's cache directory). */
+	private static final String CACHE_DIR = "http";
+
+	/** Name of the image cache folder (within the app's cache directory). */
+	private static final String IMAGE_CACHE_DIR = "images";
+
+	private static final HttpCacheStatistics cacheStatistics = new HttpCacheStatistics();
+
+	private static final RateLimiter rateLimiter = new RateLimiter(
+		BuildConfig.HTTP_RATE_LIMIT,
+		BuildConfig.HTTP_RATE_BURST);
+
+	private static final CircuitBreaker circuitBreaker = new CircuitBreaker(
+		BuildConfig.HTTP_BREAKER_THRESHOLD,
+		BuildConfig.HTTP_BREAKER_OPEN_TIME);
+
+	private static final RetryInterceptor retryInterceptor = new RetryInterceptor(
+		BuildConfig.HTTP_MAX_RETRIES,
+		BuildConfig.HTTP_RETRY_BASE_DELAY,
+		BuildConfig.HTTP_RETRY_MAX_DELAY);
+
+	private static final ThroughputEstimator throughputEstimator = new ThroughputEstimator();
+
+	private static OkHttpClient sharedClient;
+	private static OkHttpClient imageClient;
+
+	private WebApiTransport() {
+		// not instantiable
+	}
+
+	/**
+	 * Returns the shared HTTP client. The client is created the first time this method
+	 * is called.
+	 *
+	 * @param context Any context; it is only used to locate the app's cache directory.
+	 */
+	public static synchronized OkHttpClient getClient(final Context context) {
+		if (sharedClient == null) {
+			File cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+
+			sharedClient = newClientBuilder(
+				BuildConfig.HTTP_MAX_REQUESTS,
+				BuildConfig.HTTP_MAX_REQUESTS_PER_HOST,
+				BuildConfig.HTTP_CONNECT_TIMEOUT,
+				BuildConfig.HTTP_READ_TIMEOUT)
+				.cache(new Cache(cacheDir, BuildConfig.HTTP_CACHE_SIZE))
+				.addInterceptor(cacheStatistics)
+				.addInterceptor(circuitBreaker) // must precede the retries
+				.addInterceptor(retryInterceptor)
+				.addNetworkInterceptor(new RateLimitInterceptor(rateLimiter))
+				.addNetworkInterceptor(throughputEstimator)
+				.build();
+		}
+
+		return sharedClient;
+	}
+
+	/**
+	 * Returns the HTTP client for image downloads. The image client shares the connection
+	 * pool of the {@link #getClient(Context) shared client}, but has its own cache, and
+	 * its requests are neither rate limited nor retried.
+	 *
+	 * @param context Any context; it is only used to locate the app's cache directory.
+	 */
+	public static synchronized OkHttpClient getImageClient(final Context context) {
+		if (imageClient == null) {
+			OkHttpClient client = getClient(context);
+			File cacheDir = new File(context.getApplicationContext().getCacheDir(), IMAGE_CACHE_DIR);
+
+			imageClient = new OkHttpClient.Builder()
+				.connectionPool(client.connectionPool())
+				.connectTimeout(BuildConfig.HTTP_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+				.readTimeout(BuildConfig.HTTP_READ_TIMEOUT, TimeUnit.MILLISECONDS)
+				.writeTimeout(BuildConfig.HTTP_READ_TIMEOUT, TimeUnit.MILLISECONDS)
+				.cache(new Cache(cacheDir, BuildConfig.HTTP_IMAGE_CACHE_SIZE))
+				.addNetworkInterceptor(throughputEstimator)
+				.build();
+		}
+
+		return imageClient;
+	}
+
+	/** Returns the hit, miss and revalidation counters of the shared HTTP cache. */
+	public static HttpCacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	/** Returns the rate limiter that paces requests sent by the shared HTTP client. */
+	public static RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/** Returns the circuit breaker of the shared HTTP client. */
+	public static CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/** Returns the throughput estimate of downloads made by the shared and image clients. */
+	public static ThroughputEstimator getThroughputEstimator() {
+		return throughputEstimator;
+	}
+
+	/** Returns the retry counters of the shared HTTP client. */
+	public static RetryInterceptor getRetryStatistics() {
+		return retryInterceptor;
+	}
+
+	/**
+	 * Creates a client builder configured with a long-lived connection pool and the given
+	 * concurrency limits and timeouts. This method is exposed mainly for testing; production
+	 * code should use {@link #getClient(Context)}.
+	 *
+	 * @param maxRequests The maximum number of concurrent asynchronous requests
+	 * @param maxRequestsPerHost The maximum number of concurrent asynchronous requests
+	 *                           to any single host
+	 * @param connectTimeoutMillis Timeout (in milliseconds) for establishing a connection
+	 * @param readTimeoutMillis Timeout (in milliseconds) for reading from and writing to
+	 *                          an open connection
+	 */
+	public static OkHttpClient.Builder newClientBuilder(
+		final int maxRequests,
+		final int maxRequestsPerHost,
+		final long connectTimeoutMillis,
+		final long readTimeoutMillis) {
+
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(maxRequests);
+		dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+		ConnectionPool connectionPool = new ConnectionPool(
+			MAX_IDLE_CONNECTIONS,
+			KEEP_ALIVE_DURATION_MINUTES,
+			TimeUnit.MINUTES);
+
+		return new OkHttpClient.Builder()
+			.dispatcher(dispatcher)
+			.connectionPool(connectionPool)
+			.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+			.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+			.writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+}
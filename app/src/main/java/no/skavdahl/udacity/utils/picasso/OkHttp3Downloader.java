@@ -0,0 +1,69 @@
+package no.skavdahl.udacity.utils.picasso;
+
+import android.net.Uri;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import java.io.IOException;
+
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A Picasso Downloader that loads images through an OkHttp 3 client. Picasso 2.5 only
+ * knows how to use OkHttp 2 or HttpURLConnection by itself; this downloader lets image
+ * requests share the connection pool (and thereby pre-warmed connections) of the app's
+ * other HTTP traffic.
+ *
+ * @author fdavs
+ */
+public class OkHttp3Downloader implements Downloader {
+
+	private final OkHttpClient client;
+
+	public OkHttp3Downloader(final OkHttpClient client) {
+		this.client = client;
+	}
+
+	@Override
+	public Response load(Uri uri, int networkPolicy) throws IOException {
+		CacheControl cacheControl = null;
+		if (networkPolicy != 0) {
+			if (NetworkPolicy.isOfflineOnly(networkPolicy))
+				cacheControl = CacheControl.FORCE_CACHE;
+			else {
+				CacheControl.Builder builder = new CacheControl.Builder();
+				if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy))
+					builder.noCache();
+				if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy))
+					builder.noStore();
+				cacheControl = builder.build();
+			}
+		}
+
+		Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
+		if (cacheControl != null)
+			requestBuilder.cacheControl(cacheControl);
+
+		okhttp3.Response response = client.newCall(requestBuilder.build()).execute();
+		int responseCode = response.code();
+		if (responseCode >= 300) {
+			response.body().close();
+			throw new ResponseException(responseCode + " " + response.message(), networkPolicy, responseCode);
+		}
+
+		boolean fromCache = response.cacheResponse() != null;
+
+		ResponseBody responseBody = response.body();
+		return new Response(responseBody.byteStream(), fromCache, responseBody.contentLength());
+	}
+
+	@Override
+	public void shutdown() {
+		// the client is shared with the rest of the app and must not be shut down
+	}
+}
@@ -0,0 +1,128 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the ExtendedDataCodec class.
+ *
+ * @author fdavs
+ */
+public class ExtendedDataCodecTest {
+
+	/** Verifies that reviews are decoded as they were encoded. */
+	@Test
+	public void testReviewRoundTrip() {
+		List<Review> reviews = Arrays.asList(
+			new Review("5637c5e0c3a3681b5c019f7b", "Goddard", "Pretty awesome movie."),
+			new Review("56419c18c3a368018b00289c", "Frank Ochieng", "Bond is back – «Spectre» 💥"));
+
+		List<Review> decoded = ExtendedDataCodec.decodeReviews(ExtendedDataCodec.encodeReviews(reviews));
+
+		assertThat(decoded).hasSize(2);
+		for (int i = 0; i < reviews.size(); ++i) {
+			assertThat(decoded.get(i).getId()).isEqualTo(reviews.get(i).getId());
+			assertThat(decoded.get(i).getAuthor()).isEqualTo(reviews.get(i).getAuthor());
+			assertThat(decoded.get(i).getContent()).isEqualTo(reviews.get(i).getContent());
+		}
+	}
+
+	/** Verifies that videos are decoded as they were encoded. */
+	@Test
+	public void testVideoRoundTrip() {
+		List<Video> videos = Arrays.asList(
+			new Video("7GqClqvlObY", Video.SITE_YOUTUBE, "Official Trailer"),
+			new Video("BOVriTeIypQ", Video.SITE_YOUTUBE, "Teaser"));
+
+		List<Video> decoded = ExtendedDataCodec.decodeVideos(ExtendedDataCodec.encodeVideos(videos));
+
+		assertThat(decoded).hasSize(2);
+		assertThat(decoded.get(1).getKey()).isEqualTo("BOVriTeIypQ");
+		assertThat(decoded.get(1).getSite()).isEqualTo(Video.SITE_YOUTUBE);
+		assertThat(decoded.get(1).getName()).isEqualTo("Teaser");
+	}
+
+	/** Verifies that a review is only created once, when it is first accessed. */
+	@Test
+	public void testRecordsAreCreatedOnce() {
+		List<Review> decoded = ExtendedDataCodec.decodeReviews(ExtendedDataCodec.encodeReviews(createReviews(100)));
+
+		assertThat(decoded).hasSize(100);
+		assertThat(decoded.get(99)).isSameAs(decoded.get(99));
+		assertThat(decoded.get(0).getAuthor()).isEqualTo("Author 0");
+	}
+
+	/** Verifies that long fields are encoded with multi-byte length prefixes. */
+	@Test
+	public void testLongContent() {
+		char[] content = new char[100000];
+		Arrays.fill(content, 'x');
+		List<Review> reviews = Collections.singletonList(new Review("id", "author", new String(content)));
+
+		List<Review> decoded = ExtendedDataCodec.decodeReviews(ExtendedDataCodec.encodeReviews(reviews));
+
+		assertThat(decoded.get(0).getContent()).hasSize(content.length);
+	}
+
+	/** Verifies that empty and missing lists are handled. */
+	@Test
+	public void testEmptyLists() {
+		assertThat(ExtendedDataCodec.decodeReviews(ExtendedDataCodec.encodeReviews(null))).isEmpty();
+		assertThat(ExtendedDataCodec.decodeVideos(ExtendedDataCodec.encodeVideos(new ArrayList<Video>()))).isEmpty();
+		assertThat(ExtendedDataCodec.decodeReviews(null)).isEmpty();
+		assertThat(ExtendedDataCodec.decodeVideos(new byte[0])).isEmpty();
+	}
+
+	/** Verifies that data in an unknown format or truncated data decodes to an empty list. */
+	@Test
+	public void testInvalidData() {
+		byte[] data = ExtendedDataCodec.encodeReviews(createReviews(3));
+
+		byte[] unknownVersion = data.clone();
+		unknownVersion[0] = ExtendedDataCodec.FORMAT_VERSION + 1;
+		assertThat(ExtendedDataCodec.decodeReviews(unknownVersion)).isEmpty();
+
+		byte[] truncated = Arrays.copyOf(data, data.length - 1);
+		assertThat(ExtendedDataCodec.decodeReviews(truncated)).isEmpty();
+
+		// JSON stored by database version 2
+		assertThat(ExtendedDataCodec.decodeReviews("[]".getBytes())).isEmpty();
+	}
+
+	/** Verifies that the binary format is smaller than the JSON it replaces. */
+	@Test
+	public void testSmallerThanJson() throws Exception {
+		List<Review> reviews = createReviews(10);
+
+		JSONArray json = new JSONArray();
+		for (Review review : reviews) {
+			JSONObject obj = new JSONObject();
+			obj.put("id", review.getId());
+			obj.put("author", review.getAuthor());
+			obj.put("content", review.getContent());
+			json.put(obj);
+		}
+
+		int jsonSize = json.toString().getBytes("UTF-8").length;
+		int binarySize = ExtendedDataCodec.encodeReviews(reviews).length;
+		assertThat(binarySize).isLessThan(jsonSize);
+	}
+
+	private static List<Review> createReviews(int count) {
+		List<Review> reviews = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i)
+			reviews.add(new Review("56419c18c3a368018b0028" + i, "Author " + i, "Review \"number\" " + i + ".\nIt's good."));
+		return reviews;
+	}
+}
@@ -0,0 +1,84 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import no.skavdahl.udacity.popularmovies.model.MovieDetails;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the MovieDetailsCache class.
+ *
+ * @author fdavs
+ */
+public class MovieDetailsCacheTest {
+
+	private static final int MOVIE_ID = 206647;
+	private static final long MODIFIED = 1446940800000L;
+
+	@Before
+	public void setUp() {
+		MovieDetailsCache.invalidate(MOVIE_ID);
+	}
+
+	/** Verifies that cached details are returned while the movie is unchanged. */
+	@Test
+	public void testCachedDetailsAreReturned() {
+		MovieDetails details = createDetails(MODIFIED, 3, false);
+		MovieDetailsCache.put(details, MovieDetailsCache.getGeneration());
+
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED, 5)).isSameAs(details);
+	}
+
+	/** Verifies that details are not returned after the movie has been modified. */
+	@Test
+	public void testModifiedMovieIsNotReturned() {
+		MovieDetailsCache.put(createDetails(MODIFIED, 3, false), MovieDetailsCache.getGeneration());
+
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED + 1, 5)).isNull();
+	}
+
+	/** Verifies that details with too few of the movie's reviews are not returned. */
+	@Test
+	public void testTooFewReviewsAreNotReturned() {
+		MovieDetails details = createDetails(MODIFIED, 5, true);
+		MovieDetailsCache.put(details, MovieDetailsCache.getGeneration());
+
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED, 5)).isSameAs(details);
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED, 10)).isNull();
+	}
+
+	/** Verifies that details read before an invalidation are not cached. */
+	@Test
+	public void testDetailsReadBeforeInvalidationAreDropped() {
+		int generation = MovieDetailsCache.getGeneration();
+		MovieDetailsCache.invalidate(MOVIE_ID);
+		MovieDetailsCache.put(createDetails(MODIFIED, 3, false), generation);
+
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED, 5)).isNull();
+	}
+
+	/** Verifies that an invalidation removes the cached details. */
+	@Test
+	public void testInvalidateRemovesDetails() {
+		MovieDetailsCache.put(createDetails(MODIFIED, 3, false), MovieDetailsCache.getGeneration());
+		MovieDetailsCache.invalidate(MOVIE_ID);
+
+		assertThat(MovieDetailsCache.get(MOVIE_ID, MODIFIED, 5)).isNull();
+	}
+
+	private static MovieDetails createDetails(long modified, int reviewCount, boolean moreReviews) {
+		List<Review> reviews = new ArrayList<>();
+		for (int i = 0; i < reviewCount; ++i)
+			reviews.add(new Review("review" + i, "Author " + i, "Review number " + i));
+
+		return new MovieDetails(MOVIE_ID, modified, reviews, moreReviews, Collections.<Video>emptyList());
+	}
+}
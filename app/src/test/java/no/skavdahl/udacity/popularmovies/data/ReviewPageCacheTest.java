@@ -0,0 +1,67 @@
+package no.skavdahl.udacity.popularmovies.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the ReviewPageCache class.
+ *
+ * @author fdavs
+ */
+public class ReviewPageCacheTest {
+
+	private static final int MOVIE_ID = 550;
+	private static final long NOW = 1446940800000L;
+
+	@Before
+	public void setUp() {
+		ReviewPageCache.clear();
+	}
+
+	/** Verifies that a cached page is returned for its movie and page number only. */
+	@Test
+	public void testCachedPageIsReturned() {
+		ReviewPage page = createPage(MOVIE_ID, 2);
+		ReviewPageCache.put(page, NOW);
+
+		assertThat(ReviewPageCache.get(MOVIE_ID, 2, NOW)).isSameAs(page);
+		assertThat(ReviewPageCache.get(MOVIE_ID, 3, NOW)).isNull();
+		assertThat(ReviewPageCache.get(MOVIE_ID + 1, 2, NOW)).isNull();
+	}
+
+	/** Verifies that the consecutive pages end before the first missing page. */
+	@Test
+	public void testPagesEndAtGap() {
+		ReviewPage page2 = createPage(MOVIE_ID, 2);
+		ReviewPage page3 = createPage(MOVIE_ID, 3);
+		ReviewPageCache.put(page3, NOW);
+		ReviewPageCache.put(page2, NOW);
+		ReviewPageCache.put(createPage(MOVIE_ID, 5), NOW);
+
+		assertThat(ReviewPageCache.getPages(MOVIE_ID, 2, NOW)).containsExactly(page2, page3);
+		assertThat(ReviewPageCache.getPages(MOVIE_ID, 1, NOW)).isEmpty();
+		assertThat(ReviewPageCache.getPages(MOVIE_ID, 4, NOW)).isEmpty();
+	}
+
+	/** Verifies that pages are not returned after they have expired. */
+	@Test
+	public void testExpiredPagesAreNotReturned() {
+		ReviewPageCache.put(createPage(MOVIE_ID, 2), NOW);
+
+		long later = NOW + ReviewPageCache.MAX_AGE_MILLIS + 1;
+		assertThat(ReviewPageCache.get(MOVIE_ID, 2, later)).isNull();
+		assertThat(ReviewPageCache.getPages(MOVIE_ID, 2, later)).isEmpty();
+	}
+
+	private static ReviewPage createPage(int movieId, int page) {
+		Review review = new Review("id" + page, "Author " + page, "Content " + page);
+		return new ReviewPage(movieId, page, 5, Collections.singletonList(review));
+	}
+}
@@ -0,0 +1,71 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the ImageConfiguration class.
+ *
+ * @author fdavs
+ */
+public class ImageConfigurationTest {
+
+	private final ImageConfiguration configuration = new ImageConfiguration(
+		"http://example.com/t/p",
+		Arrays.asList("w92", "w185", "w342", "original"),
+		Arrays.asList("original", "w1280", "w300", "w780"));
+
+	/** Verifies that the smallest size that fills the available width is selected. */
+	@Test
+	public void testSmallestSizeThatFits() {
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 50)).isEqualTo("w92");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 92)).isEqualTo("w92");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 93)).isEqualTo("w185");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 300)).isEqualTo("w342");
+	}
+
+	/** Verifies that the widest size is selected when no size is wide enough. */
+	@Test
+	public void testWidestSizeWhenNothingFits() {
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 1000)).isEqualTo("w342");
+		assertThat(configuration.getSizeCode(ImageType.BACKDROP, 2560)).isEqualTo("w1280");
+	}
+
+	/** Verifies that sizes are ordered by width regardless of the order in the configuration. */
+	@Test
+	public void testUnorderedSizes() {
+		assertThat(configuration.getWidths(ImageType.BACKDROP)).containsExactly(300, 780, 1280);
+		assertThat(configuration.getSizeCode(ImageType.BACKDROP, 700)).isEqualTo("w780");
+	}
+
+	/** Verifies that "original" is used when there are no width-based sizes. */
+	@Test
+	public void testOriginalOnly() {
+		ImageConfiguration originalOnly = new ImageConfiguration(
+			"http://example.com/t/p/",
+			Arrays.asList("original"),
+			Arrays.asList("h632", "original"));
+
+		assertThat(originalOnly.getSizeCode(ImageType.POSTER, 185)).isEqualTo("original");
+		assertThat(originalOnly.getSizeCode(ImageType.BACKDROP, 185)).isEqualTo("original");
+	}
+
+	/** Verifies that the base URL always ends with a slash. */
+	@Test
+	public void testBaseUrl() {
+		assertThat(configuration.getBaseUrl()).isEqualTo("http://example.com/t/p/");
+	}
+
+	/** Verifies that size steps select neighbouring renditions within the available range. */
+	@Test
+	public void testSizeStep() {
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 185, -1)).isEqualTo("w92");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 185, -5)).isEqualTo("w92");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 185, 1)).isEqualTo("w342");
+		assertThat(configuration.getSizeCode(ImageType.POSTER, 185, 5)).isEqualTo("w342");
+		assertThat(configuration.getSizeCode(ImageType.BACKDROP, 2560, -1)).isEqualTo("w780");
+	}
+}
@@ -3,9 +3,12 @@ package no.skavdahl.udacity.popularmovies.mdb;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import org.junit.After;
 import org.junit.Before;
@@ -58,7 +61,12 @@ public class MdbJSONAdapterTest {
 	}
 
 	private List<Movie> fromJSON(String json) throws JSONException {
-		return MdbJSONAdapter.getMoviesList(json);
+		JSONArray results = new JSONObject(json).getJSONArray("results");
+
+		List<Movie> movies = new ArrayList<>(results.length());
+		for (int i = 0; i < results.length(); ++i)
+			movies.add(MdbJSONAdapter.toMovie(results.getJSONObject(i)));
+		return movies;
 	}
 
 	/** Verifies that one movie is correctly parsed from the JSON string. */
@@ -79,7 +87,7 @@ public class MdbJSONAdapterTest {
 	/** Verifies that a collection of movies are correctly parsed from the JSON string. */
 	@Test
 	public void testCorrectNumberOfMoviesInResult() throws JSONException {
-		List<Movie> movies = MdbJSONAdapter.getMoviesList(discoveryResultJSON);
+		List<Movie> movies = fromJSON(discoveryResultJSON);
 
 		assertThat(movies).hasSize(20);
 		assertThat(movies.get(0).getMovieDbId()).isEqualTo(206647);
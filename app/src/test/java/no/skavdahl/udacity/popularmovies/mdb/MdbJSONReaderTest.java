@@ -0,0 +1,258 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+import no.skavdahl.udacity.popularmovies.model.ReviewPage;
+import no.skavdahl.udacity.utils.EpochDay;
+
+/**
+ * Unit tests for the MdbJSONReader class.
+ *
+ * @author fdavs
+ */
+public class MdbJSONReaderTest {
+
+	private Reader openResource(String name) throws IOException {
+		return new InputStreamReader(getClass().getResourceAsStream(name), "UTF-8");
+	}
+
+	@SuppressWarnings("TryFinallyCanBeTryWithResources")
+	private MovieBatch readMovieBatch(String resourceName) throws IOException {
+		Reader reader = openResource(resourceName);
+		try {
+			return MdbJSONReader.readMovieBatch(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/** Verifies that one movie is correctly parsed from the JSON stream. */
+	@Test
+	public void testCorrectMovieAttributes() throws IOException {
+		MovieBatch movies = readMovieBatch("/discover_movie.json");
+
+		assertThat(movies.getId(0)).isEqualTo(206647);
+		assertThat(movies.getTitle(0)).isEqualTo("Spectre");
+		assertThat(movies.getPosterPath(0)).isEqualTo("/1n9D32o30XOHMdMWuIT4AaA5ruI.jpg");
+		assertThat(movies.getSynopsis(0))
+			.startsWith("A cryptic message")
+			.endsWith("truth behind SPECTRE.");
+		assertThat(movies.getPopularity(0)).isCloseTo(54.146108, within(0.000001));
+		assertThat(movies.getReleaseDate(0)).isEqualTo(EpochDay.of(2015, 11, 6));
+	}
+
+	/** Verifies that a collection of movies are correctly parsed from the JSON stream. */
+	@Test
+	public void testCorrectNumberOfMoviesInResult() throws IOException {
+		MovieBatch movies = readMovieBatch("/discover_movie.json");
+
+		assertThat(movies.size()).isEqualTo(20);
+		assertThat(movies.getId(0)).isEqualTo(206647);
+		assertThat(movies.getId(movies.size() - 1)).isEqualTo(274854);
+	}
+
+	/** Verifies that the streaming parser reads the same movies as MdbJSONAdapter, in the same order. */
+	@Test
+	@SuppressWarnings("TryFinallyCanBeTryWithResources")
+	public void testSameResultAsTreeParser() throws IOException, JSONException {
+		MovieBatch streamed = readMovieBatch("/discover_movie.json");
+
+		StringBuilder buf = new StringBuilder();
+		Reader reader = openResource("/discover_movie.json");
+		try {
+			char[] chars = new char[4096];
+			int count;
+			while ((count = reader.read(chars)) > 0)
+				buf.append(chars, 0, count);
+		}
+		finally {
+			reader.close();
+		}
+		JSONArray parsed = new JSONObject(buf.toString()).getJSONArray("results");
+
+		assertThat(streamed.size()).isEqualTo(parsed.length());
+		for (int i = 0; i < parsed.length(); ++i) {
+			Movie expected = MdbJSONAdapter.toMovie(parsed.getJSONObject(i));
+
+			assertThat(streamed.getId(i)).isEqualTo(expected.getMovieDbId());
+			assertThat(streamed.getTitle(i)).isEqualTo(expected.getTitle());
+			assertThat(streamed.getReleaseDate(i)).isEqualTo(expected.getReleaseDate());
+			assertThat(streamed.getPosterPath(i)).isEqualTo(expected.getPosterPath());
+			assertThat(streamed.getBackdropPath(i)).isEqualTo(expected.getBackdropPath());
+			assertThat(streamed.getSynopsis(i)).isEqualTo(expected.getSynopsis());
+			assertThat(streamed.getPopularity(i)).isEqualTo(expected.getPopularity());
+			assertThat(streamed.getVoteAverage(i)).isEqualTo(expected.getVoteAverage());
+			assertThat(streamed.getVoteCount(i)).isEqualTo(expected.getVoteCount());
+			assertThat(streamed.getFingerprint(i)).isEqualTo(MovieFingerprint.of(expected));
+		}
+	}
+
+	/** Verifies that the batch grows past its initial capacity and an empty batch can be built. */
+	@Test
+	public void testMovieBatchBuilder() {
+		MovieBatch.Builder builder = new MovieBatch.Builder(1);
+		for (int i = 0; i < 5; ++i)
+			builder.add(i, "Movie " + i, null, null, null, i, 0, 0, EpochDay.NONE, i);
+
+		MovieBatch batch = builder.build();
+		assertThat(batch.size()).isEqualTo(5);
+		assertThat(batch.getTitle(4)).isEqualTo("Movie 4");
+		assertThat(batch.getFingerprint(4)).isEqualTo(4);
+
+		assertThat(new MovieBatch.Builder().build().size()).isEqualTo(0);
+	}
+
+	/** Verifies that videos and reviews are read from a movie details response. */
+	@Test
+	@SuppressWarnings("TryFinallyCanBeTryWithResources")
+	public void testMovieDetails() throws IOException {
+		Movie movie;
+		Reader reader = openResource("/movie_details.json");
+		try {
+			movie = MdbJSONReader.readMovie(reader);
+		}
+		finally {
+			reader.close();
+		}
+
+		assertThat(movie.getMovieDbId()).isEqualTo(550);
+		assertThat(movie.getTitle()).isEqualTo("Fight Club");
+		assertThat(movie.getVoteCount()).isEqualTo(3185);
+		assertThat(movie.hasExtendedData()).isTrue();
+
+		assertThat(movie.getVideos()).hasSize(1);
+		assertThat(movie.getVideos().get(0).getKey()).isEqualTo("SUXWAEX2jlg");
+
+		assertThat(movie.getReviews()).hasSize(1);
+		assertThat(movie.getReviews().get(0).getAuthor()).isEqualTo("Goddard");
+	}
+
+	/** Verifies that a page of reviews is read from a movie review response. */
+	@Test
+	@SuppressWarnings("TryFinallyCanBeTryWithResources")
+	public void testReviewPage() throws IOException {
+		ReviewPage page;
+		Reader reader = openResource("/movie_reviews.json");
+		try {
+			page = MdbJSONReader.readReviewPage(reader);
+		}
+		finally {
+			reader.close();
+		}
+
+		assertThat(page.getMovieId()).isEqualTo(550);
+		assertThat(page.getPage()).isEqualTo(2);
+		assertThat(page.getTotalPages()).isEqualTo(3);
+		assertThat(page.hasNextPage()).isTrue();
+
+		assertThat(page.getReviews()).hasSize(2);
+		assertThat(page.getReviews().get(1).getAuthor()).isEqualTo("Kamurai");
+	}
+
+	/** Verifies that an empty page past the last one has no next page. */
+	@Test
+	public void testReviewPageAfterLast() throws IOException {
+		String json = "{\"id\":550,\"page\":4,\"results\":[],\"total_pages\":3,\"total_results\":43}";
+
+		ReviewPage page = MdbJSONReader.readReviewPage(new StringReader(json));
+
+		assertThat(page.getReviews()).isEmpty();
+		assertThat(page.hasNextPage()).isFalse();
+	}
+
+	/** Verifies that a review response without a page number is rejected. */
+	@Test(expected = IOException.class)
+	public void testIncompleteReviewPage() throws IOException {
+		MdbJSONReader.readReviewPage(new StringReader("{\"id\":550,\"results\":[]}"));
+	}
+
+	/** Verifies that movies without a title are skipped and null values are accepted. */
+	@Test
+	public void testIncompleteMovieIsSkipped() throws IOException {
+		String json = "{\"page\":1,\"results\":[" +
+			"{\"id\":1,\"title\":null}," +
+			"{\"id\":2,\"title\":\"Two\",\"poster_path\":null,\"release_date\":\"\"}" +
+			"],\"total_pages\":1}";
+
+		MovieBatch movies = MdbJSONReader.readMovieBatch(new StringReader(json));
+
+		assertThat(movies.size()).isEqualTo(1);
+		assertThat(movies.getId(0)).isEqualTo(2);
+		assertThat(movies.getPosterPath(0)).isNull();
+		assertThat(movies.getReleaseDate(0)).isEqualTo(EpochDay.NONE);
+	}
+
+	/**
+	 * Verifies that the streaming parser requires the same attributes as MdbJSONAdapter:
+	 * an id (which may be 0) and a non-blank title.
+	 */
+	@Test
+	public void testSameRequiredAttributesAsTreeParser() throws IOException, JSONException {
+		String json = "{\"page\":1,\"results\":[" +
+			"{\"title\":\"No id\"}," +
+			"{\"id\":0,\"title\":\"Zero\"}," +
+			"{\"id\":3,\"title\":\" \"}" +
+			"],\"total_pages\":1}";
+
+		MovieBatch movies = MdbJSONReader.readMovieBatch(new StringReader(json));
+
+		assertThat(movies.size()).isEqualTo(1);
+		assertThat(movies.getId(0)).isEqualTo(0);
+		assertThat(MdbJSONAdapter.toMovie(new JSONObject("{\"id\":0,\"title\":\"Zero\"}")).getMovieDbId()).isEqualTo(0);
+	}
+
+	/** Verifies that, as in MdbJSONAdapter, a movie has extended data exactly when it has a reviews attribute. */
+	@Test
+	public void testExtendedDataFollowsReviewsAttribute() throws IOException, JSONException {
+		String withNullReviews = "{\"id\":550,\"title\":\"Fight Club\",\"reviews\":null}";
+		String withoutReviews = "{\"id\":550,\"title\":\"Fight Club\",\"videos\":[]}";
+
+		assertThat(MdbJSONReader.readMovie(new StringReader(withNullReviews)).hasExtendedData())
+			.isEqualTo(MdbJSONAdapter.toMovie(new JSONObject(withNullReviews)).hasExtendedData())
+			.isTrue();
+		assertThat(MdbJSONReader.readMovie(new StringReader(withoutReviews)).hasExtendedData())
+			.isEqualTo(MdbJSONAdapter.toMovie(new JSONObject(withoutReviews)).hasExtendedData())
+			.isFalse();
+	}
+
+	/** Verifies that the image base URL and sizes are read from a configuration response. */
+	@Test
+	@SuppressWarnings("TryFinallyCanBeTryWithResources")
+	public void testImageConfiguration() throws IOException {
+		ImageConfiguration configuration;
+		Reader reader = openResource("/configuration.json");
+		try {
+			configuration = MdbJSONReader.readImageConfiguration(reader);
+		}
+		finally {
+			reader.close();
+		}
+
+		assertThat(configuration.getBaseUrl()).isEqualTo("http://image.tmdb.org/t/p/");
+		assertThat(configuration.getPosterSizes())
+			.containsExactly("w92", "w154", "w185", "w342", "w500", "w780", "original");
+		assertThat(configuration.getBackdropSizes())
+			.containsExactly("w300", "w780", "w1280", "original");
+	}
+
+	/** Verifies that a configuration without image sizes is rejected. */
+	@Test(expected = IOException.class)
+	public void testIncompleteImageConfiguration() throws IOException {
+		String json = "{\"images\":{\"base_url\":\"http://image.tmdb.org/t/p/\"}}";
+		MdbJSONReader.readImageConfiguration(new StringReader(json));
+	}
+}
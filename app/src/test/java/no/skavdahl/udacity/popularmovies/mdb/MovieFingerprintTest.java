@@ -0,0 +1,51 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import org.junit.Test;
+
+import no.skavdahl.udacity.utils.EpochDay;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the MovieFingerprint class.
+ *
+ * @author fdavs
+ */
+public class MovieFingerprintTest {
+
+	private static final long SPECTRE = fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1223, 16735);
+
+	/** Verifies that equal attributes give equal fingerprints. */
+	@Test
+	public void testSameAttributes() {
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1223, 16735))
+			.isEqualTo(SPECTRE);
+	}
+
+	/** Verifies that a change in any attribute changes the fingerprint. */
+	@Test
+	public void testChangedAttribute() {
+		assertThat(fingerprint("Spectra", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster2.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", null, "Synopsis", 57.2, 6.5, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis.", 57.2, 6.5, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.3, 6.5, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.6, 1223, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1224, 16735)).isNotEqualTo(SPECTRE);
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "Synopsis", 57.2, 6.5, 1223, EpochDay.NONE)).isNotEqualTo(SPECTRE);
+	}
+
+	/** Verifies that text moved from one attribute to the next changes the fingerprint. */
+	@Test
+	public void testAttributeBoundaries() {
+		assertThat(fingerprint("Spectre", "/poster.jpg", "/backdrop.jpg", "", 57.2, 6.5, 1223, 16735))
+			.isNotEqualTo(fingerprint("Spectre", "/poster.jpg", "", "/backdrop.jpg", 57.2, 6.5, 1223, 16735));
+		assertThat(fingerprint("Spectre", null, "", "Synopsis", 57.2, 6.5, 1223, 16735))
+			.isNotEqualTo(fingerprint("Spectre", "", null, "Synopsis", 57.2, 6.5, 1223, 16735));
+	}
+
+	private static long fingerprint(String title, String posterPath, String backdropPath, String synopsis,
+	                                double popularity, double voteAverage, int voteCount, int releaseDate) {
+		return MovieFingerprint.of(title, posterPath, backdropPath, synopsis, popularity, voteAverage, voteCount, releaseDate);
+	}
+}
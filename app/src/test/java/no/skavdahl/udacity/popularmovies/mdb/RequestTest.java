@@ -0,0 +1,39 @@
+package no.skavdahl.udacity.popularmovies.mdb;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+import no.skavdahl.udacity.utils.ConnectionQuality;
+
+/**
+ * Unit tests for the image size selection of the Request class.
+ *
+ * @author fdavs
+ */
+public class RequestTest {
+
+	/** Verifies that images are requested smaller on slow connections. */
+	@Test
+	public void testSlowConnectionStepsDown() {
+		assertThat(Request.getImageSizeStep(ConnectionQuality.POOR, true, false)).isEqualTo(-2);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.MODERATE, true, false)).isEqualTo(-1);
+	}
+
+	/** Verifies that images are requested smaller on metered connections, however fast. */
+	@Test
+	public void testMeteredConnectionStepsDown() {
+		assertThat(Request.getImageSizeStep(ConnectionQuality.UNKNOWN, false, true)).isEqualTo(-1);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.EXCELLENT, false, true)).isEqualTo(-1);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.POOR, false, true)).isEqualTo(-2);
+	}
+
+	/** Verifies that images are requested larger only on fast, unmetered Wi-Fi. */
+	@Test
+	public void testFastWifiStepsUp() {
+		assertThat(Request.getImageSizeStep(ConnectionQuality.EXCELLENT, true, false)).isEqualTo(1);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.EXCELLENT, false, false)).isEqualTo(0);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.GOOD, true, false)).isEqualTo(0);
+		assertThat(Request.getImageSizeStep(ConnectionQuality.UNKNOWN, true, false)).isEqualTo(0);
+	}
+}
@@ -0,0 +1,135 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the CircuitBreaker class.
+ *
+ * @author fdavs
+ */
+public class CircuitBreakerTest {
+
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long OPEN_TIME = 200;
+
+	@Rule
+	public TemporaryFolder cacheDir = new TemporaryFolder();
+
+	private MockWebServer server;
+	private CircuitBreaker circuitBreaker;
+	private OkHttpClient client;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.start();
+
+		circuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_TIME);
+		client = WebApiTransport.newClientBuilder(16, 4, 10000, 20000)
+			.cache(new Cache(cacheDir.getRoot(), 1024 * 1024))
+			.addInterceptor(circuitBreaker)
+			.build();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/** Verifies that the breaker opens after consecutive failures and then fails fast. */
+	@Test
+	public void testThatBreakerOpensAndFailsFast() throws Exception {
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			server.enqueue(new MockResponse().setResponseCode(503));
+
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			assertThat(get("/3/movie/popular")).isEqualTo(503);
+
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		try {
+			get("/3/movie/popular");
+			fail("expected the request to be rejected");
+		}
+		catch (CircuitBreaker.CircuitOpenException e) {
+			// expected
+		}
+
+		assertThat(server.getRequestCount()).isEqualTo(FAILURE_THRESHOLD);
+		assertThat(circuitBreaker.getOpenCount()).isEqualTo(1);
+		assertThat(circuitBreaker.getRejectedCount()).isEqualTo(1);
+	}
+
+	/** Verifies that a cached response is served, even if stale, while the breaker is open. */
+	@Test
+	public void testThatOpenBreakerFallsBackToCache() throws Exception {
+		server.enqueue(new MockResponse()
+			.setHeader("Cache-Control", "max-age=0")
+			.setBody("{\"page\":1}"));
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			server.enqueue(new MockResponse().setResponseCode(500));
+
+		assertThat(get("/3/movie/550")).isEqualTo(200);
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			assertThat(get("/3/movie/popular")).isEqualTo(500);
+
+		assertThat(get("/3/movie/550")).isEqualTo(200);
+		assertThat(server.getRequestCount()).isEqualTo(1 + FAILURE_THRESHOLD);
+		assertThat(circuitBreaker.getFallbackCount()).isEqualTo(1);
+	}
+
+	/** Verifies that the breaker lets a trial request through after the open time and closes. */
+	@Test
+	public void testThatBreakerClosesAfterSuccessfulTrial() throws Exception {
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			server.enqueue(new MockResponse().setResponseCode(503));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			get("/3/movie/popular");
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		Thread.sleep(OPEN_TIME + 50);
+
+		assertThat(get("/3/movie/popular")).isEqualTo(200);
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	/** Verifies that the breaker opens again at once if the trial request fails. */
+	@Test
+	public void testThatBreakerReopensAfterFailedTrial() throws Exception {
+		for (int i = 0; i < FAILURE_THRESHOLD + 1; ++i)
+			server.enqueue(new MockResponse().setResponseCode(503));
+
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i)
+			get("/3/movie/popular");
+
+		Thread.sleep(OPEN_TIME + 50);
+
+		assertThat(get("/3/movie/popular")).isEqualTo(503);
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(circuitBreaker.getOpenCount()).isEqualTo(2);
+	}
+
+	private int get(String path) throws IOException {
+		Request request = new Request.Builder().url(server.url(path)).build();
+		Response response = client.newCall(request).execute();
+		response.body().close();
+		return response.code();
+	}
+}
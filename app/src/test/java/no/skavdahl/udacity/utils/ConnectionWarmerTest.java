@@ -0,0 +1,76 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the ConnectionWarmer class.
+ *
+ * @author fdavs
+ */
+public class ConnectionWarmerTest {
+
+	private MockWebServer server;
+	private OkHttpClient client;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.start();
+
+		client = WebApiTransport.newClientBuilder(16, 4, 10000, 20000).build();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/** Verifies that the first real request reuses the connection opened by the warm-up. */
+	@Test
+	public void testThatWarmUpLeavesPooledConnection() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(404));
+		server.enqueue(new MockResponse().setBody("poster"));
+
+		ConnectionWarmer.warmUp(client, server.url("/t/p/").toString());
+
+		RecordedRequest warmUpRequest = server.takeRequest(5, TimeUnit.SECONDS);
+		assertThat(warmUpRequest.getMethod()).isEqualTo("HEAD");
+		assertThat(warmUpRequest.getSequenceNumber()).isEqualTo(0);
+
+		// the connection is returned to the pool when the warm-up response has been closed
+		long deadline = System.currentTimeMillis() + 5000;
+		while (client.connectionPool().idleConnectionCount() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+
+		Response response = client.newCall(new Request.Builder().url(server.url("/t/p/w185/poster.jpg")).build()).execute();
+		assertThat(response.body().string()).isEqualTo("poster");
+
+		RecordedRequest posterRequest = server.takeRequest();
+		assertThat(posterRequest.getSequenceNumber()).isEqualTo(1);
+	}
+
+	/** Verifies that a failed warm-up does not affect later requests. */
+	@Test
+	public void testThatFailedWarmUpIsHarmless() throws Exception {
+		ConnectionWarmer.warmUp(client, "http://localhost:1/t/p/");
+
+		server.enqueue(new MockResponse().setBody("poster"));
+		Response response = client.newCall(new Request.Builder().url(server.url("/t/p/w185/poster.jpg")).build()).execute();
+
+		assertThat(response.body().string()).isEqualTo("poster");
+	}
+}
@@ -0,0 +1,87 @@
+package no.skavdahl.udacity.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the EpochDay class.
+ *
+ * @author fdavs
+ */
+public class EpochDayTest {
+
+	/** Verifies some well-known dates. */
+	@Test
+	public void testKnownDates() throws ParseException {
+		assertThat(EpochDay.parseOptIsoDate("1970-01-01")).isEqualTo(0);
+		assertThat(EpochDay.parseOptIsoDate("1970-01-02")).isEqualTo(1);
+		assertThat(EpochDay.parseOptIsoDate("1969-12-31")).isEqualTo(-1);
+		assertThat(EpochDay.parseOptIsoDate("2000-03-01")).isEqualTo(11017);
+		assertThat(EpochDay.parseOptIsoDate(" 2015-10-26 ")).isEqualTo(16734);
+	}
+
+	/** Verifies every day from 1900 to 2100 against the Java calendar, both ways. */
+	@Test
+	public void testSameResultAsCalendar() throws ParseException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		format.setTimeZone(utc);
+
+		Calendar calendar = Calendar.getInstance(utc, Locale.US);
+		calendar.clear();
+		calendar.set(1900, Calendar.JANUARY, 1);
+
+		while (calendar.get(Calendar.YEAR) <= 2100) {
+			String date = format.format(calendar.getTime());
+			int expected = (int) Math.floor(calendar.getTimeInMillis() / 86400000.0);
+
+			int epochDay = EpochDay.parseOptIsoDate(date);
+			assertThat(epochDay).as(date).isEqualTo(expected);
+			assertThat(EpochDay.getYear(epochDay)).as(date).isEqualTo(calendar.get(Calendar.YEAR));
+
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+		}
+	}
+
+	/** Verifies that missing dates are reported as NONE. */
+	@Test
+	public void testMissingDate() throws ParseException {
+		assertThat(EpochDay.parseOptIsoDate(null)).isEqualTo(EpochDay.NONE);
+		assertThat(EpochDay.parseOptIsoDate("")).isEqualTo(EpochDay.NONE);
+		assertThat(EpochDay.parseOptIsoDate("  ")).isEqualTo(EpochDay.NONE);
+		assertThat(EpochDay.parseOptIsoDate("null")).isEqualTo(EpochDay.NONE);
+	}
+
+	/** Verifies that malformed and impossible dates are rejected. */
+	@Test
+	public void testInvalidDates() {
+		String[] invalid = { "2015", "2015-1-01", "2015/10/26", "2015-13-01", "2015-00-10",
+			"2015-02-29", "2015-04-31", "2015-10-2x", "-015-10-26" };
+
+		for (String date : invalid) {
+			try {
+				EpochDay.parseOptIsoDate(date);
+				fail("Expected ParseException for " + date);
+			}
+			catch (ParseException e) {
+				// expected
+			}
+		}
+	}
+
+	/** Verifies the leap year rules. */
+	@Test
+	public void testLeapDays() throws ParseException {
+		assertThat(EpochDay.parseOptIsoDate("2016-02-29")).isEqualTo(EpochDay.of(2016, 3, 1) - 1);
+		assertThat(EpochDay.parseOptIsoDate("2000-02-29")).isEqualTo(EpochDay.of(2000, 3, 1) - 1);
+		assertThat(EpochDay.getYear(EpochDay.of(2000, 12, 31))).isEqualTo(2000);
+		assertThat(EpochDay.getYear(EpochDay.of(2001, 1, 1))).isEqualTo(2001);
+	}
+}
@@ -0,0 +1,39 @@
+package no.skavdahl.udacity.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the FrameTimeTracker class.
+ *
+ * @author fdavs
+ */
+public class FrameTimeTrackerTest {
+
+	/** Verifies the frame statistics, and that only frames longer than two intervals count as jank. */
+	@Test
+	public void testStatistics() {
+		FrameTimeTracker tracker = new FrameTimeTracker();
+		tracker.addFrame(FrameTimeTracker.FRAME_INTERVAL_NANOS);
+		tracker.addFrame(2 * FrameTimeTracker.FRAME_INTERVAL_NANOS);
+		tracker.addFrame(2 * FrameTimeTracker.FRAME_INTERVAL_NANOS + 1);
+		tracker.addFrame(50000000);
+
+		assertThat(tracker.getFrameCount()).isEqualTo(4);
+		assertThat(tracker.getJankCount()).isEqualTo(2);
+		assertThat(tracker.getMaxFrameMillis()).isEqualTo(50.0);
+	}
+
+	/** Verifies that reset discards the measurements. */
+	@Test
+	public void testReset() {
+		FrameTimeTracker tracker = new FrameTimeTracker();
+		tracker.addFrame(50000000);
+		tracker.reset();
+
+		assertThat(tracker.getFrameCount()).isEqualTo(0);
+		assertThat(tracker.getJankCount()).isEqualTo(0);
+		assertThat(tracker.getAverageFrameMillis()).isEqualTo(0.0);
+	}
+}
@@ -0,0 +1,98 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Verifies that responses are cached and revalidated, and that the HttpCacheStatistics
+ * counters classify the responses correctly.
+ *
+ * @author fdavs
+ */
+public class HttpCacheStatisticsTest {
+
+	private static final String BODY = "{\"page\":1,\"results\":[]}";
+
+	@Rule
+	public TemporaryFolder cacheDir = new TemporaryFolder();
+
+	private MockWebServer server;
+	private HttpCacheStatistics statistics;
+	private WebApiClient client;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.start();
+
+		statistics = new HttpCacheStatistics();
+
+		OkHttpClient httpClient = WebApiTransport.newClientBuilder(16, 4, 10000, 20000)
+			.cache(new Cache(cacheDir.getRoot(), 1024 * 1024))
+			.addInterceptor(statistics)
+			.build();
+
+		client = new WebApiClient(httpClient);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/** Verifies that an unchanged response with an ETag is revalidated with a 304. */
+	@Test
+	public void testThatUnchangedResponseIsRevalidated() throws Exception {
+		server.enqueue(new MockResponse()
+			.setHeader("ETag", "\"v1\"")
+			.setHeader("Cache-Control", "no-cache")
+			.setBody(BODY));
+		server.enqueue(new MockResponse()
+			.setResponseCode(304));
+
+		String endpoint = server.url("/3/movie/popular?page=1").toString();
+
+		assertThat(client.executeQuery(endpoint)).isEqualTo(BODY);
+		assertThat(client.executeQuery(endpoint)).isEqualTo(BODY);
+
+		server.takeRequest();
+		RecordedRequest conditionalRequest = server.takeRequest();
+		assertThat(conditionalRequest.getHeader("If-None-Match")).isEqualTo("\"v1\"");
+
+		assertThat(statistics.getMissCount()).isEqualTo(1);
+		assertThat(statistics.getRevalidatedCount()).isEqualTo(1);
+		assertThat(statistics.getHitCount()).isEqualTo(0);
+		assertThat(statistics.getBytesSaved()).isEqualTo(BODY.length());
+	}
+
+	/** Verifies that a fresh response is served from the cache without a network request. */
+	@Test
+	public void testThatFreshResponseIsServedFromCache() throws Exception {
+		server.enqueue(new MockResponse()
+			.setHeader("Cache-Control", "max-age=60")
+			.setBody(BODY));
+
+		String endpoint = server.url("/3/movie/550").toString();
+
+		assertThat(client.executeQuery(endpoint)).isEqualTo(BODY);
+		assertThat(client.executeQuery(endpoint)).isEqualTo(BODY);
+
+		assertThat(server.getRequestCount()).isEqualTo(1);
+		assertThat(statistics.getMissCount()).isEqualTo(1);
+		assertThat(statistics.getHitCount()).isEqualTo(1);
+		assertThat(statistics.getRevalidatedCount()).isEqualTo(0);
+	}
+}
@@ -0,0 +1,300 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the RateLimiter and RateLimitInterceptor classes. The burst tests run
+ * against a local stub server that enforces its own rate limit, in the same way as
+ * themoviedb.org, and responds with 429 Too Many Requests when the limit is exceeded.
+ *
+ * @author fdavs
+ */
+public class RateLimiterTest {
+
+	/** The rate limit enforced by the stub server. */
+	private static final double SERVER_RATE = 20;
+	private static final int SERVER_BURST = 10;
+
+	private static final int THREADS = 8;
+	private static final int REQUESTS = 40;
+
+	private MockWebServer server;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		executor.shutdownNow();
+		server.shutdown();
+	}
+
+	/** Verifies that the stub server does throttle an unpaced burst of requests. */
+	@Test
+	public void testThatUnpacedBurstIsThrottled() throws Exception {
+		server.setDispatcher(new ThrottlingDispatcher());
+		server.start();
+
+		OkHttpClient client = WebApiTransport.newClientBuilder(16, THREADS, 10000, 20000).build();
+
+		List<Integer> codes = sendBurst(client);
+
+		assertThat(codes).contains(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS);
+	}
+
+	/** Verifies that a burst of requests paced by the rate limiter is never throttled. */
+	@Test
+	public void testThatPacedBurstIsNotThrottled() throws Exception {
+		server.setDispatcher(new ThrottlingDispatcher());
+		server.start();
+
+		// stay slightly below the server's limits
+		RateLimiter rateLimiter = new RateLimiter(SERVER_RATE * 0.75, SERVER_BURST - 2);
+		OkHttpClient client = WebApiTransport.newClientBuilder(16, THREADS, 10000, 20000).build();
+
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < REQUESTS; ++i) {
+			RequestPriority priority = i % 2 == 0 ? RequestPriority.VISIBLE : RequestPriority.PREFETCH;
+			futures.add(enqueue(client, rateLimiter, priority, null));
+		}
+
+		for (Future<Integer> future : futures)
+			assertThat(future.get(30, TimeUnit.SECONDS)).isEqualTo(200);
+
+		assertThat(rateLimiter.getThrottledCount()).isGreaterThan(0);
+	}
+
+	/**
+	 * Verifies that a request of higher priority overtakes throttled requests of lower
+	 * priority, also when the HTTP client only runs one request at a time. The requests
+	 * take their tokens before they are enqueued, so the throttled requests do not occupy
+	 * the dispatcher while they wait.
+	 */
+	@Test
+	public void testThatVisibleRequestOvertakesThrottledPrefetches() throws Exception {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setBody("{}");
+			}
+		});
+		server.start();
+
+		RateLimiter rateLimiter = new RateLimiter(10, 1);
+		OkHttpClient client = WebApiTransport.newClientBuilder(1, 1, 10000, 20000).build();
+
+		final List<RequestPriority> order = Collections.synchronizedList(new ArrayList<RequestPriority>());
+
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; ++i)
+			futures.add(enqueue(client, rateLimiter, RequestPriority.PREFETCH, order));
+		futures.add(enqueue(client, rateLimiter, RequestPriority.VISIBLE, order));
+
+		for (Future<Integer> future : futures)
+			assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo(200);
+
+		// the first prefetch took the only token in the bucket
+		assertThat(order).hasSize(6);
+		assertThat(order.get(1)).isEqualTo(RequestPriority.VISIBLE);
+	}
+
+	/** Verifies that requests are paused for the time given by a Retry-After header. */
+	@Test
+	public void testThatRetryAfterIsHonoured() throws Exception {
+		server.enqueue(new MockResponse()
+			.setResponseCode(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS)
+			.setHeader("Retry-After", "1"));
+		server.enqueue(new MockResponse().setBody("{}"));
+		server.start();
+
+		RateLimiter rateLimiter = new RateLimiter(100, 10);
+		OkHttpClient client = WebApiTransport.newClientBuilder(16, THREADS, 10000, 20000)
+			.addNetworkInterceptor(new RateLimitInterceptor(rateLimiter))
+			.build();
+
+		assertThat(get(client)).isEqualTo(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS);
+
+		long start = System.nanoTime();
+		assertThat(enqueue(client, rateLimiter, RequestPriority.VISIBLE, null).get(5, TimeUnit.SECONDS)).isEqualTo(200);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(elapsedMillis).isGreaterThanOrEqualTo(900);
+	}
+
+	/** Verifies that waiting requests of higher priority are served first. */
+	@Test
+	public void testThatHigherPriorityIsServedFirst() throws Exception {
+		final RateLimiter rateLimiter = new RateLimiter(10, 1);
+		rateLimiter.acquire(RequestPriority.VISIBLE); // empty the bucket
+
+		final List<RequestPriority> order = Collections.synchronizedList(new ArrayList<RequestPriority>());
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (final RequestPriority priority : new RequestPriority[] {
+			RequestPriority.BACKGROUND,
+			RequestPriority.PREFETCH,
+			RequestPriority.VISIBLE }) {
+
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					rateLimiter.acquire(priority);
+					order.add(priority);
+					return null;
+				}
+			}));
+
+			// make sure the requests start waiting in order of increasing priority
+			Thread.sleep(20);
+		}
+
+		for (Future<?> future : futures)
+			future.get(5, TimeUnit.SECONDS);
+
+		assertThat(order).containsExactly(
+			RequestPriority.VISIBLE,
+			RequestPriority.PREFETCH,
+			RequestPriority.BACKGROUND);
+	}
+
+	/** Verifies parsing of both forms of the Retry-After header. */
+	@Test
+	public void testParseRetryAfter() {
+		long now = 784111767000L; // Sun, 06 Nov 1994 08:49:27 GMT
+
+		assertThat(RateLimitInterceptor.parseRetryAfter("3", now)).isEqualTo(3000);
+		assertThat(RateLimitInterceptor.parseRetryAfter("Sun, 06 Nov 1994 08:49:37 GMT", now)).isEqualTo(10000);
+		assertThat(RateLimitInterceptor.parseRetryAfter("Sun, 06 Nov 1994 08:49:17 GMT", now)).isEqualTo(0);
+		assertThat(RateLimitInterceptor.parseRetryAfter("soon", now)).isEqualTo(0);
+		assertThat(RateLimitInterceptor.parseRetryAfter(null, now)).isEqualTo(0);
+	}
+
+	/** Sends a burst of requests from several threads and returns the response codes. */
+	private List<Integer> sendBurst(final OkHttpClient client) throws Exception {
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < REQUESTS; ++i) {
+			futures.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return get(client);
+				}
+			}));
+		}
+
+		List<Integer> codes = new ArrayList<>();
+		for (Future<Integer> future : futures)
+			codes.add(future.get(30, TimeUnit.SECONDS));
+
+		return codes;
+	}
+
+	private int get(OkHttpClient client) throws IOException {
+		Request request = new Request.Builder()
+			.url(server.url("/3/movie/popular"))
+			.build();
+
+		Response response = client.newCall(request).execute();
+		response.body().close();
+		return response.code();
+	}
+
+	/**
+	 * Enqueues a request when it has taken a token, as WebApiClient does, and returns the
+	 * future response code.
+	 *
+	 * @param order Receives the priority of each request as its response arrives, or
+	 *              <code>null</code>
+	 */
+	private Future<Integer> enqueue(OkHttpClient client, RateLimiter rateLimiter, final RequestPriority priority, final List<RequestPriority> order) {
+		final Request request = new Request.Builder()
+			.url(server.url("/3/movie/popular"))
+			.build();
+		final Call call = client.newCall(request);
+
+		final int[] code = new int[1];
+		final IOException[] error = new IOException[1];
+		final FutureTask<Integer> result = new FutureTask<>(new Callable<Integer>() {
+			@Override
+			public Integer call() throws IOException {
+				if (error[0] != null)
+					throw error[0];
+				return code[0];
+			}
+		});
+
+		rateLimiter.execute(priority, new Runnable() {
+			@Override
+			public void run() {
+				call.enqueue(new Callback() {
+					@Override
+					public void onFailure(Request request, IOException e) {
+						error[0] = e;
+						result.run();
+					}
+
+					@Override
+					public void onResponse(Response response) throws IOException {
+						response.body().close();
+						if (order != null)
+							order.add(priority);
+						code[0] = response.code();
+						result.run();
+					}
+				});
+			}
+		});
+
+		return result;
+	}
+
+	/** Responds with 429 Too Many Requests when the server's token bucket is empty. */
+	private static class ThrottlingDispatcher extends Dispatcher {
+		private double tokens = SERVER_BURST;
+		private long last = System.nanoTime();
+
+		@Override
+		public synchronized MockResponse dispatch(RecordedRequest request) {
+			long now = System.nanoTime();
+			tokens = Math.min(SERVER_BURST, tokens + (now - last) / 1e9 * SERVER_RATE);
+			last = now;
+
+			if (tokens < 1) {
+				return new MockResponse()
+					.setResponseCode(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS)
+					.setHeader("Retry-After", "1");
+			}
+
+			tokens -= 1;
+			return new MockResponse().setBody("{}");
+		}
+	}
+}
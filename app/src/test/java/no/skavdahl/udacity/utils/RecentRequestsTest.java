@@ -0,0 +1,62 @@
+package no.skavdahl.udacity.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the RecentRequests class.
+ *
+ * @author fdavs
+ */
+public class RecentRequestsTest {
+
+	private static final long WINDOW = 50; // milliseconds
+
+	@Test
+	public void testThatCompletedRequestIsRecent() {
+		RecentRequests<String> requests = new RecentRequests<>(WINDOW);
+
+		assertThat(requests.isRecent("popular")).isFalse();
+		requests.complete("popular");
+
+		assertThat(requests.isRecent("popular")).isTrue();
+		assertThat(requests.isRecent("toprated")).isFalse();
+		assertThat(requests.getSkippedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testThatRequestIsForgottenAfterWindow() throws InterruptedException {
+		RecentRequests<String> requests = new RecentRequests<>(WINDOW);
+		requests.complete("popular");
+
+		Thread.sleep(2 * WINDOW);
+
+		assertThat(requests.isRecent("popular")).isFalse();
+		assertThat(requests.getSkippedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testThatRepeatedCompletionRestartsWindow() throws InterruptedException {
+		RecentRequests<String> requests = new RecentRequests<>(WINDOW);
+		requests.complete("popular");
+		requests.complete("toprated");
+
+		Thread.sleep(WINDOW / 2);
+		requests.complete("popular");
+		Thread.sleep(WINDOW / 2 + 10);
+
+		assertThat(requests.isRecent("toprated")).isFalse();
+		assertThat(requests.isRecent("popular")).isTrue();
+	}
+
+	@Test
+	public void testThatClearForgetsRequests() {
+		RecentRequests<String> requests = new RecentRequests<>(WINDOW);
+		requests.complete("popular");
+
+		requests.clear();
+
+		assertThat(requests.isRecent("popular")).isFalse();
+	}
+}
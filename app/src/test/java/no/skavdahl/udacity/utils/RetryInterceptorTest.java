@@ -0,0 +1,169 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the RetryInterceptor class.
+ *
+ * @author fdavs
+ */
+public class RetryInterceptorTest {
+
+	private MockWebServer server;
+	private RetryInterceptor retryInterceptor;
+	private OkHttpClient client;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.start();
+
+		retryInterceptor = new RetryInterceptor(3, 10, 100);
+		client = WebApiTransport.newClientBuilder(16, 4, 10000, 1000)
+			.retryOnConnectionFailure(false) // leave all retries to the interceptor
+			.addInterceptor(retryInterceptor)
+			.build();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/** Verifies that transient server errors are retried until the request succeeds. */
+	@Test
+	public void testThatServerErrorsAreRetried() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(503));
+		server.enqueue(new MockResponse().setResponseCode(502));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		assertThat(get()).isEqualTo(200);
+		assertThat(server.getRequestCount()).isEqualTo(3);
+		assertThat(retryInterceptor.getRetryCount()).isEqualTo(2);
+		assertThat(retryInterceptor.getRecoveredCount()).isEqualTo(1);
+	}
+
+	/** Verifies that I/O errors are retried. */
+	@Test
+	public void testThatConnectionFailuresAreRetried() throws Exception {
+		server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		assertThat(get()).isEqualTo(200);
+		assertThat(retryInterceptor.getRetryCount()).isEqualTo(1);
+	}
+
+	/** Verifies that a request whose cancellation token has been canceled is not retried. */
+	@Test
+	public void testThatCanceledRequestIsNotRetried() throws Exception {
+		server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		CancellationToken cancellationToken = new CancellationToken();
+		cancellationToken.cancel();
+		Request request = new Request.Builder()
+			.url(server.url("/3/movie/popular"))
+			.tag(cancellationToken)
+			.build();
+
+		try {
+			client.newCall(request).execute();
+			fail("Disconnected request succeeded");
+		}
+		catch (IOException e) {
+			// expected
+		}
+
+		assertThat(server.getRequestCount()).isEqualTo(1);
+		assertThat(retryInterceptor.getRetryCount()).isEqualTo(0);
+	}
+
+	/** Verifies that a retry waits for the time the server asks for in Retry-After. */
+	@Test
+	public void testThatRetryAfterIsHonoured() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		long start = System.nanoTime();
+		assertThat(get()).isEqualTo(200);
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+		// the backoff alone is at most 10 ms
+		assertThat(server.getRequestCount()).isEqualTo(2);
+		assertThat(elapsedMillis).isGreaterThanOrEqualTo(1000);
+	}
+
+	/** Verifies that the number of retries is bounded. */
+	@Test
+	public void testThatRetriesAreBounded() throws Exception {
+		for (int i = 0; i < 10; ++i)
+			server.enqueue(new MockResponse().setResponseCode(500));
+
+		assertThat(get()).isEqualTo(500);
+		assertThat(server.getRequestCount()).isEqualTo(4);
+		assertThat(retryInterceptor.getExhaustedCount()).isEqualTo(1);
+	}
+
+	/** Verifies that client errors are not retried. */
+	@Test
+	public void testThatClientErrorsAreNotRetried() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(404));
+
+		assertThat(get()).isEqualTo(404);
+		assertThat(server.getRequestCount()).isEqualTo(1);
+		assertThat(retryInterceptor.getRetryCount()).isEqualTo(0);
+	}
+
+	/** Verifies that non-idempotent requests are not retried. */
+	@Test
+	public void testThatPostIsNotRetried() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(503));
+		server.enqueue(new MockResponse().setBody("{}"));
+
+		Request request = new Request.Builder()
+			.url(server.url("/3/movie/550/rating"))
+			.post(RequestBody.create(MediaType.parse("application/json"), "{\"value\":8.5}"))
+			.build();
+
+		Response response = client.newCall(request).execute();
+		response.body().close();
+
+		assertThat(response.code()).isEqualTo(503);
+		assertThat(server.getRequestCount()).isEqualTo(1);
+	}
+
+	/** Verifies that the backoff delay grows exponentially but stays within the bounds. */
+	@Test
+	public void testBackoffDelay() {
+		RetryInterceptor interceptor = new RetryInterceptor(10, 100, 1000);
+
+		for (int i = 0; i < 100; ++i) {
+			assertThat(interceptor.getBackoffDelay(1)).isBetween(0L, 100L);
+			assertThat(interceptor.getBackoffDelay(3)).isBetween(0L, 400L);
+			assertThat(interceptor.getBackoffDelay(10)).isBetween(0L, 1000L);
+			assertThat(interceptor.getBackoffDelay(100)).isBetween(0L, 1000L);
+		}
+	}
+
+	private int get() throws IOException {
+		Request request = new Request.Builder().url(server.url("/3/movie/550")).build();
+		Response response = client.newCall(request).execute();
+		response.body().close();
+		return response.code();
+	}
+}
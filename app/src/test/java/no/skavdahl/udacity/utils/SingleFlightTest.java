@@ -0,0 +1,151 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the SingleFlight class.
+ *
+ * @author fdavs
+ */
+public class SingleFlightTest {
+
+	private static final int CALLERS = 8;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newFixedThreadPool(CALLERS);
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+
+	/** Verifies that concurrent callers with the same key share one call and one result. */
+	@Test
+	public void testThatConcurrentCallsAreCoalesced() throws Exception {
+		final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+		final AtomicInteger executions = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+
+		List<Future<Object>> results = new ArrayList<>();
+		for (int i = 0; i < CALLERS; ++i) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return singleFlight.execute("/movie/550", new SingleFlight.Call<Object>() {
+						@Override
+						public Object call() throws IOException {
+							executions.incrementAndGet();
+							awaitQuietly(release);
+							return new Object();
+						}
+					});
+				}
+			}));
+		}
+
+		// keep the first call in flight until all the other callers have joined it
+		waitForDeduplicatedCount(singleFlight, CALLERS - 1);
+		release.countDown();
+
+		Object first = results.get(0).get(5, TimeUnit.SECONDS);
+		for (Future<Object> result : results)
+			assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+
+		assertThat(executions.get()).isEqualTo(1);
+		assertThat(singleFlight.getCallCount()).isEqualTo(CALLERS);
+		assertThat(singleFlight.getDeduplicatedCount()).isEqualTo(CALLERS - 1);
+	}
+
+	/** Verifies that a failed call is reported to every caller that shared it. */
+	@Test
+	public void testThatFailureIsSharedByAllCallers() throws Exception {
+		final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+		final CountDownLatch release = new CountDownLatch(1);
+
+		List<Future<Object>> results = new ArrayList<>();
+		for (int i = 0; i < CALLERS; ++i) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return singleFlight.execute("/movie/550", new SingleFlight.Call<Object>() {
+						@Override
+						public Object call() throws IOException {
+							awaitQuietly(release);
+							throw new IOException("HTTP 503");
+						}
+					});
+				}
+			}));
+		}
+
+		waitForDeduplicatedCount(singleFlight, CALLERS - 1);
+		release.countDown();
+
+		for (Future<Object> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+				fail("expected the shared call to fail");
+			}
+			catch (ExecutionException e) {
+				assertThat(e.getCause()).isInstanceOf(IOException.class).hasMessage("HTTP 503");
+			}
+		}
+	}
+
+	/** Verifies that calls are not coalesced once the previous call has completed. */
+	@Test
+	public void testThatSequentialCallsAreNotCoalesced() throws Exception {
+		SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+		final AtomicInteger executions = new AtomicInteger();
+
+		SingleFlight.Call<Integer> call = new SingleFlight.Call<Integer>() {
+			@Override
+			public Integer call() {
+				return executions.incrementAndGet();
+			}
+		};
+
+		assertThat(singleFlight.execute("/movie/550", call)).isEqualTo(1);
+		assertThat(singleFlight.execute("/movie/550", call)).isEqualTo(2);
+		assertThat(singleFlight.execute("/movie/551", call)).isEqualTo(3);
+
+		assertThat(singleFlight.getDeduplicatedCount()).isEqualTo(0);
+	}
+
+	private static void waitForDeduplicatedCount(SingleFlight<?, ?> singleFlight, int count)
+		throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (singleFlight.getDeduplicatedCount() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
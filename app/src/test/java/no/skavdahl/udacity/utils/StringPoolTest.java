@@ -0,0 +1,51 @@
+package no.skavdahl.udacity.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the StringPool class.
+ *
+ * @author fdavs
+ */
+public class StringPoolTest {
+
+	/** Verifies that equal strings are replaced by the instance first added. */
+	@Test
+	public void testEqualStringsShareInstance() {
+		StringPool pool = new StringPool(16, 32);
+
+		String first = new String("YouTube");
+		String second = new String("YouTube");
+
+		assertThat(pool.intern(first)).isSameAs(first);
+		assertThat(pool.intern(second)).isSameAs(first);
+	}
+
+	/** Verifies that long strings and null are returned as they are. */
+	@Test
+	public void testLongStringsAreNotPooled() {
+		StringPool pool = new StringPool(16, 4);
+
+		String first = new String("Vimeo");
+		String second = new String("Vimeo");
+		pool.intern(first);
+
+		assertThat(pool.intern(second)).isSameAs(second);
+		assertThat(pool.intern(null)).isNull();
+	}
+
+	/** Verifies that the pool does not grow however many distinct strings it sees. */
+	@Test
+	public void testPoolIsBounded() {
+		StringPool pool = new StringPool(10, 32);
+		assertThat(pool.getCapacity()).isEqualTo(16);
+
+		for (int i = 0; i < 1000; ++i) {
+			String value = "value" + i;
+			assertThat(pool.intern(value)).isEqualTo(value);
+		}
+		assertThat(pool.getCapacity()).isEqualTo(16);
+	}
+}
@@ -0,0 +1,143 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the ThroughputEstimator class.
+ *
+ * @author fdavs
+ */
+public class ThroughputEstimatorTest {
+
+	private MockWebServer server;
+	private ThroughputEstimator estimator;
+	private OkHttpClient client;
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.start();
+
+		estimator = new ThroughputEstimator();
+		client = WebApiTransport.newClientBuilder(16, 4, 10000, 20000)
+			.addNetworkInterceptor(estimator)
+			.build();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	private void download(String path) throws IOException {
+		Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+		response.body().bytes();
+	}
+
+	private static Buffer body(int size) {
+		Buffer buffer = new Buffer();
+		for (int i = 0; i < size; ++i)
+			buffer.writeByte('x');
+		return buffer;
+	}
+
+	private static MockResponse image(int size) {
+		return new MockResponse()
+			.setHeader("Content-Type", "image/jpeg")
+			.setBody(body(size));
+	}
+
+	/** Verifies that a throttled download yields a sample close to the throttled rate. */
+	@Test
+	public void testThrottledDownload() throws IOException {
+		// 128 KiB at 16 KiB per 100 ms; the client may see the end of the body before
+		// or after the server's last pause, so the sample covers 7 or 8 periods, that is
+		// 160 to 183 KiB/s
+		server.enqueue(image(128 * 1024).throttleBody(16 * 1024, 100, TimeUnit.MILLISECONDS));
+
+		download("/t/p/w780/backdrop.jpg");
+
+		assertThat(estimator.getSampleCount()).isEqualTo(1);
+		assertThat(estimator.getBytesPerSecond()).isBetween(120.0 * 1024, 220.0 * 1024);
+		assertThat(estimator.getConnectionQuality()).isEqualTo(ConnectionQuality.GOOD);
+	}
+
+	/** Verifies that the time the server takes to respond is not part of a sample. */
+	@Test
+	public void testServerResponseTimeIsExcluded() throws IOException {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+				Thread.sleep(1000);
+				return image(128 * 1024).throttleBody(16 * 1024, 100, TimeUnit.MILLISECONDS);
+			}
+		});
+
+		download("/t/p/w780/backdrop.jpg");
+
+		// with the second in the sample, the estimate would be below 80 KiB/s
+		assertThat(estimator.getSampleCount()).isEqualTo(1);
+		assertThat(estimator.getBytesPerSecond()).isBetween(120.0 * 1024, 220.0 * 1024);
+	}
+
+	/** Verifies that small responses do not affect the estimate. */
+	@Test
+	public void testSmallResponseIsIgnored() throws IOException {
+		server.enqueue(image(16 * 1024));
+
+		download("/t/p/w92/poster.jpg");
+
+		assertThat(estimator.getSampleCount()).isEqualTo(0);
+		assertThat(estimator.getConnectionQuality()).isEqualTo(ConnectionQuality.UNKNOWN);
+	}
+
+	/** Verifies that only images are sampled. */
+	@Test
+	public void testWebServiceResponseIsIgnored() throws IOException {
+		server.enqueue(new MockResponse()
+			.setHeader("Content-Type", "application/json;charset=utf-8")
+			.setBody(body(256 * 1024)));
+
+		download("/3/movie/popular");
+
+		assertThat(estimator.getSampleCount()).isEqualTo(0);
+	}
+
+	/** Verifies that the estimate moves towards new samples without jumping to them. */
+	@Test
+	public void testMovingAverage() {
+		estimator.addSample(400 * 1024, TimeUnit.SECONDS.toNanos(1));
+		estimator.addSample(40 * 1024, TimeUnit.SECONDS.toNanos(1));
+
+		assertThat(estimator.getSampleCount()).isEqualTo(2);
+		assertThat(estimator.getBytesPerSecond()).isLessThan(400.0 * 1024).isGreaterThan(40.0 * 1024);
+
+		estimator.reset();
+		assertThat(estimator.getSampleCount()).isEqualTo(0);
+	}
+
+	/** Verifies the throughput limits of the connection quality classes. */
+	@Test
+	public void testConnectionQuality() {
+		assertThat(ConnectionQuality.classify(10 * 1000 / 8)).isEqualTo(ConnectionQuality.POOR);
+		assertThat(ConnectionQuality.classify(300 * 1000 / 8)).isEqualTo(ConnectionQuality.MODERATE);
+		assertThat(ConnectionQuality.classify(1000 * 1000 / 8)).isEqualTo(ConnectionQuality.GOOD);
+		assertThat(ConnectionQuality.classify(10000 * 1000 / 8)).isEqualTo(ConnectionQuality.EXCELLENT);
+	}
+}
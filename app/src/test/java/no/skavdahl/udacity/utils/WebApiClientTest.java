@@ -0,0 +1,178 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the asynchronous and blocking query methods of the WebApiClient class.
+ *
+ * @author fdavs
+ */
+public class WebApiClientTest {
+
+	private static final int MAX_REQUESTS_PER_HOST = 4;
+	private static final long RESPONSE_DELAY = 300; // milliseconds
+
+	private MockWebServer server;
+	private TestClient client;
+
+	/** Exposes the protected query methods. */
+	private static class TestClient extends WebApiClient {
+		TestClient(OkHttpClient client) {
+			super(client);
+		}
+	}
+
+	/** Parses the response body as a string. */
+	private static final WebApiClient.ResponseParser<String> PARSER = new WebApiClient.ResponseParser<String>() {
+		@Override
+		public String parse(Reader body) throws IOException {
+			StringBuilder buf = new StringBuilder();
+			int c;
+			while ((c = body.read()) >= 0)
+				buf.append((char) c);
+			return buf.toString();
+		}
+	};
+
+	/** Collects the results of asynchronous queries. */
+	private static class Results implements WebApiClient.ResponseCallback<String> {
+		final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+		final List<IOException> failures = Collections.synchronizedList(new ArrayList<IOException>());
+		final CountDownLatch done;
+
+		Results(int count) {
+			done = new CountDownLatch(count);
+		}
+
+		@Override
+		public void onSuccess(String result) {
+			results.add(result);
+			done.countDown();
+		}
+
+		@Override
+		public void onFailure(IOException e) {
+			failures.add(e);
+			done.countDown();
+		}
+	}
+
+	@Before
+	public void setup() throws IOException {
+		server = new MockWebServer();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse()
+					.setBodyDelay(RESPONSE_DELAY, TimeUnit.MILLISECONDS)
+					.setBody(request.getPath());
+			}
+		});
+		server.start();
+
+		client = new TestClient(WebApiTransport.newClientBuilder(16, MAX_REQUESTS_PER_HOST, 10000, 20000).build());
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/** Verifies that several asynchronous queries are in flight at the same time. */
+	@Test
+	public void testThatAsyncQueriesRunConcurrently() throws Exception {
+		int count = 2 * MAX_REQUESTS_PER_HOST;
+		Results results = new Results(count);
+
+		long start = System.nanoTime();
+		for (int page = 1; page <= count; ++page)
+			client.enqueueQuery(server.url("/3/movie/popular?page=" + page).toString(), PARSER, null, results);
+
+		assertThat(results.done.await(10, TimeUnit.SECONDS)).isTrue();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(results.failures).isEmpty();
+		assertThat(results.results).hasSize(count).contains("/3/movie/popular?page=1");
+
+		// run one after another, the queries would take count * RESPONSE_DELAY
+		assertThat(elapsedMillis).isLessThan(count * RESPONSE_DELAY);
+	}
+
+	/** Verifies that a canceled query never invokes its callback. */
+	@Test
+	public void testThatCanceledQueryIsNotDelivered() throws Exception {
+		CancellationToken cancellationToken = new CancellationToken();
+		Results results = new Results(1);
+
+		client.enqueueQuery(server.url("/3/movie/550").toString(), PARSER, cancellationToken, results);
+		cancellationToken.cancel();
+
+		assertThat(results.done.await(3 * RESPONSE_DELAY, TimeUnit.MILLISECONDS)).isFalse();
+		assertThat(results.results).isEmpty();
+		assertThat(results.failures).isEmpty();
+	}
+
+	/** Verifies that a query started with an already canceled token is not sent. */
+	@Test
+	public void testThatQueryWithCanceledTokenIsNotSent() throws Exception {
+		CancellationToken cancellationToken = new CancellationToken();
+		cancellationToken.cancel();
+
+		client.enqueueQuery(server.url("/3/movie/550").toString(), PARSER, cancellationToken, new Results(1));
+
+		Thread.sleep(RESPONSE_DELAY);
+		assertThat(server.getRequestCount()).isEqualTo(0);
+	}
+
+	/** Verifies that the blocking query waits for and returns the result. */
+	@Test
+	public void testBlockingQuery() throws Exception {
+		assertThat(client.executeQuery(server.url("/3/movie/550").toString(), PARSER)).isEqualTo("/3/movie/550");
+		assertThat(client.executeQuery(server.url("/3/movie/551").toString())).isEqualTo("/3/movie/551");
+	}
+
+	/** Verifies that interrupting a blocking query cancels it. */
+	@Test
+	public void testThatInterruptedBlockingQueryIsCanceled() throws Exception {
+		final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					client.executeQuery(server.url("/3/movie/552").toString(), PARSER);
+				}
+				catch (IOException e) {
+					thrown.add(e);
+				}
+			}
+		});
+		thread.start();
+		Thread.sleep(RESPONSE_DELAY / 3);
+		thread.interrupt();
+		thread.join(RESPONSE_DELAY);
+
+		assertThat(thread.isAlive()).isFalse();
+		assertThat(thrown).hasSize(1);
+		assertThat(thrown.get(0)).isInstanceOf(InterruptedIOException.class);
+	}
+}
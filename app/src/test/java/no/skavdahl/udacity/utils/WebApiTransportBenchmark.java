@@ -0,0 +1,204 @@
+package no.skavdahl.udacity.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Compares a new HTTP client per request (the old behavior of {@link WebApiClient}) with
+ * the shared {@link WebApiTransport} client. Both variants query a local MockWebServer
+ * for a recorded list page. The requests per second and the 99th percentile latency of
+ * both are given in the description of the assertions.
+ *
+ * <p>The benchmark sends over a thousand requests and creates hundreds of clients, each
+ * with its own thread pool, so it is not run with the unit tests. Run it explicitly
+ * after removing the {@link Ignore} annotation.</p>
+ *
+ * <p>Note that the local server uses plain HTTP over the loopback interface, so the
+ * measured difference only covers connection and client setup. Against the real service
+ * the shared client also saves DNS lookups and network round trips.</p>
+ *
+ * @author fdavs
+ */
+@Ignore("Benchmark; run explicitly")
+public class WebApiTransportBenchmark {
+
+	private static final int WARMUP_REQUESTS = 50;
+	private static final int MEASURED_REQUESTS = 500;
+
+	private MockWebServer server;
+	private String responseBody;
+
+	@Before
+	public void setup() throws IOException {
+		responseBody = readResource("/discover_movie.json");
+
+		server = new MockWebServer();
+		server.setServerSocketFactory(new NoDelayServerSocketFactory());
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse()
+					.setHeader("Content-Type", "application/json;charset=utf-8")
+					.setBody(responseBody);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		server.shutdown();
+	}
+
+	/**
+	 * Measures requests through a new client (and connection) per request against requests
+	 * through the shared, connection-pooled client, and verifies that the shared client
+	 * reuses its connection and serves more requests per second.
+	 */
+	@Test
+	public void benchmarkSharedTransportAgainstClientPerRequest() throws Exception {
+		String endpoint = server.url("/3/movie/popular?api_key=none&page=1").toString();
+
+		for (int i = 0; i < WARMUP_REQUESTS; ++i)
+			new WebApiClient(new OkHttpClient()).executeQuery(endpoint);
+
+		long[] perRequestLatencies = new long[MEASURED_REQUESTS];
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_REQUESTS; ++i) {
+			long requestStart = System.nanoTime();
+			new WebApiClient(new OkHttpClient()).executeQuery(endpoint);
+			perRequestLatencies[i] = System.nanoTime() - requestStart;
+		}
+		long perRequestElapsed = System.nanoTime() - start;
+
+		skipRecordedRequests();
+
+		WebApiClient client = new WebApiClient(WebApiTransport.newClientBuilder(16, 4, 10000, 20000).build());
+		for (int i = 0; i < WARMUP_REQUESTS; ++i)
+			client.executeQuery(endpoint);
+
+		long[] sharedLatencies = new long[MEASURED_REQUESTS];
+		start = System.nanoTime();
+		for (int i = 0; i < MEASURED_REQUESTS; ++i) {
+			long requestStart = System.nanoTime();
+			client.executeQuery(endpoint);
+			sharedLatencies[i] = System.nanoTime() - requestStart;
+		}
+		long sharedElapsed = System.nanoTime() - start;
+
+		String results =
+			format("client per request", perRequestLatencies, perRequestElapsed) + "; " +
+			format("shared transport", sharedLatencies, sharedElapsed);
+
+		// every request after the first one should reuse the same pooled connection
+		int sequenceNumber = -1;
+		for (int i = 0; i < WARMUP_REQUESTS + MEASURED_REQUESTS; ++i)
+			sequenceNumber = server.takeRequest().getSequenceNumber();
+		assertThat(sequenceNumber).as(results).isEqualTo(WARMUP_REQUESTS + MEASURED_REQUESTS - 1);
+
+		assertThat(sharedElapsed).as(results).isLessThan(perRequestElapsed);
+	}
+
+	/** Takes the requests recorded so far, so the sequence numbers of the next ones can be checked. */
+	private void skipRecordedRequests() throws InterruptedException {
+		int count = server.getRequestCount();
+		for (int i = 0; i < count; ++i)
+			server.takeRequest();
+	}
+
+	/**
+	 * MockWebServer writes the response headers and the body in separate packets. Without
+	 * TCP_NODELAY, Nagle's algorithm combined with delayed ACKs adds ~40 ms to every
+	 * response on a reused connection, which would hide the effect being measured.
+	 */
+	private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			return new NoDelayServerSocket();
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, 50);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			ServerSocket socket = new NoDelayServerSocket();
+			socket.bind(new InetSocketAddress(address, port), backlog);
+			return socket;
+		}
+	}
+
+	/** A server socket that sets TCP_NODELAY on the sockets it accepts. */
+	private static class NoDelayServerSocket extends ServerSocket {
+
+		NoDelayServerSocket() throws IOException {
+			super();
+		}
+
+		@Override
+		public Socket accept() throws IOException {
+			Socket socket = super.accept();
+			socket.setTcpNoDelay(true);
+			return socket;
+		}
+	}
+
+	/** Returns the requests per second and the 99th percentile latency of a measurement. */
+	private static String format(String label, long[] latencies, long elapsedNanos) {
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+
+		double requestsPerSecond = latencies.length / (elapsedNanos / 1e9);
+
+		return String.format(Locale.US,
+			"%s %.1f requests/s, p99 latency %.3f ms",
+			label, requestsPerSecond, p99 / 1e6);
+	}
+
+	private String readResource(String name) throws IOException {
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(getClass().getResourceAsStream(name), "UTF-8"));
+
+		try {
+			StringBuilder buf = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null)
+				buf.append(line).append('\n');
+
+			return buf.toString();
+		}
+		finally {
+			reader.close();
+		}
+	}
+}
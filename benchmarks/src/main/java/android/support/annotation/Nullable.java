@@ -0,0 +1,17 @@
+package android.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Stand-in for the support library annotation of the same name, so that app classes
+ * compile in the benchmarks without the Android SDK repository.
+ *
+ * @author fdavs
+ */
+@Documented
+@Retention(CLASS)
+public @interface Nullable {
+}
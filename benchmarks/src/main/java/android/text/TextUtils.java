@@ -0,0 +1,18 @@
+package android.text;
+
+/**
+ * Stand-in for the Android text utilities used by the model classes, so that they can
+ * run in the benchmarks.
+ *
+ * @author fdavs
+ */
+public final class TextUtils {
+
+	private TextUtils() {
+		// not instantiable
+	}
+
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+}
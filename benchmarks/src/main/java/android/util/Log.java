@@ -0,0 +1,23 @@
+package android.util;
+
+/**
+ * Stand-in for the Android logging API, so that app classes that log can run in the
+ * benchmarks. Like the mocked Android library in unit tests, it does nothing. Only the
+ * methods called by the measured classes are provided.
+ *
+ * @author fdavs
+ */
+public final class Log {
+
+	private Log() {
+		// not instantiable
+	}
+
+	public static int w(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+}
@@ -0,0 +1,65 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.utils.Arrays;
+
+/**
+ * Measures the array utilities as the content provider uses them on every query: adding
+ * the list name or movie id to the selection arguments, and checking for and adding the modification
+ * time column to a projection.
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArraysBenchmark {
+
+	/** A projection like the one of the movie detail screen. */
+	private final String[] projection = {
+		"_id", "title", "poster", "backdrop", "synopsis", "popularity",
+		"voteavg", "votecount", "releasedate", "releaseyear", "favorite"
+	};
+
+	/** The selection arguments of a query for the YouTube videos of a movie. */
+	private final String[] selectionArgs = { "YouTube" };
+
+	@Benchmark
+	public String[] prependToNull() {
+		return Arrays.prepend("popular", null);
+	}
+
+	@Benchmark
+	public String[] prepend() {
+		return Arrays.prepend("206647", selectionArgs);
+	}
+
+	@Benchmark
+	public String[] append() {
+		return Arrays.append(projection, "modified");
+	}
+
+	@Benchmark
+	public boolean containsLast() {
+		return Arrays.arrayContains(projection, "favorite");
+	}
+
+	@Benchmark
+	public boolean containsMissing() {
+		return Arrays.arrayContains(projection, "modified");
+	}
+}
@@ -0,0 +1,108 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.utils.EpochDay;
+
+/**
+ * Compares release date handling before and after dates were stored as epoch days:
+ * parsing with a new SimpleDateFormat per movie against {@link EpochDay}, and computing
+ * the displayed year with a GregorianCalendar against the year computed from an epoch
+ * day or read from the precomputed year column.
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EpochDayBenchmark {
+
+	/** Release dates as found in a list page from themoviedb.org. */
+	private static final String[] DATES = {
+		"2015-10-26", "2015-11-06", "2015-09-30", "2015-11-18", "2014-11-05",
+		"2015-10-02", "2015-06-09", "2015-10-21", "2015-07-14", "2015-02-11",
+		"1999-10-14", "2015-12-18", "2015-10-09", "2015-05-13", "2015-04-22",
+		"1994-09-10", "2015-08-13", "2015-07-09", "2015-09-09", "1972-03-15"
+	};
+
+	private Date[] dates;
+	private int[] epochDays;
+	private int[] years;
+
+	private int index;
+
+	@Setup
+	public void setup() throws ParseException {
+		dates = new Date[DATES.length];
+		epochDays = new int[DATES.length];
+		years = new int[DATES.length];
+
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+		for (int i = 0; i < DATES.length; ++i) {
+			dates[i] = format.parse(DATES[i]);
+			epochDays[i] = EpochDay.parseOptIsoDate(DATES[i]);
+			years[i] = EpochDay.getYear(epochDays[i]);
+		}
+	}
+
+	private int next() {
+		index = (index + 1) % DATES.length;
+		return index;
+	}
+
+	// --- parsing ---
+
+	/** Parses a date the way JSONAdapter did: a new SimpleDateFormat per date. */
+	@Benchmark
+	public Date parseSimpleDateFormat() throws ParseException {
+		DateFormat dateParser = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+		return dateParser.parse(DATES[next()]);
+	}
+
+	@Benchmark
+	public int parseEpochDay() throws ParseException {
+		return EpochDay.parseOptIsoDate(DATES[next()]);
+	}
+
+	// --- display formatting ---
+
+	/** Formats the year the way MovieDetailFragment did: a new calendar per bind. */
+	@Benchmark
+	public String formatYearCalendar() {
+		Calendar cal = GregorianCalendar.getInstance(Locale.getDefault());
+		cal.setTime(dates[next()]);
+		return Integer.toString(cal.get(Calendar.YEAR));
+	}
+
+	@Benchmark
+	public String formatYearFromEpochDay() {
+		return Integer.toString(EpochDay.getYear(epochDays[next()]));
+	}
+
+	/** Formats the year read from the precomputed year column. */
+	@Benchmark
+	public String formatYearColumn() {
+		return Integer.toString(years[next()]);
+	}
+}
@@ -0,0 +1,49 @@
+package no.skavdahl.udacity.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Loads the recorded responses from themoviedb.org that the benchmarks use as input. The
+ * recordings are shared with the unit tests of the app module.
+ *
+ * @author fdavs
+ */
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+final class Fixtures {
+
+	/** A page of a standard movie list (20 movies). */
+	static final String MOVIE_LIST = "/discover_movie.json";
+
+	/** A movie details response with videos and reviews appended. */
+	static final String MOVIE_DETAILS = "/movie_details.json";
+
+	/** An API configuration response. */
+	static final String CONFIGURATION = "/configuration.json";
+
+	private Fixtures() {
+		// not instantiable
+	}
+
+	/** Returns the contents of a fixture. */
+	static String read(String name) throws IOException {
+		InputStream in = Fixtures.class.getResourceAsStream(name);
+		if (in == null)
+			throw new IOException("Fixture not found: " + name);
+
+		try {
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			StringBuilder sb = new StringBuilder(16 * 1024);
+			char[] buf = new char[4096];
+			int count;
+			while ((count = reader.read(buf)) != -1)
+				sb.append(buf, 0, count);
+			return sb.toString();
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.popularmovies.mdb.ImageConfiguration;
+import no.skavdahl.udacity.popularmovies.mdb.ImageType;
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+
+/**
+ * Measures the image download URLs built for every poster and backdrop that is displayed,
+ * and parsing of a recorded API configuration response.
+ *
+ * <p>The URLs are built the way <code>Request</code> builds them. <code>Request</code>
+ * itself depends on the Android framework and cannot run here.</p>
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageConfigurationBenchmark {
+
+	/** Poster widths in pixels, as on phones and tablets of common screen densities. */
+	private static final int[] POSTER_WIDTHS = { 120, 160, 240, 320, 480 };
+
+	private String json;
+	private ImageConfiguration configuration;
+	private int index;
+
+	@Setup
+	public void setup() throws IOException {
+		json = Fixtures.read(Fixtures.CONFIGURATION);
+		configuration = MdbJSONReader.readImageConfiguration(new StringReader(json));
+	}
+
+	@Benchmark
+	public String posterUrl() {
+		index = (index + 1) % POSTER_WIDTHS.length;
+		return configuration.getBaseUrl() +
+			configuration.getSizeCode(ImageType.POSTER, POSTER_WIDTHS[index], -1) +
+			"/811DjJTon9gD6hZ8nCjSitaIXFQ.jpg";
+	}
+
+	@Benchmark
+	public String backdropUrl() {
+		return configuration.getBaseUrl() +
+			configuration.getSizeCode(ImageType.BACKDROP, 1080, 0) +
+			"/8fLCsSZ8rT8aQpaK6ZgmmH3nvGm.jpg";
+	}
+
+	@Benchmark
+	public ImageConfiguration readConfiguration() throws IOException {
+		return MdbJSONReader.readImageConfiguration(new StringReader(json));
+	}
+}
@@ -0,0 +1,72 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.utils.JSONAdapter;
+
+/**
+ * Measures the attribute accessors of {@link JSONAdapter} on the movies of a recorded
+ * movie list page.
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JSONAdapterBenchmark {
+
+	private JSONObject[] movies;
+	private int index;
+
+	@Setup
+	public void setup() throws IOException, JSONException {
+		JSONObject page = new JSONObject(Fixtures.read(Fixtures.MOVIE_LIST));
+		movies = new JSONObject[page.getJSONArray("results").length()];
+		for (int i = 0; i < movies.length; ++i)
+			movies[i] = page.getJSONArray("results").getJSONObject(i);
+	}
+
+	private JSONObject next() {
+		index = (index + 1) % movies.length;
+		return movies[index];
+	}
+
+	@Benchmark
+	public int optEpochDay() throws JSONException {
+		return Accessors.optEpochDay(next(), "release_date");
+	}
+
+	@Benchmark
+	public String optString() throws JSONException {
+		return Accessors.optString(next(), "poster_path");
+	}
+
+	/** Gives the benchmark access to the protected accessors. */
+	private static class Accessors extends JSONAdapter {
+
+		static int optEpochDay(JSONObject obj, String attrName) throws JSONException {
+			return JSONAdapter.getOptEpochDay(obj, attrName);
+		}
+
+		static String optString(JSONObject obj, String attrName) throws JSONException {
+			return JSONAdapter.getOptString(obj, attrName);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.popularmovies.data.ExtendedDataCodec;
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+
+/**
+ * Measures parsing of a recorded movie details response with its videos and reviews,
+ * the conversion of review and video arrays that older databases are upgraded with, and
+ * the round trip of reviews and videos through {@link ExtendedDataCodec}.
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovieDetailsParsingBenchmark {
+
+	private String json;
+	private String reviewArrayJson;
+	private String videoArrayJson;
+
+	private List<Review> reviews;
+	private List<Video> videos;
+
+	@Setup
+	public void setup() throws IOException, JSONException {
+		json = Fixtures.read(Fixtures.MOVIE_DETAILS);
+
+		JSONObject obj = new JSONObject(json);
+		reviewArrayJson = obj.getJSONObject("reviews").getJSONArray("results").toString();
+		videoArrayJson = obj.getJSONObject("videos").getJSONArray("results").toString();
+
+		Movie movie = MdbJSONReader.readMovie(new StringReader(json));
+		reviews = movie.getReviews();
+		videos = movie.getVideos();
+	}
+
+	// --- movie details ---
+
+	@Benchmark
+	public Movie jsonObjectTree() throws JSONException {
+		return MdbJSONAdapter.toMovie(new JSONObject(json));
+	}
+
+	@Benchmark
+	public Movie streamMovie() throws IOException {
+		return MdbJSONReader.readMovie(new StringReader(json));
+	}
+
+	// --- review and video arrays ---
+
+	@Benchmark
+	public List<Review> reviewArray() {
+		return MdbJSONAdapter.toReviewList(reviewArrayJson);
+	}
+
+	@Benchmark
+	public List<Video> videoArray() {
+		return MdbJSONAdapter.toVideoList(videoArrayJson);
+	}
+
+	// --- binary round trip ---
+
+	/** Encodes and decodes the reviews, and accesses every review to defeat lazy decoding. */
+	@Benchmark
+	public void reviewRoundTrip(Blackhole blackhole) {
+		for (Review review : ExtendedDataCodec.decodeReviews(ExtendedDataCodec.encodeReviews(reviews)))
+			blackhole.consume(review);
+	}
+
+	/** Encodes and decodes the videos, and accesses every video to defeat lazy decoding. */
+	@Benchmark
+	public void videoRoundTrip(Blackhole blackhole) {
+		for (Video video : ExtendedDataCodec.decodeVideos(ExtendedDataCodec.encodeVideos(videos)))
+			blackhole.consume(video);
+	}
+}
@@ -0,0 +1,64 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONAdapter;
+import no.skavdahl.udacity.popularmovies.mdb.MdbJSONReader;
+import no.skavdahl.udacity.popularmovies.model.Movie;
+import no.skavdahl.udacity.popularmovies.model.MovieBatch;
+
+/**
+ * Measures parsing of a recorded movie list page: building a JSONObject tree with
+ * {@link MdbJSONAdapter}, and streaming it into a columnar {@link MovieBatch} with
+ * {@link MdbJSONReader} as the list update does.
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovieListParsingBenchmark {
+
+	private String json;
+
+	@Setup
+	public void setup() throws IOException {
+		json = Fixtures.read(Fixtures.MOVIE_LIST);
+	}
+
+	@Benchmark
+	public List<Movie> jsonObjectTree() throws JSONException {
+		JSONArray results = new JSONObject(json).getJSONArray("results");
+
+		List<Movie> movies = new ArrayList<>(results.length());
+		for (int i = 0; i < results.length(); ++i)
+			movies.add(MdbJSONAdapter.toMovie(results.getJSONObject(i)));
+		return movies;
+	}
+
+	@Benchmark
+	public MovieBatch streamBatch() throws IOException {
+		return MdbJSONReader.readMovieBatch(new StringReader(json));
+	}
+}
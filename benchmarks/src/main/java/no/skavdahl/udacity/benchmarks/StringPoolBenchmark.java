@@ -0,0 +1,172 @@
+package no.skavdahl.udacity.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.skavdahl.udacity.popularmovies.model.Review;
+import no.skavdahl.udacity.popularmovies.model.Video;
+import no.skavdahl.udacity.utils.StringPool;
+
+/**
+ * Measures loading the reviews and videos of a favorites list of several hundred movies
+ * from the database, as MovieDetailsLoader does, with and without sharing the review
+ * authors and video sites through a {@link StringPool}. A cursor returns a new string
+ * for every value it reads, so the rows are copied on every load.
+ *
+ * <p>The loaded details stay in memory, so the saving is in retained heap rather than
+ * in allocation. When the benchmark ends, it prints the estimated size of the strings
+ * retained by one load of each kind. String sizes are estimated for a 64-bit JVM with
+ * compressed references: 24 bytes for the String object plus a 16 byte array header and
+ * two bytes per character, rounded up to 8 bytes. Android uses a similar layout.</p>
+ *
+ * @author fdavs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringPoolBenchmark {
+
+	private static final int MOVIE_COUNT = 500;
+	private static final int VIDEOS_PER_MOVIE = 4;
+	private static final int REVIEWS_PER_MOVIE = 6;
+
+	/** The number of distinct review authors; a few prolific reviewers write most reviews. */
+	private static final int AUTHOR_COUNT = 40;
+
+	/** The review rows: id, author and content. */
+	private String[][] reviewRows;
+
+	/** The video rows: key, site and name. */
+	private String[][] videoRows;
+
+	@Setup
+	public void setup() {
+		reviewRows = new String[MOVIE_COUNT * REVIEWS_PER_MOVIE][];
+		videoRows = new String[MOVIE_COUNT * VIDEOS_PER_MOVIE][];
+
+		for (int movie = 0; movie < MOVIE_COUNT; ++movie) {
+			int movieId = 1000 + movie;
+			for (int i = 0; i < REVIEWS_PER_MOVIE; ++i) {
+				// skewed towards the first authors
+				int author = ((movieId * 7 + i * 13) % AUTHOR_COUNT) * i / REVIEWS_PER_MOVIE;
+				reviewRows[movie * REVIEWS_PER_MOVIE + i] = new String[] {
+					"r" + movieId + "_" + i,
+					"reviewer" + author,
+					"Review " + i + " of movie " + movieId };
+			}
+			for (int i = 0; i < VIDEOS_PER_MOVIE; ++i) {
+				videoRows[movie * VIDEOS_PER_MOVIE + i] = new String[] {
+					"k" + movieId + "_" + i,
+					Video.SITE_YOUTUBE,
+					"Trailer " + (i + 1) };
+			}
+		}
+	}
+
+	@TearDown
+	public void report() {
+		Details unpooled = load(null);
+		Details pooled = load(new StringPool(512, 32));
+
+		Footprint unpooledSites = new Footprint();
+		Footprint pooledSites = new Footprint();
+		for (int i = 0; i < unpooled.videos.size(); ++i) {
+			unpooledSites.add(unpooled.videos.get(i).getSite());
+			pooledSites.add(pooled.videos.get(i).getSite());
+		}
+
+		Footprint unpooledAuthors = new Footprint();
+		Footprint pooledAuthors = new Footprint();
+		for (int i = 0; i < unpooled.reviews.size(); ++i) {
+			unpooledAuthors.add(unpooled.reviews.get(i).getAuthor());
+			pooledAuthors.add(pooled.reviews.get(i).getAuthor());
+		}
+
+		report("video site", unpooledSites, pooledSites);
+		report("review author", unpooledAuthors, pooledAuthors);
+	}
+
+	@Benchmark
+	public Details unpooled() {
+		return load(null);
+	}
+
+	@Benchmark
+	public Details pooled() {
+		return load(StringPool.getShared());
+	}
+
+	/** Loads the details of every movie, sharing the repeated values if a pool is given. */
+	private Details load(StringPool pool) {
+		Details details = new Details();
+
+		for (String[] row : reviewRows) {
+			String author = read(row[1]);
+			details.reviews.add(new Review(read(row[0]), pool != null ? pool.intern(author) : author, read(row[2])));
+		}
+
+		for (String[] row : videoRows) {
+			String site = read(row[1]);
+			details.videos.add(new Video(read(row[0]), pool != null ? pool.intern(site) : site, read(row[2])));
+		}
+
+		return details;
+	}
+
+	/** Returns a new string equal to a column value, as Cursor.getString does. */
+	@SuppressWarnings("RedundantStringConstructorCall")
+	private static String read(String value) {
+		return new String(value);
+	}
+
+	private static void report(String attribute, Footprint unpooled, Footprint pooled) {
+		System.out.println(String.format(Locale.US,
+			"%s: %d references, %d instances unpooled, %d pooled, %d bytes unpooled, %d bytes pooled, %.1f%% saved",
+			attribute,
+			unpooled.references,
+			unpooled.instances.size(),
+			pooled.instances.size(),
+			unpooled.bytes,
+			pooled.bytes,
+			100.0 * (unpooled.bytes - pooled.bytes) / unpooled.bytes));
+	}
+
+	/** The reviews and videos of all the movies. */
+	public static class Details {
+		final List<Review> reviews = new ArrayList<>(MOVIE_COUNT * REVIEWS_PER_MOVIE);
+		final List<Video> videos = new ArrayList<>(MOVIE_COUNT * VIDEOS_PER_MOVIE);
+	}
+
+	/** Counts the references to the values of one attribute and the size of the distinct instances. */
+	private static class Footprint {
+
+		final Map<String, Boolean> instances = new IdentityHashMap<>();
+		int references;
+		long bytes;
+
+		void add(String value) {
+			references++;
+			if (instances.put(value, Boolean.TRUE) == null)
+				bytes += 24 + ((16 + 2 * value.length() + 7) & ~7);
+		}
+	}
+}